@@ -0,0 +1,243 @@
+/*
+	Milyn - Copyright (C) 2006 - 2010
+
+	This library is free software; you can redistribute it and/or
+	modify it under the terms of the GNU Lesser General Public
+	License (version 2.1) as published by the Free Software
+	Foundation.
+
+	This library is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+	See the GNU Lesser General Public License for more details:
+	http://www.gnu.org/licenses/lgpl.txt
+*/
+package org.milyn.classpath;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.milyn.assertion.AssertArgument;
+import org.milyn.util.ClassUtil;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Precomputed component index.
+ * <p/>
+ * Reads the {@link #INDEX_RESOURCE} files generated at build time by the {@link ComponentIndexProcessor}.
+ * Each index lists the concrete component classes contained in its classpath root (jar or directory), keyed
+ * by the component types they implement and the component annotations they're annotated with.  Looking up
+ * components through the index avoids scanning ({@link Scanner}) the indexed classpath roots.
+ * <p/>
+ * Index file format:  One "<i>key</i>=<i>className</i>" entry per line, where <i>key</i> is the name of the
+ * component type or annotation.  An entry with an empty <i>className</i> ("<i>key</i>=") just declares that
+ * the <i>key</i> is indexed for the classpath root i.e. that the root has no other components for the
+ * <i>key</i>.  Blank lines and lines starting with a hash are ignored.
+ *
+ * @see ComponentIndexProcessor
+ */
+public class ComponentIndex {
+
+    /**
+     * Index resource name.
+     */
+    public static final String INDEX_RESOURCE = "META-INF/smooks-component.index";
+
+    private static Log logger = LogFactory.getLog(ComponentIndex.class);
+    private static final Map<ClassLoader, ComponentIndex> indexes = new WeakHashMap<ClassLoader, ComponentIndex>();
+
+    /**
+     * Index entries, keyed by classpath root.
+     */
+    private Map<String, Map<String, List<String>>> roots = new LinkedHashMap<String, Map<String, List<String>>>();
+
+    private ComponentIndex(List<URL> indexURLs) {
+        for (URL indexURL : indexURLs) {
+            String root = getRoot(indexURL, INDEX_RESOURCE);
+            if(!roots.containsKey(root)) {
+                roots.put(root, readIndex(indexURL));
+            }
+        }
+    }
+
+    /**
+     * Get the component index for the current thread context.
+     * <p/>
+     * The index is read once per context {@link ClassLoader}.
+     *
+     * @return The component index.
+     */
+    public static ComponentIndex getInstance() {
+        ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+
+        synchronized (indexes) {
+            ComponentIndex index = indexes.get(contextClassLoader);
+
+            if(index == null) {
+                long startTime = System.currentTimeMillis();
+
+                try {
+                    index = new ComponentIndex(ClassUtil.getResources(INDEX_RESOURCE, ComponentIndex.class));
+                } catch (IOException e) {
+                    throw new RuntimeException("Error getting resource URLs for resource : " + INDEX_RESOURCE, e);
+                }
+                logger.debug("Loaded component index from " + index.roots.size() + " classpath roots.  Process took " + (System.currentTimeMillis() - startTime) + "ms.");
+                indexes.put(contextClassLoader, index);
+            }
+
+            return index;
+        }
+    }
+
+    /**
+     * Load the component index available through the specified {@link ClassLoader}.
+     * <p/>
+     * Unlike {@link #getInstance()}, the index is not cached.
+     *
+     * @param classLoader The ClassLoader.
+     * @return The component index.
+     * @throws IOException Error reading the index resources.
+     */
+    public static ComponentIndex load(ClassLoader classLoader) throws IOException {
+        AssertArgument.isNotNull(classLoader, "classLoader");
+        return new ComponentIndex(Collections.list(classLoader.getResources(INDEX_RESOURCE)));
+    }
+
+    /**
+     * Is the index empty i.e. no index resources were found on the classpath.
+     * @return True if the index is empty, otherwise false.
+     */
+    public boolean isEmpty() {
+        return roots.isEmpty();
+    }
+
+    /**
+     * Get the classpath roots (directories and archives) whose index covers the specified key.
+     * <p/>
+     * The components of these roots are listed in the index, so the roots don't need to be scanned
+     * for the key.
+     *
+     * @param key The component type or annotation name.
+     * @return The indexed classpath roots, or an empty set if the key is not indexed.
+     */
+    public Set<File> getIndexedRoots(String key) {
+        AssertArgument.isNotNull(key, "key");
+
+        Set<File> indexedRoots = new LinkedHashSet<File>();
+        for (Map.Entry<String, Map<String, List<String>>> root : roots.entrySet()) {
+            if(root.getValue().containsKey(key)) {
+                try {
+                    indexedRoots.add(Scanner.toFile(new URL(root.getKey())).getAbsoluteFile());
+                } catch (MalformedURLException e) {
+                    logger.debug("Unable to resolve classpath root '" + root.getKey() + "'.  Root will be scanned.", e);
+                } catch (IOException e) {
+                    logger.debug("Unable to resolve classpath root '" + root.getKey() + "'.  Root will be scanned.", e);
+                }
+            }
+        }
+
+        return indexedRoots;
+    }
+
+    /**
+     * Get the names of the indexed component classes for the specified key.
+     *
+     * @param key The component type or annotation name.
+     * @return The component class names, or an empty list if there are no components
+     * indexed against the specified key.
+     */
+    public List<String> getClassNames(String key) {
+        AssertArgument.isNotNull(key, "key");
+
+        List<String> classNames = new ArrayList<String>();
+        for (Map<String, List<String>> entries : roots.values()) {
+            List<String> rootClassNames = entries.get(key);
+            if(rootClassNames != null) {
+                for (String className : rootClassNames) {
+                    if(!classNames.contains(className)) {
+                        classNames.add(className);
+                    }
+                }
+            }
+        }
+
+        return classNames;
+    }
+
+    private static String getRoot(URL resourceURL, String resourceName) {
+        String url = resourceURL.toExternalForm();
+
+        if(url.endsWith(resourceName)) {
+            return url.substring(0, url.length() - resourceName.length());
+        }
+        return url;
+    }
+
+    private static Map<String, List<String>> readIndex(URL indexURL) {
+        Map<String, List<String>> entries = new HashMap<String, List<String>>();
+        InputStream ins = null;
+
+        try {
+            URLConnection connection = indexURL.openConnection();
+            connection.setUseCaches(true);
+            ins = connection.getInputStream();
+
+            BufferedReader reader = new BufferedReader(new InputStreamReader(ins, "UTF-8"));
+            String line;
+            while((line = reader.readLine()) != null) {
+                line = line.trim();
+
+                // Ignore blank lines and lines that start with a hash...
+                if(line.equals("") || line.startsWith("#")) {
+                    continue;
+                }
+
+                int separatorIndex = line.indexOf('=');
+                if(separatorIndex <= 0) {
+                    logger.warn("Ignoring invalid component index entry '" + line + "' in '" + indexURL + "'.");
+                    continue;
+                }
+
+                String key = line.substring(0, separatorIndex).trim();
+                String className = line.substring(separatorIndex + 1).trim();
+                List<String> classNames = entries.get(key);
+                if(classNames == null) {
+                    classNames = new ArrayList<String>();
+                    entries.put(key, classNames);
+                }
+                if(className.length() > 0 && !classNames.contains(className)) {
+                    classNames.add(className);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read component index : " + indexURL, e);
+        } finally {
+            if(ins != null) {
+                try {
+                    ins.close();
+                } catch (IOException e) {
+                    logger.debug("Failed to close component index stream '" + indexURL + "'.", e);
+                }
+            }
+        }
+
+        return entries;
+    }
+}
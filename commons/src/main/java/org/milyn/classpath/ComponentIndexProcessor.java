@@ -0,0 +1,285 @@
+/*
+	Milyn - Copyright (C) 2006 - 2010
+
+	This library is free software; you can redistribute it and/or
+	modify it under the terms of the GNU Lesser General Public
+	License (version 2.1) as published by the Free Software
+	Foundation.
+
+	This library is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+	See the GNU Lesser General Public License for more details:
+	http://www.gnu.org/licenses/lgpl.txt
+*/
+package org.milyn.classpath;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Component index annotation processor.
+ * <p/>
+ * Generates the {@link ComponentIndex#INDEX_RESOURCE} file at compile time, listing the public concrete classes
+ * implementing/extending one of the indexed component types, or annotated with one of the indexed
+ * component annotations.  By default, the following are indexed:
+ * <ul>
+ *  <li>Component types: {@link #DEFAULT_TYPES}.</li>
+ *  <li>Component annotations: {@link #DEFAULT_ANNOTATIONS}.</li>
+ * </ul>
+ * Additional types and annotations can be indexed through the comma separated "<b>{@link #TYPES_OPTION}</b>" and
+ * "<b>{@link #ANNOTATIONS_OPTION}</b>" processor options (e.g. <i>-Asmooks.index.types=com.acme.MyComponent</i>).
+ * <p/>
+ * The processor is not registered through "META-INF/services/javax.annotation.processing.Processor", so it
+ * needs to be enabled explicitly on the (Java 6+) compiler of the component module e.g.
+ * <i>-processor org.milyn.classpath.ComponentIndexProcessor</i>, or the maven-compiler-plugin
+ * "annotationProcessors" configuration.  The index file is only generated if the module contains public
+ * concrete classes.  It declares all of the indexed types and annotations, so the module classpath root is not
+ * scanned for any of them (see {@link ComponentIndex}).  Modules that are not compiled with the processor are
+ * still scanned.
+ */
+@SupportedAnnotationTypes("*")
+@SupportedOptions({ComponentIndexProcessor.TYPES_OPTION, ComponentIndexProcessor.ANNOTATIONS_OPTION})
+public class ComponentIndexProcessor extends AbstractProcessor {
+
+    /**
+     * Additional component types processor option.
+     */
+    public static final String TYPES_OPTION = "smooks.index.types";
+    /**
+     * Additional component annotations processor option.
+     */
+    public static final String ANNOTATIONS_OPTION = "smooks.index.annotations";
+    /**
+     * Default indexed component types.
+     */
+    public static final String[] DEFAULT_TYPES = new String[] {
+            "org.milyn.javabean.DataDecoder",
+            "org.milyn.delivery.ContentHandlerFactory",
+            "org.milyn.javabean.factory.FactoryDefinitionParser"
+    };
+    /**
+     * Default indexed component annotations.
+     */
+    public static final String[] DEFAULT_ANNOTATIONS = new String[] {
+            "org.milyn.javabean.DecodeType",
+            "org.milyn.delivery.annotation.Resource",
+            "org.milyn.delivery.annotation.VisitBeforeIf",
+            "org.milyn.delivery.annotation.VisitAfterIf",
+            "org.milyn.delivery.sax.annotation.StreamResultWriter",
+            "org.milyn.delivery.sax.annotation.TextConsumer",
+            "org.milyn.event.report.annotation.VisitBeforeReport",
+            "org.milyn.event.report.annotation.VisitAfterReport"
+    };
+
+    private Set<String> types;
+    private Set<String> annotations;
+    /**
+     * Index entries (key -> class names), sorted for a stable index file.
+     */
+    private Map<String, Set<String>> index = new TreeMap<String, Set<String>>();
+    private Set<String> processedClasses = new LinkedHashSet<String>();
+
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    public boolean process(Set<? extends TypeElement> annotationTypes, RoundEnvironment roundEnv) {
+        if(types == null) {
+            types = getNames(DEFAULT_TYPES, TYPES_OPTION);
+            annotations = getNames(DEFAULT_ANNOTATIONS, ANNOTATIONS_OPTION);
+        }
+
+        if(roundEnv.processingOver()) {
+            if(!processedClasses.isEmpty()) {
+                writeIndex();
+            }
+        } else {
+            for (Element element : roundEnv.getRootElements()) {
+                indexElement(element);
+            }
+        }
+
+        // Never claim the annotations...
+        return false;
+    }
+
+    private Set<String> getNames(String[] defaults, String option) {
+        Set<String> names = new LinkedHashSet<String>(Arrays.asList(defaults));
+        String optionValue = processingEnv.getOptions().get(option);
+
+        if(optionValue != null) {
+            for (String name : optionValue.split(",")) {
+                name = name.trim();
+                if(name.length() > 0) {
+                    names.add(name);
+                }
+            }
+        }
+
+        return names;
+    }
+
+    private void indexElement(Element element) {
+        if(!element.getKind().isClass() && !element.getKind().isInterface()) {
+            return;
+        }
+
+        TypeElement typeElement = (TypeElement) element;
+        if(isComponentClass(typeElement)) {
+            String className = processingEnv.getElementUtils().getBinaryName(typeElement).toString();
+
+            processedClasses.add(className);
+            for (AnnotationMirror annotation : typeElement.getAnnotationMirrors()) {
+                String annotationName = ((TypeElement) annotation.getAnnotationType().asElement()).getQualifiedName().toString();
+                if(annotations.contains(annotationName)) {
+                    addEntry(annotationName, className);
+                }
+            }
+
+            Set<String> superTypes = new LinkedHashSet<String>();
+            addSuperTypes(typeElement.asType(), superTypes);
+            for (String superType : superTypes) {
+                if(types.contains(superType)) {
+                    addEntry(superType, className);
+                }
+            }
+        }
+
+        // Index the member classes too...
+        for (Element enclosedElement : typeElement.getEnclosedElements()) {
+            indexElement(enclosedElement);
+        }
+    }
+
+    /**
+     * Only public concrete classes (top level, or static member classes) are instantiable components.
+     */
+    private boolean isComponentClass(TypeElement typeElement) {
+        Set<Modifier> modifiers = typeElement.getModifiers();
+
+        if(typeElement.getKind() != ElementKind.CLASS || !modifiers.contains(Modifier.PUBLIC) || modifiers.contains(Modifier.ABSTRACT)) {
+            return false;
+        }
+        return (typeElement.getEnclosingElement().getKind() == ElementKind.PACKAGE || modifiers.contains(Modifier.STATIC));
+    }
+
+    private void addSuperTypes(TypeMirror type, Set<String> superTypes) {
+        for (TypeMirror superType : processingEnv.getTypeUtils().directSupertypes(type)) {
+            if(superType.getKind() == TypeKind.DECLARED) {
+                TypeElement superTypeElement = (TypeElement) ((DeclaredType) superType).asElement();
+                if(superTypes.add(superTypeElement.getQualifiedName().toString())) {
+                    addSuperTypes(superType, superTypes);
+                }
+            }
+        }
+    }
+
+    private void addEntry(String key, String className) {
+        Set<String> classNames = index.get(key);
+
+        if(classNames == null) {
+            classNames = new TreeSet<String>();
+            index.put(key, classNames);
+        }
+        classNames.add(className);
+    }
+
+    private void writeIndex() {
+        // Retain the entries of the previous index for classes not compiled this time (incremental builds)...
+        mergePreviousIndex();
+
+        try {
+            FileObject indexFile = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", ComponentIndex.INDEX_RESOURCE);
+            Writer writer = new OutputStreamWriter(indexFile.openOutputStream(), "UTF-8");
+
+            try {
+                writer.write("# Smooks component index.  Generated by " + getClass().getName() + ".\n");
+                // Declare the indexed keys, including the keys for which there are no components...
+                for (String key : new TreeSet<String>(types)) {
+                    writer.write(key + "=\n");
+                }
+                for (String key : new TreeSet<String>(annotations)) {
+                    writer.write(key + "=\n");
+                }
+                for (Map.Entry<String, Set<String>> entry : index.entrySet()) {
+                    for (String className : entry.getValue()) {
+                        writer.write(entry.getKey() + "=" + className + "\n");
+                    }
+                }
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Failed to write Smooks component index '" + ComponentIndex.INDEX_RESOURCE + "': " + e.getMessage());
+        }
+    }
+
+    private void mergePreviousIndex() {
+        List<String[]> previousEntries = new ArrayList<String[]>();
+
+        try {
+            FileObject previousIndex = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", ComponentIndex.INDEX_RESOURCE);
+            Reader reader = previousIndex.openReader(true);
+
+            try {
+                BufferedReader lineReader = new BufferedReader(reader);
+                String line;
+
+                while((line = lineReader.readLine()) != null) {
+                    int separatorIndex = line.indexOf('=');
+                    if(!line.startsWith("#") && separatorIndex > 0) {
+                        previousEntries.add(new String[] {line.substring(0, separatorIndex).trim(), line.substring(separatorIndex + 1).trim()});
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            // No previous index...
+            return;
+        } catch (IllegalArgumentException e) {
+            // Location not supported by the compiler...
+            return;
+        }
+
+        int retainedCount = 0;
+        for (String[] entry : previousEntries) {
+            if(entry[1].length() > 0 && !processedClasses.contains(entry[1])) {
+                addEntry(entry[0], entry[1]);
+                retainedCount++;
+            }
+        }
+        if(retainedCount > 0) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE, "Retained " + retainedCount + " entries from the previous Smooks component index.");
+        }
+    }
+}
@@ -21,9 +21,11 @@ import org.milyn.assertion.AssertArgument;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UnsupportedEncodingException;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.net.URLDecoder;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.Set;
@@ -46,6 +48,19 @@ public class Scanner {
     }
 
     public void scanClasspath(ClassLoader classLoader) throws IOException {
+        scanClasspath(classLoader, Collections.<File>emptySet());
+    }
+
+    /**
+     * Scan the classpath, skipping the specified classpath roots.
+     *
+     * @param classLoader The ClassLoader.
+     * @param ignoreRoots The classpath roots (directories and archives) not to be scanned e.g.
+     * the roots whose {@link ComponentIndex} already lists the classes of interest.
+     * @throws IOException Error scanning the classpath.
+     */
+    public void scanClasspath(ClassLoader classLoader, Set<File> ignoreRoots) throws IOException {
+        AssertArgument.isNotNull(ignoreRoots, "ignoreRoots");
 
         if (!(classLoader instanceof URLClassLoader)) {
             logger.warn("Not scanning classpath for ClassLoader '" + classLoader.getClass().getName() + "'.  ClassLoader must implement '" + URLClassLoader.class.getName() + "'.");
@@ -56,21 +71,13 @@ public class Scanner {
         Set alreadyScanned = new HashSet();
 
         for (URL url : urls) {
-            String urlPath = url.getFile();
-
-            urlPath = URLDecoder.decode(urlPath, "UTF-8");
-            if (urlPath.startsWith("file:")) {
-                urlPath = urlPath.substring(5);
-            }
-
-            if (urlPath.indexOf('!') > 0) {
-                urlPath = urlPath.substring(0, urlPath.indexOf('!'));
-            }
-
-            File file = new File(urlPath);
+            File file = toFile(url);
             if(alreadyScanned.contains(file.getAbsolutePath())) {
                 logger.debug("Ignoring classpath URL '" + file.getAbsolutePath() + "'.  Already scanned this URL.");
                 continue;
+            } if(ignoreRoots.contains(file.getAbsoluteFile())) {
+                logger.debug("Ignoring classpath URL '" + file.getAbsolutePath() + "'.  Classes listed in the component index.");
+                continue;
             } if (file.isDirectory()) {
                 handleDirectory(file, null);
             } else {
@@ -80,6 +87,28 @@ public class Scanner {
         }
     }
 
+    /**
+     * Get the classpath root (directory or archive) {@link File} of the specified classpath URL.
+     *
+     * @param url The classpath URL e.g. "file:/a/b/classes/", or "jar:file:/a/b/x.jar!/".
+     * @return The classpath root.
+     * @throws UnsupportedEncodingException UTF-8 not supported.
+     */
+    static File toFile(URL url) throws UnsupportedEncodingException {
+        String urlPath = url.getFile();
+
+        urlPath = URLDecoder.decode(urlPath, "UTF-8");
+        if (urlPath.startsWith("file:")) {
+            urlPath = urlPath.substring(5);
+        }
+
+        if (urlPath.indexOf('!') > 0) {
+            urlPath = urlPath.substring(0, urlPath.indexOf('!'));
+        }
+
+        return new File(urlPath);
+    }
+
     private void handleArchive(File file) throws IOException {
         if(filter.isIgnorable(file.getName())) {
             if(logger.isDebugEnabled()) {
@@ -0,0 +1,86 @@
+/*
+	Milyn - Copyright (C) 2006 - 2010
+
+	This library is free software; you can redistribute it and/or
+	modify it under the terms of the GNU Lesser General Public
+	License (version 2.1) as published by the Free Software
+	Foundation.
+
+	This library is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+	See the GNU Lesser General Public License for more details:
+	http://www.gnu.org/licenses/lgpl.txt
+*/
+package org.milyn.io;
+
+import org.milyn.assertion.AssertArgument;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * {@link InputStream} view of a {@link ByteBuffer}.
+ * <p/>
+ * Reads the remaining buffer bytes in place (heap, direct or mapped buffer), without first copying
+ * them to a byte array.  Reading advances the buffer position.
+ */
+public class ByteBufferInputStream extends InputStream {
+
+    private ByteBuffer buffer;
+
+    /**
+     * Public constructor.
+     * @param buffer The buffer to be read.
+     */
+    public ByteBufferInputStream(ByteBuffer buffer) {
+        AssertArgument.isNotNull(buffer, "buffer");
+        this.buffer = buffer;
+    }
+
+    public int read() {
+        if(!buffer.hasRemaining()) {
+            return -1;
+        }
+        return (buffer.get() & 0xff);
+    }
+
+    public int read(byte[] bytes, int offset, int length) {
+        if(length == 0) {
+            return 0;
+        }
+        if(!buffer.hasRemaining()) {
+            return -1;
+        }
+
+        int readCount = Math.min(length, buffer.remaining());
+        buffer.get(bytes, offset, readCount);
+
+        return readCount;
+    }
+
+    public long skip(long count) {
+        int skipCount = (int) Math.max(0, Math.min(count, buffer.remaining()));
+
+        buffer.position(buffer.position() + skipCount);
+
+        return skipCount;
+    }
+
+    public int available() {
+        return buffer.remaining();
+    }
+
+    public boolean markSupported() {
+        return true;
+    }
+
+    public synchronized void mark(int readLimit) {
+        buffer.mark();
+    }
+
+    public synchronized void reset() {
+        buffer.reset();
+    }
+}
@@ -0,0 +1,189 @@
+/*
+	Milyn - Copyright (C) 2006 - 2010
+
+	This library is free software; you can redistribute it and/or
+	modify it under the terms of the GNU Lesser General Public
+	License (version 2.1) as published by the Free Software
+	Foundation.
+
+	This library is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+	See the GNU Lesser General Public License for more details:
+	http://www.gnu.org/licenses/lgpl.txt
+*/
+package org.milyn.io;
+
+import org.milyn.assertion.AssertArgument;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * {@link Reader} decoding characters directly from a {@link ByteBuffer} or {@link ReadableByteChannel}.
+ * <p/>
+ * Buffer content is decoded in place, straight into the caller's character array.  Channel content is
+ * read into a direct buffer in large chunks, and decoded from there.  Unlike an
+ * {@link java.io.InputStreamReader}, the bytes are not first copied through a stream.  Channels
+ * must be in blocking mode.
+ * <p/>
+ * As with {@link java.io.InputStreamReader}, malformed and unmappable input is replaced.
+ */
+public class ByteBufferReader extends Reader {
+
+    /**
+     * Default channel read buffer size (bytes).
+     */
+    public static final int DEFAULT_CHANNEL_BUFFER_SIZE = 65536;
+
+    private ByteBuffer buffer;
+    private ReadableByteChannel channel;
+    private CharsetDecoder decoder;
+    private boolean endOfInput;
+    private boolean flushed;
+    /**
+     * Decoded character held over from a previous read (2nd char of a surrogate pair read into a single char array slot).
+     */
+    private CharBuffer leftOver = CharBuffer.allocate(2);
+
+    /**
+     * Create a reader for the remaining content of the supplied buffer.
+     * <p/>
+     * Reading advances the buffer position.
+     *
+     * @param buffer The buffer.
+     * @param charset The content character set.
+     */
+    public ByteBufferReader(ByteBuffer buffer, Charset charset) {
+        AssertArgument.isNotNull(buffer, "buffer");
+        AssertArgument.isNotNull(charset, "charset");
+        this.buffer = buffer;
+        this.endOfInput = true;
+        this.decoder = newDecoder(charset);
+        leftOver.flip();
+    }
+
+    /**
+     * Create a reader for the supplied channel.
+     *
+     * @param channel The channel.
+     * @param charset The content character set.
+     * @param bufferSize The channel read buffer size (bytes).
+     */
+    public ByteBufferReader(ReadableByteChannel channel, Charset charset, int bufferSize) {
+        AssertArgument.isNotNull(channel, "channel");
+        AssertArgument.isNotNull(charset, "charset");
+        if(bufferSize < 16) {
+            throw new IllegalArgumentException("Invalid channel buffer size '" + bufferSize + "'.  Must be at least 16 bytes.");
+        }
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+        this.buffer.flip();
+        this.decoder = newDecoder(charset);
+        leftOver.flip();
+    }
+
+    public int read(char[] chars, int offset, int length) throws IOException {
+        if(length == 0) {
+            return 0;
+        }
+
+        CharBuffer out = CharBuffer.wrap(chars, offset, length);
+
+        while(leftOver.hasRemaining() && out.hasRemaining()) {
+            out.put(leftOver.get());
+        }
+
+        while(out.hasRemaining()) {
+            if(!decode(out)) {
+                break;
+            }
+        }
+
+        int readCount = out.position() - offset;
+        return (readCount == 0 ? -1 : readCount);
+    }
+
+    /**
+     * Get the character set being decoded.
+     * @return The character set.
+     */
+    public Charset getCharset() {
+        return decoder.charset();
+    }
+
+    public boolean ready() {
+        return (leftOver.hasRemaining() || buffer.hasRemaining());
+    }
+
+    public void close() throws IOException {
+        if(channel != null) {
+            channel.close();
+        }
+    }
+
+    /**
+     * Decode into the supplied char buffer.
+     * @return True if more characters may be decoded, false if the content is exhausted or the
+     * char buffer can't accept any more characters.
+     */
+    private boolean decode(CharBuffer out) throws IOException {
+        if(flushed) {
+            return false;
+        }
+
+        int startPosition = out.position();
+        CoderResult result = decoder.decode(buffer, out, endOfInput);
+
+        if(result.isUnderflow()) {
+            if(endOfInput) {
+                decoder.flush(out);
+                flushed = true;
+                return false;
+            }
+            if(out.position() > startPosition) {
+                // Return what we have rather than block on the channel...
+                return false;
+            }
+            fill();
+            return true;
+        } else if(result.isOverflow() && out.position() == startPosition && out.remaining() == 1) {
+            // A surrogate pair won't fit in the single remaining char slot.  Decode via the left over buffer...
+            leftOver.clear();
+            decoder.decode(buffer, leftOver, endOfInput);
+            leftOver.flip();
+            if(leftOver.hasRemaining()) {
+                out.put(leftOver.get());
+            }
+        }
+
+        return false;
+    }
+
+    private void fill() throws IOException {
+        buffer.compact();
+        try {
+            int readCount = 0;
+            while(readCount == 0) {
+                readCount = channel.read(buffer);
+            }
+            if(readCount == -1) {
+                endOfInput = true;
+            }
+        } finally {
+            buffer.flip();
+        }
+    }
+
+    private static CharsetDecoder newDecoder(Charset charset) {
+        return charset.newDecoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+}
@@ -0,0 +1,206 @@
+/*
+	Milyn - Copyright (C) 2006 - 2010
+
+	This library is free software; you can redistribute it and/or
+	modify it under the terms of the GNU Lesser General Public
+	License (version 2.1) as published by the Free Software
+	Foundation.
+
+	This library is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+	See the GNU Lesser General Public License for more details:
+	http://www.gnu.org/licenses/lgpl.txt
+*/
+package org.milyn.io;
+
+import org.milyn.assertion.AssertArgument;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * {@link Writer} encoding characters straight into direct buffers, and writing them to a
+ * {@link WritableByteChannel}.
+ * <p/>
+ * Characters are encoded into a set of direct buffer "chunks".  The chunks are written to the channel
+ * when they're all full, or when the writer is flushed.  If the channel is a {@link GatheringByteChannel},
+ * the chunks are written in a single gathering write.
+ * <p/>
+ * As with {@link java.io.OutputStreamWriter}, malformed and unmappable input is replaced.
+ */
+public class ChannelWriter extends Writer {
+
+    /**
+     * Default chunk size (bytes).
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 16384;
+    /**
+     * Default chunk count.
+     */
+    public static final int DEFAULT_CHUNK_COUNT = 4;
+
+    private WritableByteChannel channel;
+    private CharsetEncoder encoder;
+    private ByteBuffer[] chunks;
+    private int currentChunk;
+    private CharBuffer pendingSurrogate = CharBuffer.allocate(2);
+    private boolean closed;
+
+    /**
+     * Public constructor.
+     * <p/>
+     * Uses the {@link #DEFAULT_CHUNK_SIZE default chunk size} and {@link #DEFAULT_CHUNK_COUNT default chunk count}.
+     *
+     * @param channel The channel.
+     * @param charset The content character set.
+     */
+    public ChannelWriter(WritableByteChannel channel, Charset charset) {
+        this(channel, charset, DEFAULT_CHUNK_SIZE, DEFAULT_CHUNK_COUNT);
+    }
+
+    /**
+     * Public constructor.
+     *
+     * @param channel The channel.
+     * @param charset The content character set.
+     * @param chunkSize The size of the encoding buffer chunks (bytes).
+     * @param chunkCount The number of encoding buffer chunks.
+     */
+    public ChannelWriter(WritableByteChannel channel, Charset charset, int chunkSize, int chunkCount) {
+        AssertArgument.isNotNull(channel, "channel");
+        AssertArgument.isNotNull(charset, "charset");
+        if(chunkSize < 16) {
+            throw new IllegalArgumentException("Invalid chunk size '" + chunkSize + "'.  Must be at least 16 bytes.");
+        }
+        if(chunkCount < 1) {
+            throw new IllegalArgumentException("Invalid chunk count '" + chunkCount + "'.  Must be greater than zero.");
+        }
+
+        this.channel = channel;
+        this.encoder = charset.newEncoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.chunks = new ByteBuffer[chunkCount];
+        for(int i = 0; i < chunkCount; i++) {
+            chunks[i] = ByteBuffer.allocateDirect(chunkSize);
+        }
+        pendingSurrogate.flip();
+    }
+
+    public void write(char[] chars, int offset, int length) throws IOException {
+        assertOpen();
+        encode(CharBuffer.wrap(chars, offset, length), false);
+    }
+
+    public void write(String string, int offset, int length) throws IOException {
+        assertOpen();
+        encode(CharBuffer.wrap(string, offset, offset + length), false);
+    }
+
+    public void write(int c) throws IOException {
+        assertOpen();
+        encode(CharBuffer.wrap(new char[] {(char) c}), false);
+    }
+
+    public void flush() throws IOException {
+        assertOpen();
+        writeChunks();
+    }
+
+    public void close() throws IOException {
+        if(closed) {
+            return;
+        }
+
+        try {
+            encode(CharBuffer.allocate(0), true);
+            while(encoder.flush(chunks[currentChunk]).isOverflow()) {
+                nextChunk();
+            }
+            writeChunks();
+        } finally {
+            closed = true;
+            channel.close();
+        }
+    }
+
+    private void encode(CharBuffer in, boolean endOfInput) throws IOException {
+        if(pendingSurrogate.hasRemaining()) {
+            // Complete the surrogate pair from the previous write...
+            CharBuffer pair = CharBuffer.allocate(2);
+            pair.put(pendingSurrogate);
+            if(in.hasRemaining()) {
+                pair.put(in.get());
+            }
+            pair.flip();
+            pendingSurrogate.clear();
+            pendingSurrogate.flip();
+            encode(pair, endOfInput && !in.hasRemaining());
+        }
+
+        while(true) {
+            CoderResult result = encoder.encode(in, chunks[currentChunk], endOfInput);
+
+            if(result.isOverflow()) {
+                nextChunk();
+            } else {
+                break;
+            }
+        }
+
+        if(in.hasRemaining()) {
+            // Unpaired high surrogate at the end of the write.  Hold it for the next write...
+            pendingSurrogate.clear();
+            pendingSurrogate.put(in);
+            pendingSurrogate.flip();
+        }
+    }
+
+    private void nextChunk() throws IOException {
+        if(currentChunk == chunks.length - 1) {
+            writeChunks();
+        } else {
+            currentChunk++;
+        }
+    }
+
+    private void writeChunks() throws IOException {
+        for(int i = 0; i <= currentChunk; i++) {
+            chunks[i].flip();
+        }
+
+        try {
+            if(channel instanceof GatheringByteChannel && currentChunk > 0) {
+                GatheringByteChannel gatheringChannel = (GatheringByteChannel) channel;
+                while(chunks[currentChunk].hasRemaining()) {
+                    gatheringChannel.write(chunks, 0, currentChunk + 1);
+                }
+            } else {
+                for(int i = 0; i <= currentChunk; i++) {
+                    while(chunks[i].hasRemaining()) {
+                        channel.write(chunks[i]);
+                    }
+                }
+            }
+        } finally {
+            for(int i = 0; i <= currentChunk; i++) {
+                chunks[i].clear();
+            }
+            currentChunk = 0;
+        }
+    }
+
+    private void assertOpen() throws IOException {
+        if(closed) {
+            throw new IOException("Channel writer closed.");
+        }
+    }
+}
@@ -51,6 +51,13 @@ import java.util.Collections;
  * Note how all the decoders in this package follow a well defined naming pattern of "<i>type</i>Decoder",
  * where type is the Java datatype to which the implementation decodes.
  *
+ * <h3>Primitive Decoding</h3>
+ * Decoders for primitive types can also implement one of {@link IntDataDecoder}, {@link LongDataDecoder},
+ * {@link DoubleDataDecoder} or {@link BooleanDataDecoder}.  These decode directly from a {@link CharSequence}
+ * (e.g. a reusable text buffer) to the primitive value, without creating a {@link String} or boxing
+ * the value inside the decoder.  The JavaBean Cartridge uses these when binding to primitive bean
+ * properties.  The primitive decode result must be the same as the {@link #decode(String)} result.
+ *
  * @author <a href="mailto:tom.fennelly@gmail.com">tom.fennelly@gmail.com</a>
  * @see org.milyn.javabean.DataEncoder
  */
@@ -0,0 +1,33 @@
+/*
+	Milyn - Copyright (C) 2006 - 2010
+
+	This library is free software; you can redistribute it and/or
+	modify it under the terms of the GNU Lesser General Public
+	License (version 2.1) as published by the Free Software
+	Foundation.
+
+	This library is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+	See the GNU Lesser General Public License for more details:
+	http://www.gnu.org/licenses/lgpl.txt
+*/
+package org.milyn.javabean;
+
+/**
+ * Primitive <code>int</code> {@link DataDecoder}.
+ *
+ * @see DataDecoder
+ */
+public interface IntDataDecoder extends DataDecoder {
+
+    /**
+     * Decode the supplied character data into a primitive <code>int</code>.
+     *
+     * @param data Data to be decoded.  Not retained by the decoder.
+     * @return Decoded <code>int</code> value.
+     * @throws DataDecodeException Error decoding data.
+     */
+    public int decodeInt(CharSequence data) throws DataDecodeException;
+}
@@ -15,7 +15,7 @@
 */
 package org.milyn.javabean.decoders;
 
-import org.milyn.javabean.DataDecoder;
+import org.milyn.javabean.BooleanDataDecoder;
 import org.milyn.javabean.DataDecodeException;
 import org.milyn.javabean.DecodeType;
 
@@ -25,7 +25,7 @@ import org.milyn.javabean.DecodeType;
  * @author <a href="mailto:tom.fennelly@gmail.com">tom.fennelly@gmail.com</a>
  */
 @DecodeType({Boolean.class, boolean.class})
-public class BooleanDecoder implements DataDecoder {
+public class BooleanDecoder implements BooleanDataDecoder {
 
     public Object decode(String data) throws DataDecodeException {
         try {
@@ -34,4 +34,8 @@ public class BooleanDecoder implements DataDecoder {
             throw new DataDecodeException("Failed to decode Boolean value '" + data + "'.", e);
         }
     }
+
+    public boolean decodeBoolean(CharSequence data) throws DataDecodeException {
+        return CharSequenceParser.parseBoolean(data);
+    }
 }
@@ -0,0 +1,181 @@
+/*
+	Milyn - Copyright (C) 2006 - 2010
+
+	This library is free software; you can redistribute it and/or
+	modify it under the terms of the GNU Lesser General Public
+	License (version 2.1) as published by the Free Software
+	Foundation.
+
+	This library is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+	See the GNU Lesser General Public License for more details:
+	http://www.gnu.org/licenses/lgpl.txt
+*/
+package org.milyn.javabean.decoders;
+
+/**
+ * Primitive value parsing from a {@link CharSequence}.
+ * <p/>
+ * Used by the primitive decoders (e.g. {@link org.milyn.javabean.IntDataDecoder}).  Produces the same
+ * results as the equivalent {@link Integer#parseInt(String)}, {@link Long#parseLong(String)} etc methods
+ * applied to the {@link String#trim() trimmed} data, but without creating a {@link String} (in the
+ * common cases).
+ */
+final class CharSequenceParser {
+
+    /**
+     * Max number of significant decimal digits for which a double value can be
+     * exactly represented by a long mantissa (10^15 &lt; 2^53).
+     */
+    private static final int MAX_EXACT_DOUBLE_DIGITS = 15;
+    /**
+     * Exactly representable powers of 10.
+     */
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+        1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private CharSequenceParser() {
+    }
+
+    static int parseInt(CharSequence data) throws NumberFormatException {
+        return (int) parseLong(data, Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    static long parseLong(CharSequence data) throws NumberFormatException {
+        return parseLong(data, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    static double parseDouble(CharSequence data) throws NumberFormatException {
+        int start = trimStart(data);
+        int end = trimEnd(data, start);
+        int index = start;
+        boolean negative = false;
+
+        if(index < end && (data.charAt(index) == '-' || data.charAt(index) == '+')) {
+            negative = (data.charAt(index) == '-');
+            index++;
+        }
+
+        // Fast path for plain decimals ("123", "-12.34") with at most 15 significant digits.  The
+        // result is correctly rounded, since both the mantissa and the power of ten are exact doubles...
+        long mantissa = 0;
+        int digitCount = 0;
+        int significantDigits = 0;
+        int scale = -1;
+
+        for(; index < end; index++) {
+            char c = data.charAt(index);
+
+            if(c >= '0' && c <= '9') {
+                mantissa = mantissa * 10 + (c - '0');
+                digitCount++;
+                if(mantissa != 0) {
+                    significantDigits++;
+                }
+                if(scale != -1) {
+                    scale++;
+                }
+                if(significantDigits > MAX_EXACT_DOUBLE_DIGITS || scale >= POWERS_OF_TEN.length) {
+                    break;
+                }
+            } else if(c == '.' && scale == -1) {
+                scale = 0;
+            } else {
+                break;
+            }
+        }
+
+        if(index == end && digitCount > 0) {
+            double value = (double) mantissa;
+
+            if(scale > 0) {
+                value = value / POWERS_OF_TEN[scale];
+            }
+            return (negative ? -value : value);
+        }
+
+        // Exponents, hex, NaN, suffixes etc...
+        return Double.parseDouble(data.subSequence(start, end).toString());
+    }
+
+    static boolean parseBoolean(CharSequence data) {
+        int start = trimStart(data);
+        int end = trimEnd(data, start);
+        String trueString = "true";
+
+        if(end - start != trueString.length()) {
+            return false;
+        }
+        for(int i = 0; i < trueString.length(); i++) {
+            if(Character.toLowerCase(data.charAt(start + i)) != trueString.charAt(i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static long parseLong(CharSequence data, long min, long max) throws NumberFormatException {
+        int start = trimStart(data);
+        int end = trimEnd(data, start);
+        int index = start;
+        boolean negative = false;
+
+        if(index < end && (data.charAt(index) == '-' || data.charAt(index) == '+')) {
+            negative = (data.charAt(index) == '-');
+            index++;
+        }
+        if(index == end) {
+            throw newNumberFormatException(data);
+        }
+
+        // Accumulate negatively (as Long.parseLong does), so as to be able to parse min...
+        long limit = (negative ? min : -max);
+        long multiplyLimit = limit / 10;
+        long result = 0;
+
+        for(; index < end; index++) {
+            int digit = Character.digit(data.charAt(index), 10);
+
+            if(digit < 0 || result < multiplyLimit) {
+                throw newNumberFormatException(data);
+            }
+            result *= 10;
+            if(result < limit + digit) {
+                throw newNumberFormatException(data);
+            }
+            result -= digit;
+        }
+
+        return (negative ? result : -result);
+    }
+
+    private static int trimStart(CharSequence data) {
+        int length = data.length();
+        int start = 0;
+
+        while(start < length && data.charAt(start) <= ' ') {
+            start++;
+        }
+
+        return start;
+    }
+
+    private static int trimEnd(CharSequence data, int start) {
+        int end = data.length();
+
+        while(end > start && data.charAt(end - 1) <= ' ') {
+            end--;
+        }
+
+        return end;
+    }
+
+    private static NumberFormatException newNumberFormatException(CharSequence data) {
+        return new NumberFormatException("For input string: \"" + data + "\"");
+    }
+}
@@ -3,6 +3,7 @@ package org.milyn.javabean.decoders;
 import org.milyn.javabean.DataDecoder;
 import org.milyn.javabean.DataDecodeException;
 import org.milyn.javabean.DecodeType;
+import org.milyn.javabean.DoubleDataDecoder;
 
 import java.math.BigDecimal;
 import java.math.BigInteger;
@@ -15,7 +16,7 @@ import java.text.ParseException;
  * @author <a href="mailto:tom.fennelly@gmail.com">tom.fennelly@gmail.com</a>
  */
 @DecodeType({Double.class, double.class})
-public class DoubleDecoder extends NumberDecoder {
+public class DoubleDecoder extends NumberDecoder implements DoubleDataDecoder {
 
     public Object decode(String data) throws DataDecodeException {
         NumberFormat format = getNumberFormat();
@@ -35,4 +36,16 @@ public class DoubleDecoder extends NumberDecoder {
             }
         }
     }
+
+    public double decodeDouble(CharSequence data) throws DataDecodeException {
+        if(hasNumberFormat()) {
+            return (Double) decode(data.toString());
+        }
+
+        try {
+            return CharSequenceParser.parseDouble(data);
+        } catch(NumberFormatException e) {
+            throw new DataDecodeException("Failed to decode Double value '" + data + "'.", e);
+        }
+    }
 }
@@ -18,6 +18,7 @@ package org.milyn.javabean.decoders;
 import org.milyn.javabean.DataDecodeException;
 import org.milyn.javabean.DataDecoder;
 import org.milyn.javabean.DecodeType;
+import org.milyn.javabean.IntDataDecoder;
 
 import java.text.NumberFormat;
 import java.text.ParseException;
@@ -28,7 +29,7 @@ import java.text.ParseException;
  * @author <a href="mailto:tom.fennelly@gmail.com">tom.fennelly@gmail.com</a>
  */
 @DecodeType({Integer.class, int.class})
-public class IntegerDecoder extends NumberDecoder {
+public class IntegerDecoder extends NumberDecoder implements IntDataDecoder {
 
     public Object decode(String data) throws DataDecodeException {
         NumberFormat format = getNumberFormat();
@@ -53,4 +54,16 @@ public class IntegerDecoder extends NumberDecoder {
             }
         }
     }
+
+    public int decodeInt(CharSequence data) throws DataDecodeException {
+        if(hasNumberFormat()) {
+            return (Integer) decode(data.toString());
+        }
+
+        try {
+            return CharSequenceParser.parseInt(data);
+        } catch(NumberFormatException e) {
+            throw new DataDecodeException("Failed to decode Integer value '" + data + "'.", e);
+        }
+    }
 }
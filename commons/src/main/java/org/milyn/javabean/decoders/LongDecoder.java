@@ -18,6 +18,7 @@ package org.milyn.javabean.decoders;
 import org.milyn.javabean.DataDecoder;
 import org.milyn.javabean.DataDecodeException;
 import org.milyn.javabean.DecodeType;
+import org.milyn.javabean.LongDataDecoder;
 
 import java.text.NumberFormat;
 import java.text.ParseException;
@@ -28,7 +29,7 @@ import java.text.ParseException;
  * @author <a href="mailto:tom.fennelly@gmail.com">tom.fennelly@gmail.com</a>
  */
 @DecodeType({Long.class, long.class})
-public class LongDecoder extends NumberDecoder {
+public class LongDecoder extends NumberDecoder implements LongDataDecoder {
 
     public Object decode(String data) throws DataDecodeException {
         NumberFormat format = getNumberFormat();
@@ -53,4 +54,16 @@ public class LongDecoder extends NumberDecoder {
             }
         }
     }
+
+    public long decodeLong(CharSequence data) throws DataDecodeException {
+        if(hasNumberFormat()) {
+            return (Long) decode(data.toString());
+        }
+
+        try {
+            return CharSequenceParser.parseLong(data);
+        } catch(NumberFormatException e) {
+            throw new DataDecodeException("Failed to decode Long value '" + data + "'.", e);
+        }
+    }
 }
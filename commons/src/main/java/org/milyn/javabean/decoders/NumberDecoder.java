@@ -81,6 +81,14 @@ public abstract class NumberDecoder extends LocaleAwareDecoder implements DataEn
         }
     }
 
+    /**
+     * Is a {@link NumberFormat} configured on this decoder.
+     * @return True if a {@link NumberFormat} is configured, otherwise false.
+     */
+    protected boolean hasNumberFormat() {
+        return (numberFormat != null);
+    }
+
     public boolean isPercentage() {
         return isPercentage;
     }
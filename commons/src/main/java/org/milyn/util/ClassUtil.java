@@ -17,6 +17,7 @@ package org.milyn.util;
 
 import java.io.BufferedReader;
 import java.io.Closeable;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -32,6 +33,8 @@ import java.util.*;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.milyn.assertion.AssertArgument;
+import org.milyn.classpath.ComponentIndex;
+import org.milyn.classpath.Filter;
 import org.milyn.classpath.InstanceOfFilter;
 import org.milyn.classpath.IsAnnotationPresentFilter;
 import org.milyn.classpath.Scanner;
@@ -191,11 +194,12 @@ public class ClassUtil {
     }
 
     private static List<Class> findInstancesOf(Class type, InstanceOfFilter filter) {
+        Set<File> indexedRoots = applyComponentIndex(type, filter);
         Scanner scanner = new Scanner(filter);
 
         try {
             long startTime = System.currentTimeMillis();
-            scanner.scanClasspath(Thread.currentThread().getContextClassLoader());
+            scanner.scanClasspath(Thread.currentThread().getContextClassLoader(), indexedRoots);
             logger.debug("Scanned classpath for instances of '" + type.getName() + "'.  Found " + filter.getClasses().size() + " matches. Scan took " + (System.currentTimeMillis() - startTime) + "ms.");
         } catch (IOException e) {
             throw new RuntimeException("Failed to search classspath for instances of '" + type.getName() + "'.", e);
@@ -215,11 +219,12 @@ public class ClassUtil {
     }
 
     private static List<Class> findAnnotatedWith(Class<? extends Annotation> type, IsAnnotationPresentFilter filter) {
+        Set<File> indexedRoots = applyComponentIndex(type, filter);
         Scanner scanner = new Scanner(filter);
 
         try {
             long startTime = System.currentTimeMillis();
-            scanner.scanClasspath(Thread.currentThread().getContextClassLoader());
+            scanner.scanClasspath(Thread.currentThread().getContextClassLoader(), indexedRoots);
             logger.debug("Scanned classpath for class annotated with annotation '" + type.getName() + "'.  Found " + filter.getClasses().size() + " matches. Scan took " + (System.currentTimeMillis() - startTime) + "ms.");
         } catch (IOException e) {
             throw new RuntimeException("Failed to search classspath for class annotated with annotation '" + type.getName() + "'.", e);
@@ -228,6 +233,32 @@ public class ClassUtil {
         return filter.getClasses();
     }
 
+    /**
+     * Apply the {@link ComponentIndex} entries for the specified type to the supplied filter.
+     * <p/>
+     * Only the classpath roots that don't index the type need to be scanned.
+     *
+     * @param type The component type or annotation.
+     * @param filter The filter.
+     * @return The classpath roots that index the type i.e. the roots that can be skipped
+     * by the classpath scan.
+     */
+    private static Set<File> applyComponentIndex(Class type, Filter filter) {
+        ComponentIndex componentIndex = ComponentIndex.getInstance();
+        Set<File> indexedRoots = componentIndex.getIndexedRoots(type.getName());
+
+        if(!indexedRoots.isEmpty()) {
+            List<String> indexedClasses = componentIndex.getClassNames(type.getName());
+
+            for (String className : indexedClasses) {
+                filter.filter(className.replace('.', '/') + ".class");
+            }
+            logger.debug("Applied component index for '" + type.getName() + "'.  Found " + indexedClasses.size() + " indexed classes in " + indexedRoots.size() + " classpath roots.  Skipping classpath scan of these roots.");
+        }
+
+        return indexedRoots;
+    }
+
     public static Object newProxyInstance(Class[] classes, InvocationHandler handler) {
         final ClassLoader threadClassLoader = Thread.currentThread().getContextClassLoader();
 
@@ -242,6 +273,10 @@ public class ClassUtil {
      * Will try to create a List of classes that are listed
      * in the passed in file.
      * The fileName is expected to be found on the classpath.
+     * <p/>
+     * Classes listed in the {@link ComponentIndex} for the instanceof type are also
+     * returned.  The file is read from all classpath roots, indexed or not, as a root's index
+     * may not cover all of the root's classes (e.g. a jar merging indexed and unindexed jars).
      *
      * @param fileName The name of the file containing the list of classes,
      * one class name per line.
@@ -263,6 +298,11 @@ public class ClassUtil {
             throw new RuntimeException("Error getting resource URLs for resource : " + fileName, e);
         }
 
+        // Indexed classes first, followed by the classes listed in the class list files (duplicates ignored)...
+        for (String className : ComponentIndex.getInstance().getClassNames(instanceOf.getName())) {
+            addClass(className, instanceOf, classes);
+        }
+
         for (URL url : cpURLs) {
             addClasses(url, instanceOf, classes);
             resCount++;
@@ -291,8 +331,6 @@ public class ClassUtil {
             br = new BufferedReader( new InputStreamReader( ins ));
 	    	while( (className = br.readLine()) != null )
 	    	{
-                Class clazz;
-
                 className = className.trim();
 
                 // Ignore blank lines and lines that start with a hash...
@@ -300,21 +338,8 @@ public class ClassUtil {
                     continue;
                 }
 
-                try {
-                    clazz = forName(className, ClassUtil.class);
-                } catch (ClassNotFoundException e) {
-                    logger.warn("Failed to load class '" + className + "'. Class not found.");
-                    continue;
-                }
-
-                if(instanceOf.isAssignableFrom(clazz)) {
-                    if(!contains(clazz.getName(), classes)) {
-                        classes.add(clazz);
-                    }
-                    logger.debug( "Adding " + className + " to list of classes");
+                if(addClass(className, instanceOf, classes)) {
                     count++;
-                } else {
-                    logger.debug("Not adding class '" + clazz.getName() + "' to list.  Class does not implement/extend '" + instanceOf.getName() + "'.");
                 }
             }
             logger.debug("Loaded '" + count + "' classes listed in '" + url + "'.");
@@ -330,6 +355,28 @@ public class ClassUtil {
         }
     }
 
+    private static <T> boolean addClass(String className, Class<T> instanceOf, List<Class<T>> classes) {
+        Class clazz;
+
+        try {
+            clazz = forName(className, ClassUtil.class);
+        } catch (ClassNotFoundException e) {
+            logger.warn("Failed to load class '" + className + "'. Class not found.");
+            return false;
+        }
+
+        if(instanceOf.isAssignableFrom(clazz)) {
+            if(!contains(clazz.getName(), classes)) {
+                classes.add(clazz);
+            }
+            logger.debug( "Adding " + className + " to list of classes");
+            return true;
+        } else {
+            logger.debug("Not adding class '" + clazz.getName() + "' to list.  Class does not implement/extend '" + instanceOf.getName() + "'.");
+            return false;
+        }
+    }
+
     private static <T> boolean contains(String name, List<Class<T>> classes) {
         for (Class<T> aClass : classes) {
             if(aClass.getName().equals(name)) {
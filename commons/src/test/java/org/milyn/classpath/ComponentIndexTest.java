@@ -0,0 +1,229 @@
+/*
+	Milyn - Copyright (C) 2006 - 2010
+
+	This library is free software; you can redistribute it and/or
+	modify it under the terms of the GNU Lesser General Public
+	License (version 2.1) as published by the Free Software
+	Foundation.
+
+	This library is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+	See the GNU Lesser General Public License for more details:
+	http://www.gnu.org/licenses/lgpl.txt
+*/
+package org.milyn.classpath;
+
+import junit.framework.TestCase;
+import org.milyn.io.FileUtils;
+import org.milyn.util.ClassUtil;
+
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class ComponentIndexTest extends TestCase {
+
+    private File workDir = new File("target/component-index-test");
+    private File sourceDir = new File(workDir, "src");
+    private File classesDir = new File(workDir, "classes");
+
+    protected void setUp() throws Exception {
+        deleteDir(workDir);
+        sourceDir.mkdirs();
+        classesDir.mkdirs();
+    }
+
+    protected void tearDown() throws Exception {
+        deleteDir(workDir);
+    }
+
+    public void test_load() throws IOException {
+        File indexFile = new File(classesDir, ComponentIndex.INDEX_RESOURCE);
+
+        indexFile.getParentFile().mkdirs();
+        FileUtils.writeFile(("# comment\n" +
+                "org.acme.Component=org.acme.ComponentA\n" +
+                "\n" +
+                "org.acme.Component=org.acme.ComponentB\n" +
+                "org.acme.Component=org.acme.ComponentA\n" +
+                "invalid-entry\n" +
+                "org.acme.Declared=\n" +
+                "org.acme.Annotation=org.acme.ComponentB\n").getBytes("UTF-8"), indexFile);
+
+        ComponentIndex index = ComponentIndex.load(new URLClassLoader(new URL[] {classesDir.toURI().toURL()}, null));
+
+        assertFalse(index.isEmpty());
+        assertEquals(Arrays.asList("org.acme.ComponentA", "org.acme.ComponentB"), index.getClassNames("org.acme.Component"));
+        assertEquals(Arrays.asList("org.acme.ComponentB"), index.getClassNames("org.acme.Annotation"));
+        assertTrue(index.getClassNames("org.acme.Other").isEmpty());
+        assertTrue(index.getClassNames("org.acme.Declared").isEmpty());
+
+        assertEquals(Collections.singleton(classesDir.getAbsoluteFile()), index.getIndexedRoots("org.acme.Component"));
+        assertEquals(Collections.singleton(classesDir.getAbsoluteFile()), index.getIndexedRoots("org.acme.Declared"));
+        assertTrue(index.getIndexedRoots("org.acme.Other").isEmpty());
+    }
+
+    public void test_load_no_index() throws IOException {
+        ComponentIndex index = ComponentIndex.load(new URLClassLoader(new URL[] {classesDir.toURI().toURL()}, null));
+
+        assertTrue(index.isEmpty());
+        assertTrue(index.getClassNames("org.acme.Component").isEmpty());
+    }
+
+    public void test_processor() throws Exception {
+        if(!compile()) {
+            return;
+        }
+
+        ComponentIndex index = ComponentIndex.load(new URLClassLoader(new URL[] {classesDir.toURI().toURL()}, null));
+
+        assertEquals(Arrays.asList("org.acme.ComponentA", "org.acme.ComponentB", "org.acme.ComponentB$Nested"), index.getClassNames("org.acme.Component"));
+        assertEquals(Arrays.asList("org.acme.ComponentB"), index.getClassNames("org.acme.Marker"));
+        assertEquals(Arrays.asList("org.acme.ComponentB"), index.getClassNames("org.acme.AbstractComponent"));
+    }
+
+    public void test_findInstancesOf_indexed() throws Exception {
+        if(!compile()) {
+            return;
+        }
+
+        ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        URLClassLoader classLoader = new URLClassLoader(new URL[] {classesDir.toURI().toURL()}, getClass().getClassLoader());
+
+        Thread.currentThread().setContextClassLoader(classLoader);
+        try {
+            List<Class> components = ClassUtil.findInstancesOf(classLoader.loadClass("org.acme.Component"));
+
+            // A classpath scan would also find the interface and the abstract class...
+            assertEquals(3, components.size());
+            assertTrue(components.contains(classLoader.loadClass("org.acme.ComponentA")));
+            assertTrue(components.contains(classLoader.loadClass("org.acme.ComponentB")));
+            assertTrue(components.contains(classLoader.loadClass("org.acme.ComponentB$Nested")));
+
+            List<Class> markedComponents = ClassUtil.findAnnotatedWith(classLoader.loadClass("org.acme.Marker").asSubclass(Annotation.class));
+            assertEquals(1, markedComponents.size());
+            assertTrue(markedComponents.contains(classLoader.loadClass("org.acme.ComponentB")));
+        } finally {
+            Thread.currentThread().setContextClassLoader(contextClassLoader);
+        }
+    }
+
+    public void test_findInstancesOf_indexed_and_scanned() throws Exception {
+        if(!compile()) {
+            return;
+        }
+
+        // Unindexed root i.e. compiled without enabling the processor...
+        File unindexedClassesDir = new File(workDir, "unindexed-classes");
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null);
+
+        writeSource("ComponentC", "public class ComponentC implements Component {}");
+        unindexedClassesDir.mkdirs();
+        try {
+            List<String> options = Arrays.asList("-d", unindexedClassesDir.getPath(), "-cp", classesDir.getPath());
+            assertTrue(compiler.getTask(null, fileManager, null, options, null, fileManager.getJavaFileObjects(new File(sourceDir, "org/acme/ComponentC.java"))).call());
+        } finally {
+            fileManager.close();
+        }
+        assertFalse(new File(unindexedClassesDir, ComponentIndex.INDEX_RESOURCE).exists());
+
+        ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        URLClassLoader classLoader = new URLClassLoader(new URL[] {classesDir.toURI().toURL(), unindexedClassesDir.toURI().toURL()}, getClass().getClassLoader());
+
+        Thread.currentThread().setContextClassLoader(classLoader);
+        try {
+            List<Class> components = ClassUtil.findInstancesOf(classLoader.loadClass("org.acme.Component"));
+
+            // The indexed classes, plus the classes found by scanning the unindexed root...
+            assertEquals(4, components.size());
+            assertTrue(components.contains(classLoader.loadClass("org.acme.ComponentA")));
+            assertTrue(components.contains(classLoader.loadClass("org.acme.ComponentB")));
+            assertTrue(components.contains(classLoader.loadClass("org.acme.ComponentB$Nested")));
+            assertTrue(components.contains(classLoader.loadClass("org.acme.ComponentC")));
+        } finally {
+            Thread.currentThread().setContextClassLoader(contextClassLoader);
+        }
+    }
+
+    public void test_getClasses_indexed_and_listed() throws Exception {
+        if(!compile()) {
+            return;
+        }
+
+        // Class list file in the same (indexed) root, listing a class that's not indexed e.g. a merged jar...
+        File classListFile = new File(classesDir, "META-INF/components.inf");
+        FileUtils.writeFile("org.acme.ComponentA\norg.acme.AbstractComponent\n".getBytes("UTF-8"), classListFile);
+
+        ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        URLClassLoader classLoader = new URLClassLoader(new URL[] {classesDir.toURI().toURL()}, getClass().getClassLoader());
+
+        Thread.currentThread().setContextClassLoader(classLoader);
+        try {
+            List<Class<Object>> components = ClassUtil.getClasses("META-INF/components.inf", (Class<Object>) classLoader.loadClass("org.acme.Component"));
+
+            assertEquals(4, components.size());
+            assertTrue(components.contains(classLoader.loadClass("org.acme.ComponentA")));
+            assertTrue(components.contains(classLoader.loadClass("org.acme.ComponentB")));
+            assertTrue(components.contains(classLoader.loadClass("org.acme.ComponentB$Nested")));
+            assertTrue(components.contains(classLoader.loadClass("org.acme.AbstractComponent")));
+        } finally {
+            Thread.currentThread().setContextClassLoader(contextClassLoader);
+        }
+    }
+
+    private boolean compile() throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if(compiler == null) {
+            // Not running on a JDK...
+            return false;
+        }
+
+        writeSource("Component", "public interface Component {}");
+        writeSource("Marker", "@java.lang.annotation.Retention(java.lang.annotation.RetentionPolicy.RUNTIME) public @interface Marker {}");
+        writeSource("AbstractComponent", "public abstract class AbstractComponent implements Component {}");
+        writeSource("ComponentA", "public class ComponentA implements Component {}");
+        writeSource("ComponentB", "@Marker public class ComponentB extends AbstractComponent { public static class Nested extends ComponentA {} }");
+
+        StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null);
+        try {
+            List<String> options = Arrays.asList("-d", classesDir.getPath(), "-Asmooks.index.types=org.acme.Component,org.acme.AbstractComponent", "-Asmooks.index.annotations=org.acme.Marker");
+            JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, null, options, null, fileManager.getJavaFileObjects(new File(sourceDir, "org/acme").listFiles()));
+
+            task.setProcessors(Arrays.asList(new ComponentIndexProcessor()));
+            assertTrue(task.call());
+        } finally {
+            fileManager.close();
+        }
+
+        return true;
+    }
+
+    private void writeSource(String className, String source) throws IOException {
+        File sourceFile = new File(sourceDir, "org/acme/" + className + ".java");
+
+        sourceFile.getParentFile().mkdirs();
+        FileUtils.writeFile(("package org.acme;\n" + source).getBytes("UTF-8"), sourceFile);
+    }
+
+    private static void deleteDir(File dir) {
+        File[] files = dir.listFiles();
+
+        if(files != null) {
+            for (File file : files) {
+                deleteDir(file);
+            }
+        }
+        dir.delete();
+    }
+}
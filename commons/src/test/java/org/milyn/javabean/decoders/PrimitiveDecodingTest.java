@@ -0,0 +1,137 @@
+/*
+ * Milyn - Copyright (C) 2006 - 2010
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License (version 2.1) as published by the Free Software
+ *  Foundation.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ *  See the GNU Lesser General Public License for more details:
+ *  http://www.gnu.org/licenses/lgpl.txt
+ */
+
+package org.milyn.javabean.decoders;
+
+import junit.framework.TestCase;
+import org.milyn.javabean.DataDecodeException;
+
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * Tests for the primitive decode methods (e.g. {@link IntegerDecoder#decodeInt(CharSequence)}).
+ * <p/>
+ * The primitive decode methods must produce the same results as the {@link String} based
+ * decode methods.
+ */
+public class PrimitiveDecodingTest extends TestCase {
+
+    private Locale defaultLocale;
+
+    public void setUp() {
+        defaultLocale = Locale.getDefault();
+		Locale.setDefault( new Locale("en", "IE") );
+	}
+
+    protected void tearDown() throws Exception {
+        Locale.setDefault(defaultLocale);
+    }
+
+    public void test_decodeInt() {
+        IntegerDecoder decoder = new IntegerDecoder();
+        String[] values = {"0", "1", "-1", "+1", " 123 ", "\n\t-456\r\n", "007", "2147483647", "-2147483648"};
+
+        for(String value : values) {
+            assertEquals(value, decoder.decode(value), decoder.decodeInt(new StringBuilder(value)));
+        }
+
+        String[] badValues = {"", " ", "-", "+", "1.0", "1 2", "abc", "2147483648", "-2147483649", "99999999999"};
+        for(String value : badValues) {
+            assertDecodeFails(decoder, value);
+            try {
+                decoder.decodeInt(value);
+                fail("Expected DataDecodeException for '" + value + "'.");
+            } catch (DataDecodeException e) {
+                assertEquals("Failed to decode Integer value '" + value + "'.", e.getMessage());
+            }
+        }
+    }
+
+    public void test_decodeLong() {
+        LongDecoder decoder = new LongDecoder();
+        String[] values = {"0", "-1", "+1", " 123 ", "2147483648", "9223372036854775807", "-9223372036854775808"};
+
+        for(String value : values) {
+            assertEquals(value, decoder.decode(value), decoder.decodeLong(new StringBuilder(value)));
+        }
+
+        String[] badValues = {"", "-", "1.0", "abc", "9223372036854775808", "-9223372036854775809"};
+        for(String value : badValues) {
+            assertDecodeFails(decoder, value);
+            try {
+                decoder.decodeLong(value);
+                fail("Expected DataDecodeException for '" + value + "'.");
+            } catch (DataDecodeException e) {
+                assertEquals("Failed to decode Long value '" + value + "'.", e.getMessage());
+            }
+        }
+    }
+
+    public void test_decodeDouble() {
+        DoubleDecoder decoder = new DoubleDecoder();
+        String[] values = {"0", "-0", "1.0", " 1.5 ", "-123.456", "+7.25", "1.", ".5", "-.5", "0.1", "0.3",
+                           "123456789012345", "1234567890123456789", "0.000001", "1e10", "1.5E-3", "-2.5e+2",
+                           "3.141592653589793", "1e400", "4.9e-324", "NaN", "Infinity", "-Infinity", "1d", "1f"};
+
+        for(String value : values) {
+            assertEquals(value, decoder.decode(value), decoder.decodeDouble(new StringBuilder(value)));
+        }
+
+        String[] badValues = {"", ".", "-", "1.2.3", "abc", "1e"};
+        for(String value : badValues) {
+            assertDecodeFails(decoder, value);
+            try {
+                decoder.decodeDouble(value);
+                fail("Expected DataDecodeException for '" + value + "'.");
+            } catch (DataDecodeException e) {
+                assertEquals("Failed to decode Double value '" + value + "'.", e.getMessage());
+            }
+        }
+    }
+
+    public void test_decodeBoolean() {
+        BooleanDecoder decoder = new BooleanDecoder();
+        String[] values = {"true", "TRUE", " True ", "false", "", "yes", "1", "truex"};
+
+        for(String value : values) {
+            assertEquals(value, decoder.decode(value), decoder.decodeBoolean(new StringBuilder(value)));
+        }
+    }
+
+    public void test_decode_format_config() {
+        IntegerDecoder intDecoder = new IntegerDecoder();
+        DoubleDecoder doubleDecoder = new DoubleDecoder();
+        Properties config = new Properties();
+
+        config.setProperty(NumberDecoder.FORMAT, "#,###.##");
+        intDecoder.setConfiguration(config);
+        doubleDecoder.setConfiguration(config);
+
+        // Configured formats are still applied...
+        assertEquals(1234, intDecoder.decodeInt("1,234.45"));
+        assertEquals(1234.45d, doubleDecoder.decodeDouble("1,234.45"));
+    }
+
+    private void assertDecodeFails(NumberDecoder decoder, String value) {
+        try {
+            decoder.decode(value);
+            fail("Expected DataDecodeException for '" + value + "'.");
+        } catch (DataDecodeException e) {
+            // Expected
+        }
+    }
+}
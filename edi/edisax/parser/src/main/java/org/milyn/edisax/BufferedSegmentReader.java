@@ -20,6 +20,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.milyn.edisax.model.internal.Delimiters;
 import org.milyn.edisax.util.EDIUtils;
+import org.milyn.io.ByteBufferReader;
 import org.xml.sax.InputSource;
 
 import java.io.IOException;
@@ -68,6 +69,8 @@ public class BufferedSegmentReader {
             reader = new InputStreamReader(underlyingByteStream, readEncoding);
         } else if(reader instanceof InputStreamReader) {
         	readEncoding = Charset.forName(((InputStreamReader) reader).getEncoding());
+        } else if(reader instanceof ByteBufferReader) {
+        	readEncoding = ((ByteBufferReader) reader).getCharset();
         }
         this.currentDelimiters = rootDelimiters;
     }
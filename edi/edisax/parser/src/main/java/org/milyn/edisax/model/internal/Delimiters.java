@@ -196,6 +196,21 @@ public class Delimiters {
         return escapeBuffer.toString();
     }
 
+    /**
+     * Get the characters escaped by {@link #escape(String)}.
+     * @return The escaped characters.  An empty array if these delimiters do not support escaping.
+     */
+    public char[] getEscapedChars() {
+        char[] escapedChars = new char[delimiterChars.size()];
+        int i = 0;
+
+        for(Character delimiterChar : delimiterChars) {
+            escapedChars[i++] = delimiterChar;
+        }
+
+        return escapedChars;
+    }
+
     private void initDelimiterChars() {
         delimiterChars.clear();
 
@@ -0,0 +1,295 @@
+/*
+	Milyn - Copyright (C) 2006 - 2010
+
+	This library is free software; you can redistribute it and/or
+	modify it under the terms of the GNU Lesser General Public
+	License (version 2.1) as published by the Free Software
+	Foundation.
+
+	This library is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+	See the GNU Lesser General Public License for more details:
+	http://www.gnu.org/licenses/lgpl.txt
+*/
+package org.milyn.edisax.unedifact;
+
+import java.io.IOException;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.milyn.assertion.AssertArgument;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+/**
+ * Parallel UN/EDIFACT message processor.
+ * <p/>
+ * {@link UNEdifactInterchangeSplitter Splits} an interchange into its messages on the calling thread
+ * and hands each message to a pool of worker threads for processing (see {@link #processMessage(UNEdifactMessageBlock)}).
+ * The processing results are then handed back to the calling thread (see {@link #consumeMessage(UNEdifactMessageBlock, Object)}),
+ * either in interchange order, or in the order in which the messages complete processing.
+ * <p/>
+ * The number of messages in flight (split, but not yet consumed) is bounded (see {@link #setMaxPendingMessages(int)}), so
+ * splitting is throttled to the rate at which the workers can process the messages, and large interchanges are never
+ * held in memory.
+ * <p/>
+ * Example of mapping the messages to SAX event streams on the worker threads:
+ * <pre>
+ * ParallelUNEdifactMessageProcessor&lt;MyResult&gt; processor = new ParallelUNEdifactMessageProcessor&lt;MyResult&gt;(4, true) {
+ *     protected MyResult processMessage(UNEdifactMessageBlock messageBlock) throws Exception {
+ *         MyContentHandler handler = new MyContentHandler();
+ *         messageBlock.parse(mappingModels, handler, false);
+ *         return handler.getResult();
+ *     }
+ *     protected void consumeMessage(UNEdifactMessageBlock messageBlock, MyResult result) {
+ *         ....
+ *     }
+ * };
+ *
+ * processor.process(new InputSource(interchangeStream));
+ * </pre>
+ *
+ * @param <T> Message processing result type.
+ */
+public abstract class ParallelUNEdifactMessageProcessor<T> {
+
+    private final int workerThreads;
+    private final boolean ordered;
+    private int maxPendingMessages;
+    private boolean ignoreNewLines;
+
+    /**
+     * Public constructor.
+     * @param workerThreads The number of worker threads.
+     * @param ordered True if messages are to be consumed in interchange order, false if they are
+     * to be consumed in the order in which they complete processing.
+     */
+    public ParallelUNEdifactMessageProcessor(int workerThreads, boolean ordered) {
+        if(workerThreads < 1) {
+            throw new IllegalArgumentException("Invalid 'workerThreads' value '" + workerThreads + "'.  Must be greater than zero.");
+        }
+        this.workerThreads = workerThreads;
+        this.ordered = ordered;
+        this.maxPendingMessages = workerThreads * 4;
+    }
+
+    /**
+     * Set the max number of messages that can be in flight (split, but not yet consumed) at any time.
+     * <p/>
+     * Default is 4 times the number of worker threads.
+     * @param maxPendingMessages Max number of pending messages.
+     * @return This processor instance.
+     */
+    public ParallelUNEdifactMessageProcessor<T> setMaxPendingMessages(int maxPendingMessages) {
+        if(maxPendingMessages < 1) {
+            throw new IllegalArgumentException("Invalid 'maxPendingMessages' value '" + maxPendingMessages + "'.  Must be greater than zero.");
+        }
+        this.maxPendingMessages = maxPendingMessages;
+        return this;
+    }
+
+    public ParallelUNEdifactMessageProcessor<T> setIgnoreNewLines(boolean ignoreNewLines) {
+        this.ignoreNewLines = ignoreNewLines;
+        return this;
+    }
+
+    /**
+     * Process the messages in the supplied interchange.
+     * <p/>
+     * Returns once all messages have been consumed.  Processing stops on the first error.
+     *
+     * @param unedifactInterchange The interchange.
+     * @return The number of messages processed.
+     * @throws IOException Error reading the interchange.
+     * @throws SAXException Badly formed interchange, or error processing/consuming a message.
+     */
+    public int process(InputSource unedifactInterchange) throws IOException, SAXException {
+        AssertArgument.isNotNull(unedifactInterchange, "unedifactInterchange");
+
+        ExecutorService executor = Executors.newFixedThreadPool(workerThreads, new WorkerThreadFactory());
+        try {
+            MessageDispatcher dispatcher;
+
+            if(ordered) {
+                dispatcher = new OrderedMessageDispatcher(executor);
+            } else {
+                dispatcher = new UnorderedMessageDispatcher(executor);
+            }
+
+            int messageCount = new UNEdifactInterchangeSplitter().setIgnoreNewLines(ignoreNewLines).split(unedifactInterchange, dispatcher);
+            dispatcher.consumeAll();
+
+            return messageCount;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Process a message.
+     * <p/>
+     * Called on a worker thread.  Must be thread safe.
+     *
+     * @param messageBlock The message.
+     * @return The processing result.
+     * @throws Exception Error processing the message.
+     */
+    protected abstract T processMessage(UNEdifactMessageBlock messageBlock) throws Exception;
+
+    /**
+     * Consume a processed message.
+     * <p/>
+     * Called on the thread that called {@link #process(InputSource)}.
+     *
+     * @param messageBlock The message.
+     * @param result The processing result, as returned by {@link #processMessage(UNEdifactMessageBlock)}.
+     * @throws SAXException Error consuming the message.
+     */
+    protected abstract void consumeMessage(UNEdifactMessageBlock messageBlock, T result) throws SAXException;
+
+    private void consume(Future<ProcessedMessage<T>> future) throws IOException, SAXException {
+        ProcessedMessage<T> processedMessage;
+
+        try {
+            processedMessage = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SAXException("Interrupted while waiting on UN/EDIFACT message processing.", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if(cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if(cause instanceof SAXException) {
+                throw (SAXException) cause;
+            } else if(cause instanceof Exception) {
+                throw new SAXException("Error processing UN/EDIFACT message.", (Exception) cause);
+            } else if(cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new SAXException("Error processing UN/EDIFACT message: " + cause);
+        }
+
+        consumeMessage(processedMessage.messageBlock, processedMessage.result);
+    }
+
+    private abstract class MessageDispatcher implements UNEdifactMessageBlockHandler {
+
+        protected final ExecutorService executor;
+
+        private MessageDispatcher(ExecutorService executor) {
+            this.executor = executor;
+        }
+
+        protected Callable<ProcessedMessage<T>> newTask(final UNEdifactMessageBlock messageBlock) {
+            return new Callable<ProcessedMessage<T>>() {
+                public ProcessedMessage<T> call() throws Exception {
+                    return new ProcessedMessage<T>(messageBlock, processMessage(messageBlock));
+                }
+            };
+        }
+
+        protected abstract void consumeAll() throws IOException, SAXException;
+    }
+
+    private class OrderedMessageDispatcher extends MessageDispatcher {
+
+        private final LinkedList<Future<ProcessedMessage<T>>> pending = new LinkedList<Future<ProcessedMessage<T>>>();
+
+        private OrderedMessageDispatcher(ExecutorService executor) {
+            super(executor);
+        }
+
+        public void handle(UNEdifactMessageBlock messageBlock) throws IOException, SAXException {
+            pending.addLast(executor.submit(newTask(messageBlock)));
+
+            // Consume the messages at the head of the queue that are ready, and block
+            // if we've reached the max number of pending messages...
+            while(!pending.isEmpty() && (pending.size() >= maxPendingMessages || pending.getFirst().isDone())) {
+                consume(pending.removeFirst());
+            }
+        }
+
+        protected void consumeAll() throws IOException, SAXException {
+            while(!pending.isEmpty()) {
+                consume(pending.removeFirst());
+            }
+        }
+    }
+
+    private class UnorderedMessageDispatcher extends MessageDispatcher {
+
+        private final CompletionService<ProcessedMessage<T>> completionService;
+        private int pendingCount = 0;
+
+        private UnorderedMessageDispatcher(ExecutorService executor) {
+            super(executor);
+            completionService = new ExecutorCompletionService<ProcessedMessage<T>>(executor);
+        }
+
+        public void handle(UNEdifactMessageBlock messageBlock) throws IOException, SAXException {
+            completionService.submit(newTask(messageBlock));
+            pendingCount++;
+
+            // Consume the messages that are ready...
+            Future<ProcessedMessage<T>> completed;
+            while((completed = completionService.poll()) != null) {
+                pendingCount--;
+                consume(completed);
+            }
+
+            // Block if we've reached the max number of pending messages...
+            while(pendingCount >= maxPendingMessages) {
+                take();
+            }
+        }
+
+        protected void consumeAll() throws IOException, SAXException {
+            while(pendingCount > 0) {
+                take();
+            }
+        }
+
+        private void take() throws IOException, SAXException {
+            Future<ProcessedMessage<T>> completed;
+            try {
+                completed = completionService.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SAXException("Interrupted while waiting on UN/EDIFACT message processing.", e);
+            }
+            pendingCount--;
+            consume(completed);
+        }
+    }
+
+    private static class ProcessedMessage<T> {
+
+        private final UNEdifactMessageBlock messageBlock;
+        private final T result;
+
+        private ProcessedMessage(UNEdifactMessageBlock messageBlock, T result) {
+            this.messageBlock = messageBlock;
+            this.result = result;
+        }
+    }
+
+    private static class WorkerThreadFactory implements ThreadFactory {
+
+        private int threadCount = 0;
+
+        public synchronized Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "UNEdifactMessageWorker-" + threadCount++);
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
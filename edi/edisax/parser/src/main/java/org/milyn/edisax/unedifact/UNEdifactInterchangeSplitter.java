@@ -0,0 +1,192 @@
+/*
+	Milyn - Copyright (C) 2006 - 2010
+
+	This library is free software; you can redistribute it and/or
+	modify it under the terms of the GNU Lesser General Public
+	License (version 2.1) as published by the Free Software
+	Foundation.
+
+	This library is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+	See the GNU Lesser General Public License for more details:
+	http://www.gnu.org/licenses/lgpl.txt
+*/
+package org.milyn.edisax.unedifact;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+import org.milyn.assertion.AssertArgument;
+import org.milyn.edisax.BufferedSegmentReader;
+import org.milyn.edisax.EDIParseException;
+import org.milyn.edisax.model.internal.Delimiters;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+/**
+ * UN/EDIFACT Interchange splitter.
+ * <p/>
+ * Scans an interchange for its envelope segments (UNA, UNB, UNG, UNE, UNH, UNT, UNZ) and hands
+ * each message (UNH..UNT segment range) to a {@link UNEdifactMessageBlockHandler} as a raw
+ * {@link UNEdifactMessageBlock}, along with its delimiters and control segment context.  The
+ * message segments are not mapped (or even split into fields), so splitting an interchange is
+ * much faster than {@link UNEdifactInterchangeParser parsing} it.  The message blocks can then be
+ * parsed independently e.g. in parallel (see {@link ParallelUNEdifactMessageProcessor}).
+ * <p/>
+ * Only one message is held in memory at a time.
+ */
+public class UNEdifactInterchangeSplitter {
+
+    private boolean ignoreNewLines;
+
+    public UNEdifactInterchangeSplitter setIgnoreNewLines(boolean ignoreNewLines) {
+        this.ignoreNewLines = ignoreNewLines;
+        return this;
+    }
+
+    /**
+     * Split the supplied interchange.
+     * @param unedifactInterchange The interchange.
+     * @param messageBlockHandler The message block handler.
+     * @return The number of messages in the interchange.
+     * @throws IOException Error reading the interchange.
+     * @throws SAXException Error handling a message block, or badly formed interchange.
+     */
+    public int split(InputSource unedifactInterchange, UNEdifactMessageBlockHandler messageBlockHandler) throws IOException, SAXException {
+        AssertArgument.isNotNull(unedifactInterchange, "unedifactInterchange");
+        AssertArgument.isNotNull(messageBlockHandler, "messageBlockHandler");
+
+        BufferedSegmentReader segmentReader = new BufferedSegmentReader(unedifactInterchange, UNEdifactInterchangeParser.defaultUNEdifactDelimiters);
+        StringBuffer segmentBuffer = segmentReader.getSegmentBuffer();
+        Charset encoding = null;
+        String interchangeHeader = null;
+        String groupHeader = null;
+        String messageName = null;
+        StringBuilder message = null;
+        int messageCount = 0;
+
+        segmentReader.mark();
+        segmentReader.setIgnoreNewLines(ignoreNewLines);
+
+        while(true) {
+            String segCode = segmentReader.peek(3);
+
+            if(segCode.length() < 3) {
+                break;
+            }
+
+            if(segCode.equals("UNA")) {
+                segmentReader.pushDelimiters(readUNA(segmentReader));
+                continue;
+            }
+
+            segmentReader.moveToNextSegment(false);
+            segCode = getSegmentCode(segmentBuffer);
+
+            Delimiters delimiters = segmentReader.getDelimiters();
+            String segmentDelimiter = new String(delimiters.getSegmentDelimiter());
+
+            if(message != null) {
+                // In a message...
+                appendRawSegment(segmentBuffer, delimiters, segmentDelimiter, message);
+                message.append(segmentDelimiter);
+
+                if(segCode.equals("UNT")) {
+                    messageBlockHandler.handle(new UNEdifactMessageBlock(messageCount, delimiters, encoding, interchangeHeader, groupHeader, messageName, message.toString()));
+                    messageCount++;
+                    message = null;
+                }
+            } else if(segCode.equals("UNH")) {
+                if(interchangeHeader == null) {
+                    throw new EDIParseException("Invalid UN/EDIFACT interchange.  UNH segment found outside of a UNB/UNZ interchange envelope.");
+                }
+                String[] fields = segmentReader.getCurrentSegmentFields();
+                if(fields.length < 3) {
+                    throw new EDIParseException("Invalid UN/EDIFACT UNH segment '" + segmentBuffer + "'.  Message identifier not specified.");
+                }
+                messageName = fields[2];
+                message = new StringBuilder(1024);
+                appendRawSegment(segmentBuffer, delimiters, segmentDelimiter, message);
+                message.append(segmentDelimiter);
+            } else if(segCode.equals("UNB")) {
+                String[] fields = segmentReader.getCurrentSegmentFields();
+                if(fields.length < 2) {
+                    throw new EDIParseException("Invalid UN/EDIFACT UNB segment '" + segmentBuffer + "'.  Syntax identifier not specified.");
+                }
+                interchangeHeader = toRawSegment(segmentBuffer, delimiters, segmentDelimiter);
+                encoding = UNEdifactUtil.getSyntaxIdentifierCharset(fields[1], delimiters);
+                segmentReader.changeEncoding(encoding);
+            } else if(segCode.equals("UNG")) {
+                groupHeader = toRawSegment(segmentBuffer, delimiters, segmentDelimiter);
+            } else if(segCode.equals("UNE")) {
+                groupHeader = null;
+            } else if(segCode.equals("UNZ")) {
+                interchangeHeader = null;
+            } else if(segCode.length() > 0 && segCode.charAt(0) != 'U') {
+                throw new EDIParseException("Invalid UN/EDIFACT interchange.  Segment '" + segCode + "' found outside of a UNH/UNT message block.");
+            }
+
+            segmentBuffer.setLength(0);
+        }
+
+        if(message != null) {
+            throw new EDIParseException("Invalid UN/EDIFACT interchange.  Reached the end of the interchange inside message '" + messageName + "' (no UNT segment).");
+        }
+
+        return messageCount;
+    }
+
+    private Delimiters readUNA(BufferedSegmentReader segmentReader) throws IOException {
+        Delimiters delimiters = new Delimiters();
+
+        // See UNAHandler...
+        segmentReader.getSegmentBuffer().setLength(0);
+        delimiters.setComponent(segmentReader.read(1));
+        delimiters.setField(segmentReader.read(1));
+        delimiters.setDecimalSeparator(segmentReader.read(1));
+        delimiters.setEscape(segmentReader.read(1));
+        segmentReader.read(1);
+        delimiters.setSegment(segmentReader.read(1));
+
+        return delimiters;
+    }
+
+    private String getSegmentCode(StringBuffer segmentBuffer) {
+        int start = 0;
+        int length = segmentBuffer.length();
+
+        // Skip leading new line characters (when new lines are not being ignored)...
+        while(start < length && (segmentBuffer.charAt(start) == '\n' || segmentBuffer.charAt(start) == '\r')) {
+            start++;
+        }
+
+        return segmentBuffer.substring(start, Math.min(start + 3, length));
+    }
+
+    private String toRawSegment(StringBuffer segmentBuffer, Delimiters delimiters, String segmentDelimiter) {
+        StringBuilder rawSegment = new StringBuilder(segmentBuffer.length() + 8);
+        appendRawSegment(segmentBuffer, delimiters, segmentDelimiter, rawSegment);
+        return rawSegment.toString();
+    }
+
+    private void appendRawSegment(StringBuffer segmentBuffer, Delimiters delimiters, String segmentDelimiter, StringBuilder target) {
+        String escape = delimiters.getEscape();
+
+        // The segment reader drops the escape char from escaped segment delimiters.  Put it back...
+        if(escape != null && segmentBuffer.indexOf(segmentDelimiter) != -1) {
+            String segment = segmentBuffer.toString();
+            int fromIndex = 0;
+            int delimiterIndex;
+
+            while((delimiterIndex = segment.indexOf(segmentDelimiter, fromIndex)) != -1) {
+                target.append(segment, fromIndex, delimiterIndex).append(escape).append(segmentDelimiter);
+                fromIndex = delimiterIndex + segmentDelimiter.length();
+            }
+            target.append(segment, fromIndex, segment.length());
+        } else {
+            target.append(segmentBuffer);
+        }
+    }
+}
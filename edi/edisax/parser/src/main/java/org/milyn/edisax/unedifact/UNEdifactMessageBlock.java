@@ -0,0 +1,175 @@
+/*
+	Milyn - Copyright (C) 2006 - 2010
+
+	This library is free software; you can redistribute it and/or
+	modify it under the terms of the GNU Lesser General Public
+	License (version 2.1) as published by the Free Software
+	Foundation.
+
+	This library is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+	See the GNU Lesser General Public License for more details:
+	http://www.gnu.org/licenses/lgpl.txt
+*/
+package org.milyn.edisax.unedifact;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
+import java.util.Map;
+
+import org.milyn.edisax.EDIParser;
+import org.milyn.edisax.model.EdifactModel;
+import org.milyn.edisax.model.internal.Delimiters;
+import org.milyn.edisax.model.internal.Description;
+import org.milyn.edisax.util.EDIUtils;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+/**
+ * Raw UN/EDIFACT message (UNH..UNT segment range), split out of an interchange by the
+ * {@link UNEdifactInterchangeSplitter}.
+ * <p/>
+ * Carries the interchange delimiters and control segment context (UNB and UNG segments)
+ * of the message, allowing it to be parsed independently of the rest of the interchange
+ * (e.g. on another thread) - see {@link #toInterchange()} and {@link #parse(Map, ContentHandler, boolean)}.
+ */
+public class UNEdifactMessageBlock {
+
+    private final int messageIndex;
+    private final Delimiters delimiters;
+    private final Charset encoding;
+    private final String interchangeHeader;
+    private final String groupHeader;
+    private final String messageName;
+    private final String message;
+
+    /**
+     * Public constructor.
+     * @param messageIndex The index of the message within the interchange (zero based).
+     * @param delimiters The interchange delimiters.
+     * @param encoding The interchange character encoding, or null if not known.
+     * @param interchangeHeader The raw UNB segment (without segment delimiter).
+     * @param groupHeader The raw UNG segment (without segment delimiter), or null if the message is not in a group.
+     * @param messageName The message name, as defined on the UNH segment.
+     * @param message The raw message segments (UNH..UNT inclusive), each terminated by the segment delimiter.
+     */
+    public UNEdifactMessageBlock(int messageIndex, Delimiters delimiters, Charset encoding, String interchangeHeader, String groupHeader, String messageName, String message) {
+        this.messageIndex = messageIndex;
+        this.delimiters = delimiters;
+        this.encoding = encoding;
+        this.interchangeHeader = interchangeHeader;
+        this.groupHeader = groupHeader;
+        this.messageName = messageName;
+        this.message = message;
+    }
+
+    public int getMessageIndex() {
+        return messageIndex;
+    }
+
+    public Delimiters getDelimiters() {
+        return delimiters;
+    }
+
+    public Charset getEncoding() {
+        return encoding;
+    }
+
+    public String getInterchangeHeader() {
+        return interchangeHeader;
+    }
+
+    public String getGroupHeader() {
+        return groupHeader;
+    }
+
+    public String getMessageName() {
+        return messageName;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * Create a standalone interchange containing just this message.
+     * <p/>
+     * The interchange contains a UNA segment (the interchange delimiters), the UNB segment,
+     * the UNG segment (if the message is in a group) and the message segments.  The UNE and UNZ
+     * trailer segments are generated and have a control count of 1.
+     *
+     * @return The standalone interchange.
+     */
+    public String toInterchange() {
+        String segmentDelimiter = new String(delimiters.getSegmentDelimiter());
+        StringBuilder interchange = new StringBuilder(message.length() + 256);
+
+        interchange.append("UNA")
+                   .append(delimiters.getComponent())
+                   .append(delimiters.getField())
+                   .append(delimiters.getDecimalSeparator() != null ? delimiters.getDecimalSeparator() : ".")
+                   .append(delimiters.getEscape() != null ? delimiters.getEscape() : " ")
+                   .append(' ')
+                   .append(segmentDelimiter);
+        interchange.append(interchangeHeader).append(segmentDelimiter);
+        if(groupHeader != null) {
+            interchange.append(groupHeader).append(segmentDelimiter);
+        }
+        interchange.append(message);
+        if(groupHeader != null) {
+            interchange.append("UNE").append(delimiters.getField()).append('1').append(delimiters.getField()).append(getField(groupHeader, 5)).append(segmentDelimiter);
+        }
+        interchange.append("UNZ").append(delimiters.getField()).append('1').append(delimiters.getField()).append(getField(interchangeHeader, 5)).append(segmentDelimiter);
+
+        return interchange.toString();
+    }
+
+    /**
+     * Create an {@link InputSource} for the {@link #toInterchange() standalone interchange}
+     * containing just this message.
+     * @return The InputSource.
+     */
+    public InputSource toInputSource() {
+        Charset charset = (encoding != null ? encoding : Charset.defaultCharset());
+        String interchange = toInterchange();
+
+        try {
+            return new InputSource(new ByteArrayInputStream(interchange.getBytes(charset.name())));
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException("Unexpected exception.  Charset '" + charset.name() + "' is known to be supported.", e);
+        }
+    }
+
+    /**
+     * Parse this message (as a {@link #toInterchange() standalone interchange}), using a new
+     * {@link UNEdifactInterchangeParser} instance.
+     *
+     * @param mappingModels The message mapping models.
+     * @param contentHandler The content handler to receive the message events.
+     * @param validate Validate the data types of the EDI message data as defined in the mapping model.
+     * @throws IOException Error reading the message.
+     * @throws SAXException Error parsing the message.
+     */
+    public void parse(Map<Description, EdifactModel> mappingModels, ContentHandler contentHandler, boolean validate) throws IOException, SAXException {
+        UNEdifactInterchangeParser parser = new UNEdifactInterchangeParser();
+
+        parser.setMappingModels(mappingModels);
+        parser.setContentHandler(contentHandler);
+        parser.setFeature(EDIParser.FEATURE_VALIDATE, validate);
+        parser.parse(toInputSource());
+    }
+
+    private String getField(String segment, int index) {
+        String[] fields = EDIUtils.split(segment, delimiters.getField(), delimiters.getEscape());
+
+        if(fields.length <= index) {
+            return "";
+        }
+        return fields[index];
+    }
+}
@@ -0,0 +1,36 @@
+/*
+	Milyn - Copyright (C) 2006 - 2010
+
+	This library is free software; you can redistribute it and/or
+	modify it under the terms of the GNU Lesser General Public
+	License (version 2.1) as published by the Free Software
+	Foundation.
+
+	This library is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+	See the GNU Lesser General Public License for more details:
+	http://www.gnu.org/licenses/lgpl.txt
+*/
+package org.milyn.edisax.unedifact;
+
+import java.io.IOException;
+
+import org.xml.sax.SAXException;
+
+/**
+ * {@link UNEdifactMessageBlock} handler.
+ * <p/>
+ * Receives the messages split out of an interchange by the {@link UNEdifactInterchangeSplitter}.
+ */
+public interface UNEdifactMessageBlockHandler {
+
+	/**
+	 * Handle a message split out of the interchange.
+	 * @param messageBlock The message block.
+     * @throws IOException Error handling the message.
+     * @throws SAXException Error handling the message.
+	 */
+	void handle(UNEdifactMessageBlock messageBlock) throws IOException, SAXException;
+}
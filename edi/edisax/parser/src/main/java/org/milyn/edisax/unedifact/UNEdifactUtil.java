@@ -15,10 +15,15 @@
 */
 package org.milyn.edisax.unedifact;
 
+import java.nio.charset.Charset;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.Map.Entry;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.milyn.edisax.EDIParseException;
 import org.milyn.edisax.util.EDIUtils;
 import org.milyn.edisax.model.EdifactModel;
 import org.milyn.edisax.model.internal.Delimiters;
@@ -32,6 +37,14 @@ import org.xml.sax.SAXException;
  */
 public abstract class UNEdifactUtil {
 
+	private static Log logger = LogFactory.getLog(UNEdifactUtil.class);
+
+	private static Map<String, Charset> toCharsetMapping;
+
+	static {
+		createRepertoireToCharsetMap();
+	}
+
 	public static EdifactModel getMappingModel(String messageName, Delimiters delimiters, Map<Description, EdifactModel> mappingModels) throws SAXException {
 		Set<Entry<Description, EdifactModel>> modelSet = mappingModels.entrySet();
 		String[] nameComponents = EDIUtils.split(messageName, delimiters.getComponent(), delimiters.getEscape());
@@ -57,4 +70,72 @@ public abstract class UNEdifactUtil {
 		
 		throw new SAXException("Mapping Model '" + messageName + "' not found in supplied set of Mapping model.");
 	}
+
+	/**
+	 * Get the character encoding declared on the "syntaxIdentifier" field of a UNB segment.
+	 * <p/>
+	 * The first component defines the character repertoire.  The fourth component is
+	 * optional and can override it.
+	 *
+	 * @param syntaxIdentifier The UNB "syntaxIdentifier" field.
+	 * @param delimiters The interchange delimiters.
+	 * @return The character encoding.
+	 * @throws EDIParseException Unknown character encoding code.
+	 */
+	public static Charset getSyntaxIdentifierCharset(String syntaxIdentifier, Delimiters delimiters) throws EDIParseException {
+		String[] syntaxIdComponents = EDIUtils.split(syntaxIdentifier, delimiters.getComponent(), delimiters.getEscape());
+		String code;
+
+		if(syntaxIdComponents.length < 4) {
+			code = syntaxIdComponents[0];
+		} else {
+			code = syntaxIdComponents[3];
+		}
+
+		Charset charset = toCharsetMapping.get(code.toUpperCase());
+		if(charset == null) {
+			throw new EDIParseException("Unknown UN/EDIFACT character stream encoding code '" + code + "'.");
+		}
+
+		return charset;
+	}
+
+	private static void createRepertoireToCharsetMap() {
+		toCharsetMapping = new HashMap<String, Charset>();
+		
+		// http://www.gefeg.com/jswg/cl/v41/40107/cl1.htm
+		addCharsetMapping("UNOA", "ASCII");
+		addCharsetMapping("UNOB", "ASCII");
+		addCharsetMapping("UNOC", "ISO8859-1");
+		addCharsetMapping("UNOD", "ISO8859-2");
+		addCharsetMapping("UNOE", "ISO8859-5");
+		addCharsetMapping("UNOF", "ISO8859-7");
+		addCharsetMapping("UNOG", "ISO8859-3");
+		addCharsetMapping("UNOH", "ISO8859-4");
+		addCharsetMapping("UNOI", "ISO8859-6");
+		addCharsetMapping("UNOJ", "ISO8859-8");
+		addCharsetMapping("UNOK", "ISO8859-9");
+		addCharsetMapping("UNOL", "ISO8859-15");
+		addCharsetMapping("UNOW", "UTF-8");
+		addCharsetMapping("UNOX", "ISO-2022-CN");
+		addCharsetMapping("UNOY", "UTF-8");
+		
+		// http://www.gefeg.com/jswg/cl/v41/40107/cl17.htm
+		addCharsetMapping("1", "ASCII");
+		addCharsetMapping("2", "ASCII");
+		addCharsetMapping("3", "IBM500");
+		addCharsetMapping("4", "IBM850");
+		addCharsetMapping("5", "UTF-16");
+		addCharsetMapping("6", "UTF-32");
+		addCharsetMapping("7", "UTF-8");
+		addCharsetMapping("8", "UTF-16");
+	}
+
+ 	private static void addCharsetMapping(String code, String charsetName) {
+ 		if(Charset.isSupported(charsetName)) {
+ 			toCharsetMapping.put(code, Charset.forName(charsetName));
+ 		} else {
+ 			logger.debug("Unsupported character set '" + charsetName + "'.  Cannot support for '" + code + "' if defined on the syntaxIdentifier field on the UNB segment.  Check the JVM version etc.");
+ 		}
+ 	}
 }
@@ -16,15 +16,9 @@
 package org.milyn.edisax.unedifact.handlers.r41;
 
 import java.io.IOException;
-import java.nio.charset.Charset;
-import java.util.HashMap;
-import java.util.Map;
 
-import org.apache.commons.logging.Log;
-import org.apache.commons.logging.LogFactory;
 import org.milyn.edisax.BufferedSegmentReader;
-import org.milyn.edisax.EDIParseException;
-import org.milyn.edisax.util.EDIUtils;
+import org.milyn.edisax.unedifact.UNEdifactUtil;
 import org.milyn.edisax.interchange.ControlBlockHandler;
 import org.milyn.edisax.interchange.InterchangeContext;
 import org.milyn.edisax.model.internal.Component;
@@ -38,15 +32,11 @@ import org.xml.sax.SAXException;
  */
 class UNBHandler implements ControlBlockHandler {
 
-	private static Log logger = LogFactory.getLog(UNBHandler.class);
-	
 	private static Segment unbSegment;
 	private static Segment unzSegment;
-	private static Map<String, Charset> toCharsetMapping;
 	
 	static {
 		createSegmentsDefs();
-		createRepertoireToCharsetMap();
 	}
 
 	public void process(InterchangeContext interchangeContext) throws IOException, SAXException {
@@ -58,15 +48,7 @@ class UNBHandler implements ControlBlockHandler {
 		
 		interchangeContext.mapControlSegment(unbSegment, true);
 		
-		String[] syntaxIdComponents = EDIUtils.split(fields[1], segmentReader.getDelimiters().getComponent(), segmentReader.getDelimiters().getEscape());
-
-		// First component (index 0) defines the char repertoire.  Fourth 
-		// component (index 3) is optional and can override...
-		if(syntaxIdComponents.length < 4) {
-			changeReadEncoding(syntaxIdComponents[0], interchangeContext.getSegmentReader());
-		} else {
-			changeReadEncoding(syntaxIdComponents[3], interchangeContext.getSegmentReader());
-		}
+		segmentReader.changeEncoding(UNEdifactUtil.getSyntaxIdentifierCharset(fields[1], segmentReader.getDelimiters()));
 		
         while(true) {
 	        String segCode = segmentReader.peek(3);
@@ -82,16 +64,6 @@ class UNBHandler implements ControlBlockHandler {
         }		
 	}
 
-	private void changeReadEncoding(String code, BufferedSegmentReader bufferedSegmentReader) throws EDIParseException, IOException {
-		Charset charset = toCharsetMapping.get(code.toUpperCase());
-		
-		if(charset == null) {
-			throw new EDIParseException("Unknown UN/EDIFACT character stream encoding code '" + code + "'.");
-		}
-		
-		bufferedSegmentReader.changeEncoding(charset);
-	}
-
 	private static void createSegmentsDefs() {
 		// UNB Segment Definition...
 		// http://www.gefeg.com/jswg/v41/se/se13.htm
@@ -140,42 +112,4 @@ class UNBHandler implements ControlBlockHandler {
 		unzSegment.addField(new Field("controlRef", true));
 	}
 
-	private static void createRepertoireToCharsetMap() {
-		toCharsetMapping = new HashMap<String, Charset>();
-		
-		// http://www.gefeg.com/jswg/cl/v41/40107/cl1.htm
-		addCharsetMapping("UNOA", "ASCII");
-		addCharsetMapping("UNOB", "ASCII");
-		addCharsetMapping("UNOC", "ISO8859-1");
-		addCharsetMapping("UNOD", "ISO8859-2");
-		addCharsetMapping("UNOE", "ISO8859-5");
-		addCharsetMapping("UNOF", "ISO8859-7");
-		addCharsetMapping("UNOG", "ISO8859-3");
-		addCharsetMapping("UNOH", "ISO8859-4");
-		addCharsetMapping("UNOI", "ISO8859-6");
-		addCharsetMapping("UNOJ", "ISO8859-8");
-		addCharsetMapping("UNOK", "ISO8859-9");
-		addCharsetMapping("UNOL", "ISO8859-15");
-		addCharsetMapping("UNOW", "UTF-8");
-		addCharsetMapping("UNOX", "ISO-2022-CN");
-		addCharsetMapping("UNOY", "UTF-8");
-		
-		// http://www.gefeg.com/jswg/cl/v41/40107/cl17.htm
-		addCharsetMapping("1", "ASCII");
-		addCharsetMapping("2", "ASCII");
-		addCharsetMapping("3", "IBM500");
-		addCharsetMapping("4", "IBM850");
-		addCharsetMapping("5", "UTF-16");
-		addCharsetMapping("6", "UTF-32");
-		addCharsetMapping("7", "UTF-8");
-		addCharsetMapping("8", "UTF-16");
-	}
-
- 	private static void addCharsetMapping(String code, String charsetName) {
- 		if(Charset.isSupported(charsetName)) {
- 			toCharsetMapping.put(code, Charset.forName(charsetName));
- 		} else {
- 			logger.debug("Unsupported character set '" + charsetName + "'.  Cannot support for '" + code + "' if defined on the syntaxIdentifier field on the UNB segment.  Check the JVM version etc.");
- 		}
- 	}
 }
@@ -0,0 +1,135 @@
+/*
+	Milyn - Copyright (C) 2006 - 2010
+
+	This library is free software; you can redistribute it and/or
+	modify it under the terms of the GNU Lesser General Public
+	License (version 2.1) as published by the Free Software
+	Foundation.
+
+	This library is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+	See the GNU Lesser General Public License for more details:
+	http://www.gnu.org/licenses/lgpl.txt
+*/
+package org.milyn.edisax.unedifact;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.milyn.edisax.EDIConfigurationException;
+import org.milyn.edisax.EDIParseException;
+import org.milyn.edisax.EDIParser;
+import org.milyn.edisax.MockContentHandler;
+import org.milyn.edisax.model.EdifactModel;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit test for {@link UNEdifactInterchangeSplitter} and {@link ParallelUNEdifactMessageProcessor}.
+ */
+public class UNEdifactInterchangeSplitterTest extends TestCase {
+
+	public void test_split() throws IOException, SAXException {
+		final List<UNEdifactMessageBlock> blocks = new ArrayList<UNEdifactMessageBlock>();
+
+		int count = new UNEdifactInterchangeSplitter().setIgnoreNewLines(true).split(new InputSource(getClass().getResourceAsStream("with_ung/unedifact-msg-01.edi")), new UNEdifactMessageBlockHandler() {
+			public void handle(UNEdifactMessageBlock messageBlock) {
+				blocks.add(messageBlock);
+			}
+		});
+
+		assertEquals(3, count);
+		assertEquals(3, blocks.size());
+
+		assertEquals("MSG2:S:93A:UN", blocks.get(0).getMessageName());
+		assertEquals("UNG+G1+G1 Division+RecipDivision2++groupref11111", blocks.get(0).getGroupHeader());
+		assertEquals("UNH+0001+MSG2:S:93A:UN'BBBB+f1+f2+f3'UNT+25+0001'", blocks.get(0).getMessage());
+		assertEquals("UNA:+.? 'UNB+UNOA:3+Acme:1+AcmeRecipient:1+20051107:1159+6002'UNG+G1+G1 Division+RecipDivision2++groupref11111'UNH+0001+MSG2:S:93A:UN'BBBB+f1+f2+f3'UNT+25+0001'UNE+1+groupref11111'UNZ+1+6002'", blocks.get(0).toInterchange());
+
+		assertEquals("MSG2:S:93A:UN", blocks.get(1).getMessageName());
+		assertNull(blocks.get(1).getGroupHeader());
+		assertEquals("UNB+UNOA:3+Acme:1+AcmeRecipient:1+20051107:1159+6002", blocks.get(1).getInterchangeHeader());
+
+		assertEquals("MSG1:S:93A:UN", blocks.get(2).getMessageName());
+		assertEquals(2, blocks.get(2).getMessageIndex());
+		assertEquals("UNH+0001+MSG1:S:93A:UN'AAAA+f1+f2'BB+f11'UNT+25+0001'", blocks.get(2).getMessage());
+	}
+
+	public void test_split_escaped_segment_delimiter() throws IOException, SAXException {
+		final List<UNEdifactMessageBlock> blocks = new ArrayList<UNEdifactMessageBlock>();
+
+		new UNEdifactInterchangeSplitter().split(new InputSource(new ByteArrayInputStream("UNA:+.? 'UNB+UNOA:1+a+b+20051107:1159+ref'UNH+1+MSG1:S:93A:UN'AAAA+f?'1+f2'UNT+3+1'UNZ+1+ref'".getBytes())), new UNEdifactMessageBlockHandler() {
+			public void handle(UNEdifactMessageBlock messageBlock) {
+				blocks.add(messageBlock);
+			}
+		});
+
+		assertEquals(1, blocks.size());
+		assertEquals("UNH+1+MSG1:S:93A:UN'AAAA+f?'1+f2'UNT+3+1'", blocks.get(0).getMessage());
+	}
+
+	public void test_split_message_outside_interchange() throws IOException, SAXException {
+		try {
+			new UNEdifactInterchangeSplitter().split(new InputSource(new StringReader("UNH+1+MSG1:S:93A:UN'AAAA+f1+f2'UNT+3+1'")), new UNEdifactMessageBlockHandler() {
+				public void handle(UNEdifactMessageBlock messageBlock) {
+					fail("Unexpected message block");
+				}
+			});
+			fail("Expected EDIParseException");
+		} catch (EDIParseException e) {
+			assertEquals("Invalid UN/EDIFACT interchange.  UNH segment found outside of a UNB/UNZ interchange envelope.", e.getMessage());
+		}
+	}
+
+	public void test_parallel_ordered() throws IOException, SAXException, EDIConfigurationException {
+		test_parallel(true);
+	}
+
+	public void test_parallel_unordered() throws IOException, SAXException, EDIConfigurationException {
+		test_parallel(false);
+	}
+
+	private void test_parallel(boolean ordered) throws IOException, SAXException, EDIConfigurationException {
+		final UNEdifactInterchangeParser modelHolder = new UNEdifactInterchangeParser();
+		final List<Integer> consumed = new ArrayList<Integer>();
+		StringBuilder interchange = new StringBuilder("UNB+UNOA:1+a+b+20051107:1159+ref'");
+		int numMessages = 200;
+
+		modelHolder.addMappingModel(EDIParser.parseMappingModel(getClass().getResourceAsStream("MSG1-model.xml")));
+		for(int i = 0; i < numMessages; i++) {
+			interchange.append("UNH+" + i + "+MSG1:S:93A:UN'AAAA+f" + i + "+f2'BB+f11'UNT+4+" + i + "'");
+		}
+		interchange.append("UNZ+" + numMessages + "+ref'");
+
+		ParallelUNEdifactMessageProcessor<String> processor = new ParallelUNEdifactMessageProcessor<String>(4, ordered) {
+			protected String processMessage(UNEdifactMessageBlock messageBlock) throws Exception {
+				MockContentHandler handler = new MockContentHandler();
+				messageBlock.parse(modelHolder.getMappingModels(), handler, false);
+				return handler.xmlMapping.toString();
+			}
+			protected void consumeMessage(UNEdifactMessageBlock messageBlock, String result) {
+				assertTrue(result.indexOf("f" + messageBlock.getMessageIndex() + "<") != -1);
+				consumed.add(messageBlock.getMessageIndex());
+			}
+		};
+		processor.setMaxPendingMessages(10);
+
+		assertEquals(numMessages, processor.process(new InputSource(new ByteArrayInputStream(interchange.toString().getBytes()))));
+		assertEquals(numMessages, consumed.size());
+
+		if(!ordered) {
+			Collections.sort(consumed);
+		}
+		for(int i = 0; i < numMessages; i++) {
+			assertEquals(i, consumed.get(i).intValue());
+		}
+	}
+}
@@ -44,7 +44,8 @@ public class BeanWriter {
 
     /**
      * Iterates through all classes defined in ClassModel. For each class it generates the class
-     * implementation and saves the new class to filesystem.
+     * implementation and saves the new class to filesystem.  Also generates the factory and
+     * unmarshaller classes for the model.
      * @param model the {@link org.milyn.ejc.ClassModel}.
      * @param folder the output folder for generated classes.
      * @param bindingFile the name of the smooks configuration.
@@ -59,6 +60,7 @@ public class BeanWriter {
         }
 
         writeFactoryClass(folder, model, bindingFile);
+        writeUnmarshallerClass(folder, model);
     }
 
     /**
@@ -121,6 +123,17 @@ public class BeanWriter {
         }
     }
 
+    /**
+     * Creates the unmarshaller class used by the factory class for binding EDI messages
+     * directly to the generated beans.
+     * @param folder the folder where the unmarshaller-class should be created.
+     * @param model The ClassModel instance.
+     * @throws IOException when error ocurrs while writing unmarshaller to file.
+     */
+    private static void writeUnmarshallerClass(String folder, ClassModel model) throws IOException {
+        new UnmarshallerWriter(model).generate(folder);
+    }
+
     /**
      * Writes a JClass to file.
      * @param folder the file-path.
@@ -190,7 +190,6 @@ public class ClassModelCompiler {
 
         if(parent.getWriteMethod() != null) {
             parent.getWriteMethod().addTerminatingDelimiter(DelimiterType.SEGMENT);
-            parent.getWriteMethod().addFlush();
         }
     }
 
@@ -92,13 +92,14 @@ public class EJCExecutor {
                     ClassModel classModel = ejc.compile(model.getValue().getEdimap(), messagePackageName, destDir.getAbsolutePath(), definitionsClassModel.getClassesByNode());
 
                     // If this is an interchange, get rid of the edi mapping model config and the
-                    // Factory class for the message folder...
+                    // Factory and Unmarshaller classes for the message folder...
                     if(interchangeProperties != null) {
                         MessageDefinition messageDef = new MessageDefinition(description.getName(), "/" + messagePackageName.replace('.', '/') + "/" + EJC.BINDINGCONFIG_XML);
                         messageSetDefinitions.add(messageDef);
 
                         deleteFile(messagePackageName, EJC.EDIMAPPINGCONFIG_XML);
                         deleteFile(messagePackageName, EJCUtils.encodeClassName(description.getName()) + "Factory.java");
+                        deleteFile(messagePackageName, EJCUtils.encodeClassName(description.getName()) + "Unmarshaller.java");
 
                         JClass beanClass = classModel.getRootBeanConfig().getBeanClass();
                         rootClassesListFileBuilder.append(beanClass.getPackageName()).append(".").append(beanClass.getClassName()).append("\n");
@@ -0,0 +1,380 @@
+/*
+	Milyn - Copyright (C) 2006 - 2010
+
+	This library is free software; you can redistribute it and/or
+	modify it under the terms of the GNU Lesser General Public
+	License (version 2.1) as published by the Free Software
+	Foundation.
+
+	This library is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+	See the GNU Lesser General Public License for more details:
+	http://www.gnu.org/licenses/lgpl.txt
+*/
+package org.milyn.ejc;
+
+import org.milyn.assertion.AssertArgument;
+import org.milyn.javabean.pojogen.JClass;
+import org.milyn.javabean.pojogen.JNamedType;
+import org.milyn.util.FreeMarkerTemplate;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.*;
+
+/**
+ * UnmarshallerWriter generates a message specific unmarshaller class based on the class
+ * structure found in the {@link ClassModel}.
+ * <p/>
+ * The generated unmarshaller is driven directly by the {@link org.milyn.edisax.EDIParser} events
+ * and builds the object model using plain constructor and setter calls, applying the same
+ * creation, wiring and value bindings as the generated binding configuration (see {@link BindingWriter}).
+ * The generated Factory class uses it as a fast path when no additional filter results are requested.
+ */
+public class UnmarshallerWriter {
+
+    /**
+     * The number of element nodes handled by each generated dispatch method.  Keeps the
+     * generated methods well below the JVM method size limit for large messages.
+     */
+    private static final int DISPATCH_CHUNK_SIZE = 128;
+
+    private ClassModel classModel;
+    private FreeMarkerTemplate template = new FreeMarkerTemplate("templates/unmarshallerClass.ftl.xml", UnmarshallerWriter.class);
+
+    private List<NodeInfo> nodes = new ArrayList<NodeInfo>();
+    private Map<String, NodeInfo> nodesByPath = new HashMap<String, NodeInfo>();
+    private List<BeanInfo> beans = new ArrayList<BeanInfo>();
+    private List<DecoderInfo> decoders = new ArrayList<DecoderInfo>();
+
+    public UnmarshallerWriter(ClassModel classModel) {
+        AssertArgument.isNotNull(classModel, "classModel");
+
+        this.classModel = classModel;
+
+        // The document node...
+        addNode(null, null, "");
+        addBean(classModel.getRootBeanConfig(), null);
+    }
+
+    /**
+     * Write the unmarshaller class to the package folder of the model root class.
+     * @param folder The output folder for generated classes.
+     * @throws IOException Error writing the unmarshaller class.
+     */
+    public void generate(String folder) throws IOException {
+        JClass rootClass = classModel.getRootBeanConfig().getBeanClass();
+        File packageFolder = new File(folder, rootClass.getPackageName().replace('.', '/'));
+        OutputStreamWriter writer = null;
+
+        try {
+            writer = new OutputStreamWriter(new FileOutputStream(new File(packageFolder, rootClass.getClassName() + "Unmarshaller.java")));
+            writeUnmarshallerClass(writer);
+        } finally {
+            if (writer != null) {
+                writer.close();
+            }
+        }
+    }
+
+    public static void writeUnmarshallerClass(ClassModel classModel, Writer writer) throws IOException {
+        (new UnmarshallerWriter(classModel)).writeUnmarshallerClass(writer);
+        writer.flush();
+    }
+
+    public void writeUnmarshallerClass(Writer writer) throws IOException {
+        JClass rootClass = classModel.getRootBeanConfig().getBeanClass();
+        Map<String, Object> templatingContextObject = new HashMap<String, Object>();
+        List<NodeInfo> parentNodes = new ArrayList<NodeInfo>();
+        List<NodeInfo> createNodes = new ArrayList<NodeInfo>();
+        List<NodeInfo> valueNodes = new ArrayList<NodeInfo>();
+
+        for(NodeInfo node : nodes) {
+            if(!node.getChildren().isEmpty()) {
+                parentNodes.add(node);
+            }
+            if(!node.getCreates().isEmpty()) {
+                createNodes.add(node);
+            }
+            if(!node.getValues().isEmpty()) {
+                valueNodes.add(node);
+            }
+        }
+
+        templatingContextObject.put("package", rootClass.getPackageName());
+        templatingContextObject.put("className", rootClass.getClassName());
+        templatingContextObject.put("chunkSize", DISPATCH_CHUNK_SIZE);
+        templatingContextObject.put("beans", beans);
+        templatingContextObject.put("decoders", decoders);
+        templatingContextObject.put("childNodeChunks", toChunks(parentNodes));
+        templatingContextObject.put("createChunks", toChunks(createNodes));
+        templatingContextObject.put("valueChunks", toChunks(valueNodes));
+
+        writer.write(template.apply(templatingContextObject));
+    }
+
+    private void addBean(BindingConfig binding, BeanInfo parent) {
+        BeanInfo bean = new BeanInfo(beans.size(), binding, parent);
+
+        beans.add(bean);
+        getNode(binding.getCreateOnElement()).getCreates().add(bean);
+
+        for(ValueNodeInfo valueBinding : binding.getValueBindings()) {
+            String decoderType = valueBinding.getDecoderType();
+            DecoderInfo decoder = null;
+
+            if(decoderType != null && decoderType.length() > 0) {
+                decoder = new DecoderInfo(decoders.size(), decoderType, valueBinding.getDecoderConfigs());
+                decoders.add(decoder);
+            }
+
+            getNode(valueBinding.getDataSelector()).getValues().add(new ValueInfo(bean, valueBinding.getProperty(), decoder));
+        }
+
+        // Use the wire bindings for navigating down the model because the BindingConfig
+        // parent references are not updated when single field segments are collapsed...
+        for(BindingConfig wiredBinding : binding.getWireBindings()) {
+            addBean(wiredBinding, bean);
+        }
+    }
+
+    private NodeInfo getNode(String path) {
+        NodeInfo node = nodesByPath.get(path);
+
+        if(node == null) {
+            int lastSlash = path.lastIndexOf('/');
+            NodeInfo parent;
+
+            if(lastSlash == -1) {
+                parent = nodes.get(0);
+            } else {
+                parent = getNode(path.substring(0, lastSlash));
+            }
+            node = addNode(parent, path, path.substring(lastSlash + 1));
+        }
+
+        return node;
+    }
+
+    private NodeInfo addNode(NodeInfo parent, String path, String name) {
+        NodeInfo node = new NodeInfo(nodes.size(), name);
+
+        nodes.add(node);
+        if(parent != null) {
+            parent.getChildren().add(node);
+        }
+        if(path != null) {
+            nodesByPath.put(path, node);
+        }
+
+        return node;
+    }
+
+    private List<Chunk> toChunks(List<NodeInfo> chunkNodes) {
+        Map<Integer, Chunk> chunks = new LinkedHashMap<Integer, Chunk>();
+
+        for(NodeInfo node : chunkNodes) {
+            Integer chunkIndex = node.getId() / DISPATCH_CHUNK_SIZE;
+            Chunk chunk = chunks.get(chunkIndex);
+
+            if(chunk == null) {
+                chunk = new Chunk(chunkIndex);
+                chunks.put(chunkIndex, chunk);
+            }
+            chunk.getNodes().add(node);
+        }
+
+        return new ArrayList<Chunk>(chunks.values());
+    }
+
+    private static String toSetterName(JNamedType property) {
+        String propertyName = property.getName();
+        return "set" + Character.toUpperCase(propertyName.charAt(0)) + propertyName.substring(1);
+    }
+
+    private static String toTypeName(Class<?> type) {
+        if(type.getCanonicalName() != null) {
+            return type.getCanonicalName();
+        }
+        return type.getName();
+    }
+
+    public static class Chunk {
+
+        private int index;
+        private List<NodeInfo> nodes = new ArrayList<NodeInfo>();
+
+        private Chunk(int index) {
+            this.index = index;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public List<NodeInfo> getNodes() {
+            return nodes;
+        }
+    }
+
+    public static class NodeInfo {
+
+        private int id;
+        private String name;
+        private List<NodeInfo> children = new ArrayList<NodeInfo>();
+        private List<BeanInfo> creates = new ArrayList<BeanInfo>();
+        private List<ValueInfo> values = new ArrayList<ValueInfo>();
+
+        private NodeInfo(int id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public List<NodeInfo> getChildren() {
+            return children;
+        }
+
+        public List<BeanInfo> getCreates() {
+            return creates;
+        }
+
+        public List<ValueInfo> getValues() {
+            return values;
+        }
+    }
+
+    public static class BeanInfo {
+
+        private int index;
+        private String beanId;
+        private String typeName;
+        private String newInstance;
+        private String wiring;
+
+        private BeanInfo(int index, BindingConfig binding, BeanInfo parent) {
+            JClass beanClass = binding.getBeanClass();
+
+            this.index = index;
+            this.beanId = binding.getBeanId();
+
+            if(beanClass != null) {
+                typeName = beanClass.getPackageName() + "." + beanClass.getClassName();
+                newInstance = "new " + typeName + "()";
+            } else {
+                String itemTypeName = getItemTypeName(binding);
+
+                typeName = "java.util.List<" + itemTypeName + ">";
+                newInstance = "new java.util.ArrayList<" + itemTypeName + ">()";
+            }
+
+            if(parent != null) {
+                if(parent.isList()) {
+                    wiring = parent.getVariable() + ".add(" + getVariable() + ");";
+                } else if(binding.getPropertyOnParent() != null) {
+                    wiring = parent.getVariable() + "." + toSetterName(binding.getPropertyOnParent()) + "(" + getVariable() + ");";
+                }
+            }
+        }
+
+        private static String getItemTypeName(BindingConfig collectionBinding) {
+            List<BindingConfig> itemBindings = collectionBinding.getWireBindings();
+
+            if(itemBindings.size() != 1 || itemBindings.get(0).getBeanClass() == null) {
+                throw new EJCException("Unexpected collection binding configuration for bean '" + collectionBinding.getBeanId() + "'.  Must wire exactly one bean class.");
+            }
+
+            JClass itemClass = itemBindings.get(0).getBeanClass();
+            return itemClass.getPackageName() + "." + itemClass.getClassName();
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public String getBeanId() {
+            return beanId;
+        }
+
+        public String getVariable() {
+            return "bean" + index;
+        }
+
+        public String getTypeName() {
+            return typeName;
+        }
+
+        public String getNewInstance() {
+            return newInstance;
+        }
+
+        public String getWiring() {
+            return wiring;
+        }
+
+        public boolean isList() {
+            return typeName.startsWith("java.util.List<");
+        }
+    }
+
+    public static class ValueInfo {
+
+        private BeanInfo bean;
+        private String setValue;
+
+        private ValueInfo(BeanInfo bean, JNamedType property, DecoderInfo decoder) {
+            this.bean = bean;
+
+            if(decoder != null) {
+                setValue = bean.getVariable() + "." + toSetterName(property) + "((" + toTypeName(property.getType().getType()) + ") decode(" + decoder.getIndex() + ", value, \"" + property.getName() + "\"));";
+            } else {
+                setValue = bean.getVariable() + "." + toSetterName(property) + "(value);";
+            }
+        }
+
+        public BeanInfo getBean() {
+            return bean;
+        }
+
+        public String getSetValue() {
+            return setValue;
+        }
+    }
+
+    public static class DecoderInfo {
+
+        private int index;
+        private String typeAlias;
+        private List<Map.Entry<String,String>> decodeParams;
+
+        private DecoderInfo(int index, String typeAlias, List<Map.Entry<String, String>> decodeParams) {
+            this.index = index;
+            this.typeAlias = typeAlias;
+            this.decodeParams = decodeParams;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public String getTypeAlias() {
+            return typeAlias;
+        }
+
+        public List<Map.Entry<String, String>> getDecodeParams() {
+            return decodeParams;
+        }
+    }
+}
@@ -17,7 +17,6 @@ package org.milyn.ejc;
 
 import org.milyn.config.Configurable;
 import org.milyn.edisax.model.internal.*;
-import org.milyn.edisax.util.EDIUtils;
 import org.milyn.javabean.DataDecoder;
 import org.milyn.javabean.DataEncoder;
 import org.milyn.javabean.decoders.DABigDecimalDecoder;
@@ -26,9 +25,9 @@ import org.milyn.javabean.pojogen.JMethod;
 import org.milyn.javabean.pojogen.JNamedType;
 import org.milyn.javabean.pojogen.JType;
 import org.milyn.smooks.edi.EDIWritable;
+import org.milyn.smooks.edi.EDIWriter;
 
 import java.io.IOException;
-import java.io.StringWriter;
 import java.io.Writer;
 import java.util.*;
 
@@ -41,7 +40,6 @@ class WriteMethod extends JMethod {
 
     private JClass jClass;
     private MappingNode mappingNode;
-    private boolean appendFlush = false;
     private boolean trunacate;
     private DelimiterType terminatingDelimiter;
 
@@ -56,13 +54,8 @@ class WriteMethod extends JMethod {
         this.mappingNode = mappingNode;
         this.trunacate = (mappingNode instanceof ContainerNode && ((ContainerNode)mappingNode).isTruncatable());
 
-        if(trunacate) {
-            jClass.getRawImports().add(new JType(StringWriter.class));
-            jClass.getRawImports().add(new JType(List.class));
-            jClass.getRawImports().add(new JType(ArrayList.class));
-            jClass.getRawImports().add(new JType(EDIUtils.class));
-            jClass.getRawImports().add(new JType(DelimiterType.class));
-        }
+        jClass.getRawImports().add(new JType(EDIWriter.class));
+        jClass.getRawImports().add(new JType(DelimiterType.class));
     }
 
     public void writeObject(JNamedType property, DelimiterType delimiterType, BindingConfig bindingConfig, MappingNode mappingNode) {
@@ -75,13 +68,12 @@ class WriteMethod extends JMethod {
         if(mappingNode instanceof Segment) {
             if(!((Segment) mappingNode).getFields().isEmpty() && (bindingConfig.getParent() == null || bodyLength() > 0)) {
                 appendToBody("\n            nodeWriter.write(\"" + ((Segment)mappingNode).getSegcode() + "\");");
-                appendToBody("\n            nodeWriter.write(delimiters.getField());");
+                appendToBody("\n            nodeWriter.writeDelimiter(DelimiterType.FIELD);");
             }
         }
         appendToBody("\n            " + property.getName() + ".write(nodeWriter, delimiters);");
         if(trunacate) {
-            appendToBody("\n            nodeTokens.add(nodeWriter.toString());");
-            appendToBody("\n            ((StringWriter)nodeWriter).getBuffer().setLength(0);");
+            appendToBody("\n            nodeWriter.endToken();");
         }
         appendToBody("\n        }");
     }
@@ -125,17 +117,16 @@ class WriteMethod extends JMethod {
 
             // Add the encoder encode instruction to te write method...
             if (decoderClass == DABigDecimalDecoder.class){
-                appendToBody("\n            nodeWriter.write(delimiters.escape(" + encoderName + ".encode(" + property.getName() + ", delimiters)));");
+                appendToBody("\n            nodeWriter.writeEscaped(" + encoderName + ".encode(" + property.getName() + ", delimiters));");
             } else {
-                appendToBody("\n            nodeWriter.write(delimiters.escape(" + encoderName + ".encode(" + property.getName() + ")));");
+                appendToBody("\n            nodeWriter.writeEscaped(" + encoderName + ".encode(" + property.getName() + "));");
             }
         } else {
-            appendToBody("\n            nodeWriter.write(delimiters.escape(" + property.getName() + ".toString()));");
+            appendToBody("\n            nodeWriter.writeEscaped(" + property.getName() + ".toString());");
         }
 
         if(trunacate) {
-            appendToBody("\n            nodeTokens.add(nodeWriter.toString());");
-            appendToBody("\n            ((StringWriter)nodeWriter).getBuffer().setLength(0);");
+            appendToBody("\n            nodeWriter.endToken();");
         }
 
         appendToBody("\n        }");
@@ -147,10 +138,9 @@ class WriteMethod extends JMethod {
 
         if(segmentGroup instanceof Segment && !((Segment) segmentGroup).getFields().isEmpty()) {
             appendToBody("\n                nodeWriter.write(\"" + segmentGroup.getSegcode() + "\");");
-            appendToBody("\n                nodeWriter.write(delimiters.getField());");
+            appendToBody("\n                nodeWriter.writeDelimiter(DelimiterType.FIELD);");
             if(trunacate) {
-                appendToBody("\n                nodeTokens.add(nodeWriter.toString());");
-                appendToBody("\n                ((StringWriter)nodeWriter).getBuffer().setLength(0);");
+                appendToBody("\n                nodeWriter.endToken();");
             }
         }
 
@@ -163,71 +153,46 @@ class WriteMethod extends JMethod {
     public String getBody() {
         StringBuilder builder = new StringBuilder();
 
+        builder.append("\n        EDIWriter nodeWriter = EDIWriter.getWriter(writer, delimiters);\n");
         if(trunacate) {
-            builder.append("\n        Writer nodeWriter = new StringWriter();\n");
-            builder.append("\n        List<String> nodeTokens = new ArrayList<String>();\n");
-        } else {
-            builder.append("\n        Writer nodeWriter = writer;\n");
+            builder.append("\n        nodeWriter.startNode();\n");
         }
 
         builder.append(super.getBody());
 
         if(trunacate) {
-            builder.append("\n        nodeTokens.add(nodeWriter.toString());");
             if(mappingNode instanceof Segment) {
-                builder.append("\n        writer.write(EDIUtils.concatAndTruncate(nodeTokens, DelimiterType.FIELD, delimiters));");
+                builder.append("\n        nodeWriter.endNode(DelimiterType.FIELD);");
             } else if(mappingNode instanceof Field) {
-                builder.append("\n        writer.write(EDIUtils.concatAndTruncate(nodeTokens, DelimiterType.COMPONENT, delimiters));");
+                builder.append("\n        nodeWriter.endNode(DelimiterType.COMPONENT);");
             } else if(mappingNode instanceof Component) {
-                builder.append("\n        writer.write(EDIUtils.concatAndTruncate(nodeTokens, DelimiterType.SUBCOMPONENT, delimiters));");
+                builder.append("\n        nodeWriter.endNode(DelimiterType.SUB_COMPONENT);");
             }
         }
 
         if(terminatingDelimiter != null) {
-            writeDelimiter(terminatingDelimiter, "writer", builder);
-        }
-        if(appendFlush) {
-            builder.append("\n        writer.flush();");
+            writeDelimiter(terminatingDelimiter, builder);
         }
 
+        // Only flush the EDIWriter if it was created in this method.  Otherwise it's
+        // flushed by its owner...
+        builder.append("\n        if(nodeWriter != writer) {");
+        builder.append("\n            nodeWriter.flush();");
+        builder.append("\n        }");
+
         return builder.toString();
     }
 
     public void writeDelimiter(DelimiterType delimiterType) {
-        writeDelimiter(delimiterType, "nodeWriter", getBodyBuilder());
+        writeDelimiter(delimiterType, getBodyBuilder());
     }
 
-    private void writeDelimiter(DelimiterType delimiterType, String writerVariableName, StringBuilder builder) {
+    private void writeDelimiter(DelimiterType delimiterType, StringBuilder builder) {
         if(bodyLength() == 0) {
             return;
         }
 
-        switch (delimiterType) {
-            case SEGMENT:
-                builder.append("\n        " + writerVariableName + ".write(delimiters.getSegmentDelimiter());");
-                break;
-            case FIELD:
-                builder.append("\n        " + writerVariableName + ".write(delimiters.getField());");
-                break;
-            case FIELD_REPEAT:
-                builder.append("\n        " + writerVariableName + ".write(delimiters.getFieldRepeat());");
-                break;
-            case COMPONENT:
-                builder.append("\n        " + writerVariableName + ".write(delimiters.getComponent());");
-                break;
-            case SUB_COMPONENT:
-                builder.append("\n        " + writerVariableName + ".write(delimiters.getSubComponent());");
-                break;
-            case DECIMAL_SEPARATOR:
-                builder.append("\n        " + writerVariableName + ".write(delimiters.getDecimalSeparator());");
-                break;
-            default:
-                throw new UnsupportedOperationException("Unsupported '" + DelimiterType.class.getName() + "' enum conversion.  Enum '" + delimiterType + "' not specified in switch statement.");
-        }
-    }
-
-    public void addFlush() {
-        appendFlush = true;
+        builder.append("\n        nodeWriter.writeDelimiter(DelimiterType." + delimiterType.name() + ");");
     }
 
     public void addTerminatingDelimiter(DelimiterType delimiterType) {
@@ -25,6 +25,7 @@ import org.milyn.archive.Archive;
 import org.milyn.archive.ArchiveClassLoader;
 import org.milyn.edisax.EDIConfigurationException;
 import org.milyn.io.StreamUtils;
+import org.milyn.payload.JavaResult;
 import org.milyn.test.ant.AntRunner;
 import org.xml.sax.SAXException;
 
@@ -153,6 +154,19 @@ public class EJCTestUtil {
             }
 
             TestCase.assertEquals(StreamUtils.normalizeLines(ediMessage, false).trim(), ediOut.toString().trim());
+
+            // Requesting additional results bypasses the generated unmarshaller and filters the message
+            // through Smooks.  Make sure both produce the same model...
+            StringWriter smooksEdiOut = new StringWriter();
+            try {
+                Object smooksModelInstance = factoryClass.getMethod("fromEDI", new Class[] {Reader.class, Result[].class}).invoke(factoryInstance, new StringReader(ediMessage), new Result[] {new JavaResult()});
+                findToEDIMethod(factoryClass).invoke(factoryInstance, smooksModelInstance, smooksEdiOut);
+            } catch (Exception e) {
+                e.printStackTrace();
+                TestCase.fail("Exception filtering the EDI message through Smooks: " + e.getMessage());
+            }
+
+            TestCase.assertEquals(smooksEdiOut.toString(), ediOut.toString());
         } finally {
             Thread.currentThread().setContextClassLoader(classLoader.getParent());
         }
@@ -0,0 +1,160 @@
+/*
+ * Milyn - Copyright (C) 2006 - 2010
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License (version 2.1) as published
+ * by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.
+ *
+ * See the GNU Lesser General Public License for more details:
+ * http://www.gnu.org/licenses/lgpl.txt
+ */
+package org.milyn.benchmark;
+
+import java.io.UnsupportedEncodingException;
+
+/**
+ * Benchmark message generator.
+ * <p/>
+ * Generates the same "order" message in each of the supported input formats, with
+ * a configurable number of order items (records).  Messages are generated once per
+ * benchmark trial (in the <code>@Setup</code> method), so generation cost is not measured.
+ */
+public abstract class BenchmarkMessages {
+
+    /**
+     * Name of the EDI/UN-EDIFACT mapping model resource used by the EDI benchmarks.
+     */
+    public static final String ORDERS_MAPPING_MODEL = "/org/milyn/benchmark/orders-mapping.xml";
+
+    public static byte[] xml(int items) {
+        StringBuilder message = new StringBuilder(items * 100 + 200);
+
+        message.append("<order>");
+        message.append("<header><orderId>1</orderId><customer>Acme Corporation</customer><date>2010-10-18</date></header>");
+        message.append("<items>");
+        for(int i = 0; i < items; i++) {
+            message.append("<item><productId>").append(productId(i)).append("</productId>");
+            message.append("<quantity>").append(quantity(i)).append("</quantity>");
+            message.append("<price>").append(price(i)).append("</price></item>");
+        }
+        message.append("</items>");
+        message.append("</order>");
+
+        return toBytes(message);
+    }
+
+    public static byte[] csv(int items) {
+        StringBuilder message = new StringBuilder(items * 30);
+
+        for(int i = 0; i < items; i++) {
+            message.append(productId(i)).append(',').append(quantity(i)).append(',').append(price(i)).append('\n');
+        }
+
+        return toBytes(message);
+    }
+
+    public static byte[] fixedLength(int items) {
+        StringBuilder message = new StringBuilder(items * 30);
+
+        for(int i = 0; i < items; i++) {
+            pad(message, productId(i), 10);
+            pad(message, Integer.toString(quantity(i)), 5);
+            pad(message, price(i), 10);
+            message.append('\n');
+        }
+
+        return toBytes(message);
+    }
+
+    public static byte[] json(int items) {
+        StringBuilder message = new StringBuilder(items * 60 + 200);
+
+        message.append("{\"order\":{\"header\":{\"orderId\":1,\"customer\":\"Acme Corporation\",\"date\":\"2010-10-18\"},\"items\":[");
+        for(int i = 0; i < items; i++) {
+            if(i > 0) {
+                message.append(',');
+            }
+            message.append("{\"productId\":\"").append(productId(i)).append("\",");
+            message.append("\"quantity\":").append(quantity(i)).append(',');
+            message.append("\"price\":").append(price(i)).append('}');
+        }
+        message.append("]}}");
+
+        return toBytes(message);
+    }
+
+    /**
+     * Generate a (non UN/EDIFACT) EDI order message, as defined by the {@link #ORDERS_MAPPING_MODEL}.
+     * @param items The number of order items.
+     * @return The message.
+     */
+    public static byte[] edi(int items) {
+        StringBuilder message = new StringBuilder(items * 30 + 100);
+
+        appendEDIOrder(message, items);
+
+        return toBytes(message);
+    }
+
+    /**
+     * Generate a UN/EDIFACT interchange containing a number of order messages, as
+     * defined by the {@link #ORDERS_MAPPING_MODEL}.
+     * @param messages The number of messages in the interchange.
+     * @param itemsPerMessage The number of order items in each message.
+     * @return The interchange.
+     */
+    public static byte[] unedifact(int messages, int itemsPerMessage) {
+        StringBuilder interchange = new StringBuilder(messages * (itemsPerMessage * 30 + 150));
+
+        interchange.append("UNA:+.? '");
+        interchange.append("UNB+UNOA:1+Acme:1+Recipient:1+101018:1200+1'");
+        for(int i = 0; i < messages; i++) {
+            String messageRef = Integer.toString(i + 1);
+
+            interchange.append("UNH+").append(messageRef).append("+ORDERS:D:93A:UN'");
+            appendEDIOrder(interchange, itemsPerMessage);
+            interchange.append("UNT+").append(itemsPerMessage + 3).append('+').append(messageRef).append('\'');
+        }
+        interchange.append("UNZ+").append(messages).append("+1'");
+
+        return toBytes(interchange);
+    }
+
+    private static void appendEDIOrder(StringBuilder message, int items) {
+        message.append("HDR+1+Acme Corporation+20101018'");
+        for(int i = 0; i < items; i++) {
+            message.append("ITM+").append(productId(i)).append('+').append(quantity(i)).append('+').append(price(i)).append('\'');
+        }
+    }
+
+    private static String productId(int index) {
+        return "P" + (index % 10000);
+    }
+
+    private static int quantity(int index) {
+        return (index % 9) + 1;
+    }
+
+    private static String price(int index) {
+        return (index % 100) + "." + (index % 90 + 10);
+    }
+
+    private static void pad(StringBuilder message, String value, int length) {
+        message.append(value);
+        for(int i = value.length(); i < length; i++) {
+            message.append(' ');
+        }
+    }
+
+    private static byte[] toBytes(StringBuilder message) {
+        try {
+            return message.toString().getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException("Unexpected exception.  UTF-8 is known to be supported.", e);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Milyn - Copyright (C) 2006 - 2010
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License (version 2.1) as published
+ * by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.
+ *
+ * See the GNU Lesser General Public License for more details:
+ * http://www.gnu.org/licenses/lgpl.txt
+ */
+package org.milyn.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.milyn.edisax.EDIConfigurationException;
+import org.milyn.edisax.EDIParser;
+import org.milyn.edisax.model.EdifactModel;
+import org.milyn.edisax.unedifact.UNEdifactInterchangeParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * {@link EDIParser} and {@link UNEdifactInterchangeParser} benchmarks.
+ * <p/>
+ * The parsers are driven directly (outside of Smooks), delivering the SAX events to a no-op
+ * handler.  The mapping model is parsed once per trial, as it would be cached by the Smooks
+ * EDI reader.  The UN/EDIFACT interchange contains "items / 10" messages of 10 items each.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EDIParserBenchmark {
+
+    private static final int ITEMS_PER_INTERCHANGE_MESSAGE = 10;
+
+    @Param({"10", "1000", "50000"})
+    public int items;
+
+    private EdifactModel mappingModel;
+    private byte[] ediMessage;
+    private byte[] unedifactInterchange;
+
+    @Setup
+    public void setUp() throws IOException, SAXException, EDIConfigurationException {
+        mappingModel = EDIParser.parseMappingModel(getClass().getResourceAsStream(BenchmarkMessages.ORDERS_MAPPING_MODEL));
+        ediMessage = BenchmarkMessages.edi(items);
+        unedifactInterchange = BenchmarkMessages.unedifact(Math.max(1, items / ITEMS_PER_INTERCHANGE_MESSAGE), ITEMS_PER_INTERCHANGE_MESSAGE);
+    }
+
+    @Benchmark
+    public void ediParser() throws IOException, SAXException {
+        EDIParser parser = new EDIParser();
+
+        parser.setMappingModel(mappingModel);
+        parser.setContentHandler(new DefaultHandler());
+        parser.parse(new InputSource(new ByteArrayInputStream(ediMessage)));
+    }
+
+    @Benchmark
+    public void unedifactInterchangeParser() throws IOException, SAXException {
+        UNEdifactInterchangeParser parser = new UNEdifactInterchangeParser();
+
+        parser.addMappingModel(mappingModel);
+        parser.setContentHandler(new DefaultHandler());
+        parser.parse(new InputSource(new ByteArrayInputStream(unedifactInterchange)));
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Milyn - Copyright (C) 2006 - 2010
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License (version 2.1) as published
+ * by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.
+ *
+ * See the GNU Lesser General Public License for more details:
+ * http://www.gnu.org/licenses/lgpl.txt
+ */
+package org.milyn.benchmark;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.milyn.edisax.model.internal.DelimiterType;
+import org.milyn.edisax.model.internal.Delimiters;
+import org.milyn.edisax.util.EDIUtils;
+import org.milyn.smooks.edi.EDIWritable;
+import org.milyn.smooks.edi.EDIWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link EDIWritable} serialization benchmarks.
+ * <p/>
+ * Serializes an order message of "items" truncatable item segments (some with trailing empty
+ * fields and values requiring escaping).  The segment classes mirror the write methods generated
+ * by the EJC: "stringWriter" uses the previous per segment StringWriter, token list and
+ * {@link EDIUtils#concatAndTruncate(List, DelimiterType, Delimiters)} code, while "ediWriter"
+ * uses the current {@link EDIWriter} based code.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EDIWriterBenchmark {
+
+    @Param({"10", "1000", "50000"})
+    public int items;
+
+    private Delimiters delimiters;
+    private List<EDIWritable> stringWriterSegments;
+    private List<EDIWritable> ediWriterSegments;
+
+    @Setup
+    public void setUp() {
+        delimiters = new Delimiters().setSegment("'").setField("+").setComponent(":").setEscape("?").setDecimalSeparator(".");
+        stringWriterSegments = new ArrayList<EDIWritable>();
+        ediWriterSegments = new ArrayList<EDIWritable>();
+
+        for(int i = 0; i < items; i++) {
+            String productId = "PROD-" + i;
+            String title = (i % 10 == 0 ? "Item+" + i + "?" : "Item " + i);
+            String quantity = Integer.toString(i % 5 + 1);
+            String price = (i % 3 == 0 ? null : (i % 100) + ".99");
+
+            stringWriterSegments.add(new StringWriterItem(productId, title, quantity, price));
+            ediWriterSegments.add(new EDIWriterItem(productId, title, quantity, price));
+        }
+    }
+
+    @Benchmark
+    public String stringWriter() throws IOException {
+        StringWriter writer = new StringWriter();
+
+        for(EDIWritable segment : stringWriterSegments) {
+            segment.write(writer, delimiters);
+        }
+
+        return writer.toString();
+    }
+
+    @Benchmark
+    public String ediWriter() throws IOException {
+        StringWriter writer = new StringWriter();
+        EDIWriter ediWriter = new EDIWriter(writer, delimiters);
+
+        // Same as a generated message class: wrap once and pass the writer down...
+        for(EDIWritable segment : ediWriterSegments) {
+            segment.write(ediWriter, delimiters);
+        }
+        ediWriter.flush();
+
+        return writer.toString();
+    }
+
+    private static abstract class Item implements EDIWritable {
+
+        protected String productId;
+        protected String title;
+        protected String quantity;
+        protected String price;
+        protected String discount;
+
+        private Item(String productId, String title, String quantity, String price) {
+            this.productId = productId;
+            this.title = title;
+            this.quantity = quantity;
+            this.price = price;
+        }
+    }
+
+    private static class StringWriterItem extends Item {
+
+        private StringWriterItem(String productId, String title, String quantity, String price) {
+            super(productId, title, quantity, price);
+        }
+
+        public void write(Writer writer, Delimiters delimiters) throws IOException {
+            Writer nodeWriter = new StringWriter();
+            List<String> nodeTokens = new ArrayList<String>();
+
+            nodeWriter.write("ORI");
+            nodeWriter.write(delimiters.getField());
+            nodeTokens.add(nodeWriter.toString());
+            ((StringWriter) nodeWriter).getBuffer().setLength(0);
+            if(productId != null) {
+                nodeWriter.write(delimiters.escape(productId));
+                nodeTokens.add(nodeWriter.toString());
+                ((StringWriter) nodeWriter).getBuffer().setLength(0);
+            }
+            nodeWriter.write(delimiters.getField());
+            if(title != null) {
+                nodeWriter.write(delimiters.escape(title));
+                nodeTokens.add(nodeWriter.toString());
+                ((StringWriter) nodeWriter).getBuffer().setLength(0);
+            }
+            nodeWriter.write(delimiters.getField());
+            if(quantity != null) {
+                nodeWriter.write(delimiters.escape(quantity));
+                nodeTokens.add(nodeWriter.toString());
+                ((StringWriter) nodeWriter).getBuffer().setLength(0);
+            }
+            nodeWriter.write(delimiters.getField());
+            if(price != null) {
+                nodeWriter.write(delimiters.escape(price));
+                nodeTokens.add(nodeWriter.toString());
+                ((StringWriter) nodeWriter).getBuffer().setLength(0);
+            }
+            nodeWriter.write(delimiters.getField());
+            if(discount != null) {
+                nodeWriter.write(delimiters.escape(discount));
+                nodeTokens.add(nodeWriter.toString());
+                ((StringWriter) nodeWriter).getBuffer().setLength(0);
+            }
+            nodeTokens.add(nodeWriter.toString());
+            writer.write(EDIUtils.concatAndTruncate(nodeTokens, DelimiterType.FIELD, delimiters));
+            writer.write(delimiters.getSegmentDelimiter());
+            writer.flush();
+        }
+    }
+
+    private static class EDIWriterItem extends Item {
+
+        private EDIWriterItem(String productId, String title, String quantity, String price) {
+            super(productId, title, quantity, price);
+        }
+
+        public void write(Writer writer, Delimiters delimiters) throws IOException {
+            EDIWriter nodeWriter = EDIWriter.getWriter(writer, delimiters);
+
+            nodeWriter.startNode();
+            nodeWriter.write("ORI");
+            nodeWriter.writeDelimiter(DelimiterType.FIELD);
+            nodeWriter.endToken();
+            if(productId != null) {
+                nodeWriter.writeEscaped(productId);
+                nodeWriter.endToken();
+            }
+            nodeWriter.writeDelimiter(DelimiterType.FIELD);
+            if(title != null) {
+                nodeWriter.writeEscaped(title);
+                nodeWriter.endToken();
+            }
+            nodeWriter.writeDelimiter(DelimiterType.FIELD);
+            if(quantity != null) {
+                nodeWriter.writeEscaped(quantity);
+                nodeWriter.endToken();
+            }
+            nodeWriter.writeDelimiter(DelimiterType.FIELD);
+            if(price != null) {
+                nodeWriter.writeEscaped(price);
+                nodeWriter.endToken();
+            }
+            nodeWriter.writeDelimiter(DelimiterType.FIELD);
+            if(discount != null) {
+                nodeWriter.writeEscaped(discount);
+                nodeWriter.endToken();
+            }
+            nodeWriter.endNode(DelimiterType.FIELD);
+            nodeWriter.writeDelimiter(DelimiterType.SEGMENT);
+            if(nodeWriter != writer) {
+                nodeWriter.flush();
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Milyn - Copyright (C) 2006 - 2010
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License (version 2.1) as published
+ * by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.
+ *
+ * See the GNU Lesser General Public License for more details:
+ * http://www.gnu.org/licenses/lgpl.txt
+ */
+package org.milyn.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+
+import org.milyn.FilterSettings;
+import org.milyn.Smooks;
+import org.milyn.io.NullWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Core {@link Smooks#filterSource(javax.xml.transform.Source, javax.xml.transform.Result...)} benchmark.
+ * <p/>
+ * Filters an XML order message through an otherwise unconfigured Smooks instance, in SAX
+ * and DOM modes, with and without serialization of the result (to a Writer and to a UTF-8 OutputStream).  This is the baseline cost
+ * of the filtering infrastructure (reader, execution context, visitor dispatch, serialization)
+ * on which all the other benchmarks build.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FilterBenchmark {
+
+    @Param({"SAX", "DOM"})
+    public String filter;
+
+    @Param({"10", "1000", "50000"})
+    public int items;
+
+    private Smooks smooks;
+    private byte[] message;
+
+    @Setup
+    public void setUp() {
+        smooks = new Smooks();
+        smooks.setFilterSettings("DOM".equals(filter) ? FilterSettings.DEFAULT_DOM : FilterSettings.DEFAULT_SAX);
+        smooks.createExecutionContext(); // Forces initialization of the Smooks instance
+        message = BenchmarkMessages.xml(items);
+    }
+
+    @TearDown
+    public void tearDown() {
+        smooks.close();
+    }
+
+    @Benchmark
+    public void filter() {
+        smooks.filterSource(new StreamSource(new ByteArrayInputStream(message)));
+    }
+
+    @Benchmark
+    public void filterAndSerialize() {
+        smooks.filterSource(new StreamSource(new ByteArrayInputStream(message)), new StreamResult(new NullWriter()));
+    }
+
+    @Benchmark
+    public void filterAndSerializeToStream() {
+        smooks.filterSource(new StreamSource(new ByteArrayInputStream(message)), new StreamResult(new NullOutputStream()));
+    }
+
+    private static class NullOutputStream extends OutputStream {
+        public void write(int b) {
+        }
+
+        public void write(byte[] bytes, int offset, int length) {
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Milyn - Copyright (C) 2006 - 2010
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License (version 2.1) as published
+ * by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.
+ *
+ * See the GNU Lesser General Public License for more details:
+ * http://www.gnu.org/licenses/lgpl.txt
+ */
+package org.milyn.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.transform.stream.StreamSource;
+
+import org.milyn.FilterSettings;
+import org.milyn.Smooks;
+import org.milyn.benchmark.model.Order;
+import org.milyn.benchmark.model.OrderItem;
+import org.milyn.csv.CSVBinding;
+import org.milyn.csv.CSVBindingType;
+import org.milyn.csv.CSVReaderConfigurator;
+import org.milyn.javabean.Bean;
+import org.milyn.payload.JavaResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Java binding benchmarks.
+ * <p/>
+ * Binds the XML order message to an {@link Order} bean graph (SAX and DOM), and the CSV order
+ * items to a list of {@link OrderItem} beans.  The bound beans are returned from the benchmark
+ * methods so they are not optimized away.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JavaBeanBindingBenchmark {
+
+    @Param({"SAX", "DOM"})
+    public String filter;
+
+    @Param({"10", "1000", "50000"})
+    public int items;
+
+    private Smooks xmlSmooks;
+    private Smooks csvSmooks;
+    private byte[] xmlMessage;
+    private byte[] csvMessage;
+
+    @Setup
+    public void setUp() {
+        FilterSettings filterSettings = ("DOM".equals(filter) ? FilterSettings.DEFAULT_DOM : FilterSettings.DEFAULT_SAX);
+
+        Bean orderBean = new Bean(Order.class, "order", "/order");
+        orderBean.bindTo("orderId", "order/header/orderId")
+                 .bindTo("customer", "order/header/customer")
+                 .bindTo("items", orderBean.newBean(ArrayList.class, "order/items")
+                     .bindTo(orderBean.newBean(OrderItem.class, "order/items/item")
+                         .bindTo("productId", "item/productId")
+                         .bindTo("quantity", "item/quantity")
+                         .bindTo("price", "item/price")));
+
+        xmlSmooks = new Smooks();
+        xmlSmooks.setFilterSettings(filterSettings);
+        xmlSmooks.addVisitor(orderBean);
+        xmlMessage = BenchmarkMessages.xml(items);
+
+        csvSmooks = new Smooks();
+        csvSmooks.setFilterSettings(filterSettings);
+        csvSmooks.setReaderConfig(new CSVReaderConfigurator("productId,quantity,price")
+                .setBinding(new CSVBinding("items", OrderItem.class, CSVBindingType.LIST)));
+        csvMessage = BenchmarkMessages.csv(items);
+    }
+
+    @TearDown
+    public void tearDown() {
+        xmlSmooks.close();
+        csvSmooks.close();
+    }
+
+    @Benchmark
+    public Object xmlToJava() {
+        JavaResult result = new JavaResult();
+        xmlSmooks.filterSource(new StreamSource(new ByteArrayInputStream(xmlMessage)), result);
+        return result.getBean("order");
+    }
+
+    @Benchmark
+    public Object csvToJava() {
+        JavaResult result = new JavaResult();
+        csvSmooks.filterSource(new StreamSource(new ByteArrayInputStream(csvMessage)), result);
+        return result.getBean("items");
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Milyn - Copyright (C) 2006 - 2010
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License (version 2.1) as published
+ * by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.
+ *
+ * See the GNU Lesser General Public License for more details:
+ * http://www.gnu.org/licenses/lgpl.txt
+ */
+package org.milyn.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.transform.stream.StreamSource;
+
+import org.milyn.FilterSettings;
+import org.milyn.Smooks;
+import org.milyn.csv.CSVReader;
+import org.milyn.csv.CSVReaderConfigurator;
+import org.milyn.fixedlength.FixedLengthReader;
+import org.milyn.fixedlength.FixedLengthReaderConfigurator;
+import org.milyn.json.JSONReader;
+import org.milyn.json.JSONReaderConfigurator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Non-XML reader benchmarks ({@link CSVReader}, {@link FixedLengthReader} and {@link JSONReader}).
+ * <p/>
+ * Each message is filtered in SAX mode with no visitors and no result, so the measurement is
+ * dominated by the reader and the SAX event dispatch.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReaderBenchmark {
+
+    @Param({"10", "1000", "50000"})
+    public int items;
+
+    private Smooks csvSmooks;
+    private Smooks fixedLengthSmooks;
+    private Smooks jsonSmooks;
+    private byte[] csvMessage;
+    private byte[] fixedLengthMessage;
+    private byte[] jsonMessage;
+
+    @Setup
+    public void setUp() {
+        csvSmooks = newSmooks();
+        csvSmooks.setReaderConfig(new CSVReaderConfigurator("productId,quantity,price"));
+        csvMessage = BenchmarkMessages.csv(items);
+
+        fixedLengthSmooks = newSmooks();
+        fixedLengthSmooks.setReaderConfig(new FixedLengthReaderConfigurator("productId[10].trim,quantity[5].trim,price[10].trim"));
+        fixedLengthMessage = BenchmarkMessages.fixedLength(items);
+
+        jsonSmooks = newSmooks();
+        jsonSmooks.setReaderConfig(new JSONReaderConfigurator());
+        jsonMessage = BenchmarkMessages.json(items);
+    }
+
+    @TearDown
+    public void tearDown() {
+        csvSmooks.close();
+        fixedLengthSmooks.close();
+        jsonSmooks.close();
+    }
+
+    @Benchmark
+    public void csv() {
+        csvSmooks.filterSource(new StreamSource(new ByteArrayInputStream(csvMessage)));
+    }
+
+    @Benchmark
+    public void fixedLength() {
+        fixedLengthSmooks.filterSource(new StreamSource(new ByteArrayInputStream(fixedLengthMessage)));
+    }
+
+    @Benchmark
+    public void json() {
+        jsonSmooks.filterSource(new StreamSource(new ByteArrayInputStream(jsonMessage)));
+    }
+
+    private static Smooks newSmooks() {
+        Smooks smooks = new Smooks();
+        smooks.setFilterSettings(FilterSettings.DEFAULT_SAX);
+        return smooks;
+    }
+}
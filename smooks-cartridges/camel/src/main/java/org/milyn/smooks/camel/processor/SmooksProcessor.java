@@ -35,20 +35,38 @@ import org.apache.camel.Exchange;
 import org.apache.camel.Message;
 import org.apache.camel.Processor;
 import org.apache.camel.Service;
+import org.apache.camel.StreamCache;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.milyn.Smooks;
+import org.milyn.SmooksException;
 import org.milyn.container.ExecutionContext;
 import org.milyn.delivery.Visitor;
 import org.milyn.delivery.VisitorAppender;
 import org.milyn.event.report.HtmlReportGenerator;
 import org.milyn.payload.Exports;
+import org.milyn.smooks.camel.routing.BeanRouter;
 import org.w3c.dom.Node;
 import org.xml.sax.SAXException;
 
 /**
  * Smooks {@link Processor} for Camel.
- * 
+ * <p/>
+ * <h3>Stream Input</h3>
+ * When <code>streamInput</code> is set to "true", the message body is filtered as a stream
+ * and is never converted to an in-memory representation:
+ * <ul>
+ * <li>A {@link StreamCache} body (e.g. a body cached to a temporary file by Camel stream caching)
+ * is reset and streamed from the start.</li>
+ * <li>Other bodies (e.g. files) are converted to an {@link InputStream} through the Camel type
+ * converters before falling back to a {@link Source} conversion.</li>
+ * <li>The {@link Exchange#CHARSET_NAME} exchange property, if set, is used as the content encoding.</li>
+ * </ul>
+ * Example usage:
+ * <pre>
+ * from(&quot;file://input&quot;).streamCaching().to(&quot;smooks://smooks-config.xml?streamInput=true&quot;)
+ * </pre>
+ *
  * @author Christian Mueller
  * @author Daniel Bevenius
  */
@@ -59,6 +77,7 @@ public class SmooksProcessor implements Processor, Service, CamelContextAware
     private Smooks smooks;
     private String configUri;
     private String reportPath;
+    private boolean streamInput;
 
     private Set<VisitorAppender> visitorAppenders = new HashSet<VisitorAppender>();
     private Map<String, Visitor> selectorVisitorMap = new HashMap<String, Visitor>();
@@ -83,20 +102,32 @@ public class SmooksProcessor implements Processor, Service, CamelContextAware
         exchange.getIn().setHeader(SMOOKS_EXECUTION_CONTEXT, executionContext);
         setupSmooksReporting(executionContext);
 
+        final Source source = (streamInput ? getStreamSource(exchange, executionContext) : getSource(exchange));
         final Exports exports = Exports.getExports(smooks.getApplicationContext());
         if (exports.hasExports())
         {
             final Result[] results = exports.createResults();
-	        smooks.filterSource(executionContext, getSource(exchange), results);
+	        smooks.filterSource(executionContext, source, results);
+	        assertNoAsyncRoutingError(executionContext);
 	        setResultOnBody(exports, results, exchange);
         }
         else
 		{
-	        smooks.filterSource(executionContext, getSource(exchange));
+	        smooks.filterSource(executionContext, source);
+	        assertNoAsyncRoutingError(executionContext);
         }
         
         executionContext.removeAttribute(Exchange.class);
     }
+
+    private void assertNoAsyncRoutingError(final ExecutionContext executionContext)
+    {
+        final Throwable asyncRoutingError = BeanRouter.getAsyncRoutingError(executionContext);
+        if (asyncRoutingError != null)
+        {
+            throw new SmooksException("Asynchronous bean routing failed.", asyncRoutingError);
+        }
+    }
     
     protected void setResultOnBody(final Exports exports, final Result[] results, final Exchange exchange)
     {
@@ -130,8 +161,39 @@ public class SmooksProcessor implements Processor, Service, CamelContextAware
 
     private Source getSource(final Exchange exchange)
     {
-        Object payload = exchange.getIn().getBody();
+        return toSource(exchange.getIn().getBody(), exchange);
+    }
+
+    private Source getStreamSource(final Exchange exchange, final ExecutionContext executionContext)
+    {
+        final Message in = exchange.getIn();
+        Object payload = in.getBody();
+
+        if(payload instanceof StreamCache)
+        {
+            // May already have been read by an earlier processor...
+            ((StreamCache) payload).reset();
+        }
+        else if(!(payload instanceof Source || payload instanceof Node || payload instanceof InputStream || payload instanceof Reader || payload instanceof String))
+        {
+            final InputStream stream = in.getBody(InputStream.class);
+            if(stream != null)
+            {
+                payload = stream;
+            }
+        }
+
+        final String charset = exchange.getProperty(Exchange.CHARSET_NAME, String.class);
+        if(charset != null)
+        {
+            executionContext.setContentEncoding(charset);
+        }
 
+        return toSource(payload, exchange);
+    }
+
+    private Source toSource(final Object payload, final Exchange exchange)
+    {
         if(payload instanceof Source) 
         {
             return (Source) payload;
@@ -199,6 +261,21 @@ public class SmooksProcessor implements Processor, Service, CamelContextAware
         this.reportPath = reportPath;
     }
 
+    /**
+     * Turn stream input mode on/off.
+     *
+     * @param streamInput True if the message body is to be filtered as a stream, otherwise false.
+     */
+    public void setStreamInput(boolean streamInput)
+    {
+        this.streamInput = streamInput;
+    }
+
+    public boolean isStreamInput()
+    {
+        return streamInput;
+    }
+
     public void start() throws Exception
     {
         if (smooks == null)
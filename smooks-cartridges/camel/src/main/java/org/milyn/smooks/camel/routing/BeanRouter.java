@@ -16,8 +16,14 @@
 package org.milyn.smooks.camel.routing;
 
 import java.io.IOException;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.camel.*;
+import org.apache.camel.spi.Synchronization;
 import org.milyn.SmooksException;
 import org.milyn.assertion.AssertArgument;
 import org.milyn.cdr.SmooksConfigurationException;
@@ -26,6 +32,7 @@ import org.milyn.cdr.annotation.AppContext;
 import org.milyn.cdr.annotation.Config;
 import org.milyn.cdr.annotation.ConfigParam;
 import org.milyn.container.ApplicationContext;
+import org.milyn.container.ContextKey;
 import org.milyn.container.ExecutionContext;
 import org.milyn.delivery.ExecutionLifecycleCleanable;
 import org.milyn.delivery.ExecutionLifecycleInitializable;
@@ -40,12 +47,38 @@ import org.milyn.util.FreeMarkerUtils;
 
 /**
  * Camel bean routing visitor.
- * 
+ * <p/>
+ * By default, beans are routed synchronously i.e. the filtering thread is blocked until the
+ * routed exchange has been processed by the target endpoint.
+ *
+ * <h3>Asynchronous Routing</h3>
+ * When configured with <code>async</code> set to "true", beans are routed asynchronously via
+ * the {@link ProducerTemplate} executor, so filtering is not bound by the latency of the target endpoint.
+ * <ul>
+ * <li><code>maxInFlight</code>: The maximum number of routed exchanges that can be in flight (not yet
+ * completed) at any time, per filter execution.  The filtering thread blocks (back-pressure) when
+ * this limit is reached.  Default is 100.</li>
+ * <li><code>completionTimeout</code>: The maximum time (milliseconds) the filtering thread will wait for
+ * an in-flight slot to become available and, at the end of the filter execution, for all in-flight
+ * exchanges to complete.  Default is 60000.</li>
+ * </ul>
+ * Routed beans are processed on a different thread, so they must not be modified by the
+ * filter after they have been routed.  If an asynchronously routed exchange fails, routing
+ * of subsequent beans fails and the failure is recorded on the {@link ExecutionContext}
+ * (see {@link #getAsyncRoutingError(ExecutionContext)}) when the filter execution is cleaned up.
+ *
  * @author <a href="mailto:tom.fennelly@gmail.com">tom.fennelly@gmail.com</a>
  * @author <a href="mailto:daniel.bevenius@gmail.com">daniel.bevenius@gmail.com</a>
  */
 public class BeanRouter implements SAXVisitAfter, Consumer, ExecutionLifecycleInitializable, ExecutionLifecycleCleanable {
     
+    private static final ContextKey<Throwable> ASYNC_ROUTING_ERROR_KEY = new ContextKey<Throwable>(BeanRouter.class.getName() + "#asyncRoutingError");
+    /**
+     * In-flight exchanges of the filter execution, per router instance.  A single key is shared by all
+     * router instances, as {@link ContextKey} slots are never reclaimed.
+     */
+    private static final ContextKey<Map<BeanRouter, InFlightExchanges>> IN_FLIGHT_EXCHANGES_KEY = new ContextKey<Map<BeanRouter, InFlightExchanges>>(BeanRouter.class.getName() + "#inFlightExchanges");
+
     @ConfigParam
     private String beanId;
     
@@ -57,6 +90,15 @@ public class BeanRouter implements SAXVisitAfter, Consumer, ExecutionLifecycleIn
 
     @ConfigParam(use = ConfigParam.Use.OPTIONAL)
     private FreeMarkerTemplate correlationIdPattern;
+
+    @ConfigParam(defaultVal = "false")
+    private boolean async;
+
+    @ConfigParam(defaultVal = "100")
+    private int maxInFlight = 100;
+
+    @ConfigParam(defaultVal = "60000")
+    private long completionTimeout = 60000;
     
     @AppContext
     private ApplicationContext applicationContext;
@@ -67,7 +109,7 @@ public class BeanRouter implements SAXVisitAfter, Consumer, ExecutionLifecycleIn
     private ProducerTemplate producerTemplate;
     private BeanRouterObserver camelRouterObserable;
     private CamelContext camelContext;
-    
+
     public BeanRouter() {
     }
     
@@ -93,6 +135,12 @@ public class BeanRouter implements SAXVisitAfter, Consumer, ExecutionLifecycleIn
         if(correlationIdName == null && correlationIdPattern != null) {
             throw new SmooksConfigurationException("Camel router component configured with a 'correlationIdPattern', but 'correlationIdName' is not configured.");
         }
+        if(maxInFlight < 1) {
+            throw new SmooksConfigurationException("Camel router component configured with an invalid 'maxInFlight' value of '" + maxInFlight + "'.  Must be greater than zero.");
+        }
+        if(completionTimeout < 1) {
+            throw new SmooksConfigurationException("Camel router component configured with an invalid 'completionTimeout' value of '" + completionTimeout + "'.  Must be greater than zero.");
+        }
     }
 
     /**
@@ -141,6 +189,56 @@ public class BeanRouter implements SAXVisitAfter, Consumer, ExecutionLifecycleIn
         return this;
     }
 
+    /**
+     * Turn asynchronous routing on/off.
+     *
+     * @param async True if beans are to be routed asynchronously, otherwise false.
+     * @return This router instance.
+     */
+    public BeanRouter setAsync(final boolean async) {
+        this.async = async;
+        return this;
+    }
+
+    /**
+     * Set the maximum number of asynchronously routed exchanges that can be in flight at any
+     * time, per filter execution.
+     *
+     * @param maxInFlight The maximum number of in flight exchanges.
+     * @return This router instance.
+     */
+    public BeanRouter setMaxInFlight(final int maxInFlight) {
+        if(maxInFlight < 1) {
+            throw new IllegalArgumentException("Invalid 'maxInFlight' value '" + maxInFlight + "'.  Must be greater than zero.");
+        }
+        this.maxInFlight = maxInFlight;
+        return this;
+    }
+
+    /**
+     * Set the asynchronous routing completion timeout.
+     *
+     * @param completionTimeout The timeout (milliseconds).
+     * @return This router instance.
+     */
+    public BeanRouter setCompletionTimeout(final long completionTimeout) {
+        if(completionTimeout < 1) {
+            throw new IllegalArgumentException("Invalid 'completionTimeout' value '" + completionTimeout + "'.  Must be greater than zero.");
+        }
+        this.completionTimeout = completionTimeout;
+        return this;
+    }
+
+    /**
+     * Get the asynchronous routing error recorded on the supplied {@link ExecutionContext}.
+     *
+     * @param execContext The execution context.
+     * @return The first asynchronous routing error, or null if no asynchronously routed exchange failed.
+     */
+    public static Throwable getAsyncRoutingError(final ExecutionContext execContext) {
+        return execContext.get(ASYNC_ROUTING_ERROR_KEY);
+    }
+
     public void visitAfter(final SAXElement element, final ExecutionContext execContext) throws SmooksException, IOException
     {
         final Object bean = getBeanFromExecutionContext(execContext, beanId);
@@ -154,6 +252,11 @@ public class BeanRouter implements SAXVisitAfter, Consumer, ExecutionLifecycleIn
      * @param execContext The execution context.
      */
     protected void sendBean(final Object bean, final ExecutionContext execContext) {
+        if(async) {
+            sendBeanAsync(bean, execContext);
+            return;
+        }
+
         try {
             if(correlationIdPattern != null) {
                 Processor processor = new Processor() {
@@ -172,6 +275,76 @@ public class BeanRouter implements SAXVisitAfter, Consumer, ExecutionLifecycleIn
         }
     }
     
+    private void sendBeanAsync(final Object bean, final ExecutionContext execContext) {
+        Map<BeanRouter, InFlightExchanges> inFlightExchangesMap = execContext.get(IN_FLIGHT_EXCHANGES_KEY);
+
+        if(inFlightExchangesMap == null) {
+            inFlightExchangesMap = new IdentityHashMap<BeanRouter, InFlightExchanges>();
+            execContext.set(IN_FLIGHT_EXCHANGES_KEY, inFlightExchangesMap);
+        }
+
+        InFlightExchanges inFlightExchanges = inFlightExchangesMap.get(this);
+        if(inFlightExchanges == null) {
+            inFlightExchanges = new InFlightExchanges(maxInFlight);
+            inFlightExchangesMap.put(this, inFlightExchanges);
+        } else if(inFlightExchanges.getError() != null) {
+            throw new SmooksException("Exception routing beanId '" + beanId + "' to endpoint '" + toEndpoint + "'.  A previously routed exchange failed.", inFlightExchanges.getError());
+        }
+
+        // The exchange is populated on a producer thread, so the correlationId must be generated now...
+        final String correlationId = (correlationIdPattern != null ? correlationIdPattern.apply(FreeMarkerUtils.getMergedModel(execContext)) : null);
+        Processor processor = new Processor() {
+            public void process(Exchange exchange) {
+                Message in = exchange.getIn();
+                in.setBody(bean);
+                if(correlationId != null) {
+                    in.setHeader(correlationIdName, correlationId);
+                }
+            }
+        };
+
+        inFlightExchanges.acquire(completionTimeout);
+        try {
+            producerTemplate.asyncCallback(toEndpoint, processor, inFlightExchanges);
+        }  catch (final Exception e) {
+            inFlightExchanges.release();
+            throw new SmooksException("Exception routing beanId '" + beanId + "' to endpoint '" + toEndpoint + "'.", e);
+        }
+    }
+
+    private void awaitAsyncRouting(final ExecutionContext execContext) {
+        Map<BeanRouter, InFlightExchanges> inFlightExchangesMap = execContext.get(IN_FLIGHT_EXCHANGES_KEY);
+
+        if(inFlightExchangesMap == null) {
+            return;
+        }
+
+        InFlightExchanges inFlightExchanges = inFlightExchangesMap.remove(this);
+        if(inFlightExchanges == null) {
+            return;
+        }
+        if(inFlightExchangesMap.isEmpty()) {
+            execContext.remove(IN_FLIGHT_EXCHANGES_KEY);
+        }
+
+        Throwable error;
+        if(inFlightExchanges.awaitCompletion(completionTimeout)) {
+            error = inFlightExchanges.getError();
+        } else {
+            error = new SmooksException("Timed out waiting for exchanges routed to endpoint '" + toEndpoint + "' to complete.  Waited " + completionTimeout + " milliseconds.");
+        }
+
+        if(error != null) {
+            if(execContext.get(ASYNC_ROUTING_ERROR_KEY) == null) {
+                execContext.set(ASYNC_ROUTING_ERROR_KEY, error);
+            }
+            if(execContext.getTerminationError() == null) {
+                execContext.setTerminationError(error);
+            }
+            throw new SmooksException("Exception routing beanId '" + beanId + "' to endpoint '" + toEndpoint + "'.", error);
+        }
+    }
+
     private Object getBeanFromExecutionContext(final ExecutionContext execContext, final String beanId) {
         final Object bean = execContext.getBeanContext().getBean(beanId);
         if (bean == null) {
@@ -213,8 +386,77 @@ public class BeanRouter implements SAXVisitAfter, Consumer, ExecutionLifecycleIn
     }
     
     public void executeExecutionLifecycleCleanup(ExecutionContext executionContext) {
-        if (isBeanRoutingConfigured()) {
-            executionContext.getBeanContext().removeObserver(camelRouterObserable);
+        try {
+            if (isBeanRoutingConfigured()) {
+                executionContext.getBeanContext().removeObserver(camelRouterObserable);
+            }
+        } finally {
+            if (async) {
+                awaitAsyncRouting(executionContext);
+            }
+        }
+    }
+
+    /**
+     * Asynchronously routed exchanges in flight for a filter execution.
+     */
+    private static class InFlightExchanges implements Synchronization {
+
+        private final int maxInFlight;
+        private final Semaphore permits;
+        private final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+
+        private InFlightExchanges(int maxInFlight) {
+            this.maxInFlight = maxInFlight;
+            this.permits = new Semaphore(maxInFlight);
+        }
+
+        private void acquire(long timeout) {
+            try {
+                if(!permits.tryAcquire(timeout, TimeUnit.MILLISECONDS)) {
+                    throw new SmooksException("Timed out waiting for an in-flight exchange to complete.  Waited " + timeout + " milliseconds.");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SmooksException("Interrupted waiting for an in-flight exchange to complete.", e);
+            }
+        }
+
+        private void release() {
+            permits.release();
+        }
+
+        private boolean awaitCompletion(long timeout) {
+            try {
+                if(permits.tryAcquire(maxInFlight, timeout, TimeUnit.MILLISECONDS)) {
+                    permits.release(maxInFlight);
+                    return true;
+                }
+                return false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        private Throwable getError() {
+            return error.get();
+        }
+
+        public void onComplete(Exchange exchange) {
+            release();
+        }
+
+        public void onFailure(Exchange exchange) {
+            try {
+                Throwable exception = exchange.getException();
+                if(exception == null) {
+                    exception = new SmooksException("Exchange '" + exchange.getExchangeId() + "' failed.");
+                }
+                error.compareAndSet(null, exception);
+            } finally {
+                release();
+            }
         }
     }
 
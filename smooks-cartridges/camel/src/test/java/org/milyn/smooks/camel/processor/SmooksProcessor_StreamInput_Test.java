@@ -0,0 +1,79 @@
+/*
+	Milyn - Copyright (C) 2006 - 2010
+
+	This library is free software; you can redistribute it and/or
+	modify it under the terms of the GNU Lesser General Public
+	License (version 2.1) as published by the Free Software
+	Foundation.
+
+	This library is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+	See the GNU Lesser General Public License for more details:
+	http://www.gnu.org/licenses/lgpl.txt
+*/
+package org.milyn.smooks.camel.processor;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.component.mock.MockEndpoint;
+import org.apache.camel.test.junit4.CamelTestSupport;
+import org.junit.Test;
+import org.milyn.Smooks;
+import org.milyn.payload.Exports;
+import org.milyn.payload.StringResult;
+
+/**
+ * Unit test for {@link SmooksProcessor} stream input mode.
+ */
+public class SmooksProcessor_StreamInput_Test extends CamelTestSupport {
+
+	@Test
+    public void test_file() throws Exception {
+        deleteDirectory("target/smooks-stream");
+        template.sendBody("file://target/smooks-stream", "<blah />");
+
+        MockEndpoint mock = getMockEndpoint("mock:a");
+        mock.expectedMessageCount(1);
+
+        assertMockEndpointsSatisfied();
+
+        assertEquals("<blah></blah>", mock.getExchanges().get(0).getIn().getBody(String.class));
+    }
+
+	@Test
+    public void test_charset() throws Exception {
+        MockEndpoint mock = getMockEndpoint("mock:a");
+        mock.expectedMessageCount(1);
+
+        template.sendBodyAndProperty("direct:b", "<blah>\u00e9</blah>".getBytes("ISO-8859-1"), Exchange.CHARSET_NAME, "ISO-8859-1");
+
+        assertMockEndpointsSatisfied();
+
+        assertEquals("<blah>\u00e9</blah>", mock.getExchanges().get(0).getIn().getBody(String.class));
+    }
+
+	@Override
+	protected RouteBuilder createRouteBuilder() throws Exception {
+
+        return new RouteBuilder() {
+            public void configure() {
+                SmooksProcessor fileProcessor = new SmooksProcessor(new Smooks().setExports(new Exports(StringResult.class)), context);
+                fileProcessor.setStreamInput(true);
+
+                from("file://target/smooks-stream").
+                streamCaching().
+                process(fileProcessor).
+        		to("mock:a");
+
+                SmooksProcessor bytesProcessor = new SmooksProcessor(new Smooks().setExports(new Exports(StringResult.class)), context);
+                bytesProcessor.setStreamInput(true);
+
+                from("direct:b").
+                process(bytesProcessor).
+                to("mock:a");
+            }
+        };
+	}
+}
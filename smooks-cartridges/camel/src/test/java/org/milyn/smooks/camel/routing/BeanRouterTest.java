@@ -21,6 +21,7 @@ import java.io.IOException;
 
 import org.apache.camel.CamelContext;
 import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
 import org.apache.camel.component.mock.MockEndpoint;
 import org.apache.camel.test.junit4.CamelTestSupport;
 import org.junit.Before;
@@ -87,6 +88,51 @@ public class BeanRouterTest extends CamelTestSupport
     	endpoint.expectedBodiesReceived(myBean);
     }
 
+    @Test
+    public void routeAsync() throws Exception
+    {
+        endpoint.setExpectedMessageCount(5);
+        final ExecutionContext execContext = new Smooks().createExecutionContext();
+
+        BeanRouter beanRouter = createBeanRouter(BEAN_ID, END_POINT_URI);
+        beanRouter.setAsync(true).setMaxInFlight(2);
+        for (int i = 0; i < 5; i++)
+        {
+            beanRouter.sendBean(new MyBean("bajja" + i), execContext);
+        }
+        beanRouter.executeExecutionLifecycleCleanup(execContext);
+
+        endpoint.assertIsSatisfied();
+        assertNull(BeanRouter.getAsyncRoutingError(execContext));
+    }
+
+    @Test
+    public void routeAsyncFailure() throws Exception
+    {
+        endpoint.whenAnyExchangeReceived(new Processor()
+        {
+            public void process(Exchange exchange) throws Exception
+            {
+                throw new IllegalStateException("Endpoint failure");
+            }
+        });
+        final ExecutionContext execContext = new Smooks().createExecutionContext();
+
+        BeanRouter beanRouter = createBeanRouter(BEAN_ID, END_POINT_URI);
+        beanRouter.setAsync(true);
+        beanRouter.sendBean(myBean, execContext);
+        try
+        {
+            beanRouter.executeExecutionLifecycleCleanup(execContext);
+            fail("Expected SmooksException");
+        }
+        catch (SmooksException e)
+        {
+            assertIsInstanceOf(IllegalStateException.class, BeanRouter.getAsyncRoutingError(execContext));
+            assertSame(BeanRouter.getAsyncRoutingError(execContext), execContext.getTerminationError());
+        }
+    }
+
     @Before
 	public void setupSmooksExeceutionContext() throws Exception
 	{
@@ -49,9 +49,10 @@ import org.xml.sax.SAXNotSupportedException;
 import org.xml.sax.helpers.AttributesImpl;
 
 import javax.xml.XMLConstants;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.Reader;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -114,6 +115,13 @@ import java.util.Map;
  * could look like this: firstname?trim,lastname?right_trim,gender?upper_case
  * Take a look in the Smooks manual for a list of all available functions.
  *
+ * <h3>Parallel parsing</h3>
+ * CSV files can be tokenized in parallel by setting the "parallelism" parameter to the number of tokenizer threads.  The
+ * file is split into chunks at line boundaries, with the records still being delivered in file order.  This is only applied
+ * when the source is a {@link FileInputStream} in an ASCII compatible encoding (e.g. UTF-8), and must only be enabled
+ * for CSV that does not contain quoted fields spanning multiple lines.  Otherwise, the CSV stream is tokenized on the
+ * filtering thread.
+ *
  * <h3>Ignoring Fields</h3>
  * To ignore a field in a CSV record set, just insert the string "<b>$ignore$</b>" for that field in the fields attribute.
  *
@@ -180,6 +188,9 @@ public class CSVReader implements SmooksXMLReader, VisitorAppender {
     @ConfigParam(defaultVal = "UTF-8")
     private Charset encoding;
 
+    @ConfigParam(defaultVal = "1")
+    private int parallelism;
+
     @ConfigParam(defaultVal="csv-set")
     private String rootElementName;
 
@@ -299,19 +310,18 @@ public class CSVReader implements SmooksXMLReader, VisitorAppender {
             throw new IllegalStateException("'execContext' not set.  Cannot parse CSV stream.");
         }
 
+        CSVTokenizer csvLineReader = null;
         try {
-			Reader csvStreamReader;
-			au.com.bytecode.opencsv.CSVReader csvLineReader;
-	        String[] csvRecord;
-	
-			// Get a reader for the CSV source...
-	        csvStreamReader = csvInputSource.getCharacterStream();
-	        if(csvStreamReader == null) {
-	            csvStreamReader = new InputStreamReader(csvInputSource.getByteStream(), encoding);
+	        InputStream csvByteStream = csvInputSource.getByteStream();
+
+			// Create the CSV line reader...
+	        if(csvInputSource.getCharacterStream() != null) {
+	            csvLineReader = new CSVTokenizer(csvInputSource.getCharacterStream(), separator, quoteChar, skipLines);
+	        } else if(parallelism > 1 && ParallelCSVTokenizer.isSupported(csvByteStream, encoding)) {
+	            csvLineReader = new ParallelCSVTokenizer((FileInputStream) csvByteStream, encoding, separator, quoteChar, skipLines, parallelism);
+	        } else {
+	            csvLineReader = new CSVTokenizer(new InputStreamReader(csvByteStream, encoding), separator, quoteChar, skipLines);
 	        }
-	
-	        // Create the CSV line reader...
-	        csvLineReader = new au.com.bytecode.opencsv.CSVReader(csvStreamReader, separator, quoteChar, skipLines);
 
 			if (validateHeader) {
 				validateHeader(csvLineReader);
@@ -325,11 +335,13 @@ public class CSVReader implements SmooksXMLReader, VisitorAppender {
 	        int lineNumber = 0;
 	        int expectedCount = getExpectedColumnsCount();
 	
-	        while ((csvRecord = csvLineReader.readNext()) != null) {
+	        while (csvLineReader.nextRecord()) {
+	        	int recordLength = csvLineReader.getFieldCount();
+
 	        	lineNumber++; // First line is line "1"
 	
-	        	if(csvRecord.length < expectedCount && strict) {
-	        		logger.warn("[CORRUPT-CSV] CSV line #" + lineNumber + " invalid [" + Arrays.asList(csvRecord) + "].  The line should contain number of items at least as in CSV config file " + csvFields.length + " fields [" + csvFields + "], but contains " + csvRecord.length + " fields.  Ignoring!!");
+	        	if(recordLength < expectedCount && strict) {
+	        		logger.warn("[CORRUPT-CSV] CSV line #" + lineNumber + " invalid [" + Arrays.asList(csvLineReader.getFields()) + "].  The line should contain number of items at least as in CSV config file " + csvFields.length + " fields [" + csvFields + "], but contains " + recordLength + " fields.  Ignoring!!");
 	        		continue;
 	        	}
 	
@@ -343,7 +355,7 @@ public class CSVReader implements SmooksXMLReader, VisitorAppender {
 	            // hence we first add the record number attribute on the csv-record element
 	            attrs.addAttribute(XMLConstants.NULL_NS_URI, RECORD_NUMBER_ATTR, RECORD_NUMBER_ATTR, "xs:int", Integer.toString(lineNumber));
 	            // if this line is truncated, we add the truncated attribute onto the csv-record element
-	            if (csvRecord.length < expectedCount)
+	            if (recordLength < expectedCount)
 	            	attrs.addAttribute(XMLConstants.NULL_NS_URI, RECORD_TRUNCATED_ATTR, RECORD_TRUNCATED_ATTR, "xs:boolean", Boolean.TRUE.toString());
 	            contentHandler.startElement(XMLConstants.NULL_NS_URI, recordElementName, StringUtils.EMPTY, attrs);
 	        	int recordIt = 0;
@@ -365,17 +377,17 @@ public class CSVReader implements SmooksXMLReader, VisitorAppender {
 	                }
 	
 	                // Don't insert the element if the csv record does not contain it!!
-	                if (recordIt < csvRecord.length) {
-	                	String value = csvRecord[recordIt];
-	
+	                if (recordIt < recordLength) {
 	                    contentHandler.startElement(XMLConstants.NULL_NS_URI, fieldName, StringUtils.EMPTY, EMPTY_ATTRIBS);
 	
 	                    StringFunctionExecutor stringFunctionExecutor = field.getStringFunctionExecutor();
 	                    if(stringFunctionExecutor != null) {
-	                    	value = stringFunctionExecutor.execute(value);
+	                    	String value = stringFunctionExecutor.execute(csvLineReader.getField(recordIt));
+	                    	contentHandler.characters(value.toCharArray(), 0, value.length());
+	                    } else {
+	                    	// Deliver the field directly from the tokenizer buffer...
+	                    	contentHandler.characters(csvLineReader.getBuffer(), csvLineReader.getFieldOffset(recordIt), csvLineReader.getFieldLength(recordIt));
 	                    }
-	
-	                    contentHandler.characters(value.toCharArray(), 0, value.length());
 	                    contentHandler.endElement(XMLConstants.NULL_NS_URI, fieldName, StringUtils.EMPTY);
 	                }
 	
@@ -401,18 +413,22 @@ public class CSVReader implements SmooksXMLReader, VisitorAppender {
 	        contentHandler.endElement(XMLConstants.NULL_NS_URI, rootElementName, StringUtils.EMPTY);
 	        contentHandler.endDocument();
         } finally {
+        	if(csvLineReader instanceof ParallelCSVTokenizer) {
+        		((ParallelCSVTokenizer) csvLineReader).close();
+        	}
         	// These properties need to be reset for every execution (e.g. when reader is pooled).
         	contentHandler = null;
         	execContext = null;
         }
 	}
 
-	private void validateHeader(final au.com.bytecode.opencsv.CSVReader reader) throws IOException {
-		String[] headers = reader.readNext();
-		if (headers == null) {
+	private void validateHeader(final CSVTokenizer reader) throws IOException {
+		if (!reader.nextRecord()) {
 			throw new CSVHeaderValidationException(getFieldNames(fields));
 		}
 
+		String[] headers = reader.getFields();
+
 		if (validateHeader(fields, headers)) {
 			return;
 		}
@@ -45,6 +45,7 @@ public class CSVReaderConfigurator implements ReaderConfigurator {
     private String targetProfile;
     private boolean indent = false;
     private boolean strict = true;
+    private int parallelism = 1;
 
     public CSVReaderConfigurator(String csvFields) {
         AssertArgument.isNotNullAndNotEmpty(csvFields, "csvFields");
@@ -97,6 +98,14 @@ public class CSVReaderConfigurator implements ReaderConfigurator {
         return this;
     }
 
+    public CSVReaderConfigurator setParallelism(int parallelism) {
+        if(parallelism < 1) {
+            throw new IllegalArgumentException("Invalid 'parallelism' value '" + parallelism + "'.  Must be 1 or greater.");
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
     public CSVReaderConfigurator setBinding(CSVBinding binding) {
         this.binding = binding;
         return this;
@@ -120,6 +129,7 @@ public class CSVReaderConfigurator implements ReaderConfigurator {
         configurator.getParameters().setProperty("recordElementName", recordElementName);
         configurator.getParameters().setProperty("indent", Boolean.toString(indent));
         configurator.getParameters().setProperty("strict", Boolean.toString(strict));
+        configurator.getParameters().setProperty("parallelism", Integer.toString(parallelism));
 
         if(binding != null) {
             configurator.getParameters().setProperty("bindBeanId", binding.getBeanId());
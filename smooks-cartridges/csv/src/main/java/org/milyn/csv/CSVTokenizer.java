@@ -0,0 +1,421 @@
+/*
+	Milyn - Copyright (C) 2006 - 2010
+
+	This library is free software; you can redistribute it and/or
+	modify it under the terms of the GNU Lesser General Public
+	License (version 2.1) as published by the Free Software
+	Foundation.
+
+	This library is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+	See the GNU Lesser General Public License for more details:
+	http://www.gnu.org/licenses/lgpl.txt
+*/
+
+package org.milyn.csv;
+
+import org.milyn.assertion.AssertArgument;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * CSV record tokenizer.
+ * <p/>
+ * Tokenizes CSV records directly in a large char buffer.  The fields of the current record are
+ * exposed as {@link #getBuffer() buffer} regions ({@link #getFieldOffset(int)}, {@link #getFieldLength(int)}),
+ * so no Strings are created unless asked for ({@link #getField(int)}).  Quote escaping and line breaks
+ * in quoted fields are resolved in place in the buffer.
+ * <p/>
+ * Tokenization is compatible with the opencsv <code>CSVReader</code> previously used by the {@link CSVReader}:
+ * <ul>
+ *  <li>Records are terminated by "\n", "\r" or "\r\n".  "skipLines" physical lines are skipped before the first record.</li>
+ *  <li>Quoted fields can contain separators and line breaks (delivered as "\n").  Two consecutive quote
+ *      characters in a quoted field deliver a single quote character.</li>
+ *  <li>A quote character in the middle of an unquoted field (e.g. <code>a,b"c"d,e</code>) is delivered as part of the field.</li>
+ *  <li>An empty line delivers a record containing a single empty field.</li>
+ * </ul>
+ * The field values of the current record are only valid until the next call to {@link #nextRecord()}.
+ */
+public class CSVTokenizer {
+
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    private static final int NO_CHAR = -1;
+
+    private Reader reader;
+    private char separator;
+    private char quoteChar;
+    private int skipLines;
+    private boolean linesSkipped;
+
+    private char[] buffer;
+    private int position;
+    private int limit;
+    private boolean eof;
+    private boolean skipLF;
+
+    private int recordStart;
+    private int write;
+    private int fieldStart;
+    private int fieldCount;
+    private int[] fieldOffsets = new int[16];
+    private int[] fieldEnds = new int[16];
+    private boolean quotedFieldUnterminated;
+
+    /**
+     * Public constructor.
+     * @param reader The CSV stream reader.  Does not need to be buffered.
+     * @param separator The field separator character.
+     * @param quoteChar The quote character.
+     * @param skipLines The number of lines to skip before the first record.
+     */
+    public CSVTokenizer(Reader reader, char separator, char quoteChar, int skipLines) {
+        this(separator, quoteChar, skipLines);
+        AssertArgument.isNotNull(reader, "reader");
+        this.reader = reader;
+        this.buffer = new char[DEFAULT_BUFFER_SIZE];
+    }
+
+    /**
+     * Public constructor.
+     * <p/>
+     * Tokenizes the CSV in the supplied char array.  The contents of the array are modified
+     * during tokenization.
+     *
+     * @param chars The CSV chars.
+     * @param offset The offset of the CSV in the array.
+     * @param length The length of the CSV in the array.
+     * @param separator The field separator character.
+     * @param quoteChar The quote character.
+     * @param skipLines The number of lines to skip before the first record.
+     */
+    public CSVTokenizer(char[] chars, int offset, int length, char separator, char quoteChar, int skipLines) {
+        this(separator, quoteChar, skipLines);
+        AssertArgument.isNotNull(chars, "chars");
+        this.buffer = chars;
+        this.position = offset;
+        this.limit = offset + length;
+        this.eof = true;
+    }
+
+    CSVTokenizer(char separator, char quoteChar, int skipLines) {
+        this.separator = separator;
+        this.quoteChar = quoteChar;
+        this.skipLines = skipLines;
+    }
+
+    /**
+     * Move to the next record.
+     * @return True if there was a next record, otherwise false (end of stream).
+     * @throws IOException Error reading the CSV stream.
+     */
+    public boolean nextRecord() throws IOException {
+        if(!linesSkipped) {
+            for(int i = 0; i < skipLines; i++) {
+                skipLine();
+            }
+            linesSkipped = true;
+        }
+
+        fieldCount = 0;
+        quotedFieldUnterminated = false;
+        if(!startLine()) {
+            return false;
+        }
+
+        boolean inQuotes = false;
+        int lineIndex = 0;
+        int prevChar = NO_CHAR;
+
+        recordStart = position;
+        write = position;
+        fieldStart = position;
+
+        while(true) {
+            if(position == limit && !fill()) {
+                // End of stream without a line terminator...
+                if(inQuotes) {
+                    if(write == buffer.length) {
+                        growBuffer();
+                    }
+                    buffer[write++] = '\n';
+                    quotedFieldUnterminated = true;
+                }
+                break;
+            }
+
+            char c = buffer[position];
+
+            if(c == '\n' || c == '\r') {
+                position++;
+                skipLF = (c == '\r');
+                if(!inQuotes) {
+                    break;
+                }
+
+                // Line break in a quoted field...
+                buffer[write++] = '\n';
+                if(!startLine()) {
+                    quotedFieldUnterminated = true;
+                    break;
+                }
+                lineIndex = 0;
+                prevChar = NO_CHAR;
+                continue;
+            }
+
+            if(c == quoteChar) {
+                int nextChar = peekLineChar();
+
+                if(inQuotes && nextChar == quoteChar) {
+                    // Escaped quote...
+                    buffer[write++] = c;
+                    position += 2;
+                    lineIndex += 2;
+                    prevChar = c;
+                    continue;
+                }
+
+                inQuotes = !inQuotes;
+                // A quote in the middle of a field...
+                if(lineIndex > 2 && prevChar != separator && nextChar != NO_CHAR && nextChar != separator) {
+                    buffer[write++] = c;
+                }
+            } else if(c == separator && !inQuotes) {
+                addField();
+            } else {
+                buffer[write++] = c;
+            }
+
+            prevChar = c;
+            lineIndex++;
+            position++;
+        }
+
+        addField();
+
+        return true;
+    }
+
+    /**
+     * Get the number of fields in the current record.
+     * @return The number of fields in the current record.
+     */
+    public int getFieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * Get the buffer containing the current record fields.
+     * <p/>
+     * The buffer instance can change between records.
+     * @return The record buffer.
+     */
+    public char[] getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * Get the offset of the specified field in the {@link #getBuffer() buffer}.
+     * @param field The field index.
+     * @return The field offset.
+     */
+    public int getFieldOffset(int field) {
+        return fieldOffsets[field];
+    }
+
+    /**
+     * Get the length of the specified field.
+     * @param field The field index.
+     * @return The field length.
+     */
+    public int getFieldLength(int field) {
+        return fieldEnds[field] - fieldOffsets[field];
+    }
+
+    /**
+     * Get the specified field value.
+     * @param field The field index.
+     * @return The field value.
+     */
+    public String getField(int field) {
+        return new String(buffer, fieldOffsets[field], fieldEnds[field] - fieldOffsets[field]);
+    }
+
+    /**
+     * Get the current record field values.
+     * @return The record field values.
+     */
+    public String[] getFields() {
+        String[] fields = new String[fieldCount];
+
+        for(int i = 0; i < fieldCount; i++) {
+            fields[i] = getField(i);
+        }
+
+        return fields;
+    }
+
+    /**
+     * Did the current record end (end of stream) inside a quoted field.
+     * @return True if the current record ended inside a quoted field, otherwise false.
+     */
+    public boolean isQuotedFieldUnterminated() {
+        return quotedFieldUnterminated;
+    }
+
+    /**
+     * Set the current record.
+     * <p/>
+     * Used by subclasses delivering records tokenized elsewhere.
+     *
+     * @param buffer The record buffer.
+     * @param fieldBounds Field offset and end pairs.
+     * @param fromField The index of the record's first field in the fieldBounds array.
+     * @param fieldCount The number of fields in the record.
+     */
+    void setRecord(char[] buffer, int[] fieldBounds, int fromField, int fieldCount) {
+        ensureFieldCapacity(fieldCount);
+        this.buffer = buffer;
+        this.fieldCount = fieldCount;
+        for(int i = 0; i < fieldCount; i++) {
+            fieldOffsets[i] = fieldBounds[(fromField + i) * 2];
+            fieldEnds[i] = fieldBounds[(fromField + i) * 2 + 1];
+        }
+    }
+
+    private void addField() {
+        ensureFieldCapacity(fieldCount + 1);
+        fieldOffsets[fieldCount] = fieldStart;
+        fieldEnds[fieldCount] = write;
+        fieldCount++;
+        fieldStart = write;
+    }
+
+    private void ensureFieldCapacity(int capacity) {
+        if(capacity > fieldOffsets.length) {
+            int newLength = Math.max(fieldOffsets.length * 2, capacity);
+            int[] newFieldOffsets = new int[newLength];
+            int[] newFieldEnds = new int[newLength];
+
+            System.arraycopy(fieldOffsets, 0, newFieldOffsets, 0, fieldCount);
+            System.arraycopy(fieldEnds, 0, newFieldEnds, 0, fieldCount);
+            fieldOffsets = newFieldOffsets;
+            fieldEnds = newFieldEnds;
+        }
+    }
+
+    /**
+     * Start a new physical line, consuming the LF of a preceding CRLF line terminator.
+     * @return False if the end of the stream has been reached, otherwise true.
+     * @throws IOException Error reading the CSV stream.
+     */
+    private boolean startLine() throws IOException {
+        if(position == limit && !fill()) {
+            return false;
+        }
+        if(skipLF) {
+            skipLF = false;
+            if(buffer[position] == '\n') {
+                position++;
+                if(position == limit && !fill()) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private void growBuffer() {
+        char[] newBuffer = new char[Math.max(buffer.length * 2, 16)];
+        System.arraycopy(buffer, 0, newBuffer, 0, limit);
+        buffer = newBuffer;
+    }
+
+    private void skipLine() throws IOException {
+        if(!startLine()) {
+            return;
+        }
+
+        while(true) {
+            recordStart = position;
+            write = position;
+            fieldStart = position;
+            if(position == limit && !fill()) {
+                return;
+            }
+
+            char c = buffer[position++];
+            if(c == '\n' || c == '\r') {
+                skipLF = (c == '\r');
+                return;
+            }
+        }
+    }
+
+    /**
+     * Get the char following the current char, if it's on the same line.
+     * @return The next char on the current line, or {@link #NO_CHAR}.
+     * @throws IOException Error reading the CSV stream.
+     */
+    private int peekLineChar() throws IOException {
+        if(position + 1 == limit && !fill()) {
+            return NO_CHAR;
+        }
+
+        char nextChar = buffer[position + 1];
+        if(nextChar == '\n' || nextChar == '\r') {
+            return NO_CHAR;
+        }
+        return nextChar;
+    }
+
+    /**
+     * Read more chars from the CSV stream into the buffer.
+     * <p/>
+     * The current record is moved to the start of the buffer and the buffer is grown
+     * if the record fills it.
+     *
+     * @return False if the end of the stream has been reached, otherwise true.
+     * @throws IOException Error reading the CSV stream.
+     */
+    private boolean fill() throws IOException {
+        if(eof) {
+            return false;
+        }
+
+        if(recordStart > 0) {
+            int shift = recordStart;
+
+            System.arraycopy(buffer, shift, buffer, 0, limit - shift);
+            position -= shift;
+            limit -= shift;
+            write -= shift;
+            fieldStart -= shift;
+            for(int i = 0; i < fieldCount; i++) {
+                fieldOffsets[i] -= shift;
+                fieldEnds[i] -= shift;
+            }
+            recordStart = 0;
+        }
+
+        if(limit == buffer.length) {
+            growBuffer();
+        }
+
+        int readCount;
+        do {
+            readCount = reader.read(buffer, limit, buffer.length - limit);
+        } while(readCount == 0);
+
+        if(readCount == -1) {
+            eof = true;
+            return false;
+        }
+        limit += readCount;
+
+        return true;
+    }
+}
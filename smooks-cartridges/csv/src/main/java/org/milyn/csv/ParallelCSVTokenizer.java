@@ -0,0 +1,256 @@
+/*
+	Milyn - Copyright (C) 2006 - 2010
+
+	This library is free software; you can redistribute it and/or
+	modify it under the terms of the GNU Lesser General Public
+	License (version 2.1) as published by the Free Software
+	Foundation.
+
+	This library is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+	See the GNU Lesser General Public License for more details:
+	http://www.gnu.org/licenses/lgpl.txt
+*/
+
+package org.milyn.csv;
+
+import org.milyn.SmooksException;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Parallel {@link CSVTokenizer}.
+ * <p/>
+ * Splits a CSV file into chunks at line boundaries and tokenizes the chunks in parallel.  The
+ * records are delivered in file order.
+ * <p/>
+ * Only usable for file input in an encoding in which a "\n" byte always encodes a line feed
+ * (see {@link #isSupported(InputStream, Charset)}), and only if the CSV does not contain quoted
+ * fields spanning multiple lines.  A quoted field spanning a chunk boundary results in a
+ * {@link SmooksException}.
+ */
+class ParallelCSVTokenizer extends CSVTokenizer {
+
+    static final int CHUNK_SIZE = 1024 * 1024;
+    private static final int SCAN_BUFFER_SIZE = 8 * 1024;
+
+    private FileChannel channel;
+    private Charset encoding;
+    private char separator;
+    private char quoteChar;
+    private int skipLines;
+    private int maxChunksInFlight;
+    private ExecutorService executor;
+
+    private long nextChunkStart;
+    private long end;
+    private int chunkCount = 0;
+    private LinkedList<Future<TokenizedChunk>> chunksInFlight = new LinkedList<Future<TokenizedChunk>>();
+    private TokenizedChunk currentChunk;
+    private int currentRecord;
+
+    ParallelCSVTokenizer(FileInputStream stream, Charset encoding, char separator, char quoteChar, int skipLines, int parallelism) throws IOException {
+        super(separator, quoteChar, skipLines);
+        this.channel = stream.getChannel();
+        this.encoding = encoding;
+        this.separator = separator;
+        this.quoteChar = quoteChar;
+        this.skipLines = skipLines;
+        this.maxChunksInFlight = parallelism * 2;
+        this.executor = Executors.newFixedThreadPool(parallelism);
+        this.nextChunkStart = channel.position();
+        this.end = channel.size();
+    }
+
+    /**
+     * Can the supplied CSV stream be tokenized in parallel.
+     * @param stream The CSV stream.
+     * @param encoding The CSV stream encoding.
+     * @return True if the stream is a file stream and the encoding is compatible, otherwise false.
+     */
+    static boolean isSupported(InputStream stream, Charset encoding) {
+        if(!(stream instanceof FileInputStream)) {
+            return false;
+        }
+
+        // Chunk boundaries are found by scanning the bytes for "\n"...
+        return Arrays.equals("\n".getBytes(encoding), new byte[] {'\n'});
+    }
+
+    public boolean nextRecord() throws IOException {
+        while(currentChunk == null || currentRecord == currentChunk.recordCount) {
+            fillPipeline();
+            if(chunksInFlight.isEmpty()) {
+                // Consumed the whole file...
+                channel.position(end);
+                return false;
+            }
+            currentChunk = getChunk(chunksInFlight.removeFirst());
+            currentRecord = 0;
+            fillPipeline();
+        }
+
+        int fromField = currentChunk.recordFields[currentRecord];
+        int toField = (currentRecord + 1 < currentChunk.recordCount ? currentChunk.recordFields[currentRecord + 1] : currentChunk.fieldCount);
+
+        setRecord(currentChunk.chars, currentChunk.fieldBounds, fromField, toField - fromField);
+        currentRecord++;
+
+        return true;
+    }
+
+    /**
+     * Stop the tokenizer worker threads.
+     */
+    void close() {
+        executor.shutdownNow();
+    }
+
+    private void fillPipeline() throws IOException {
+        while(chunksInFlight.size() < maxChunksInFlight && nextChunkStart < end) {
+            long chunkStart = nextChunkStart;
+            long chunkEnd = findLineEnd(Math.min(chunkStart + CHUNK_SIZE, end));
+            boolean lastChunk = (chunkEnd == end);
+
+            chunksInFlight.add(executor.submit(new ChunkTokenizer(chunkStart, chunkEnd, (chunkCount == 0 ? skipLines : 0), lastChunk)));
+            chunkCount++;
+            nextChunkStart = chunkEnd;
+        }
+    }
+
+    /**
+     * Find the end of the line containing the byte at the specified position.
+     * @param position The file position.
+     * @return The position following the line's "\n", or the end of the file.
+     * @throws IOException Error reading the file.
+     */
+    private long findLineEnd(long position) throws IOException {
+        ByteBuffer scanBuffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+
+        while(position < end) {
+            scanBuffer.clear();
+            int readCount = channel.read(scanBuffer, position);
+            if(readCount == -1) {
+                break;
+            }
+            for(int i = 0; i < readCount; i++) {
+                if(scanBuffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += readCount;
+        }
+
+        return end;
+    }
+
+    private TokenizedChunk getChunk(Future<TokenizedChunk> chunkFuture) throws IOException {
+        try {
+            return chunkFuture.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SmooksException("Interrupted while waiting for CSV chunk tokenization.", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if(cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if(cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new SmooksException("Error tokenizing CSV chunk.", cause);
+        }
+    }
+
+    private static class TokenizedChunk {
+        private char[] chars;
+        private int[] fieldBounds = new int[1024];
+        private int fieldCount;
+        private int[] recordFields = new int[256];
+        private int recordCount;
+
+        private void addRecord(CSVTokenizer tokenizer) {
+            int recordFieldCount = tokenizer.getFieldCount();
+
+            if(recordCount == recordFields.length) {
+                recordFields = grow(recordFields, recordCount + 1);
+            }
+            if((fieldCount + recordFieldCount) * 2 > fieldBounds.length) {
+                fieldBounds = grow(fieldBounds, (fieldCount + recordFieldCount) * 2);
+            }
+
+            recordFields[recordCount++] = fieldCount;
+            for(int i = 0; i < recordFieldCount; i++) {
+                int offset = tokenizer.getFieldOffset(i);
+
+                fieldBounds[fieldCount * 2] = offset;
+                fieldBounds[fieldCount * 2 + 1] = offset + tokenizer.getFieldLength(i);
+                fieldCount++;
+            }
+        }
+
+        private static int[] grow(int[] array, int minLength) {
+            int[] newArray = new int[Math.max(array.length * 2, minLength)];
+            System.arraycopy(array, 0, newArray, 0, array.length);
+            return newArray;
+        }
+    }
+
+    private class ChunkTokenizer implements Callable<TokenizedChunk> {
+
+        private long chunkStart;
+        private long chunkEnd;
+        private int skipLines;
+        private boolean lastChunk;
+
+        private ChunkTokenizer(long chunkStart, long chunkEnd, int skipLines, boolean lastChunk) {
+            this.chunkStart = chunkStart;
+            this.chunkEnd = chunkEnd;
+            this.skipLines = skipLines;
+            this.lastChunk = lastChunk;
+        }
+
+        public TokenizedChunk call() throws IOException {
+            ByteBuffer bytes = ByteBuffer.allocate((int) (chunkEnd - chunkStart));
+            CharsetDecoder decoder = encoding.newDecoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+            while(bytes.hasRemaining()) {
+                if(channel.read(bytes, chunkStart + bytes.position()) == -1) {
+                    break;
+                }
+            }
+            bytes.flip();
+
+            // Chunk boundaries follow a "\n", so no multi-byte chars are split...
+            CharBuffer chars = decoder.decode(bytes);
+            TokenizedChunk chunk = new TokenizedChunk();
+            CSVTokenizer tokenizer = new CSVTokenizer(chars.array(), chars.arrayOffset(), chars.remaining(), separator, quoteChar, skipLines);
+
+            while(tokenizer.nextRecord()) {
+                if(tokenizer.isQuotedFieldUnterminated() && !lastChunk) {
+                    throw new SmooksException("Unterminated quoted CSV field at the end of file chunk [" + chunkStart + " - " + chunkEnd + "].  Parallel CSV parsing does not support quoted fields containing line breaks.");
+                }
+                chunk.addRecord(tokenizer);
+            }
+            chunk.chars = tokenizer.getBuffer();
+
+            return chunk;
+        }
+    }
+}
@@ -33,8 +33,13 @@ import org.xml.sax.SAXException;
 import javax.xml.transform.dom.DOMResult;
 import javax.xml.transform.stream.StreamSource;
 import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.UnsupportedEncodingException;
+import java.io.Writer;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -418,4 +423,40 @@ public class CSVReaderTest extends TestCase {
         assertEquals("LINDA", person.get("firstname"));
         assertEquals("coughlan", person.get("lastname"));
     }
+
+    public void test_19_parallel() throws SmooksException, IOException, SAXException {
+        File csvFile = File.createTempFile("csv-parallel-", ".csv");
+
+        try {
+            Writer csvWriter = new OutputStreamWriter(new FileOutputStream(csvFile), "UTF-8");
+            try {
+                csvWriter.write("firstname,lastname,age\n");
+                for(int i = 0; i < 150000; i++) {
+                    csvWriter.write("Tom" + i + ",\"Fenn, \"\"elly\"\"\"," + (i % 100) + "\r\n");
+                }
+            } finally {
+                csvWriter.close();
+            }
+
+            Smooks smooks = new Smooks();
+            smooks.setReaderConfig(new CSVReaderConfigurator("firstname,lastname,age")
+                    .setSkipLineCount(1)
+                    .setParallelism(4)
+                    .setBinding(new CSVBinding("people", HashMap.class, CSVBindingType.LIST)));
+
+            JavaResult result = new JavaResult();
+            smooks.filterSource(new StreamSource(new FileInputStream(csvFile)), result);
+
+            List<Map> people = (List<Map>) result.getBean("people");
+            assertEquals(150000, people.size());
+            for(int i = 0; i < people.size(); i += 997) {
+                Map person = people.get(i);
+                assertEquals("Tom" + i, person.get("firstname"));
+                assertEquals("Fenn, \"elly\"", person.get("lastname"));
+                assertEquals(Integer.toString(i % 100), person.get("age"));
+            }
+        } finally {
+            csvFile.delete();
+        }
+    }
 }
\ No newline at end of file
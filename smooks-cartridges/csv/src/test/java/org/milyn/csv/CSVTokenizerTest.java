@@ -0,0 +1,218 @@
+/*
+	Milyn - Copyright (C) 2006 - 2010
+
+	This library is free software; you can redistribute it and/or
+	modify it under the terms of the GNU Lesser General Public
+	License (version 2.1) as published by the Free Software
+	Foundation.
+
+	This library is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+	See the GNU Lesser General Public License for more details:
+	http://www.gnu.org/licenses/lgpl.txt
+*/
+
+package org.milyn.csv;
+
+import junit.framework.TestCase;
+import org.milyn.SmooksException;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Unit tests for {@link CSVTokenizer} and {@link ParallelCSVTokenizer}.
+ */
+public class CSVTokenizerTest extends TestCase {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    public void test_simple() throws IOException {
+        assertTokensOK("a,b,c\nd,e,f", 0, "[a, b, c]", "[d, e, f]");
+        assertTokensOK("a,b,c\r\nd,e,f\r\n", 0, "[a, b, c]", "[d, e, f]");
+        assertTokensOK("a,b,c\rd,e,f\r", 0, "[a, b, c]", "[d, e, f]");
+        assertTokensOK("a,,\n,b", 0, "[a, , ]", "[, b]");
+        assertTokensOK("", 0);
+    }
+
+    public void test_empty_lines() throws IOException {
+        assertTokensOK("a\n\nb\n", 0, "[a]", "[]", "[b]");
+        assertTokensOK("a\r\n\r\nb", 0, "[a]", "[]", "[b]");
+    }
+
+    public void test_skip_lines() throws IOException {
+        assertTokensOK("h1,h2\r\nh3\r\na,b\r\nc,d", 2, "[a, b]", "[c, d]");
+        assertTokensOK("h1,h2\n", 2);
+    }
+
+    public void test_quoted() throws IOException {
+        assertTokensOK("\"a,b\",c", 0, "[a,b, c]");
+        assertTokensOK("\"a\"\"b\",c", 0, "[a\"b, c]");
+        assertTokensOK("\"\",\"\"\"\"", 0, "[, \"]");
+        assertTokensOK("aaa,b\"c\"d,e", 0, "[aaa, b\"c\"d, e]");
+        assertTokensOK("a,\"b\r\nc\",d\ne", 0, "[a, b\nc, d]", "[e]");
+        assertTokensOK("a,\"b\rc", 0, "[a, b\nc\n]");
+    }
+
+    public void test_custom_separator_quote() throws IOException {
+        CSVTokenizer tokenizer = new CSVTokenizer(new StringReader("'a;b';c\n"), ';', '\'', 0);
+
+        assertTrue(tokenizer.nextRecord());
+        assertEquals("[a;b, c]", Arrays.asList(tokenizer.getFields()).toString());
+        assertFalse(tokenizer.nextRecord());
+    }
+
+    public void test_field_regions() throws IOException {
+        CSVTokenizer tokenizer = new CSVTokenizer(new StringReader("xx,\"y\"\"y\",zz"), ',', '"', 0);
+
+        assertTrue(tokenizer.nextRecord());
+        assertEquals(3, tokenizer.getFieldCount());
+        assertEquals("y\"y", new String(tokenizer.getBuffer(), tokenizer.getFieldOffset(1), tokenizer.getFieldLength(1)));
+        assertEquals("zz", new String(tokenizer.getBuffer(), tokenizer.getFieldOffset(2), tokenizer.getFieldLength(2)));
+    }
+
+    public void test_large_records() throws IOException {
+        StringBuilder csv = new StringBuilder();
+        StringBuilder longField = new StringBuilder();
+
+        for(int i = 0; i < 100000; i++) {
+            longField.append((char) ('a' + i % 26));
+        }
+        csv.append("1,").append(longField).append(",\"").append(longField).append("\"\n");
+        csv.append("2,x,y\n");
+
+        CSVTokenizer tokenizer = new CSVTokenizer(new StringReader(csv.toString()), ',', '"', 0);
+        assertTrue(tokenizer.nextRecord());
+        assertEquals("1", tokenizer.getField(0));
+        assertEquals(longField.toString(), tokenizer.getField(1));
+        assertEquals(longField.toString(), tokenizer.getField(2));
+        assertTrue(tokenizer.nextRecord());
+        assertEquals("[2, x, y]", Arrays.asList(tokenizer.getFields()).toString());
+        assertFalse(tokenizer.nextRecord());
+    }
+
+    public void test_parallel() throws IOException {
+        StringBuilder csv = new StringBuilder("header line\n");
+
+        // Multiple chunks, with multi-byte chars...
+        for(int i = 0; i < 200000; i++) {
+            csv.append(i).append(",\u00e9\u20ac,\"q, \"\"").append(i % 7).append("\"\"\"\r\n");
+        }
+        csv.append("last,\"unterminated");
+
+        File csvFile = writeFile(csv.toString());
+        try {
+            FileInputStream stream = new FileInputStream(csvFile);
+            assertTrue(ParallelCSVTokenizer.isSupported(stream, UTF8));
+            assertTrue(csvFile.length() > ParallelCSVTokenizer.CHUNK_SIZE * 3);
+
+            List<String> expected = tokenize(new CSVTokenizer(new StringReader(csv.toString()), ',', '"', 1));
+            ParallelCSVTokenizer tokenizer = new ParallelCSVTokenizer(stream, UTF8, ',', '"', 1, 3);
+            try {
+                assertEquals(expected, tokenize(tokenizer));
+            } finally {
+                tokenizer.close();
+                stream.close();
+            }
+        } finally {
+            csvFile.delete();
+        }
+    }
+
+    public void test_parallel_multiline_field() throws IOException {
+        StringBuilder csv = new StringBuilder();
+
+        for(int i = 0; i < 200000; i++) {
+            csv.append(i).append(",\"a\nb\"\n");
+        }
+
+        File csvFile = writeFile(csv.toString());
+        try {
+            FileInputStream stream = new FileInputStream(csvFile);
+            ParallelCSVTokenizer tokenizer = new ParallelCSVTokenizer(stream, UTF8, ',', '"', 0, 2);
+            try {
+                tokenize(tokenizer);
+                fail("Expected SmooksException");
+            } catch(SmooksException e) {
+                assertTrue(e.getMessage().startsWith("Unterminated quoted CSV field at the end of file chunk"));
+            } finally {
+                tokenizer.close();
+                stream.close();
+            }
+        } finally {
+            csvFile.delete();
+        }
+    }
+
+    public void test_parallel_not_supported() throws IOException {
+        File csvFile = writeFile("a,b");
+        try {
+            FileInputStream stream = new FileInputStream(csvFile);
+            try {
+                assertFalse(ParallelCSVTokenizer.isSupported(stream, Charset.forName("UTF-16")));
+                assertFalse(ParallelCSVTokenizer.isSupported(new ByteArrayInputStream("a,b".getBytes()), UTF8));
+            } finally {
+                stream.close();
+            }
+        } finally {
+            csvFile.delete();
+        }
+    }
+
+    private void assertTokensOK(String csv, int skipLines, String... expected) throws IOException {
+        List<String> expectedRecords = Arrays.asList(expected);
+
+        assertEquals(expectedRecords, tokenize(new CSVTokenizer(new StringReader(csv), ',', '"', skipLines)));
+        assertEquals(expectedRecords, tokenize(new CSVTokenizer(new TrickleReader(csv), ',', '"', skipLines)));
+        assertEquals(expectedRecords, tokenize(new CSVTokenizer(csv.toCharArray(), 0, csv.length(), ',', '"', skipLines)));
+    }
+
+    private List<String> tokenize(CSVTokenizer tokenizer) throws IOException {
+        List<String> records = new ArrayList<String>();
+
+        while(tokenizer.nextRecord()) {
+            records.add(Arrays.asList(tokenizer.getFields()).toString());
+        }
+
+        return records;
+    }
+
+    private File writeFile(String csv) throws IOException {
+        File csvFile = File.createTempFile("csv-tokenizer-", ".csv");
+        Writer writer = new OutputStreamWriter(new FileOutputStream(csvFile), UTF8);
+
+        try {
+            writer.write(csv);
+        } finally {
+            writer.close();
+        }
+
+        return csvFile;
+    }
+
+    /**
+     * Reads a single char at a time, forcing buffer refills mid record.
+     */
+    private static class TrickleReader extends FilterReader {
+        private TrickleReader(String string) {
+            super(new StringReader(string));
+        }
+
+        public int read(char[] chars, int offset, int length) throws IOException {
+            return super.read(chars, offset, Math.min(length, 1));
+        }
+    }
+}
@@ -30,6 +30,10 @@ public interface EDIWritable {
 
     /**
      * Write the bean to the specified {@link Writer} instance.
+     * <p/>
+     * If the supplied writer is an {@link EDIWriter} (using the same delimiters), the bean is written
+     * to it without flushing and it's the responsibility of the caller to flush it.  Otherwise, the
+     * writer is wrapped in an {@link EDIWriter} and flushed before returning.
      * @param writer The target writer.
      * @param delimiters The delimiters.
      * @throws IOException Error writing bean.
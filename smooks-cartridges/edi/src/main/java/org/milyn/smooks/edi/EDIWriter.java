@@ -0,0 +1,417 @@
+/*
+ * Milyn - Copyright (C) 2006 - 2010
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License (version 2.1) as published by the Free Software
+ *  Foundation.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ *  See the GNU Lesser General Public License for more details:
+ *  http://www.gnu.org/licenses/lgpl.txt
+ */
+package org.milyn.smooks.edi;
+
+import org.milyn.assertion.AssertArgument;
+import org.milyn.edisax.model.internal.DelimiterType;
+import org.milyn.edisax.model.internal.Delimiters;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Buffered EDI output writer.
+ * <p/>
+ * Used by {@link EDIWritable} implementations for writing EDI.  Buffers the EDI in a growable
+ * char buffer and provides:
+ * <ul>
+ *  <li>Delimiter output ({@link #writeDelimiter(DelimiterType)}) and value escaping ({@link #writeEscaped(String)})
+ *      based on lookup tables precomputed from the {@link Delimiters}.</li>
+ *  <li>Truncation of trailing empty node tokens ({@link #startNode()}, {@link #endToken()},
+ *      {@link #endNode(DelimiterType)}), performed in place on the buffer.  This has the same semantics
+ *      as {@link org.milyn.edisax.util.EDIUtils#concatAndTruncate(java.util.List, DelimiterType, Delimiters)}.</li>
+ *  <li>Output to a {@link Writer}, or direct encoding to a {@link WritableByteChannel}.</li>
+ * </ul>
+ * The buffered EDI is written to the target when the buffer fills up and on {@link #flush()}.  EDI
+ * belonging to a node that has not yet been ended is retained in the buffer because it may still
+ * get truncated.
+ * <p/>
+ * An EDIWriter instance can be reused for writing multiple messages using the same delimiters
+ * (see {@link #getWriter(Writer, Delimiters)}).  Instances are not thread safe.
+ */
+public class EDIWriter extends Writer {
+
+    private static final int DEFAULT_BUFFER_SIZE = 1024;
+    private static final char[] NO_DELIMITER = new char[0];
+
+    private Writer targetWriter;
+    private WritableByteChannel targetChannel;
+    private CharsetEncoder encoder;
+    private ByteBuffer byteBuffer;
+
+    private Delimiters delimiters;
+    private char[][] delimiterChars = new char[DelimiterType.values().length][];
+    private boolean[] escapeTable;
+    private char escapeChar;
+    private boolean[][] removableTables = new boolean[DelimiterType.values().length][];
+
+    private char[] buffer = new char[DEFAULT_BUFFER_SIZE];
+    private int count = 0;
+    private int[] marks = new int[32];
+    private int markCount = 0;
+    private int[] nodes = new int[16];
+    private int nodeCount = 0;
+
+    /**
+     * Public constructor.
+     * @param target The target writer.
+     * @param delimiters The EDI delimiters.
+     */
+    public EDIWriter(Writer target, Delimiters delimiters) {
+        AssertArgument.isNotNull(target, "target");
+        this.targetWriter = target;
+        initDelimiters(delimiters);
+    }
+
+    /**
+     * Public constructor.
+     * @param target The target byte channel.
+     * @param encoding The character encoding to be applied.
+     * @param delimiters The EDI delimiters.
+     */
+    public EDIWriter(WritableByteChannel target, Charset encoding, Delimiters delimiters) {
+        AssertArgument.isNotNull(target, "target");
+        AssertArgument.isNotNull(encoding, "encoding");
+        this.targetChannel = target;
+        this.encoder = encoding.newEncoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.byteBuffer = ByteBuffer.allocate((int) (DEFAULT_BUFFER_SIZE * encoder.maxBytesPerChar()));
+        initDelimiters(delimiters);
+    }
+
+    /**
+     * Get an EDIWriter for the supplied writer.
+     * @param writer The writer.
+     * @param delimiters The EDI delimiters.
+     * @return The supplied writer if it is an EDIWriter instance using the same delimiters, otherwise
+     * a new EDIWriter instance wrapping the supplied writer.
+     */
+    public static EDIWriter getWriter(Writer writer, Delimiters delimiters) {
+        if(writer instanceof EDIWriter && ((EDIWriter) writer).delimiters == delimiters) {
+            return (EDIWriter) writer;
+        }
+        return new EDIWriter(writer, delimiters);
+    }
+
+    /**
+     * Get the delimiters used by this writer.
+     * @return The delimiters.
+     */
+    public Delimiters getDelimiters() {
+        return delimiters;
+    }
+
+    /**
+     * Write the specified delimiter.
+     * @param delimiterType The delimiter type.
+     * @throws IOException Error writing to the target.
+     */
+    public void writeDelimiter(DelimiterType delimiterType) throws IOException {
+        char[] delimiter = delimiterChars[delimiterType.ordinal()];
+        int delimiterLength = delimiter.length;
+
+        ensureCapacity(delimiterLength);
+        if(delimiterLength == 1) {
+            buffer[count++] = delimiter[0];
+        } else {
+            System.arraycopy(delimiter, 0, buffer, count, delimiterLength);
+            count += delimiterLength;
+        }
+    }
+
+    /**
+     * Write the supplied value, escaping delimiter characters.
+     * @param value The value.
+     * @throws IOException Error writing to the target.
+     */
+    public void writeEscaped(String value) throws IOException {
+        int valueLength = value.length();
+
+        if(escapeTable == null) {
+            write(value, 0, valueLength);
+            return;
+        }
+
+        ensureCapacity(valueLength * 2);
+        for(int i = 0; i < valueLength; i++) {
+            char c = value.charAt(i);
+
+            if(c < escapeTable.length && escapeTable[c]) {
+                buffer[count++] = escapeChar;
+            }
+            buffer[count++] = c;
+        }
+    }
+
+    /**
+     * Start a truncatable node.
+     * <p/>
+     * Must be matched with a call to {@link #endNode(DelimiterType)}.
+     */
+    public void startNode() {
+        if(nodeCount == nodes.length) {
+            int[] newNodes = new int[nodes.length * 2];
+            System.arraycopy(nodes, 0, newNodes, 0, nodeCount);
+            nodes = newNodes;
+        }
+        nodes[nodeCount++] = markCount;
+        mark();
+    }
+
+    /**
+     * End the current token in the current truncatable node.
+     */
+    public void endToken() {
+        if(nodeCount > 0) {
+            mark();
+        }
+    }
+
+    /**
+     * End the current truncatable node, truncating trailing node tokens that are empty or only contain
+     * delimiters of the specified type or lower.
+     * @param outerDelimiterType The delimiter type separating the node tokens.
+     */
+    public void endNode(DelimiterType outerDelimiterType) {
+        if(nodeCount == 0) {
+            throw new IllegalStateException("Unexpected call to 'endNode'.  No node started.");
+        }
+
+        boolean[] removableTable = removableTables[outerDelimiterType.ordinal()];
+        int nodeMark = nodes[--nodeCount];
+        int end = count;
+
+        for(int i = markCount - 1; i >= nodeMark; i--) {
+            int tokenStart = marks[i];
+
+            if(!isRemovable(tokenStart, end, removableTable)) {
+                break;
+            }
+            end = tokenStart;
+        }
+
+        count = end;
+        markCount = nodeMark;
+    }
+
+    /**
+     * Discard all buffered EDI and started nodes.
+     * <p/>
+     * Allows reuse of the writer after an error.
+     */
+    public void reset() {
+        count = 0;
+        markCount = 0;
+        nodeCount = 0;
+    }
+
+    public void write(int c) throws IOException {
+        ensureCapacity(1);
+        buffer[count++] = (char) c;
+    }
+
+    public void write(char[] chars, int offset, int length) throws IOException {
+        ensureCapacity(length);
+        System.arraycopy(chars, offset, buffer, count, length);
+        count += length;
+    }
+
+    public void write(String string) throws IOException {
+        write(string, 0, string.length());
+    }
+
+    public void write(String string, int offset, int length) throws IOException {
+        ensureCapacity(length);
+        string.getChars(offset, offset + length, buffer, count);
+        count += length;
+    }
+
+    /**
+     * Write the buffered EDI to the target and flush the target.
+     * <p/>
+     * EDI belonging to nodes that have not been ended is not written.
+     * @throws IOException Error writing to the target.
+     */
+    public void flush() throws IOException {
+        drain();
+        if(targetWriter != null) {
+            targetWriter.flush();
+        }
+    }
+
+    public void close() throws IOException {
+        try {
+            flush();
+            if(targetChannel != null) {
+                // Encode any chars left over from the last drain...
+                encode(CharBuffer.wrap(buffer, 0, count), true);
+                count = 0;
+                while(encoder.flush(byteBuffer) == CoderResult.OVERFLOW) {
+                    writeBytes();
+                }
+                writeBytes();
+            }
+        } finally {
+            if(targetWriter != null) {
+                targetWriter.close();
+            } else {
+                targetChannel.close();
+            }
+        }
+    }
+
+    private void initDelimiters(Delimiters delimiters) {
+        AssertArgument.isNotNull(delimiters, "delimiters");
+
+        this.delimiters = delimiters;
+
+        delimiterChars[DelimiterType.SEGMENT.ordinal()] = delimiters.getSegmentDelimiter();
+        delimiterChars[DelimiterType.FIELD.ordinal()] = toChars(delimiters.getField());
+        delimiterChars[DelimiterType.FIELD_REPEAT.ordinal()] = toChars(delimiters.getFieldRepeat());
+        delimiterChars[DelimiterType.COMPONENT.ordinal()] = toChars(delimiters.getComponent());
+        delimiterChars[DelimiterType.SUB_COMPONENT.ordinal()] = toChars(delimiters.getSubComponent());
+        delimiterChars[DelimiterType.DECIMAL_SEPARATOR.ordinal()] = toChars(delimiters.getDecimalSeparator());
+
+        char[] escapedChars = delimiters.getEscapedChars();
+        if(escapedChars.length > 0) {
+            escapeTable = toTable(escapedChars);
+            escapeChar = delimiters.getEscape().charAt(0);
+        }
+
+        // Same delimiter fall through as Delimiters.removeableNodeToken...
+        removableTables[DelimiterType.SEGMENT.ordinal()] = toTable(toSingleChars(delimiters.getSegment(), delimiters.getField(), delimiters.getComponent(), delimiters.getSubComponent(), delimiters.getDecimalSeparator()));
+        removableTables[DelimiterType.FIELD.ordinal()] = toTable(toSingleChars(delimiters.getField(), delimiters.getComponent(), delimiters.getSubComponent(), delimiters.getDecimalSeparator()));
+        removableTables[DelimiterType.FIELD_REPEAT.ordinal()] = new boolean[0];
+        removableTables[DelimiterType.COMPONENT.ordinal()] = toTable(toSingleChars(delimiters.getComponent(), delimiters.getSubComponent(), delimiters.getDecimalSeparator()));
+        removableTables[DelimiterType.SUB_COMPONENT.ordinal()] = toTable(toSingleChars(delimiters.getSubComponent(), delimiters.getDecimalSeparator()));
+        removableTables[DelimiterType.DECIMAL_SEPARATOR.ordinal()] = toTable(toSingleChars(delimiters.getDecimalSeparator()));
+    }
+
+    private static char[] toChars(String delimiter) {
+        if(delimiter == null) {
+            return NO_DELIMITER;
+        }
+        return delimiter.toCharArray();
+    }
+
+    private static char[] toSingleChars(String... delimiters) {
+        StringBuilder singleChars = new StringBuilder();
+
+        for(String delimiter : delimiters) {
+            if(delimiter != null && delimiter.length() == 1) {
+                singleChars.append(delimiter.charAt(0));
+            }
+        }
+
+        return singleChars.toString().toCharArray();
+    }
+
+    private static boolean[] toTable(char[] chars) {
+        int tableSize = 0;
+
+        for(char c : chars) {
+            tableSize = Math.max(tableSize, c + 1);
+        }
+
+        boolean[] table = new boolean[tableSize];
+        for(char c : chars) {
+            table[c] = true;
+        }
+
+        return table;
+    }
+
+    private boolean isRemovable(int start, int end, boolean[] removableTable) {
+        for(int i = start; i < end; i++) {
+            char c = buffer[i];
+            if(c >= removableTable.length || !removableTable[c]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void mark() {
+        if(markCount == marks.length) {
+            int[] newMarks = new int[marks.length * 2];
+            System.arraycopy(marks, 0, newMarks, 0, markCount);
+            marks = newMarks;
+        }
+        marks[markCount++] = count;
+    }
+
+    private void ensureCapacity(int length) throws IOException {
+        if(count + length <= buffer.length) {
+            return;
+        }
+
+        drain();
+
+        if(count + length > buffer.length) {
+            char[] newBuffer = new char[Math.max(buffer.length * 2, count + length)];
+            System.arraycopy(buffer, 0, newBuffer, 0, count);
+            buffer = newBuffer;
+        }
+    }
+
+    /**
+     * Write the buffered EDI that precedes the first open node to the target.
+     * @throws IOException Error writing to the target.
+     */
+    private void drain() throws IOException {
+        int drainCount = (nodeCount > 0 ? marks[nodes[0]] : count);
+
+        if(drainCount == 0) {
+            return;
+        }
+
+        if(targetWriter != null) {
+            targetWriter.write(buffer, 0, drainCount);
+        } else {
+            CharBuffer chars = CharBuffer.wrap(buffer, 0, drainCount);
+            encode(chars, false);
+            // Leave unencoded chars (e.g. a trailing high surrogate) in the buffer...
+            drainCount -= chars.remaining();
+        }
+
+        count -= drainCount;
+        System.arraycopy(buffer, drainCount, buffer, 0, count);
+        for(int i = 0; i < markCount; i++) {
+            marks[i] -= drainCount;
+        }
+    }
+
+    private void encode(CharBuffer chars, boolean endOfInput) throws IOException {
+        while(encoder.encode(chars, byteBuffer, endOfInput) == CoderResult.OVERFLOW) {
+            writeBytes();
+        }
+        writeBytes();
+    }
+
+    private void writeBytes() throws IOException {
+        byteBuffer.flip();
+        while(byteBuffer.hasRemaining()) {
+            targetChannel.write(byteBuffer);
+        }
+        byteBuffer.clear();
+    }
+}
@@ -0,0 +1,77 @@
+/*
+	Milyn - Copyright (C) 2006 - 2010
+
+	This library is free software; you can redistribute it and/or
+	modify it under the terms of the GNU Lesser General Public
+	License (version 2.1) as published by the Free Software
+	Foundation.
+
+	This library is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+	See the GNU Lesser General Public License for more details:
+	http://www.gnu.org/licenses/lgpl.txt
+*/
+package org.milyn.smooks.edi.unedifact;
+
+import javax.xml.transform.stream.StreamSource;
+
+import org.milyn.Smooks;
+import org.milyn.assertion.AssertArgument;
+import org.milyn.edisax.unedifact.ParallelUNEdifactMessageProcessor;
+import org.milyn.edisax.unedifact.UNEdifactMessageBlock;
+import org.milyn.payload.JavaResult;
+import org.milyn.smooks.edi.unedifact.model.r41.UNEdifactMessage41;
+
+/**
+ * Parallel UN/EDIFACT message binder.
+ * <p/>
+ * Splits an interchange into its messages and binds each message to a {@link UNEdifactMessage41}
+ * instance on a pool of worker threads.  The message beans are then handed to {@link #consumeMessage(UNEdifactMessageBlock, Object)}
+ * on the calling thread, either in interchange order, or in the order in which they are bound.
+ * <p/>
+ * The supplied {@link Smooks} instance must be configured with a UN/EDIFACT reader and the
+ * <a href="http://www.milyn.org/xsd/smooks/unedifact-1.4.xsd">unedifact</a> message bindings
+ * ("/org/milyn/smooks/edi/unedifact/model/r41/bindings/unedifact-message.xml"), plus the bindings for
+ * the message types.  The instance is shared by all worker threads.
+ * <p/>
+ * The interchange trailer (UNZ) and group trailer (UNE) on the bound message beans are those of the single message
+ * interchange that is bound by the worker (see {@link UNEdifactMessageBlock#toInterchange()}), and so have a control count of 1.
+ *
+ * <pre>
+ * Smooks smooks = new Smooks("unedifact-message-bindings.xml");
+ * ParallelUNEdifactMessageBinder binder = new ParallelUNEdifactMessageBinder(smooks, 4, true) {
+ *     protected void consumeMessage(UNEdifactMessageBlock messageBlock, UNEdifactMessage41 message) {
+ *         ....
+ *     }
+ * };
+ *
+ * binder.process(new InputSource(interchangeStream));
+ * </pre>
+ */
+public abstract class ParallelUNEdifactMessageBinder extends ParallelUNEdifactMessageProcessor<UNEdifactMessage41> {
+
+    private final Smooks smooks;
+
+    /**
+     * Public constructor.
+     * @param smooks The Smooks instance used to bind the messages.
+     * @param workerThreads The number of worker threads.
+     * @param ordered True if messages are to be consumed in interchange order, false if they are
+     * to be consumed in the order in which they are bound.
+     */
+    public ParallelUNEdifactMessageBinder(Smooks smooks, int workerThreads, boolean ordered) {
+        super(workerThreads, ordered);
+        AssertArgument.isNotNull(smooks, "smooks");
+        this.smooks = smooks;
+    }
+
+    protected UNEdifactMessage41 processMessage(UNEdifactMessageBlock messageBlock) throws Exception {
+        JavaResult result = new JavaResult();
+
+        smooks.filterSource(new StreamSource(messageBlock.toInputSource().getByteStream()), result);
+
+        return result.getBean(UNEdifactMessage41.class);
+    }
+}
@@ -0,0 +1,196 @@
+/*
+	Milyn - Copyright (C) 2006 - 2010
+
+	This library is free software; you can redistribute it and/or
+	modify it under the terms of the GNU Lesser General Public
+	License (version 2.1) as published by the Free Software
+	Foundation.
+
+	This library is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+	See the GNU Lesser General Public License for more details:
+	http://www.gnu.org/licenses/lgpl.txt
+*/
+
+package org.milyn.smooks.edi;
+
+import junit.framework.TestCase;
+import org.milyn.edisax.model.internal.DelimiterType;
+import org.milyn.edisax.model.internal.Delimiters;
+import org.milyn.edisax.util.EDIUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Unit tests for {@link EDIWriter}.
+ */
+public class EDIWriterTest extends TestCase {
+
+    private Delimiters delimiters = new Delimiters().setSegment("'").setField("+").setComponent(":").setSubComponent("~").setEscape("?").setDecimalSeparator(".");
+
+    public void test_escape() throws IOException {
+        String[] values = new String[] {"", "abc", "a+b:c'd?e~f", "+", "?x?"};
+
+        for(String value : values) {
+            StringWriter target = new StringWriter();
+            EDIWriter writer = new EDIWriter(target, delimiters);
+
+            writer.writeEscaped(value);
+            writer.flush();
+            assertEquals(delimiters.escape(value), target.toString());
+        }
+    }
+
+    public void test_escape_unsupported() throws IOException {
+        Delimiters noEscape = new Delimiters().setSegment("'").setField("+").setComponent(":");
+        StringWriter target = new StringWriter();
+        EDIWriter writer = new EDIWriter(target, noEscape);
+
+        writer.writeEscaped("a+b");
+        writer.flush();
+        assertEquals("a+b", target.toString());
+    }
+
+    public void test_delimiters() throws IOException {
+        StringWriter target = new StringWriter();
+        EDIWriter writer = new EDIWriter(target, new Delimiters().setSegment("'!$").setField("+").setComponent(":"));
+
+        writer.write("UNH");
+        writer.writeDelimiter(DelimiterType.FIELD);
+        writer.writeDelimiter(DelimiterType.COMPONENT);
+        writer.writeDelimiter(DelimiterType.SUB_COMPONENT);
+        writer.writeDelimiter(DelimiterType.SEGMENT);
+        writer.flush();
+        assertEquals("UNH+:'", target.toString());
+    }
+
+    public void test_truncate() throws IOException {
+        assertTruncateOK(DelimiterType.FIELD, "a", "+b", "+", "+");
+        assertTruncateOK(DelimiterType.FIELD, "a", "+:", "+:~", "");
+        assertTruncateOK(DelimiterType.FIELD, "a", "+x", "+");
+        assertTruncateOK(DelimiterType.FIELD, "", "", "");
+        assertTruncateOK(DelimiterType.COMPONENT, "a", ":+", ":");
+        assertTruncateOK(DelimiterType.COMPONENT, "a", ":~", "~");
+        assertTruncateOK(DelimiterType.SUB_COMPONENT, "a", "~", ":");
+        assertTruncateOK(DelimiterType.FIELD_REPEAT, "a", "+", "");
+    }
+
+    public void test_nested_truncate() throws IOException {
+        StringWriter target = new StringWriter();
+        EDIWriter writer = new EDIWriter(target, delimiters);
+
+        writer.write("SEG");
+        writer.writeDelimiter(DelimiterType.FIELD);
+        writer.startNode();
+        writer.write("a");
+        writer.endToken();
+        writer.writeDelimiter(DelimiterType.FIELD);
+        writer.startNode();
+        writer.write("b");
+        writer.endToken();
+        writer.writeDelimiter(DelimiterType.COMPONENT);
+        writer.endNode(DelimiterType.COMPONENT);
+        writer.endToken();
+        writer.writeDelimiter(DelimiterType.FIELD);
+        writer.endNode(DelimiterType.FIELD);
+        writer.writeDelimiter(DelimiterType.SEGMENT);
+        writer.flush();
+
+        assertEquals("SEG+a+b'", target.toString());
+    }
+
+    public void test_open_node_not_flushed() throws IOException {
+        StringWriter target = new StringWriter();
+        EDIWriter writer = new EDIWriter(target, delimiters);
+
+        writer.write("SEG+");
+        writer.startNode();
+        writer.write("a");
+        writer.endToken();
+        writer.write("+");
+        writer.flush();
+        assertEquals("SEG+", target.toString());
+
+        // Overflow the buffer while the node is open...
+        for(int i = 0; i < 5000; i++) {
+            writer.endToken();
+            writer.write("+");
+        }
+        assertEquals("SEG+", target.toString());
+
+        writer.endNode(DelimiterType.FIELD);
+        writer.flush();
+        assertEquals("SEG+a", target.toString());
+    }
+
+    public void test_buffer_drain() throws IOException {
+        StringWriter target = new StringWriter();
+        EDIWriter writer = new EDIWriter(target, delimiters);
+        StringBuilder expected = new StringBuilder();
+
+        for(int i = 0; i < 5000; i++) {
+            writer.write("SEG");
+            writer.writeDelimiter(DelimiterType.FIELD);
+            writer.writeEscaped(Integer.toString(i));
+            writer.writeDelimiter(DelimiterType.SEGMENT);
+            expected.append("SEG+").append(i).append("'");
+        }
+        writer.flush();
+
+        assertEquals(expected.toString(), target.toString());
+    }
+
+    public void test_channel() throws IOException {
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+        Charset utf8 = Charset.forName("UTF-8");
+        EDIWriter writer = new EDIWriter(Channels.newChannel(target), utf8, delimiters);
+        StringBuilder expected = new StringBuilder();
+
+        for(int i = 0; i < 2000; i++) {
+            writer.write("SEG");
+            writer.writeDelimiter(DelimiterType.FIELD);
+            writer.writeEscaped("\u00e9\u20ac\ud834\udd1e+" + i);
+            writer.writeDelimiter(DelimiterType.SEGMENT);
+            expected.append("SEG+\u00e9\u20ac\ud834\udd1e?+").append(i).append("'");
+        }
+        writer.close();
+
+        assertEquals(expected.toString(), new String(target.toByteArray(), utf8));
+    }
+
+    public void test_getWriter() {
+        StringWriter target = new StringWriter();
+        EDIWriter writer = EDIWriter.getWriter(target, delimiters);
+
+        assertSame(writer, EDIWriter.getWriter(writer, delimiters));
+        assertNotSame(writer, EDIWriter.getWriter(writer, (Delimiters) delimiters.clone()));
+    }
+
+    private void assertTruncateOK(DelimiterType delimiterType, String... tokens) throws IOException {
+        StringWriter target = new StringWriter();
+        EDIWriter writer = new EDIWriter(target, delimiters);
+        List<String> tokenList = new ArrayList<String>(Arrays.asList(tokens));
+
+        writer.write("X");
+        writer.startNode();
+        for(int i = 0; i < tokens.length; i++) {
+            if(i > 0) {
+                writer.endToken();
+            }
+            writer.write(tokens[i]);
+        }
+        writer.endNode(delimiterType);
+        writer.flush();
+
+        assertEquals("X" + EDIUtils.concatAndTruncate(tokenList, delimiterType, delimiters), target.toString());
+    }
+}
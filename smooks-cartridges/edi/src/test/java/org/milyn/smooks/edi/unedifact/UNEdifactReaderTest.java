@@ -20,6 +20,7 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.StringReader;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
@@ -32,12 +33,14 @@ import org.milyn.FilterSettings;
 import org.milyn.Smooks;
 import org.milyn.container.ExecutionContext;
 import org.milyn.edisax.EDIConfigurationException;
+import org.milyn.edisax.unedifact.UNEdifactMessageBlock;
 import org.milyn.edisax.util.EDIUtils;
 import org.milyn.io.StreamUtils;
 import org.milyn.payload.JavaResult;
 import org.milyn.payload.StringResult;
 import org.milyn.smooks.edi.unedifact.model.r41.UNEdifactInterchange41;
 import org.milyn.smooks.edi.unedifact.model.r41.UNEdifactMessage41;
+import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 
 import com.thoughtworks.xstream.XStream;
@@ -134,6 +137,32 @@ public class UNEdifactReaderTest extends TestCase {
         XMLAssert.assertXMLEqual(new InputStreamReader(getClass().getResourceAsStream("unedifact-msg-expected-04.xml")), new StringReader(new XStream().toXML(interchange)));
     }
 
+	public void test_parallel_binding() throws IOException, SAXException {
+		Smooks smooks = new Smooks("/org/milyn/smooks/edi/unedifact/smooks-config-jb-01.xml");
+		final List<UNEdifactMessage41> messages = new ArrayList<UNEdifactMessage41>();
+
+		try {
+			ParallelUNEdifactMessageBinder binder = new ParallelUNEdifactMessageBinder(smooks, 2, true) {
+				protected void consumeMessage(UNEdifactMessageBlock messageBlock, UNEdifactMessage41 message) {
+					messages.add(message);
+				}
+			};
+			binder.setIgnoreNewLines(true);
+
+			assertEquals(3, binder.process(new InputSource(getClass().getResourceAsStream("unedifact-msg-02.edi"))));
+		} finally {
+			smooks.close();
+		}
+
+		assertEquals(3, messages.size());
+		assertEquals("mref1", messages.get(0).getMessageHeader().getMessageRefNum());
+		assertEquals("groupref", messages.get(0).getGroupHeader().getGroupRef());
+		assertEquals("mref2", messages.get(1).getMessageHeader().getMessageRefNum());
+		assertNull(messages.get(1).getGroupHeader());
+		assertEquals("mref3", messages.get(2).getMessageHeader().getMessageRefNum());
+		assertEquals("ctrlRef", messages.get(2).getInterchangeHeader().getControlRef());
+	}
+
 	private void createZip() throws IOException {
 		File zipFile = new File("target/mapping-models.zip");
 		
@@ -140,6 +140,9 @@ public class BeanInstancePopulator implements DOMElementVisitor, SAXVisitBefore,
     private DataDecoder decoder;
     private String mapKeyAttribute;
 
+    private volatile boolean checkedForPrimitiveBinding;
+    private Class<?> primitiveBindType;
+
     private boolean isBeanWiring;
 
     private BeanWiringObserver wireByBeanIdObserver;
@@ -380,6 +383,8 @@ public class BeanInstancePopulator implements DOMElementVisitor, SAXVisitBefore,
 
         if(expressionEvaluator != null) {
             bindExpressionValue(propertyName, dataString, executionContext, new Fragment(element));
+        } else if(dataString != null && isPrimitiveBinding(executionContext)) {
+            decodeAndSetPrimitivePropertyValue(propertyName, dataString, executionContext, new Fragment(element));
         } else {
         	decodeAndSetPropertyValue(propertyName, dataString, executionContext, new Fragment(element));
         }
@@ -399,6 +404,12 @@ public class BeanInstancePopulator implements DOMElementVisitor, SAXVisitBefore,
             propertyName = element.getName().getLocalPart();
         }
 
+        if(expressionEvaluator == null && !isAttribute && isPrimitiveBinding(executionContext)) {
+            // Decode the primitive directly from the accumulated text i.e. without creating a String...
+            decodeAndSetPrimitivePropertyValue(propertyName, element.getTextContentAsCharSequence(), executionContext, new Fragment(element));
+            return;
+        }
+
         String dataString = null;
         if(expressionEvaluator == null || expressionHasDataVariable) {
 	        if (isAttribute) {
@@ -486,6 +497,82 @@ public class BeanInstancePopulator implements DOMElementVisitor, SAXVisitBefore,
 
     }
 
+    private void decodeAndSetPrimitivePropertyValue(String mapPropertyName, CharSequence data, ExecutionContext executionContext, Fragment source) {
+        if(data.length() == 0 && defaultVal != null) {
+            if(defaultVal.equals("null")) {
+                return;
+            }
+            data = defaultVal;
+        }
+
+        // Note that the decoded value still gets boxed for the reflective setter invocation...
+        Object dataObject;
+        try {
+            if(primitiveBindType == Integer.TYPE) {
+                dataObject = ((IntDataDecoder) decoder).decodeInt(data);
+            } else if(primitiveBindType == Long.TYPE) {
+                dataObject = ((LongDataDecoder) decoder).decodeLong(data);
+            } else if(primitiveBindType == Double.TYPE) {
+                dataObject = ((DoubleDataDecoder) decoder).decodeDouble(data);
+            } else {
+                dataObject = ((BooleanDataDecoder) decoder).decodeBoolean(data);
+            }
+        } catch(DataDecodeException e) {
+            throw new DataDecodeException("Failed to decode binding value '" + data + "' for property '" + property + "' on bean '" + beanId.getName() +"'.", e);
+        }
+
+        setPropertyValue(mapPropertyName, dataObject, executionContext, source);
+    }
+
+    /**
+     * Is this a binding to a primitive bean property (int, long, double or boolean) with a decoder
+     * that can decode directly to that primitive type (e.g. {@link IntDataDecoder}).
+     * @param executionContext The execution context.
+     * @return True if this is a primitive binding, otherwise false.
+     */
+    private boolean isPrimitiveBinding(ExecutionContext executionContext) {
+        if(!checkedForPrimitiveBinding) {
+            Class<?> bindType = null;
+
+            if(beanRuntimeInfo.getClassification() == Classification.NON_COLLECTION && (setterMethod != null || property != null)) {
+                if (decoder == null) {
+                    decoder = getDecoder(executionContext);
+                }
+
+                // Resolve the setter method in the same way as for the decoded Object value...
+                Class<?> decodeType = null;
+                if(decoder instanceof IntDataDecoder) {
+                    decodeType = Integer.class;
+                } else if(decoder instanceof LongDataDecoder) {
+                    decodeType = Long.class;
+                } else if(decoder instanceof DoubleDataDecoder) {
+                    decodeType = Double.class;
+                } else if(decoder instanceof BooleanDataDecoder) {
+                    decodeType = Boolean.class;
+                }
+
+                if(decodeType != null) {
+                    createPropertySetterMethod(executionContext.getBeanContext().getBean(beanId), decodeType);
+                    if(propertySetterMethod != null) {
+                        Class<?> setterParamType = propertySetterMethod.getParameterTypes()[0];
+
+                        if(setterParamType == Integer.TYPE && decoder instanceof IntDataDecoder ||
+                           setterParamType == Long.TYPE && decoder instanceof LongDataDecoder ||
+                           setterParamType == Double.TYPE && decoder instanceof DoubleDataDecoder ||
+                           setterParamType == Boolean.TYPE && decoder instanceof BooleanDataDecoder) {
+                            bindType = setterParamType;
+                        }
+                    }
+                }
+            }
+
+            primitiveBindType = bindType;
+            checkedForPrimitiveBinding = true;
+        }
+
+        return (primitiveBindType != null);
+    }
+
     @SuppressWarnings("unchecked")
 	public void setPropertyValue(String mapPropertyName, Object dataObject, ExecutionContext executionContext, Fragment source) {
     	if ( dataObject == null )
@@ -0,0 +1,99 @@
+/*
+	Milyn - Copyright (C) 2006 - 2010
+
+	This library is free software; you can redistribute it and/or
+	modify it under the terms of the GNU Lesser General Public
+	License (version 2.1) as published by the Free Software
+	Foundation.
+
+	This library is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+	See the GNU Lesser General Public License for more details:
+	http://www.gnu.org/licenses/lgpl.txt
+*/
+package org.milyn.javabean.v14.primitives;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import javax.xml.transform.stream.StreamSource;
+
+import junit.framework.TestCase;
+
+import org.milyn.FilterSettings;
+import org.milyn.Smooks;
+import org.milyn.SmooksException;
+import org.milyn.javabean.DataDecodeException;
+import org.milyn.javabean.TypePopCheckBean;
+import org.milyn.payload.JavaResult;
+import org.xml.sax.SAXException;
+
+/**
+ * Primitive property binding tests.
+ */
+public class PrimitiveBindingTest extends TestCase {
+
+    public void test_01_DOM() throws IOException, SAXException {
+    	test_01(FilterSettings.DEFAULT_DOM);
+    }
+
+    public void test_01_SAX() throws IOException, SAXException {
+    	test_01(FilterSettings.DEFAULT_SAX);
+    }
+
+    public void test_01(FilterSettings filterSettings) throws IOException, SAXException {
+        TypePopCheckBean bean = filter(filterSettings, "<data><intVal>\n 123 \n</intVal><longVal>\n9223372036854775807\n</longVal><doubleVal>-1.25</doubleVal><boolVal> true </boolVal><integerVal>5</integerVal></data>");
+
+        assertEquals(123, bean.getIntVal());
+        assertEquals(Long.MAX_VALUE, bean.getLongVal());
+        assertEquals(-1.25d, bean.getDoubleVal());
+        assertEquals(true, bean.isBoolVal());
+        assertEquals(new Integer(5), bean.getIntegerVal());
+    }
+
+    public void test_02_DOM() throws IOException, SAXException {
+    	test_02(FilterSettings.DEFAULT_DOM);
+    }
+
+    public void test_02_SAX() throws IOException, SAXException {
+    	test_02(FilterSettings.DEFAULT_SAX);
+    }
+
+    public void test_02(FilterSettings filterSettings) throws IOException, SAXException {
+        // Empty value with a default...
+        TypePopCheckBean bean = filter(filterSettings, "<data><intVal>1</intVal><longVal></longVal></data>");
+
+        assertEquals(1, bean.getIntVal());
+        assertEquals(99L, bean.getLongVal());
+    }
+
+    public void test_03_DOM() throws IOException, SAXException {
+    	test_03(FilterSettings.DEFAULT_DOM);
+    }
+
+    public void test_03_SAX() throws IOException, SAXException {
+    	test_03(FilterSettings.DEFAULT_SAX);
+    }
+
+    public void test_03(FilterSettings filterSettings) throws IOException, SAXException {
+        try {
+            filter(filterSettings, "<data><intVal>x1</intVal></data>");
+            fail("Expected SmooksException");
+        } catch(SmooksException e) {
+            DataDecodeException decodeException = (DataDecodeException) e.getCause();
+            assertEquals("Failed to decode binding value 'x1' for property 'intVal' on bean 'data'.", decodeException.getMessage());
+        }
+    }
+
+    private TypePopCheckBean filter(FilterSettings filterSettings, String message) throws IOException, SAXException {
+        Smooks smooks = new Smooks(getClass().getResourceAsStream("config-01.xml"));
+        JavaResult result = new JavaResult();
+
+        smooks.setFilterSettings(filterSettings);
+        smooks.filterSource(new StreamSource(new StringReader(message)), result);
+
+        return (TypePopCheckBean) result.getBean("data");
+    }
+}
@@ -16,6 +16,7 @@
 package org.milyn.persistence.parameter;
 
 import org.milyn.container.ApplicationContext;
+import org.milyn.container.ContextKey;
 import org.milyn.container.ExecutionContext;
 import org.milyn.persistence.ParameterListType;
 
@@ -29,11 +30,18 @@ public class ParameterManager {
 
 	private static final String PARAMETER_INDEX_CONTEXT_KEY = ParameterIndex.class.getName() + "#CONTEXT_KEY";
 
+	private static final ContextKey.Family<ParameterContainer<?>> PARAMETER_CONTAINER_CONTEXT_KEYS = new ContextKey.Family<ParameterContainer<?>>(PARAMETER_CONTAINER_CONTEXT_KEY + "#");
+
 
 	public static String getParameterIndexName(int id) {
 		return PARAMETER_INDEX_CONTEXT_KEY + "#" + id;
 	}
 
+	/**
+	 * @deprecated The execution scoped {@link ParameterContainer} is no longer bound to the
+	 * {@link ExecutionContext} as a named attribute.  Use {@link #getParameterContainer(int, ExecutionContext)}.
+	 */
+	@Deprecated
 	public static String getParameterContainerName(int id) {
 		return PARAMETER_CONTAINER_CONTEXT_KEY + "#" + id;
 	}
@@ -80,7 +88,7 @@ public class ParameterManager {
 				throw new IllegalStateException("Unknown ParameterListType '" + type + "'.");
 			}
 
-			executionContext.setAttribute(getParameterContainerName(id), container);
+			executionContext.set(PARAMETER_CONTAINER_CONTEXT_KEYS.get(id), container);
 
 		} else {
 			container.clear();
@@ -90,7 +98,7 @@ public class ParameterManager {
 
 	@SuppressWarnings("unchecked")
 	public static ParameterContainer<Parameter<?>> getParameterContainer(int id, ExecutionContext executionContext) {
-		return (ParameterContainer<Parameter<?>>) executionContext.getAttribute(getParameterContainerName(id));
+		return (ParameterContainer<Parameter<?>>) executionContext.get(PARAMETER_CONTAINER_CONTEXT_KEYS.get(id));
 	}
 
 
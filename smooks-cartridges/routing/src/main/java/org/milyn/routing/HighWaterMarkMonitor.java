@@ -0,0 +1,195 @@
+/*
+ * Milyn - Copyright (C) 2006 - 2010
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License (version 2.1) as published
+ * by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.
+ *
+ * See the GNU Lesser General Public License for more details:
+ * http://www.gnu.org/licenses/lgpl.txt
+ */
+package org.milyn.routing;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Shared High Water Mark (back-pressure) monitor for routing destinations.
+ * <p/>
+ * Keeps an in-memory count of the number of items sitting in a routing destination
+ * (files in a directory, messages on a queue etc).  The count is incremented by the
+ * router for every item it routes (see {@link #increment()}) and is only re-measured
+ * against the real destination (see {@link #measure()}) at most once every
+ * "measureFrequency" milliseconds, no matter how many routing threads are using the
+ * monitor.
+ * <p/>
+ * Routing threads that find the destination above the High Water Mark block on a
+ * {@link Condition} and are signalled as soon as a measurement shows the level has
+ * dropped below the High Water Mark.  Only one thread performs the (potentially
+ * expensive) measurement at any one time.
+ */
+public abstract class HighWaterMarkMonitor {
+
+    private static Log logger = LogFactory.getLog(HighWaterMarkMonitor.class);
+
+    private final String destinationName;
+    private final int highWaterMark;
+    private final long highWaterMarkTimeout;
+    private final long measureFrequency;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition belowHighWaterMark = lock.newCondition();
+    private int level;
+    private long lastMeasured = -1;
+    private boolean measuring = false;
+
+    /**
+     * Public constructor.
+     *
+     * @param destinationName The destination name.  Used for logging and error reporting.
+     * @param highWaterMark The High Water Mark.
+     * @param highWaterMarkTimeout Max number of ms to wait for the level to drop below the High Water Mark.
+     * @param measureFrequency Min number of ms between measurements of the destination.
+     */
+    protected HighWaterMarkMonitor(String destinationName, int highWaterMark, long highWaterMarkTimeout, long measureFrequency) {
+        this.destinationName = destinationName;
+        this.highWaterMark = highWaterMark;
+        this.highWaterMarkTimeout = highWaterMarkTimeout;
+        this.measureFrequency = measureFrequency;
+    }
+
+    /**
+     * Measure the current number of items in the destination.
+     *
+     * @return The number of items in the destination.
+     * @throws SmooksRoutingException Error measuring the destination.
+     */
+    protected abstract int measure() throws SmooksRoutingException;
+
+    /**
+     * Create the exception to be thrown when a routing thread times out waiting
+     * for the level to drop below the High Water Mark.
+     * <p/>
+     * Subclasses may override this behaviour.
+     *
+     * @param timeout The timeout (ms).
+     * @return The exception.
+     */
+    protected SmooksRoutingException createTimeoutException(long timeout) {
+        return new SmooksRoutingException("Failed to route to destination '" + destinationName + "'. Timed out (" + timeout + " ms) waiting for the number of items to drop below High Water Mark (" + highWaterMark + ").  Consider increasing 'highWaterMark' and/or 'highWaterMarkTimeout' param values.");
+    }
+
+    public String getDestinationName() {
+        return destinationName;
+    }
+
+    public int getHighWaterMark() {
+        return highWaterMark;
+    }
+
+    /**
+     * Get the last known level (item count) of the destination.
+     * @return The last known level.
+     */
+    public int getLevel() {
+        lock.lock();
+        try {
+            return level;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Record the routing of an item to the destination.
+     */
+    public void increment() {
+        lock.lock();
+        try {
+            level++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Block the calling thread while the destination is at or above the High Water Mark.
+     *
+     * @throws SmooksRoutingException Timed out waiting for the level to drop, or error measuring the destination.
+     */
+    public void waitWhileAboveHighWaterMark() throws SmooksRoutingException {
+        long timeoutAt = System.currentTimeMillis() + highWaterMarkTimeout;
+        boolean loggedWait = false;
+
+        lock.lock();
+        try {
+            while(true) {
+                measureIfStale();
+                if(level < highWaterMark) {
+                    return;
+                }
+
+                if(!loggedWait && logger.isDebugEnabled()) {
+                    logger.debug("Destination '" + destinationName + "' contains " + level + " items.  High Water Mark is " + highWaterMark + ".  Waiting for the level to drop.");
+                    loggedWait = true;
+                }
+
+                long now = System.currentTimeMillis();
+                long remaining = timeoutAt - now;
+                if(remaining <= 0) {
+                    throw createTimeoutException(highWaterMarkTimeout);
+                }
+
+                // Wake up no later than the next measurement is due...
+                long nextMeasurement = Math.max(1, lastMeasured + measureFrequency - now);
+                try {
+                    belowHighWaterMark.await(Math.min(remaining, nextMeasurement), TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    logger.error("Interrupted", e);
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Re-measure the destination if the last measurement is older than the measure frequency.
+     * <p/>
+     * Must be called while holding the lock.  The lock is released while the measurement
+     * is being taken, so as not to block threads that only need the cached level.
+     */
+    private void measureIfStale() throws SmooksRoutingException {
+        long now = System.currentTimeMillis();
+
+        if(measuring || (lastMeasured != -1 && now - lastMeasured < measureFrequency)) {
+            return;
+        }
+
+        int measuredLevel;
+        measuring = true;
+        lock.unlock();
+        try {
+            measuredLevel = measure();
+        } finally {
+            lock.lock();
+            measuring = false;
+            lastMeasured = System.currentTimeMillis();
+        }
+
+        level = measuredLevel;
+        if(level < highWaterMark) {
+            belowHighWaterMark.signalAll();
+        }
+    }
+}
@@ -26,8 +26,10 @@ import org.milyn.javabean.lifecycle.BeanContextLifecycleEvent;
 import org.milyn.javabean.lifecycle.BeanLifecycle;
 import org.milyn.javabean.repository.BeanId;
 import org.milyn.javabean.repository.BeanRepository;
+import org.milyn.io.FragmentBuffer;
 import org.milyn.util.CollectionsUtil;
 import org.milyn.xml.XmlUtil;
+import org.milyn.container.ContextKey;
 import org.milyn.container.ExecutionContext;
 import org.milyn.SmooksException;
 import org.milyn.cdr.annotation.ConfigParam;
@@ -36,7 +38,6 @@ import org.xml.sax.Attributes;
 import org.xml.sax.helpers.AttributesImpl;
 
 import java.io.IOException;
-import java.io.StringWriter;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -52,10 +53,13 @@ import javax.xml.namespace.QName;
  */
 public class FragmentSerializer implements SAXVisitBefore, SAXVisitAfter, DOMVisitBefore, DOMVisitAfter, Producer, VisitLifecycleCleanable {
 
+    private static final ContextKey<Map<String, SAXSerializer>> SERIALIZERS_KEY = new ContextKey<Map<String, SAXSerializer>>(FragmentSerializer.class.getName() + "#serializers");
+
     private String bindTo;
     private boolean omitXMLDeclaration;
 	private boolean childContentOnly;
     private boolean retain;
+    private boolean bindAsCharSequence;
     
     /**
      * Set the bind-to beanId for the serialized fragment.
@@ -108,21 +112,44 @@ public class FragmentSerializer implements SAXVisitBefore, SAXVisitAfter, DOMVis
         return this;
     }
 
+    /**
+     * Bind the serialized SAX fragment as a {@link CharSequence} instead of a {@link String}.
+     * <p/>
+     * The bound {@link CharSequence} is a pooled {@link FragmentBuffer}, so no {@link String} is created
+     * unless a consumer asks for one ({@link Object#toString()}), or it can be written onward
+     * ({@link FragmentBuffer#writeTo(java.io.Writer)}).  The bound bean is only valid until its creating
+     * fragment has been processed, so consumers must not hold onto it.
+     * <p/>
+     * Ignored if the fragment bean is {@link #setRetain(boolean) retained}, or when DOM filtering.
+     *
+	 * @param bindAsCharSequence True if the serialized fragment is to be bound as a {@link CharSequence},
+     * otherwise false.
+	 * @return this instance.
+	 */
+    @ConfigParam(defaultVal = "false")
+    public FragmentSerializer setBindAsCharSequence(boolean bindAsCharSequence) {
+        this.bindAsCharSequence = bindAsCharSequence;
+        return this;
+    }
+
     public Set<? extends Object> getProducts() {
 		return CollectionsUtil.toSet(bindTo);
 	}
 
-	@SuppressWarnings("unchecked")
 	public void visitBefore(SAXElement saxElement, ExecutionContext executionContext) throws SmooksException, IOException {
-    	Map<String, SAXSerializer> fragmentSerializers = (Map<String, SAXSerializer>) executionContext.getAttribute(FragmentSerializer.class);
+    	Map<String, SAXSerializer> fragmentSerializers = executionContext.get(SERIALIZERS_KEY);
     	
     	if(fragmentSerializers == null) {
     		fragmentSerializers = new HashMap<String, SAXSerializer>();
-        	executionContext.setAttribute(FragmentSerializer.class, fragmentSerializers);
+        	executionContext.set(SERIALIZERS_KEY, fragmentSerializers);
     	}
     	
-    	SAXSerializer serializer = new SAXSerializer();
-    	fragmentSerializers.put(bindTo, serializer);
+    	SAXSerializer serializer = fragmentSerializers.get(bindTo);
+    	if(serializer == null || serializer.fragmentWriter != null) {
+    		serializer = new SAXSerializer();
+    		fragmentSerializers.put(bindTo, serializer);
+    	}
+    	serializer.reset(FragmentBuffer.acquire(executionContext));
     	
         if(!omitXMLDeclaration) {
         	serializer.fragmentWriter.write("<?xml version=\"1.0\"?>\n");
@@ -134,14 +161,22 @@ public class FragmentSerializer implements SAXVisitBefore, SAXVisitAfter, DOMVis
         notifyStartBean(new Fragment(saxElement), executionContext);
     }
 
-    @SuppressWarnings("unchecked")
 	public void visitAfter(SAXElement saxElement, ExecutionContext executionContext) throws SmooksException, IOException {
-    	Map<String, SAXSerializer> fragmentSerializers = (Map<String, SAXSerializer>) executionContext.getAttribute(FragmentSerializer.class);
+    	Map<String, SAXSerializer> fragmentSerializers = executionContext.get(SERIALIZERS_KEY);
     	SAXSerializer serializer = fragmentSerializers.get(bindTo);
 
     	try {
-    		executionContext.getBeanContext().addBean(bindTo, serializer.fragmentWriter.toString().trim(), new Fragment(saxElement));
+    		FragmentBuffer fragmentBuffer = serializer.fragmentWriter.trim();
+
+    		if(bindAsCharSequence && !retain) {
+    			// Released back to the pool once the fragment has been processed...
+        		executionContext.getBeanContext().addBean(bindTo, fragmentBuffer, new Fragment(saxElement));
+    		} else {
+        		executionContext.getBeanContext().addBean(bindTo, fragmentBuffer.toString(), new Fragment(saxElement));
+        		fragmentBuffer.release(executionContext);
+    		}
     	} finally {
+            serializer.fragmentWriter = null;
             DynamicSAXElementVisitorList.removeDynamicVisitor(serializer, executionContext);
     	}
     }
@@ -181,15 +216,24 @@ public class FragmentSerializer implements SAXVisitBefore, SAXVisitAfter, DOMVis
         beanContext.notifyObservers(new BeanContextLifecycleEvent(executionContext, fragment, BeanLifecycle.END_FRAGMENT, beanId, bean));
         if(!retain) {
             executionContext.getBeanContext().removeBean(beanId, null);
+            if(bean instanceof FragmentBuffer) {
+                ((FragmentBuffer) bean).release(executionContext);
+            }
         }
     }
 
     private class SAXSerializer implements SAXElementVisitor {
 		
     	int depth = 0;
-    	StringWriter fragmentWriter = new StringWriter();
+    	FragmentBuffer fragmentWriter;
     	Set<String> declaredPrefixes = new HashSet<String>();
 
+    	private void reset(FragmentBuffer fragmentWriter) {
+    		this.depth = 0;
+    		this.fragmentWriter = fragmentWriter;
+    		this.declaredPrefixes.clear();
+    	}
+
 		public void visitBefore(SAXElement element, ExecutionContext executionContext) throws SmooksException, IOException {
 			addNamepsaceDecls(element);			
 	        if(childContentOnly) {
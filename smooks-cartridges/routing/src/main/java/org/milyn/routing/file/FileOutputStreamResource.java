@@ -20,8 +20,9 @@ import java.io.FileFilter;
 import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -38,6 +39,7 @@ import org.milyn.expression.ExpressionEvaluator;
 import org.milyn.expression.MVELExpressionEvaluator;
 import org.milyn.io.AbstractOutputStreamResource;
 import org.milyn.javabean.decoders.MVELExpressionEvaluatorDecoder;
+import org.milyn.routing.HighWaterMarkMonitor;
 import org.milyn.routing.SmooksRoutingException;
 import org.milyn.util.FreeMarkerUtils;
 import org.milyn.util.DollarBraceDecoder;
@@ -61,6 +63,10 @@ import org.milyn.util.FreeMarkerTemplate;
  * Optional properties (default values shown):
  *    &lt;param name="highWaterMark"&gt;200&lt;/param&gt;
  *    &lt;param name="highWaterMarkTimeout"&gt;60000&lt;/param&gt;
+ *    &lt;param name="rollingMaxSize"&gt;-1&lt;/param&gt;
+ *    &lt;param name="rollingMaxFragments"&gt;-1&lt;/param&gt;
+ *    &lt;param name="rollingMaxTime"&gt;-1&lt;/param&gt;
+ *    &lt;param name="rollingBufferSize"&gt;65536&lt;/param&gt;
  * </pre>
  *
  * Description of configuration properties:
@@ -74,12 +80,17 @@ import org.milyn.util.FreeMarkerTemplate;
  * <li><i>highWaterMark</i>: max number of output files in the destination directory at any time.
  * <li><i>highWaterMarkTimeout</i>: number of ms to wait for the system to process files in the destination
  * 		directory so that the number of files drops below the highWaterMark.
- * <li><i>highWaterMarkPollFrequency</i>: number of ms to wait between checks on the High Water Mark, while
- *      waiting for it to drop.
+ * <li><i>highWaterMarkPollFrequency</i>: min number of ms between checks of the number of files in the destination
+ *      directory.  Between checks, the file count is tracked in memory (shared by all threads routing to
+ *      the directory) and threads waiting on the High Water Mark block until a check shows the count has dropped.
  * <li><i>closeOnCondition</i>: An MVEL expression. If it returns true then the output stream is closed on the visitAfter event
  * 		else it is kept open. If the expression is not set then output stream is closed by default.
  * <li><i>append</i>: Will append to the file specified with the 'fileNamePattern' property. This is useful 
  *      for example when you want to append to a single csv file.
+ * <li><i>rollingMaxSize</i>: max size (bytes) of a rolling output file.  See "Rolling Output" below.
+ * <li><i>rollingMaxFragments</i>: max number of fragments written to a rolling output file.  See "Rolling Output" below.
+ * <li><i>rollingMaxTime</i>: max number of ms a rolling output file is kept open.  See "Rolling Output" below.
+ * <li><i>rollingBufferSize</i>: size (bytes) of the write buffer used for rolling output files.
  * </ul>
  * <p>
  * <b>When does a new file get created?</b><br>
@@ -87,6 +98,17 @@ import org.milyn.util.FreeMarkerTemplate;
  * the Stream isn't open then a new file is created. Using the 'closeOnCondition' property you can control
  * when a stream get closed. As long as the stream isn't closed, the same file is used to write too. At then
  * end of the filter process the stream always gets closed. Nothing stays open.
+ * <p>
+ * <b>Rolling Output</b><br>
+ * Setting any of the 'rollingMaxSize', 'rollingMaxFragments' or 'rollingMaxTime' properties switches the
+ * resource into rolling mode.  Instead of creating a new file per fragment, the fragments routed during a
+ * filter execution are written (through a buffered NIO {@link java.nio.channels.FileChannel}) into a single
+ * working file.  When a fragment completes and any of the thresholds has been reached, the working file is
+ * closed and atomically renamed to its final name (and added to the list file), and the next fragment starts
+ * a new file.  Whatever is left open is rolled at the end of the filter execution.  The file name and destination
+ * directory are evaluated when a rolling file is started (i.e. against the first fragment written to it), so
+ * 'fileNamePattern' must produce a unique name per rolling file.  The time threshold is only checked as
+ * fragments complete.  Rolling cannot be combined with 'append'.
  *
  * @author <a href="mailto:daniel.bevenius@gmail.com">Daniel Bevenius</a>
  * @author <a href="mailto:maurice.zeijen@smies.com">maurice.zeijen@smies.com</a>
@@ -94,6 +116,9 @@ import org.milyn.util.FreeMarkerTemplate;
 public class FileOutputStreamResource extends AbstractOutputStreamResource
 {
     private static final String TMP_FILE_CONTEXT_KEY_PREFIX = FileOutputStreamResource.class.getName() + "#tmpFile:";
+    private static final String ROLLING_FILE_CONTEXT_KEY_PREFIX = FileOutputStreamResource.class.getName() + "#rollingFile:";
+    private static final int MAX_VERIFIED_DIRECTORIES = 1000;
+    private static final int MAX_HIGH_WATER_MARK_MONITORS = 1000;
 
 	private static final String LINE_SEPARATOR = System.getProperty( "line.separator" );
 
@@ -101,16 +126,17 @@ public class FileOutputStreamResource extends AbstractOutputStreamResource
 
     @ConfigParam
     private String fileNamePattern;
-    private FreeMarkerTemplate fileNameTemplate;
+    private NameTemplate fileNameTemplate;
 
     @ConfigParam
 	private String destinationDirectoryPattern;
-    private FreeMarkerTemplate destinationDirectoryTemplate;
+    private NameTemplate destinationDirectoryTemplate;
     private FileFilter fileFilter;
+    private final ConcurrentMap<File, Boolean> verifiedDirectories = new ConcurrentHashMap<File, Boolean>();
 
     @ConfigParam(use = ConfigParam.Use.OPTIONAL)
     private String listFileNamePattern;
-    private FreeMarkerTemplate listFileNameTemplate;
+    private NameTemplate listFileNameTemplate;
     
     @ConfigParam (use = ConfigParam.Use.OPTIONAL)
     private boolean append;
@@ -123,10 +149,20 @@ public class FileOutputStreamResource extends AbstractOutputStreamResource
     private long highWaterMarkTimeout = 60000;
     @ConfigParam(defaultVal = "1000")
     private long highWaterMarkPollFrequency = 1000;
+    private final ConcurrentMap<File, HighWaterMarkMonitor> highWaterMarkMonitors = new ConcurrentHashMap<File, HighWaterMarkMonitor>();
 
     @ConfigParam(use=Use.OPTIONAL, decoder = MVELExpressionEvaluatorDecoder.class)
     private ExpressionEvaluator closeOnCondition;
 
+    @ConfigParam(defaultVal = "-1")
+    private long rollingMaxSize = -1;
+    @ConfigParam(defaultVal = "-1")
+    private int rollingMaxFragments = -1;
+    @ConfigParam(defaultVal = "-1")
+    private long rollingMaxTime = -1;
+    @ConfigParam(defaultVal = "65536")
+    private int rollingBufferSize = 65536;
+
     //	public
 
     public FileOutputStreamResource setFileNamePattern(String fileNamePattern) {
@@ -179,6 +215,26 @@ public class FileOutputStreamResource extends AbstractOutputStreamResource
         return this;
     }
 
+    public FileOutputStreamResource setRollingMaxSize(long rollingMaxSize) {
+        this.rollingMaxSize = rollingMaxSize;
+        return this;
+    }
+
+    public FileOutputStreamResource setRollingMaxFragments(int rollingMaxFragments) {
+        this.rollingMaxFragments = rollingMaxFragments;
+        return this;
+    }
+
+    public FileOutputStreamResource setRollingMaxTime(long rollingMaxTime) {
+        this.rollingMaxTime = rollingMaxTime;
+        return this;
+    }
+
+    public FileOutputStreamResource setRollingBufferSize(int rollingBufferSize) {
+        this.rollingBufferSize = rollingBufferSize;
+        return this;
+    }
+
     @Initialize
     public void intialize() throws SmooksConfigurationException {
         if(fileNamePattern == null) {
@@ -188,39 +244,91 @@ public class FileOutputStreamResource extends AbstractOutputStreamResource
             throw new SmooksConfigurationException("Null 'destinationDirectoryPattern' configuration parameter.");
         }
 
-        fileNameTemplate = new FreeMarkerTemplate(fileNamePattern);
-        destinationDirectoryTemplate = new FreeMarkerTemplate(destinationDirectoryPattern);
+        fileNameTemplate = new NameTemplate(fileNamePattern);
+        destinationDirectoryTemplate = new NameTemplate(destinationDirectoryPattern);
 
         fileFilter = new SplitFilenameFilter(fileNamePattern);
 
         if(listFileNamePattern != null) {
-        	listFileNameTemplate = new FreeMarkerTemplate(listFileNamePattern);
+        	listFileNameTemplate = new NameTemplate(listFileNamePattern);
             listFileNamePatternCtxKey = FileOutputStreamResource.class.getName() + "#" + listFileNamePattern;
         }
+
+        if(isRolling()) {
+            if(append) {
+                throw new SmooksConfigurationException("Rolling output ('rollingMaxSize', 'rollingMaxFragments', 'rollingMaxTime') cannot be used in combination with 'append'.");
+            }
+            if(rollingBufferSize <= 0) {
+                throw new SmooksConfigurationException("Invalid 'rollingBufferSize' configuration parameter value '" + rollingBufferSize + "'.  Must be greater than zero.");
+            }
+        }
     }
     
 
     @Override
 	public FileOutputStream getOutputStream( final ExecutionContext executionContext ) throws SmooksRoutingException, IOException {
-        Map<String, Object> beanMap = FreeMarkerUtils.getMergedModel(executionContext);
-        String destinationDirName = destinationDirectoryTemplate.apply(beanMap);
-        File destinationDirectory = new File(destinationDirName);
+        if(isRolling()) {
+            return getRollingFile(executionContext).openFragment();
+        }
+
+        File destinationDirectory = getDestinationDirectory(executionContext);
 
-        assertTargetDirectoryOK(destinationDirectory);
         waitWhileAboveHighWaterMark(destinationDirectory);
         
         if (append) {
 	        File outputFile = new File(destinationDirectory, getOutputFileName(executionContext));
 	        return new FileOutputStream( outputFile , true );
         } else {
-	        final File tmpFile = File.createTempFile( "." + UUID.randomUUID().toString(), ".working", destinationDirectory );
+	        final File tmpFile = createWorkingFile(destinationDirectory);
 	        final FileOutputStream fileOutputStream = new FileOutputStream( tmpFile , false );
 	        executionContext.setAttribute( TMP_FILE_CONTEXT_KEY_PREFIX + getResourceName(), tmpFile );
 	        return fileOutputStream;
         }
 	}
 
+    private boolean isRolling() {
+        return (rollingMaxSize > 0 || rollingMaxFragments > 0 || rollingMaxTime > 0);
+    }
+
+    private RollingFile getRollingFile(ExecutionContext executionContext) throws SmooksRoutingException, IOException {
+        String rollingFileKey = ROLLING_FILE_CONTEXT_KEY_PREFIX + getResourceName();
+        RollingFile rollingFile = (RollingFile) executionContext.getAttribute(rollingFileKey);
+
+        if(rollingFile == null) {
+            File destinationDirectory = getDestinationDirectory(executionContext);
+
+            waitWhileAboveHighWaterMark(destinationDirectory);
+            rollingFile = new RollingFile(createWorkingFile(destinationDirectory), getOutputFileName(executionContext), rollingBufferSize);
+            executionContext.setAttribute(rollingFileKey, rollingFile);
+        }
+
+        return rollingFile;
+    }
+
+    private File getDestinationDirectory(ExecutionContext executionContext) throws SmooksRoutingException {
+        File destinationDirectory = new File(destinationDirectoryTemplate.apply(executionContext));
+
+        assertTargetDirectoryOK(destinationDirectory);
+
+        return destinationDirectory;
+    }
+
+    private File createWorkingFile(File destinationDirectory) throws SmooksRoutingException, IOException {
+        try {
+            return File.createTempFile( "." + UUID.randomUUID().toString(), ".working", destinationDirectory );
+        } catch (IOException e) {
+            // The directory may have been removed since we verified it.  Verify it again and retry...
+            verifiedDirectories.remove(destinationDirectory);
+            assertTargetDirectoryOK(destinationDirectory);
+            return File.createTempFile( "." + UUID.randomUUID().toString(), ".working", destinationDirectory );
+        }
+    }
+
     private void assertTargetDirectoryOK(File destinationDirectory) throws SmooksRoutingException {
+        if(verifiedDirectories.containsKey(destinationDirectory)) {
+            return;
+        }
+
         if(destinationDirectory.exists() && !destinationDirectory.isDirectory()) {
             throw new SmooksRoutingException("The file routing target directory '" + destinationDirectory.getAbsolutePath() + "' exist but is not a directory. destinationDirectoryPattern: '" + destinationDirectoryPattern + "'");
         }
@@ -229,6 +337,12 @@ public class FileOutputStreamResource extends AbstractOutputStreamResource
                 throw new SmooksRoutingException("Failed to create file routing target directory '" + destinationDirectory.getAbsolutePath() + "'. destinationDirectoryPattern: '" + destinationDirectoryPattern + "'");
             }
         }
+
+        if(verifiedDirectories.size() >= MAX_VERIFIED_DIRECTORIES) {
+            // Don't let the cache grow without bound when the directory pattern is highly variable...
+            verifiedDirectories.clear();
+        }
+        verifiedDirectories.put(destinationDirectory, Boolean.TRUE);
     }
 
     private void waitWhileAboveHighWaterMark(File destinationDirectory) throws SmooksRoutingException {
@@ -236,29 +350,28 @@ public class FileOutputStreamResource extends AbstractOutputStreamResource
             return;
         }
 
-        File[] currentList = destinationDirectory.listFiles(fileFilter);
-        if(currentList.length >= highWaterMark) {
-            long start = System.currentTimeMillis();
+        getHighWaterMarkMonitor(destinationDirectory).waitWhileAboveHighWaterMark();
+    }
 
-            if(logger.isDebugEnabled()) {
-                logger.debug("Destination directoy '" + destinationDirectory.getAbsolutePath() + "' contains " + currentList.length +  " file matching pattern '" + listFileNamePattern + "'.  High Water Mark is " + highWaterMark +  ".  Waiting for file count to drop.");
-            }
+    private HighWaterMarkMonitor getHighWaterMarkMonitor(File destinationDirectory) {
+        HighWaterMarkMonitor monitor = highWaterMarkMonitors.get(destinationDirectory);
 
-            while(System.currentTimeMillis() < start + highWaterMarkTimeout) {
-                try {
-                    Thread.sleep(highWaterMarkPollFrequency);
-                } catch (InterruptedException e) {
-                    logger.error("Interrupted", e);
-                    return;
-                }
-                currentList = destinationDirectory.listFiles(fileFilter);
-                if(currentList.length < highWaterMark) {
-                    return;
-                }
+        if(monitor == null) {
+            monitor = new DirectoryHighWaterMarkMonitor(destinationDirectory);
+
+            if(highWaterMarkMonitors.size() >= MAX_HIGH_WATER_MARK_MONITORS) {
+                // Don't let the monitor map grow without bound when the directory pattern is highly variable.
+                // A discarded monitor is simply recreated, and recounts the directory on its next poll...
+                highWaterMarkMonitors.clear();
             }
 
-            throw new SmooksRoutingException("Failed to route message to Filesystem destination '" + destinationDirectory.getAbsolutePath() + "'. Timed out (" + highWaterMarkTimeout + " ms) waiting for the number of '" + listFileNamePattern + "' files to drop below High Water Mark (" + highWaterMark + ").  Consider increasing 'highWaterMark' and/or 'highWaterMarkTimeout' param values.");
+            HighWaterMarkMonitor existing = highWaterMarkMonitors.putIfAbsent(destinationDirectory, monitor);
+            if(existing != null) {
+                monitor = existing;
+            }
         }
+
+        return monitor;
     }
 
     /* (non-Javadoc)
@@ -280,10 +393,15 @@ public class FileOutputStreamResource extends AbstractOutputStreamResource
         try {
             super.closeResource(executionContext);
         } finally {
-            if (!append) {
+            if (isRolling()) {
+                RollingFile rollingFile = (RollingFile) executionContext.getAttribute(ROLLING_FILE_CONTEXT_KEY_PREFIX + getResourceName());
+                if(rollingFile != null && rollingFile.isRollDue(rollingMaxSize, rollingMaxFragments, rollingMaxTime)) {
+                    rollFile(executionContext);
+                }
+            } else if (!append) {
                 File newFile = renameWorkingFile(executionContext);
                 if(newFile != null) {
-                    addToListFile( executionContext, newFile );
+                    fileRouted(executionContext, newFile);
                 }
             }
         }
@@ -291,6 +409,31 @@ public class FileOutputStreamResource extends AbstractOutputStreamResource
 
     //	private
 
+    private void fileRouted(ExecutionContext executionContext, File newFile) {
+        if(highWaterMark != -1) {
+            getHighWaterMarkMonitor(newFile.getParentFile()).increment();
+        }
+        addToListFile( executionContext, newFile );
+    }
+
+    private void rollFile(ExecutionContext executionContext) {
+        String rollingFileKey = ROLLING_FILE_CONTEXT_KEY_PREFIX + getResourceName();
+        RollingFile rollingFile = (RollingFile) executionContext.getAttribute(rollingFileKey);
+
+        if(rollingFile == null) {
+            return;
+        }
+
+        executionContext.removeAttribute(rollingFileKey);
+        try {
+            rollingFile.close();
+        } catch (IOException e) {
+            throw new SmooksException("IOException while closing rolling file [" + rollingFile.getWorkingFile().getAbsolutePath() + "].", e);
+        }
+
+        fileRouted(executionContext, renameWorkingFile(rollingFile.getWorkingFile(), rollingFile.getFileName()));
+    }
+
     private File renameWorkingFile(ExecutionContext executionContext) {
         File workingFile = (File) executionContext.getAttribute( TMP_FILE_CONTEXT_KEY_PREFIX + getResourceName() );
 
@@ -299,8 +442,10 @@ public class FileOutputStreamResource extends AbstractOutputStreamResource
             return null;
         }
 
-        String newFileName = getOutputFileName(executionContext);
+        return renameWorkingFile(workingFile, getOutputFileName(executionContext));
+    }
 
+    private File renameWorkingFile(File workingFile, String newFileName) {
         //	create a new file in the destination directory
         File newFile = new File( workingFile.getParentFile(), newFileName );
 
@@ -321,8 +466,7 @@ public class FileOutputStreamResource extends AbstractOutputStreamResource
     
     private String getOutputFileName(ExecutionContext executionContext)
     {
-        Map<String, Object> beanMap = FreeMarkerUtils.getMergedModel(executionContext);
-        return fileNameTemplate.apply( beanMap );
+        return fileNameTemplate.apply( executionContext );
     }
 
     private void addToListFile( ExecutionContext executionContext, File newFile )
@@ -359,23 +503,58 @@ public class FileOutputStreamResource extends AbstractOutputStreamResource
 	public void executeExecutionLifecycleCleanup(ExecutionContext executionContext) {
         super.executeExecutionLifecycleCleanup(executionContext);
 
-        // Close the list file, if there's one open...
-        if(listFileNamePatternCtxKey != null) {
-            FileWriter writer = (FileWriter) executionContext.getAttribute(listFileNamePatternCtxKey);
-
-            if(writer != null) {
-                try {
-                    writer.close();
-                } catch (IOException e) {
-                    logger.error("Failed to close list file '" + getListFileName(executionContext) + "'.", e);
+        try {
+            // Roll the current rolling file, if there's one open...
+            if(isRolling()) {
+                rollFile(executionContext);
+            }
+        } finally {
+            // Close the list file, if there's one open...
+            if(listFileNamePatternCtxKey != null) {
+                FileWriter writer = (FileWriter) executionContext.getAttribute(listFileNamePatternCtxKey);
+
+                if(writer != null) {
+                    try {
+                        writer.close();
+                    } catch (IOException e) {
+                        logger.error("Failed to close list file '" + getListFileName(executionContext) + "'.", e);
+                    }
                 }
             }
         }
     }
 
     private String getListFileName(ExecutionContext executionContext) {
-        Map<String, Object> beanMap = FreeMarkerUtils.getMergedModel(executionContext);
-        return listFileNameTemplate.apply(beanMap);
+        return listFileNameTemplate.apply(executionContext);
+    }
+
+    /**
+     * File name template.
+     * <p/>
+     * Patterns that don't contain any FreeMarker markup are constants and are not
+     * evaluated (and the bean model is not built) on every fragment.
+     */
+    private static class NameTemplate {
+
+        private final String constant;
+        private final FreeMarkerTemplate template;
+
+        private NameTemplate(String pattern) {
+            if(pattern.indexOf('$') == -1 && pattern.indexOf('#') == -1 && pattern.indexOf('<') == -1 && pattern.indexOf('[') == -1) {
+                constant = pattern;
+                template = null;
+            } else {
+                constant = null;
+                template = new FreeMarkerTemplate(pattern);
+            }
+        }
+
+        private String apply(ExecutionContext executionContext) {
+            if(constant != null) {
+                return constant;
+            }
+            return template.apply(FreeMarkerUtils.getMergedModel(executionContext));
+        }
     }
 
     public static class SplitFilenameFilter implements FileFilter {
@@ -393,4 +572,23 @@ public class FileOutputStreamResource extends AbstractOutputStreamResource
             return matcher.matches();
         }
     }
+
+    private class DirectoryHighWaterMarkMonitor extends HighWaterMarkMonitor {
+
+        private final File destinationDirectory;
+
+        private DirectoryHighWaterMarkMonitor(File destinationDirectory) {
+            super(destinationDirectory.getAbsolutePath(), highWaterMark, highWaterMarkTimeout, highWaterMarkPollFrequency);
+            this.destinationDirectory = destinationDirectory;
+        }
+
+        protected int measure() {
+            File[] currentList = destinationDirectory.listFiles(fileFilter);
+            return (currentList != null ? currentList.length : 0);
+        }
+
+        protected SmooksRoutingException createTimeoutException(long timeout) {
+            return new SmooksRoutingException("Failed to route message to Filesystem destination '" + destinationDirectory.getAbsolutePath() + "'. Timed out (" + timeout + " ms) waiting for the number of '" + listFileNamePattern + "' files to drop below High Water Mark (" + highWaterMark + ").  Consider increasing 'highWaterMark' and/or 'highWaterMarkTimeout' param values.");
+        }
+    }
 }
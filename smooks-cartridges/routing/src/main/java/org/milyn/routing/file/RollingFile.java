@@ -0,0 +1,219 @@
+/*
+ * Milyn - Copyright (C) 2006 - 2010
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License (version 2.1) as published
+ * by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.
+ *
+ * See the GNU Lesser General Public License for more details:
+ * http://www.gnu.org/licenses/lgpl.txt
+ */
+package org.milyn.routing.file;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Rolling output file.
+ * <p/>
+ * Many routed fragments are written into a single working file through a buffered
+ * {@link FileChannel}.  Each fragment is written through the rolling file's {@link FileOutputStream}
+ * (see {@link #openFragment()}), closing of which marks the end of the fragment but leaves the
+ * underlying file open.
+ * The owning {@link FileOutputStreamResource} checks the roll thresholds (see {@link #isRollDue(long, int, long)})
+ * after every fragment and, once a threshold is hit, closes the file and renames it to its
+ * final name.
+ * <p/>
+ * Not thread safe.  Each instance is owned by a single filter execution.
+ */
+class RollingFile {
+
+    private final File workingFile;
+    private final String fileName;
+    private final FileOutputStream fileOutputStream;
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final FragmentOutputStream fragmentOutputStream;
+    private final long openedAt = System.currentTimeMillis();
+    private long size;
+    private int fragmentCount;
+    private boolean closed = false;
+
+    /**
+     * Constructor.
+     * @param workingFile The working file into which the fragments are written.
+     * @param fileName The name to which the working file is to be renamed when the file is rolled.
+     * @param bufferSize The write buffer size (bytes).
+     * @throws IOException Error opening the working file.
+     */
+    RollingFile(File workingFile, String fileName, int bufferSize) throws IOException {
+        this.workingFile = workingFile;
+        this.fileName = fileName;
+        this.fileOutputStream = new FileOutputStream(workingFile, false);
+        this.channel = fileOutputStream.getChannel();
+        this.buffer = ByteBuffer.allocate(bufferSize);
+        this.fragmentOutputStream = new FragmentOutputStream();
+    }
+
+    File getWorkingFile() {
+        return workingFile;
+    }
+
+    String getFileName() {
+        return fileName;
+    }
+
+    long getSize() {
+        return size;
+    }
+
+    int getFragmentCount() {
+        return fragmentCount;
+    }
+
+    /**
+     * Open the {@link FileOutputStream} for the next fragment.
+     * <p/>
+     * The same stream instance is returned for every fragment, as every {@link FileOutputStream}
+     * created on the working file descriptor stays referenced by the descriptor until the file is closed.
+     * @return The fragment FileOutputStream.
+     * @throws IOException The working file is closed.
+     */
+    FileOutputStream openFragment() throws IOException {
+        if(closed) {
+            throw new IOException("Rolling file '" + workingFile.getAbsolutePath() + "' is closed.");
+        }
+        fragmentOutputStream.fragmentClosed = false;
+        fragmentCount++;
+        return fragmentOutputStream;
+    }
+
+    /**
+     * Is it time to roll this file.
+     * @param maxSize Max file size (bytes), or -1 for no limit.
+     * @param maxFragments Max number of fragments in the file, or -1 for no limit.
+     * @param maxTime Max time (ms) the file is to be kept open, or -1 for no limit.
+     * @return True if any of the thresholds have been hit, otherwise false.
+     */
+    boolean isRollDue(long maxSize, int maxFragments, long maxTime) {
+        if(maxSize > 0 && size >= maxSize) {
+            return true;
+        }
+        if(maxFragments > 0 && fragmentCount >= maxFragments) {
+            return true;
+        }
+        if(maxTime > 0 && System.currentTimeMillis() - openedAt >= maxTime) {
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Flush the write buffer and close the working file.
+     * @throws IOException Error writing to or closing the working file.
+     */
+    void close() throws IOException {
+        if(closed) {
+            return;
+        }
+        closed = true;
+        try {
+            flushBuffer();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        buffer.flip();
+        while(buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private void write(byte[] bytes, int offset, int length) throws IOException {
+        if(closed) {
+            throw new IOException("Rolling file '" + workingFile.getAbsolutePath() + "' is closed.");
+        }
+
+        if(length > buffer.remaining()) {
+            flushBuffer();
+        }
+        if(length > buffer.capacity()) {
+            // Too big to buffer... write it straight to the channel...
+            ByteBuffer wrapped = ByteBuffer.wrap(bytes, offset, length);
+            while(wrapped.hasRemaining()) {
+                channel.write(wrapped);
+            }
+        } else {
+            buffer.put(bytes, offset, length);
+        }
+        size += length;
+    }
+
+    /**
+     * Fragment OutputStream.
+     * <p/>
+     * A {@link FileOutputStream} on the working file descriptor, so as to keep the {@link FileOutputStream}
+     * contract of {@link FileOutputStreamResource#getOutputStream(org.milyn.container.ExecutionContext)}.
+     * Writes go through the rolling file write buffer.  Flushing is a no-op (the data is written to the
+     * file when the buffer fills, or when the file is rolled) and closing only ends the fragment.  The
+     * stream is reopened for the next fragment by {@link RollingFile#openFragment()}.
+     */
+    private class FragmentOutputStream extends FileOutputStream {
+
+        private final byte[] singleByte = new byte[1];
+        private boolean fragmentClosed = false;
+
+        private FragmentOutputStream() throws IOException {
+            super(fileOutputStream.getFD());
+        }
+
+        public void write(int b) throws IOException {
+            singleByte[0] = (byte) b;
+            write(singleByte, 0, 1);
+        }
+
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            if(fragmentClosed) {
+                throw new IOException("Fragment OutputStream is closed.");
+            }
+            RollingFile.this.write(bytes, offset, length);
+        }
+
+        public void write(byte[] bytes) throws IOException {
+            write(bytes, 0, bytes.length);
+        }
+
+        public void flush() {
+        }
+
+        /**
+         * Get the working file channel.
+         * <p/>
+         * The write buffer is flushed first, so that data written through the channel follows the
+         * data already written to the fragment.  Data written through the channel is not counted
+         * against the 'maxSize' threshold.
+         */
+        public FileChannel getChannel() {
+            try {
+                flushBuffer();
+            } catch (IOException e) {
+                throw new IllegalStateException("Error flushing rolling file '" + workingFile.getAbsolutePath() + "'.", e);
+            }
+            return channel;
+        }
+
+        public void close() {
+            fragmentClosed = true;
+        }
+    }
+}
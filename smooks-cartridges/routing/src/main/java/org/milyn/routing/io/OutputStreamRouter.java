@@ -17,6 +17,8 @@ package org.milyn.routing.io;
 import java.io.IOException;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 
 import org.milyn.SmooksException;
 import org.milyn.cdr.SmooksConfigurationException;
@@ -33,6 +35,7 @@ import org.milyn.delivery.sax.SAXVisitAfter;
 import org.milyn.delivery.sax.SAXVisitBefore;
 import org.milyn.delivery.ordering.Consumer;
 import org.milyn.io.AbstractOutputStreamResource;
+import org.milyn.io.FragmentBuffer;
 import org.milyn.javabean.context.BeanContext;
 import org.milyn.javabean.repository.BeanId;
 import org.milyn.javabean.repository.BeanRepositoryManager;
@@ -150,6 +153,13 @@ public class OutputStreamRouter implements DOMElementVisitor, SAXVisitBefore, SA
 			{
         		out.write( ( (String)bean).getBytes(encoding ) );
 			}
+			else if ( bean instanceof FragmentBuffer )
+			{
+				// Stream the serialized fragment onward, without creating a String...
+				Writer writer = new OutputStreamWriter( out, encoding );
+				((FragmentBuffer) bean).writeTo( writer );
+				writer.flush();
+			}
 			else if ( bean instanceof byte[] )
 			{
         		out.write( new String( (byte[]) bean, encoding ).getBytes() ) ;
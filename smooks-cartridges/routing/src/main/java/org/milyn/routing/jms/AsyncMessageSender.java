@@ -0,0 +1,198 @@
+/*
+ * Milyn - Copyright (C) 2006 - 2010
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License (version 2.1) as published
+ * by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.
+ *
+ * See the GNU Lesser General Public License for more details:
+ * http://www.gnu.org/licenses/lgpl.txt
+ */
+package org.milyn.routing.jms;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+
+import org.milyn.routing.SmooksRoutingException;
+import org.milyn.routing.jms.JMSSessionPool.PooledSession;
+
+/**
+ * Asynchronous JMS message sender.
+ * <p/>
+ * Messages are placed on a bounded queue (the routing thread blocks when the queue is full,
+ * up to the send timeout) and sent by a fixed number of sender threads, each of which owns
+ * its own JMS Session.
+ * The outcome of each send is reported to the {@link SendTracker} of the filter execution
+ * that routed the message.
+ * <p/>
+ * The sender thread Sessions are shared by all filter executions, so they must not be transacted.
+ */
+class AsyncMessageSender {
+
+    private final JMSRouter router;
+    private final BlockingQueue<SendTask> sendQueue;
+    private final Thread[] senderThreads;
+    private final long timeout;
+    private volatile boolean running = true;
+
+    AsyncMessageSender(JMSRouter router, int queueSize, int numSenderThreads, long timeout) {
+        this.router = router;
+        this.sendQueue = new ArrayBlockingQueue<SendTask>(queueSize);
+        this.senderThreads = new Thread[numSenderThreads];
+        this.timeout = timeout;
+    }
+
+    void start() throws JMSException {
+        for(int i = 0; i < senderThreads.length; i++) {
+            senderThreads[i] = new SenderThread(router.createPooledSession(), i);
+            senderThreads[i].start();
+        }
+    }
+
+    void send(Message message, SendTracker tracker) throws SmooksRoutingException {
+        tracker.queued();
+        try {
+            if(!sendQueue.offer(new SendTask(message, tracker), timeout, TimeUnit.MILLISECONDS)) {
+                SmooksRoutingException timeoutException = new SmooksRoutingException("Timed out (" + timeout + " ms) waiting to queue JMS message for destination '" + router.getDestinationName() + "'.  Consider increasing the 'asyncSendQueueSize', 'asyncSenderThreads' and/or 'asyncSendTimeout' param values.");
+                tracker.completed(timeoutException);
+                throw timeoutException;
+            }
+        } catch (InterruptedException e) {
+            tracker.completed(e);
+            Thread.currentThread().interrupt();
+            throw new SmooksRoutingException("Interrupted while queuing JMS message for destination '" + router.getDestinationName() + "'.", e);
+        }
+    }
+
+    /**
+     * Stop the sender threads, after the queue has been drained.
+     * <p/>
+     * Sender threads still running after the send timeout are interrupted.
+     *
+     * @throws SmooksRoutingException Timed out waiting on the sender threads to drain the queue.
+     */
+    void stop() throws SmooksRoutingException {
+        long deadline = System.currentTimeMillis() + timeout;
+        boolean timedOut = false;
+
+        running = false;
+        for(Thread senderThread : senderThreads) {
+            if(senderThread == null) {
+                continue;
+            }
+            try {
+                senderThread.join(Math.max(1, deadline - System.currentTimeMillis()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if(senderThread.isAlive()) {
+                senderThread.interrupt();
+                timedOut = true;
+            }
+        }
+
+        if(timedOut) {
+            throw new SmooksRoutingException("Timed out (" + timeout + " ms) waiting on the asynchronous JMS sender threads for destination '" + router.getDestinationName() + "' to stop.  Unsent messages (" + sendQueue.size() + ") have been discarded.");
+        }
+    }
+
+    private class SenderThread extends Thread {
+
+        private final PooledSession pooledSession;
+
+        private SenderThread(PooledSession pooledSession, int index) {
+            super("JMSRouter-AsyncSender-" + router.getDestinationName() + "-" + index);
+            this.pooledSession = pooledSession;
+            setDaemon(true);
+        }
+
+        public void run() {
+            try {
+                while(running || !sendQueue.isEmpty()) {
+                    SendTask task;
+                    try {
+                        task = sendQueue.poll(100, TimeUnit.MILLISECONDS);
+                    } catch (InterruptedException e) {
+                        break;
+                    }
+
+                    if(task == null) {
+                        continue;
+                    }
+
+                    try {
+                        router.send(pooledSession, task.message);
+                        task.tracker.completed(null);
+                    } catch (Exception e) {
+                        task.tracker.completed(e);
+                    }
+                }
+            } finally {
+                pooledSession.close();
+            }
+        }
+    }
+
+    private static class SendTask {
+        private final Message message;
+        private final SendTracker tracker;
+
+        private SendTask(Message message, SendTracker tracker) {
+            this.message = message;
+            this.tracker = tracker;
+        }
+    }
+
+    /**
+     * Tracks the asynchronous sends of a single filter execution.
+     */
+    static class SendTracker {
+
+        private int pending;
+        private Throwable error;
+
+        synchronized void queued() {
+            pending++;
+        }
+
+        synchronized void completed(Throwable sendError) {
+            pending--;
+            if(sendError != null && error == null) {
+                error = sendError;
+            }
+            notifyAll();
+        }
+
+        synchronized Throwable getError() {
+            return error;
+        }
+
+        /**
+         * Wait for all the messages queued by the execution to be sent.
+         * @param timeout The max number of milliseconds to wait.
+         * @return True if all messages were sent (successfully or not), or false if the wait timed out.
+         * Send errors are available from {@link #getError()}.
+         */
+        synchronized boolean awaitCompletion(long timeout) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + timeout;
+
+            while(pending > 0) {
+                long remaining = deadline - System.currentTimeMillis();
+                if(remaining <= 0) {
+                    return false;
+                }
+                wait(remaining);
+            }
+            return true;
+        }
+    }
+}
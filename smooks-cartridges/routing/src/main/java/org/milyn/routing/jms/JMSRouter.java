@@ -18,6 +18,7 @@ import java.io.IOException;
 import java.util.Enumeration;
 import java.util.Map;
 import java.util.Properties;
+import java.util.UUID;
 
 import javax.jms.Connection;
 import javax.jms.ConnectionFactory;
@@ -42,6 +43,8 @@ import org.milyn.cdr.SmooksConfigurationException;
 import org.milyn.cdr.annotation.ConfigParam;
 import org.milyn.cdr.annotation.ConfigParam.Use;
 import org.milyn.container.ExecutionContext;
+import org.milyn.delivery.ExecutionLifecycleCleanable;
+import org.milyn.delivery.Filter;
 import org.milyn.delivery.annotation.Initialize;
 import org.milyn.delivery.annotation.Uninitialize;
 import org.milyn.delivery.annotation.VisitAfterIf;
@@ -49,7 +52,10 @@ import org.milyn.delivery.annotation.VisitBeforeIf;
 import org.milyn.delivery.dom.DOMElementVisitor;
 import org.milyn.delivery.sax.*;
 import org.milyn.delivery.ordering.Consumer;
+import org.milyn.routing.HighWaterMarkMonitor;
 import org.milyn.routing.SmooksRoutingException;
+import org.milyn.routing.jms.AsyncMessageSender.SendTracker;
+import org.milyn.routing.jms.JMSSessionPool.PooledSession;
 import org.milyn.routing.jms.message.creationstrategies.MessageCreationStrategy;
 import org.milyn.routing.jms.message.creationstrategies.StrategyFactory;
 import org.milyn.routing.jms.message.creationstrategies.TextMessageCreationStrategy;
@@ -90,6 +96,12 @@ import org.w3c.dom.Element;
  *    &lt;param name="highWaterMark"&gt;50&lt;/param&gt;
  *    &lt;param name="highWaterMarkTimeout"&gt;5000&lt;/param&gt;
  *    &lt;param name="highWaterMarkPollFrequency"&gt;500&lt;/param&gt;
+ *    &lt;param name="sessionPoolSize"&gt;10&lt;/param&gt;
+ *    &lt;param name="sessionPoolTimeout"&gt;30000&lt;/param&gt;
+ *    &lt;param name="transactedBatchSize"&gt;100&lt;/param&gt;
+ *    &lt;param name="asyncSendQueueSize"&gt;1000&lt;/param&gt;
+ *    &lt;param name="asyncSenderThreads"&gt;2&lt;/param&gt;
+ *    &lt;param name="asyncSendTimeout"&gt;30000&lt;/param&gt;
  * </pre>
  * Description of configuration properties:
  * <ul>
@@ -109,8 +121,26 @@ import org.w3c.dom.Element;
  * <li><i>highWaterMark</i>: max number of messages that can be sitting in the JMS Destination at any any time. Default is 200.
  * <li><i>highWaterMarkTimeout</i>: number of ms to wait for the system to process JMS Messages from the JMS destination
  * 		so that the number of JMS Messages drops below the highWaterMark. Default is 60000 ms.
- * <li><i>highWaterMarkPollFrequency</i>: number of ms to wait between checks on the High Water Mark, while
- *      waiting for it to drop. Default is 1000 ms.
+ * <li><i>highWaterMarkPollFrequency</i>: min number of ms between checks (browse) of the JMS Queue length. Between checks,
+ *      the Queue length is tracked in memory and threads waiting on the High Water Mark block until a check shows the length
+ *      has dropped. Default is 1000 ms.
+ * <li><i>sessionPoolSize</i>: max number of JMS Sessions (and MessageProducers) the router creates for concurrent
+ *      filter executions.  A Session is bound to a filter execution for its duration and returned to the pool at the
+ *      end of the execution.  Default is 10.
+ * <li><i>sessionPoolTimeout</i>: number of ms to wait for a pooled JMS Session when all 'sessionPoolSize' Sessions are
+ *      in use by other filter executions.  Default is 60000 ms.
+ * <li><i>transactedBatchSize</i>: requires 'transacted' to be 'true'.  When set, the router commits the Session every
+ *      'transactedBatchSize' messages and at the end of the filter execution (rolling back if the execution terminated
+ *      with an error).  A value of 0 only commits at the end of the filter execution.  Default is -1 (the router does
+ *      not commit/rollback transacted Sessions).
+ * <li><i>asyncSendQueueSize</i>: when greater than 0, messages are sent asynchronously by a pool of sender threads, via
+ *      a send queue of the specified capacity.  Routing blocks while the queue is full.  The end of the filter execution
+ *      waits for all of the execution's messages to be sent.  Not supported on 'transacted' Sessions, as the sender
+ *      threads own their own Sessions.  Default is 0 (synchronous sends).
+ * <li><i>asyncSenderThreads</i>: number of sender threads, when 'asyncSendQueueSize' is set. Default is 1.
+ * <li><i>asyncSendTimeout</i>: number of ms to wait for space on the send queue, for the execution's messages to be sent
+ *      at the end of the filter execution and for the sender threads to stop when the router is uninitialized.
+ *      Default is 60000 ms.
  * </ul>
  *
  * @author <a href="mailto:daniel.bevenius@gmail.com">Daniel Bevenius</a>
@@ -119,7 +149,7 @@ import org.w3c.dom.Element;
  */
 @VisitBeforeIf(	condition = "parameters.containsKey('executeBefore') && parameters.executeBefore.value == 'true'")
 @VisitAfterIf(	condition = "!parameters.containsKey('executeBefore') || parameters.executeBefore.value != 'true'")
-public class JMSRouter implements DOMElementVisitor, SAXVisitBefore, SAXVisitAfter, Consumer
+public class JMSRouter implements DOMElementVisitor, SAXVisitBefore, SAXVisitAfter, Consumer, ExecutionLifecycleCleanable
 {
 	/*
 	 *	Log instance
@@ -155,6 +185,24 @@ public class JMSRouter implements DOMElementVisitor, SAXVisitBefore, SAXVisitAft
     @ConfigParam(defaultVal = "1000")
     private long highWaterMarkPollFrequency = 1000;
 
+    @ConfigParam(defaultVal = "10")
+    private int sessionPoolSize = 10;
+
+    @ConfigParam(defaultVal = "60000")
+    private long sessionPoolTimeout = 60000;
+
+    @ConfigParam(defaultVal = "-1")
+    private int transactedBatchSize = -1;
+
+    @ConfigParam(defaultVal = "0")
+    private int asyncSendQueueSize = 0;
+
+    @ConfigParam(defaultVal = "1")
+    private int asyncSenderThreads = 1;
+
+    @ConfigParam(defaultVal = "60000")
+    private long asyncSendTimeout = 60000;
+
     /*
      * 	Strategy for JMS Message object creation
      */
@@ -179,6 +227,36 @@ public class JMSRouter implements DOMElementVisitor, SAXVisitBefore, SAXVisitAft
      */
     private Session session;
 
+    /*
+     * 	Queue High Water Mark monitor.  Caches the queue depth so as to avoid
+     * 	browsing the queue for every message sent.
+     */
+    private HighWaterMarkMonitor highWaterMarkMonitor;
+
+    /*
+     * 	Queue browsing session used by the High Water Mark monitor.
+     */
+    private Session browseSession;
+
+    /*
+     * 	Pool of JMS Sessions/MessageProducers.  A pooled session is bound to an
+     * 	ExecutionContext for the duration of the filter execution.
+     */
+    private JMSSessionPool sessionPool;
+
+    /*
+     * 	Async message sender.  Only set if 'asyncSendQueueSize' is greater than 0.
+     */
+    private AsyncMessageSender asyncSender;
+
+    /*
+     * 	ExecutionContext of the visit in progress on the current thread.  Made available to sendMessage(Message).
+     */
+    private final ThreadLocal<ExecutionContext> visitingContext = new ThreadLocal<ExecutionContext>();
+
+    private final String sessionContextKey = JMSRouter.class.getName() + "#session:" + UUID.randomUUID();
+    private final String sendTrackerContextKey = JMSRouter.class.getName() + "#sendTracker:" + UUID.randomUUID();
+
     @Initialize
     public void initialize() throws SmooksConfigurationException, JMSException {
         Context context = null;
@@ -190,6 +268,18 @@ public class JMSRouter implements DOMElementVisitor, SAXVisitBefore, SAXVisitAft
         if(jmsProperties.getDestinationName() == null) {
             throw new SmooksConfigurationException("Mandatory 'destinationName' property not defined.");
         }
+        if(sessionPoolSize < 1) {
+            throw new SmooksConfigurationException("Invalid 'sessionPoolSize' value '" + sessionPoolSize + "'.  Must be greater than 0.");
+        }
+        if(transactedBatchSize >= 0 && !jmsProperties.isTransacted()) {
+            throw new SmooksConfigurationException("Invalid 'transactedBatchSize' configuration.  'transacted' must be set to 'true'.");
+        }
+        if(asyncSendQueueSize > 0 && asyncSenderThreads < 1) {
+            throw new SmooksConfigurationException("Invalid 'asyncSenderThreads' value '" + asyncSenderThreads + "'.  Must be greater than 0.");
+        }
+        if(asyncSendQueueSize > 0 && jmsProperties.isTransacted()) {
+            throw new SmooksConfigurationException("Invalid 'asyncSendQueueSize' configuration.  Asynchronous sends are not supported on 'transacted' Sessions.");
+        }
 
         try
         {
@@ -208,6 +298,21 @@ public class JMSRouter implements DOMElementVisitor, SAXVisitBefore, SAXVisitAft
             msgProducer = createMessageProducer( destination, context );
             setMessageProducerProperties( );
 
+            sessionPool = new JMSSessionPool(this, sessionPoolSize, sessionPoolTimeout);
+            sessionPool.add(new PooledSession(session, msgProducer));
+
+            if(highWaterMark != -1 && session instanceof QueueSession) {
+                browseSession = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+                if(browseSession instanceof QueueSession) {
+                    highWaterMarkMonitor = new QueueHighWaterMarkMonitor((QueueSession) browseSession, (Queue) destination);
+                }
+            }
+
+            if(asyncSendQueueSize > 0) {
+                asyncSender = new AsyncMessageSender(this, asyncSendQueueSize, asyncSenderThreads, asyncSendTimeout);
+                asyncSender.start();
+            }
+
             initialized = true;
         }
         catch (NamingException e)
@@ -262,6 +367,30 @@ public class JMSRouter implements DOMElementVisitor, SAXVisitBefore, SAXVisitAft
         this.highWaterMarkPollFrequency = highWaterMarkPollFrequency;
     }
 
+    public void setSessionPoolSize(int sessionPoolSize) {
+        this.sessionPoolSize = sessionPoolSize;
+    }
+
+    public void setSessionPoolTimeout(long sessionPoolTimeout) {
+        this.sessionPoolTimeout = sessionPoolTimeout;
+    }
+
+    public void setTransactedBatchSize(int transactedBatchSize) {
+        this.transactedBatchSize = transactedBatchSize;
+    }
+
+    public void setAsyncSendQueueSize(int asyncSendQueueSize) {
+        this.asyncSendQueueSize = asyncSendQueueSize;
+    }
+
+    public void setAsyncSenderThreads(int asyncSenderThreads) {
+        this.asyncSenderThreads = asyncSenderThreads;
+    }
+
+    public void setAsyncSendTimeout(long asyncSendTimeout) {
+        this.asyncSendTimeout = asyncSendTimeout;
+    }
+
     @ConfigParam ( use = Use.OPTIONAL )
     public void setJndiContextFactory( final String contextFactory )
     {
@@ -380,17 +509,94 @@ public class JMSRouter implements DOMElementVisitor, SAXVisitBefore, SAXVisitAft
 	}
 
     private void visit( final ExecutionContext execContext ) throws SmooksException	{
-        Message message = msgCreationStrategy.createJMSMessage(beanId, execContext, session);
+        PooledSession pooledSession = bindSession(execContext);
+        Message message = msgCreationStrategy.createJMSMessage(beanId, execContext, pooledSession.getSession());
 
         if(correlationIdTemplate != null) {
             setCorrelationID(execContext, message);
         }
 
-        sendMessage(message);
+        visitingContext.set(execContext);
+        try {
+            sendMessage(message);
+        } finally {
+            visitingContext.remove();
+        }
 	}
 
+    public void executeExecutionLifecycleCleanup(ExecutionContext executionContext) {
+        SendTracker sendTracker = (SendTracker) executionContext.getAttribute(sendTrackerContextKey);
+        PooledSession pooledSession = (PooledSession) executionContext.getAttribute(sessionContextKey);
+        Throwable sendError = null;
+
+        try {
+            if(sendTracker != null) {
+                executionContext.removeAttribute(sendTrackerContextKey);
+                try {
+                    if(!sendTracker.awaitCompletion(asyncSendTimeout)) {
+                        throw new SmooksRoutingException("Timed out (" + asyncSendTimeout + " ms) waiting on the asynchronous send of JMS message(s) to destination '" + jmsProperties.getDestinationName() + "'.  Consider increasing the 'asyncSenderThreads' and/or 'asyncSendTimeout' param values.");
+                    }
+                    sendError = sendTracker.getError();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    sendError = e;
+                }
+            }
+        } finally {
+            if(pooledSession != null) {
+                executionContext.removeAttribute(sessionContextKey);
+                releaseSession(pooledSession, executionContext);
+            }
+        }
+
+        if(sendError != null) {
+            throw new SmooksException("Asynchronous send of JMS message(s) to destination '" + jmsProperties.getDestinationName() + "' failed.", sendError);
+        }
+    }
+
+    private PooledSession bindSession(ExecutionContext execContext) throws SmooksRoutingException {
+        PooledSession pooledSession = (PooledSession) execContext.getAttribute(sessionContextKey);
+
+        if(pooledSession == null) {
+            pooledSession = sessionPool.borrow();
+            execContext.setAttribute(sessionContextKey, pooledSession);
+        }
+
+        return pooledSession;
+    }
+
+    private void releaseSession(PooledSession pooledSession, ExecutionContext executionContext) {
+        if(transactedBatchSize >= 0 && pooledSession.getUncommitted() > 0) {
+            try {
+                // If there's no termination error on the context, commit, otherwise rollback...
+                if(executionContext.getTerminationError() == null) {
+                    pooledSession.commit();
+                } else {
+                    pooledSession.rollback();
+                }
+            } catch (JMSException e) {
+                sessionPool.invalidate(pooledSession);
+                throw new SmooksException("JMSException while completing JMS transaction for destination '" + jmsProperties.getDestinationName() + "'.", e);
+            }
+        }
+        sessionPool.release(pooledSession);
+    }
+
     //	Lifecycle
 
+    /**
+     * Create a new Session/MessageProducer pair for the session pool.
+     */
+    PooledSession createPooledSession() throws JMSException {
+        Session newSession = connection.createSession( jmsProperties.isTransacted(),
+                AcknowledgeModeEnum.getAckMode( jmsProperties.getAcknowledgeMode().toUpperCase() ).getAcknowledgeModeInt() );
+        MessageProducer producer = newSession.createProducer( destination );
+
+        setMessageProducerProperties( producer );
+
+        return new PooledSession(newSession, producer);
+    }
+
     protected MessageProducer createMessageProducer( final Destination destination, final Context context ) throws JMSException {
 		try
 		{
@@ -434,15 +640,26 @@ public class JMSRouter implements DOMElementVisitor, SAXVisitBefore, SAXVisitAft
      * Subclasses may override this behaviour.
      */
 	protected void setMessageProducerProperties() throws SmooksConfigurationException
+	{
+		setMessageProducerProperties( msgProducer );
+	}
+
+    /**
+     * Sets the TimeToLive, Priority and DeliveryMode properties on the supplied
+     * MessageProducer.
+     * <p>
+     * Subclasses may override this behaviour.
+     */
+	protected void setMessageProducerProperties( final MessageProducer producer ) throws SmooksConfigurationException
 	{
 		try
 		{
-			msgProducer.setTimeToLive( jmsProperties.getTimeToLive() );
-			msgProducer.setPriority( jmsProperties.getPriority() );
+			producer.setTimeToLive( jmsProperties.getTimeToLive() );
+			producer.setPriority( jmsProperties.getPriority() );
 
 			final int deliveryModeInt = "non-persistent".equals( jmsProperties.getDeliveryMode() ) ?
 					DeliveryMode.PERSISTENT : DeliveryMode.NON_PERSISTENT;
-			msgProducer.setDeliveryMode( deliveryModeInt );
+			producer.setDeliveryMode( deliveryModeInt );
 		}
 		catch (JMSException e)
 		{
@@ -451,60 +668,90 @@ public class JMSRouter implements DOMElementVisitor, SAXVisitBefore, SAXVisitAft
 		}
 	}
 
+    /**
+     * Send the message.
+     * <p/>
+     * Sends the message on the JMS Session bound to the current filter execution or, if 'asyncSendQueueSize'
+     * is set, queues it for sending by the async sender threads.  Must be called during a filter execution.
+     *
+     * @param message The message to be sent.
+     * @throws SmooksRoutingException Error sending the message.
+     */
     protected void sendMessage( final Message message ) throws SmooksRoutingException
 	{
-        try {
-            waitWhileAboveHighWaterMark();
-        } catch (JMSException e) {
-            throw new SmooksRoutingException("Exception while attempting to check JMS Queue High Water Mark.", e );
+        ExecutionContext execContext = visitingContext.get();
+
+        if(execContext == null) {
+            execContext = Filter.getCurrentExecutionContext();
+            if(execContext == null) {
+                throw new SmooksRoutingException("Unable to send JMS message to destination '" + jmsProperties.getDestinationName() + "'.  No filter execution is active on the current thread.");
+            }
         }
 
+        if(asyncSender != null) {
+            sendMessageAsync(message, execContext);
+        } else {
+            sendMessage(message, bindSession(execContext), execContext);
+        }
+	}
+
+    private void sendMessage( final Message message, final PooledSession pooledSession, final ExecutionContext execContext ) throws SmooksRoutingException
+	{
+        waitWhileAboveHighWaterMark();
+
         try
 		{
-            msgProducer.send( message );
+            send( pooledSession, message );
+            if(transactedBatchSize >= 0) {
+                int uncommitted = pooledSession.sent();
+                if(transactedBatchSize > 0 && uncommitted >= transactedBatchSize) {
+                    pooledSession.commit();
+                }
+            }
 		}
 		catch (JMSException e)
 		{
+            // The session may be broken.  Don't return it to the pool...
+            execContext.removeAttribute(sessionContextKey);
+            sessionPool.invalidate(pooledSession);
+
 			final String errorMsg = "JMSException while sending Message.";
 			throw new SmooksRoutingException( errorMsg, e );
 		}
 	}
 
-    private void waitWhileAboveHighWaterMark() throws JMSException, SmooksRoutingException {
-        if(highWaterMark == -1) {
-            return;
-        }
-
-        if(session instanceof QueueSession) {
-            QueueSession queueSession = (QueueSession) session;
-            QueueBrowser queueBrowser = queueSession.createBrowser((Queue) destination);
+    private void sendMessageAsync( final Message message, final ExecutionContext execContext ) throws SmooksRoutingException
+    {
+        SendTracker sendTracker = (SendTracker) execContext.getAttribute(sendTrackerContextKey);
 
-            try {
-                int length = getQueueLength(queueBrowser);
-                long start = System.currentTimeMillis();
+        if(sendTracker == null) {
+            sendTracker = new SendTracker();
+            execContext.setAttribute(sendTrackerContextKey, sendTracker);
+        } else if(sendTracker.getError() != null) {
+            throw new SmooksRoutingException("Asynchronous send of JMS message to destination '" + jmsProperties.getDestinationName() + "' failed.", sendTracker.getError());
+        }
 
-                if(logger.isDebugEnabled() && length >= highWaterMark) {
-                    logger.debug("Length of JMS destination Queue '" + jmsProperties.getDestinationName() + "' has reached " + length +  ".  High Water Mark is " + highWaterMark +  ".  Waiting for Queue length to drop.");
-                }
+        waitWhileAboveHighWaterMark();
+        asyncSender.send( message, sendTracker );
+    }
 
-                while(length >= highWaterMark && (System.currentTimeMillis() < start + highWaterMarkTimeout)) {
-                    try {
-                        Thread.sleep(highWaterMarkPollFrequency);
-                    } catch (InterruptedException e) {
-                        logger.error("Interrupted", e);
-                        return;
-                    }
-                    length = getQueueLength(queueBrowser);
-                }
+    /**
+     * Send the message on the supplied session.
+     */
+    void send( final PooledSession pooledSession, final Message message ) throws JMSException
+    {
+        pooledSession.getProducer().send( message );
+        if(highWaterMarkMonitor != null) {
+            highWaterMarkMonitor.increment();
+        }
+    }
 
-                // Check did the queue length drop below the HWM...
-                if(length >= highWaterMark) {
-                    throw new SmooksRoutingException("Failed to route JMS message to Queue destination '" + ((Queue) destination).getQueueName() + "'. Timed out (" + highWaterMarkTimeout + " ms) waiting for queue length to drop below High Water Mark (" + highWaterMark + ").  Consider increasing 'highWaterMark' and/or 'highWaterMarkTimeout' param values.");
-                }
-            } finally {
-                queueBrowser.close();
-            }
+    private void waitWhileAboveHighWaterMark() throws SmooksRoutingException {
+        if(highWaterMarkMonitor == null) {
+            return;
         }
+
+        highWaterMarkMonitor.waitWhileAboveHighWaterMark();
     }
 
     private int getQueueLength(QueueBrowser queueBrowser) throws JMSException {
@@ -631,6 +878,30 @@ public class JMSRouter implements DOMElementVisitor, SAXVisitBefore, SAXVisitAft
 	}
 
     private void releaseJMSResources() throws JMSException {
+        AsyncMessageSender stoppingSender = asyncSender;
+
+        asyncSender = null;
+        try {
+            if (stoppingSender != null) {
+                stoppingSender.stop();
+            }
+        } finally {
+            releaseSessionResources();
+        }
+    }
+
+    private void releaseSessionResources() throws JMSException {
+        if (sessionPool != null) {
+            sessionPool.close();
+            sessionPool = null;
+            // The pool closes the initial session and producer...
+            session = null;
+            msgProducer = null;
+        }
+        if (browseSession != null) {
+            close( browseSession );
+            browseSession = null;
+        }
         if (connection != null) {
             try {
                 try {
@@ -674,4 +945,39 @@ public class JMSRouter implements DOMElementVisitor, SAXVisitBefore, SAXVisitAft
             }
         }
     }
+
+    private class QueueHighWaterMarkMonitor extends HighWaterMarkMonitor {
+
+        private final QueueSession queueSession;
+        private final Queue queue;
+
+        private QueueHighWaterMarkMonitor(QueueSession queueSession, Queue queue) {
+            super(jmsProperties.getDestinationName(), highWaterMark, highWaterMarkTimeout, highWaterMarkPollFrequency);
+            this.queueSession = queueSession;
+            this.queue = queue;
+        }
+
+        protected int measure() throws SmooksRoutingException {
+            try {
+                QueueBrowser queueBrowser = queueSession.createBrowser(queue);
+                try {
+                    return getQueueLength(queueBrowser);
+                } finally {
+                    queueBrowser.close();
+                }
+            } catch (JMSException e) {
+                throw new SmooksRoutingException("Exception while attempting to check JMS Queue High Water Mark.", e );
+            }
+        }
+
+        protected SmooksRoutingException createTimeoutException(long timeout) {
+            String queueName;
+            try {
+                queueName = queue.getQueueName();
+            } catch (JMSException e) {
+                queueName = getDestinationName();
+            }
+            return new SmooksRoutingException("Failed to route JMS message to Queue destination '" + queueName + "'. Timed out (" + timeout + " ms) waiting for queue length to drop below High Water Mark (" + getHighWaterMark() + ").  Consider increasing 'highWaterMark' and/or 'highWaterMarkTimeout' param values.");
+        }
+    }
 }
@@ -0,0 +1,187 @@
+/*
+ * Milyn - Copyright (C) 2006 - 2010
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License (version 2.1) as published
+ * by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.
+ *
+ * See the GNU Lesser General Public License for more details:
+ * http://www.gnu.org/licenses/lgpl.txt
+ */
+package org.milyn.routing.jms;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import javax.jms.JMSException;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.milyn.routing.SmooksRoutingException;
+
+/**
+ * Bounded pool of JMS {@link Session}/{@link MessageProducer} pairs.
+ * <p/>
+ * JMS Sessions (and the producers created from them) are single threaded.  The pool
+ * hands out a {@link PooledSession} to one thread (one filter execution) at a time, creating
+ * new Sessions on demand up to the configured max size.  When the pool is exhausted, the
+ * borrowing thread blocks until a session is released, up to the configured timeout.
+ */
+class JMSSessionPool {
+
+    private static Log logger = LogFactory.getLog(JMSSessionPool.class);
+
+    private final JMSRouter router;
+    private final int maxSize;
+    private final long timeout;
+    private final LinkedBlockingQueue<PooledSession> idleSessions = new LinkedBlockingQueue<PooledSession>();
+    private final List<PooledSession> allSessions = new ArrayList<PooledSession>();
+    private boolean closed = false;
+
+    JMSSessionPool(JMSRouter router, int maxSize, long timeout) {
+        this.router = router;
+        this.maxSize = maxSize;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Add an already created session to the pool.
+     * @param pooledSession The session.
+     */
+    synchronized void add(PooledSession pooledSession) {
+        allSessions.add(pooledSession);
+        idleSessions.offer(pooledSession);
+    }
+
+    PooledSession borrow() throws SmooksRoutingException {
+        PooledSession pooledSession = idleSessions.poll();
+
+        if(pooledSession != null) {
+            return pooledSession;
+        }
+
+        synchronized (this) {
+            if(closed) {
+                throw new SmooksRoutingException("JMS Session pool for destination '" + router.getDestinationName() + "' is closed.");
+            }
+            if(allSessions.size() < maxSize) {
+                try {
+                    pooledSession = router.createPooledSession();
+                } catch (JMSException e) {
+                    throw new SmooksRoutingException("JMSException while creating JMS Session for destination '" + router.getDestinationName() + "'.", e);
+                }
+                allSessions.add(pooledSession);
+                return pooledSession;
+            }
+        }
+
+        try {
+            pooledSession = idleSessions.poll(timeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SmooksRoutingException("Interrupted while waiting on a JMS Session for destination '" + router.getDestinationName() + "'.", e);
+        }
+
+        if(pooledSession == null) {
+            throw new SmooksRoutingException("Timed out (" + timeout + " ms) waiting on a JMS Session for destination '" + router.getDestinationName() + "'.  All " + maxSize + " pooled Sessions are in use.  Consider increasing 'sessionPoolSize' and/or 'sessionPoolTimeout' param values.");
+        }
+
+        return pooledSession;
+    }
+
+    void release(PooledSession pooledSession) {
+        synchronized (this) {
+            if(closed) {
+                pooledSession.close();
+                return;
+            }
+        }
+        idleSessions.offer(pooledSession);
+    }
+
+    /**
+     * Remove a (broken) session from the pool, closing it.
+     * @param pooledSession The session.
+     */
+    void invalidate(PooledSession pooledSession) {
+        synchronized (this) {
+            allSessions.remove(pooledSession);
+        }
+        pooledSession.close();
+    }
+
+    synchronized void close() {
+        closed = true;
+        for(PooledSession pooledSession : allSessions) {
+            pooledSession.close();
+        }
+        allSessions.clear();
+        idleSessions.clear();
+    }
+
+    /**
+     * Pooled JMS Session and associated MessageProducer.
+     */
+    static class PooledSession {
+
+        private final Session session;
+        private final MessageProducer producer;
+        private int uncommitted;
+
+        PooledSession(Session session, MessageProducer producer) {
+            this.session = session;
+            this.producer = producer;
+        }
+
+        Session getSession() {
+            return session;
+        }
+
+        MessageProducer getProducer() {
+            return producer;
+        }
+
+        /**
+         * Record a message sent on this session.
+         * @return The number of sent messages not yet committed.
+         */
+        int sent() {
+            return ++uncommitted;
+        }
+
+        int getUncommitted() {
+            return uncommitted;
+        }
+
+        void commit() throws JMSException {
+            uncommitted = 0;
+            session.commit();
+        }
+
+        void rollback() throws JMSException {
+            uncommitted = 0;
+            session.rollback();
+        }
+
+        void close() {
+            try {
+                producer.close();
+            } catch (JMSException e) {
+                logger.error("JMSException while trying to close JMS Message Producer.", e);
+            }
+            try {
+                session.close();
+            } catch (JMSException e) {
+                logger.error("JMSException while trying to close JMS Session.", e);
+            }
+        }
+    }
+}
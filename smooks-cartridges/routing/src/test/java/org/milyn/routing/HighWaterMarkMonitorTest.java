@@ -0,0 +1,90 @@
+/*
+ * Milyn - Copyright (C) 2006 - 2010
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License (version 2.1) as published
+ * by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.
+ *
+ * See the GNU Lesser General Public License for more details:
+ * http://www.gnu.org/licenses/lgpl.txt
+ */
+package org.milyn.routing;
+
+import static org.testng.AssertJUnit.*;
+
+import org.testng.annotations.Test;
+
+/**
+ * Unit test for {@link HighWaterMarkMonitor}.
+ */
+public class HighWaterMarkMonitorTest {
+
+    @Test( groups = "unit" )
+    public void test_measure_rate_limited() throws SmooksRoutingException {
+        TestMonitor monitor = new TestMonitor(10, 1000, 60000);
+
+        for(int i = 0; i < 5; i++) {
+            monitor.waitWhileAboveHighWaterMark();
+            monitor.increment();
+        }
+
+        assertEquals(1, monitor.numMeasurements);
+        assertEquals(5, monitor.getLevel());
+    }
+
+    @Test( groups = "unit" )
+    public void test_timeout() {
+        TestMonitor monitor = new TestMonitor(3, 500, 100);
+
+        monitor.destinationLevel = 3;
+        try {
+            monitor.waitWhileAboveHighWaterMark();
+            fail("Expected SmooksRoutingException");
+        } catch (SmooksRoutingException e) {
+            assertEquals("Failed to route to destination 'testDestination'. Timed out (500 ms) waiting for the number of items to drop below High Water Mark (3).  Consider increasing 'highWaterMark' and/or 'highWaterMarkTimeout' param values.", e.getMessage());
+        }
+    }
+
+    @Test( groups = "unit" )
+    public void test_released_when_level_drops() throws SmooksRoutingException, InterruptedException {
+        final TestMonitor monitor = new TestMonitor(3, 10000, 100);
+
+        monitor.destinationLevel = 3;
+        Thread consumer = new Thread() {
+            public void run() {
+                try {
+                    Thread.sleep(300);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                monitor.destinationLevel = 1;
+            }
+        };
+        consumer.start();
+
+        long start = System.currentTimeMillis();
+        monitor.waitWhileAboveHighWaterMark();
+        assertTrue(System.currentTimeMillis() - start < 5000);
+        assertEquals(1, monitor.getLevel());
+        consumer.join();
+    }
+
+    private static class TestMonitor extends HighWaterMarkMonitor {
+
+        private volatile int destinationLevel;
+        private int numMeasurements;
+
+        private TestMonitor(int highWaterMark, long highWaterMarkTimeout, long measureFrequency) {
+            super("testDestination", highWaterMark, highWaterMarkTimeout, measureFrequency);
+        }
+
+        protected int measure() {
+            numMeasurements++;
+            return destinationLevel;
+        }
+    }
+}
@@ -26,6 +26,7 @@ import org.milyn.container.ExecutionContext;
 import org.milyn.delivery.dom.DOMVisitAfter;
 import org.milyn.delivery.sax.SAXElement;
 import org.milyn.delivery.sax.SAXVisitAfter;
+import org.milyn.io.FragmentBuffer;
 import org.milyn.javabean.repository.BeanRepository;
 import org.milyn.payload.JavaResult;
 import org.w3c.dom.Element;
@@ -104,13 +105,46 @@ public class FragmentSerializerTest extends TestCase {
         XMLAssert.assertXMLEqual(new InputStreamReader(getClass().getResourceAsStream("frag2.xml")), new StringReader((String) router.routedObjects.get(1)));
     }
     
+    public void test_bindAsCharSequence() throws IOException, SAXException {
+        Smooks smooks = new Smooks();
+
+        smooks.addVisitor(new FragmentSerializer().setBindTo("orderItem").setBindAsCharSequence(true), "order-items/order-item");
+        test_bindAsCharSequence(smooks);
+    }
+
+    public void test_bindAsCharSequence_config() throws IOException, SAXException {
+        Smooks smooks = new Smooks(getClass().getResourceAsStream("smooks-config-03-ext.xml"));
+        test_bindAsCharSequence(smooks);
+    }
+
+    private void test_bindAsCharSequence(Smooks smooks) throws IOException, SAXException {
+        MockRouter router = new MockRouter().setBoundTo("orderItem");
+        smooks.addVisitor(router, "order-items/order-item");
+
+        smooks.setFilterSettings(FilterSettings.DEFAULT_SAX);
+        smooks.filterSource(new StreamSource(getClass().getResourceAsStream("input-message-02.xml")));
+        assertEquals(2, router.routedObjects.size());
+        assertEquals(2, router.routedStrings.size());
+
+        // The buffer is released after the first fragment and reused for the second...
+        assertTrue(router.routedObjects.get(0) instanceof FragmentBuffer);
+        assertSame(router.routedObjects.get(0), router.routedObjects.get(1));
+
+        XMLUnit.setIgnoreWhitespace( true );
+        XMLAssert.assertXMLEqual(new InputStreamReader(getClass().getResourceAsStream("frag1.xml")), new StringReader(router.routedStrings.get(0)));
+        XMLAssert.assertXMLEqual(new InputStreamReader(getClass().getResourceAsStream("frag2.xml")), new StringReader(router.routedStrings.get(1)));
+    }
+
     private class MockRouter implements SAXVisitAfter, DOMVisitAfter {
 
         private String boundTo;
         private List<Object> routedObjects = new ArrayList<Object>();
+        private List<String> routedStrings = new ArrayList<String>();
     	
 		public void visitAfter(SAXElement element, ExecutionContext executionContext) throws SmooksException, IOException {
-			routedObjects.add(BeanRepository.getInstance(executionContext).getBean(boundTo));
+			Object bean = BeanRepository.getInstance(executionContext).getBean(boundTo);
+			routedObjects.add(bean);
+			routedStrings.add(bean.toString());
 		}
 
 		public void visitAfter(Element element,	ExecutionContext executionContext) throws SmooksException {
@@ -22,6 +22,7 @@ import java.util.Map;
 import org.milyn.Smooks;
 import org.milyn.SmooksException;
 import org.milyn.db.DirectDataSource;
+import org.milyn.db.PooledDataSource;
 import org.milyn.container.ExecutionContext;
 import org.milyn.javabean.context.BeanContext;
 import org.milyn.javabean.context.BeanIdStore;
@@ -111,6 +112,52 @@ public class SQLExecutorTest extends TestCase
         }
     }
 
+    public void test_appContextTimeProgrammaticPooled() throws Exception {
+        Smooks smooks = new Smooks();
+        PooledDataSource datasource = new PooledDataSource()
+                          .setDriver(jdbcDriver.class)
+                          .setName("OrdersDS")
+                          .setUrl("jdbc:hsqldb:hsql://localhost:9992/milyn-hsql-9992")
+                          .setUsername("sa")
+                          .setPassword("")
+                          .setAutoCommit(true)
+                          .setMaxSize(2);
+
+        try {
+            SQLExecutor orderSelector = new SQLExecutor()
+                              .setDatasource(datasource)
+                              .setStatement("select * from ORDERS")
+                              .setResultSetName("orders1")
+                              .setExecuteBefore(true);
+
+            smooks.addVisitor(datasource);
+            smooks.addVisitor(orderSelector);
+
+            smooks.addVisitor(new ResultsetRowSelector()
+                              .setSelector(orderSelector)
+                              .setBeanId("myOrder")
+                              .setWhereClause("row.ORDERNUMBER == 2")
+                              .setFailedSelectError("Order with ORDERNUMBER=2 not found in Database"));
+
+            smooks.addVisitor(new SQLExecutor()
+                              .setDatasource(datasource)
+                              .setStatement("select * from ORDERS")
+                              .setResultSetName("orders2")
+                              .setResultSetScope(ResultSetScope.APPLICATION)
+                              .setResultSetTTL(2000L)
+                              .setExecuteBefore(true));
+
+            test_appContextTime(smooks);
+
+            // All 4 filter executions should have used the same pooled connection...
+            assertEquals(4, datasource.getBorrowCount());
+            assertEquals(1, datasource.getCreatedCount());
+            assertEquals(0, datasource.getActiveCount());
+        } finally {
+            smooks.close();
+        }
+    }
+
     @SuppressWarnings("unchecked")
 	private void test_appContextTime(Smooks smooks) throws IOException, SAXException, InterruptedException {
         ExecutionContext execContext = smooks.createExecutionContext();
@@ -17,6 +17,7 @@ package org.milyn.routing.file;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
@@ -180,6 +181,87 @@ public class FileOutputStreamResourceTest
         }
     }
 
+    @Test
+    public void testRollingConfig02() throws IOException, SAXException {
+        Smooks smooks = new Smooks(getClass().getResourceAsStream("config-02.xml"));
+        File rolledFile1 = new File("target/config-02-test/1.xml");
+        File rolledFile2 = new File("target/config-02-test/4.xml");
+        File rolledFile3 = new File("target/config-02-test/7.xml");
+
+        try {
+            smooks.filterSource(new StringSource("<root><a>1</a><a>2</a><a>3</a><a>4</a><a>5</a><a>6</a><a>7</a></root>"));
+
+            assertEquals("123", getFileContents(rolledFile1));
+            assertEquals("456", getFileContents(rolledFile2));
+            assertEquals("7", getFileContents(rolledFile3));
+            assertEquals(3, new File("target/config-02-test").listFiles().length);
+        } finally {
+            smooks.close();
+            rolledFile1.delete();
+            rolledFile2.delete();
+            rolledFile3.delete();
+        }
+    }
+
+    @Test
+    public void testRollingMaxSize() throws Exception {
+        final Smooks smooks = new Smooks();
+        final File destinationDir = new File("target/rolling-test");
+        final File listFile = new File(destinationDir, "rolling.lst");
+
+        try {
+            smooks.setFilterSettings(FilterSettings.DEFAULT_SAX);
+            smooks.addVisitor(new Bean(HashMap.class, "object").bindTo("a", "a"));
+            smooks.addVisitor(new FreeMarkerTemplateProcessor(new TemplatingConfiguration("${object.a}")
+                    .setUsage(OutputTo.stream("fileOS"))), "a");
+            smooks.addVisitor(new FileOutputStreamResource()
+                    .setRollingMaxSize(10)
+                    .setRollingBufferSize(4)
+                    .setFileNamePattern("${object.a}.txt")
+                    .setDestinationDirectoryPattern(destinationDir.getAbsolutePath())
+                    .setListFileNamePattern("rolling.lst")
+                    .setResourceName("fileOS")
+                    , "a");
+
+            smooks.filterSource(new StringSource("<root><a>aaaaaa</a><a>bbbbbb</a><a>cccccc</a></root>"));
+
+            assertEquals("aaaaaabbbbbb", getFileContents(new File(destinationDir, "aaaaaa.txt")));
+            assertEquals("cccccc", getFileContents(new File(destinationDir, "cccccc.txt")));
+            assertEquals(new File(destinationDir, "aaaaaa.txt").getAbsolutePath() + System.getProperty("line.separator") +
+                         new File(destinationDir, "cccccc.txt").getAbsolutePath() + System.getProperty("line.separator"), getFileContents(listFile));
+        } finally {
+            smooks.close();
+            new File(destinationDir, "aaaaaa.txt").delete();
+            new File(destinationDir, "cccccc.txt").delete();
+            listFile.delete();
+        }
+    }
+
+    @Test
+    public void testRollingFileFragmentStreamReused() throws Exception {
+        File workingFile = new File("target/rolling-file-test.working");
+        RollingFile rollingFile = new RollingFile(workingFile, "rolling-file-test.txt", 4);
+
+        try {
+            FileOutputStream fragment1 = rollingFile.openFragment();
+            fragment1.write("aaaaaa".getBytes());
+            fragment1.close();
+
+            FileOutputStream fragment2 = rollingFile.openFragment();
+            assertSame(fragment1, fragment2);
+            fragment2.write("bb".getBytes());
+            fragment2.close();
+
+            assertEquals(2, rollingFile.getFragmentCount());
+            assertEquals(8, rollingFile.getSize());
+            rollingFile.close();
+            assertEquals("aaaaaabb", getFileContents(workingFile));
+        } finally {
+            rollingFile.close();
+            workingFile.delete();
+        }
+    }
+
     private String getFileContents(File file) throws IOException {
         return new String(FileUtils.readFile(file));
     }
@@ -20,6 +20,7 @@ import com.mockrunner.mock.ejb.EJBMockObjectFactory;
 import com.mockrunner.mock.jms.JMSMockObjectFactory;
 import com.mockrunner.mock.jms.MockQueue;
 import com.mockrunner.mock.jms.MockQueueConnectionFactory;
+import com.mockrunner.mock.jms.MockSession;
 import org.milyn.cdr.SmooksConfigurationException;
 import org.milyn.cdr.SmooksResourceConfiguration;
 import org.milyn.cdr.annotation.Configurator;
@@ -154,6 +155,77 @@ public class JMSRouterTest
         }
     }
 
+    @Test ( groups = "unit" )
+    public void visitAfter_transacted_batch() throws ParserConfigurationException, JMSException, SAXException, IOException
+    {
+        queue.clear();
+        final String beanId = "beanId";
+        final TestBean bean = RouterTestHelper.createBean();
+
+        final MockExecutionContext executionContext = RouterTestHelper.createExecutionContext( beanId, bean );
+
+    	SmooksResourceConfiguration config = new SmooksResourceConfiguration(selector, JMSRouter.class.getName());
+        config.setParameter( "destinationName", queueName );
+        config.setParameter( "beanId", beanId );
+        config.setParameter( "transacted", "true" );
+        config.setParameter( "transactedBatchSize", "3" );
+        final JMSRouter router = new JMSRouter();
+        Configurator.configure( router, config, new MockApplicationContext() );
+
+        try {
+            for(int i = 0; i < 7; i++) {
+                router.visitAfter( (SAXElement)null, executionContext );
+            }
+            assertEquals(2, getNumberCommits());
+
+            router.executeExecutionLifecycleCleanup( executionContext );
+            assertEquals(3, getNumberCommits());
+            assertEquals(7, queue.getCurrentMessageList().size());
+        } finally {
+            router.uninitialize();
+        }
+    }
+
+    @Test ( groups = "unit" )
+    public void visitAfter_async() throws ParserConfigurationException, JMSException, SAXException, IOException
+    {
+        queue.clear();
+        final String beanId = "beanId";
+        final TestBean bean = RouterTestHelper.createBean();
+
+        final MockExecutionContext executionContext = RouterTestHelper.createExecutionContext( beanId, bean );
+
+    	SmooksResourceConfiguration config = new SmooksResourceConfiguration(selector, JMSRouter.class.getName());
+        config.setParameter( "destinationName", queueName );
+        config.setParameter( "beanId", beanId );
+        config.setParameter( "asyncSendQueueSize", "2" );
+        config.setParameter( "asyncSenderThreads", "2" );
+        final JMSRouter router = new JMSRouter();
+        Configurator.configure( router, config, new MockApplicationContext() );
+
+        try {
+            for(int i = 0; i < 10; i++) {
+                router.visitAfter( (SAXElement)null, executionContext );
+            }
+
+            // Cleanup waits for all the async sends to complete...
+            router.executeExecutionLifecycleCleanup( executionContext );
+            assertEquals(10, queue.getCurrentMessageList().size());
+        } finally {
+            router.uninitialize();
+        }
+    }
+
+    @Test ( groups = "unit", expectedExceptions = SmooksConfigurationException.class )
+    public void async_transacted_rejected()
+    {
+    	SmooksResourceConfiguration config = new SmooksResourceConfiguration(selector, JMSRouter.class.getName());
+        setManadatoryProperties( config );
+        config.setParameter( "transacted", "true" );
+        config.setParameter( "asyncSendQueueSize", "2" );
+        Configurator.configure( new JMSRouter(), config, new MockApplicationContext() );
+    }
+
     @Test ( groups = "unit" )
 	public void setJndiContextFactory()
 	{
@@ -211,6 +283,14 @@ public class JMSRouterTest
 		MockContextFactory.setAsInitial();
     }
 
+    private int getNumberCommits() {
+        int numCommits = 0;
+        for(Object session : connectionFactory.getLatestConnection().getSessionList()) {
+            numCommits += ((MockSession) session).getNumberCommits();
+        }
+        return numCommits;
+    }
+
 	private void setManadatoryProperties( final SmooksResourceConfiguration config )
 	{
         config.setParameter( "destinationName", queueName );
@@ -0,0 +1,37 @@
+/*
+ * Milyn - Copyright (C) 2006 - 2010
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License (version 2.1) as published
+ * by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.
+ *
+ * See the GNU Lesser General Public License for more details:
+ * http://www.gnu.org/licenses/lgpl.txt
+ */
+package org.milyn.rules;
+
+import org.milyn.SmooksException;
+
+/**
+ * {@link RuleProvider} that supports compilation of its rules into {@link CompiledRule}
+ * instances.
+ * <p/>
+ * Allows the rule lookup and any per rule preparation to be performed once, at
+ * compile time, rather than on each evaluation.
+ */
+public interface CompilableRuleProvider extends RuleProvider
+{
+    /**
+     * Compile the named rule.
+     *
+     * @param ruleName The name of the rule to be compiled.
+     * @return The {@link CompiledRule}.
+     *
+     * @throws SmooksException Unknown rule name.
+     */
+    CompiledRule compile(final String ruleName) throws SmooksException;
+}
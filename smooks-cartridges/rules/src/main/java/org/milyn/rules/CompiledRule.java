@@ -0,0 +1,41 @@
+/*
+ * Milyn - Copyright (C) 2006 - 2010
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License (version 2.1) as published
+ * by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.
+ *
+ * See the GNU Lesser General Public License for more details:
+ * http://www.gnu.org/licenses/lgpl.txt
+ */
+package org.milyn.rules;
+
+import org.milyn.SmooksException;
+import org.milyn.container.ExecutionContext;
+
+/**
+ * A rule that has been compiled by its {@link RuleProvider}, ready for evaluation.
+ * <p/>
+ * Compiled once (see {@link RuleProviderAccessor#compile(RuleProvider, String)}) and then
+ * evaluated any number of times, by any number of threads.  Implementations must be thread safe.
+ * <p/>
+ * The {@link RuleEvalResult} returned for a successful (matched) evaluation may be a
+ * shared instance and so does not carry the evaluated data.
+ */
+public interface CompiledRule
+{
+    /**
+     * Evaluate the rule.
+     *
+     * @param selectedData The data that this evalute method will evaluate upon.
+     * @param context The Smooks Excecution context.
+     * @return {@code RuleEvalResult} Object representing an evaluation result.
+     *
+     * @throws SmooksException
+     */
+    RuleEvalResult evaluate(final CharSequence selectedData, final ExecutionContext context) throws SmooksException;
+}
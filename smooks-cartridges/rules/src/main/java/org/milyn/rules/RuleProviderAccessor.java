@@ -21,6 +21,7 @@ import java.util.Map;
 import org.milyn.SmooksException;
 import org.milyn.assertion.AssertArgument;
 import org.milyn.container.ApplicationContext;
+import org.milyn.container.ExecutionContext;
 
 /**
  * RuleProviderAccessor provides convenience methods for adding and getting
@@ -86,6 +87,37 @@ public final class RuleProviderAccessor
         return provider;
     }
 
+    /**
+     * Compile the named rule on the passed in {@link RuleProvider}.
+     * <p/>
+     * If the provider is not a {@link CompilableRuleProvider}, the returned {@link CompiledRule}
+     * simply delegates to {@link RuleProvider#evaluate(String, CharSequence, ExecutionContext)}.
+     *
+     * @param provider The {@link RuleProvider}.
+     * @param ruleName The name of the rule to be compiled.
+     * @return {@link CompiledRule} The compiled rule.
+     *
+     * @throws SmooksException Unknown rule name (if the provider is a {@link CompilableRuleProvider}).
+     */
+    public static final CompiledRule compile(final RuleProvider provider, final String ruleName)
+    {
+        AssertArgument.isNotNull(provider, "provider");
+        AssertArgument.isNotNullAndNotEmpty(ruleName, "ruleName");
+
+        if (provider instanceof CompilableRuleProvider)
+        {
+            return ((CompilableRuleProvider) provider).compile(ruleName);
+        }
+
+        return new CompiledRule()
+        {
+            public RuleEvalResult evaluate(final CharSequence selectedData, final ExecutionContext context) throws SmooksException
+            {
+                return provider.evaluate(ruleName, selectedData, context);
+            }
+        };
+    }
+
     /**
      * Gets the Map of RuleProviders that exist in the Smooks AppcliationContext.
      *
@@ -0,0 +1,90 @@
+/*
+ * Milyn - Copyright (C) 2006 - 2010
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License (version 2.1) as published
+ * by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.
+ *
+ * See the GNU Lesser General Public License for more details:
+ * http://www.gnu.org/licenses/lgpl.txt
+ */
+package org.milyn.rules.mvel;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.milyn.SmooksException;
+import org.milyn.container.ExecutionContext;
+import org.milyn.expression.ExpressionEvaluationException;
+import org.milyn.rules.CompiledRule;
+import org.milyn.rules.RuleEvalResult;
+import org.mvel2.MVEL;
+import org.mvel2.ParserContext;
+import org.mvel2.integration.impl.MapVariableResolverFactory;
+
+/**
+ * Compiled MVEL rule.
+ * <p/>
+ * The names of the input variables (beans) referenced by the expression are resolved when
+ * the rule is compiled.  On evaluation, only those beans are bound into the expression's
+ * variables, instead of resolving each variable reference against the full bean map.
+ */
+final class CompiledMVELRule implements CompiledRule {
+
+    private final String ruleName;
+    private final String providerName;
+    private final String expression;
+    private final Serializable compiled;
+    private final String[] inputs;
+    private final MVELRuleEvalResult matchedResult;
+
+    CompiledMVELRule(String ruleName, String providerName, String expression) {
+        ParserContext parserContext = new ParserContext();
+
+        this.ruleName = ruleName;
+        this.providerName = providerName;
+        this.expression = expression.trim();
+        this.compiled = MVEL.compileExpression(this.expression, parserContext);
+        this.inputs = parserContext.getInputs().keySet().toArray(new String[parserContext.getInputs().size()]);
+        this.matchedResult = new MVELRuleEvalResult(true, ruleName, providerName, null);
+    }
+
+    public RuleEvalResult evaluate(CharSequence selectedData, ExecutionContext context) throws SmooksException {
+        Map<String, Object> beanMap = context.getBeanContext().getBeanMap();
+
+        try {
+            Map<String, Object> variables = new HashMap<String, Object>(inputs.length * 2);
+
+            for (String input : inputs) {
+                Object bean = beanMap.get(input);
+                if (bean != null || beanMap.containsKey(input)) {
+                    variables.put(input, bean);
+                }
+            }
+
+            // The bean map is still supplied as the context object, for any references the
+            // parser did not report as inputs.  Variables created by the expression go into
+            // the variables Map, not the bean map...
+            if ((Boolean) MVEL.executeExpression(compiled, beanMap, new MapVariableResolverFactory(variables))) {
+                return matchedResult;
+            }
+            return new MVELRuleEvalResult(false, ruleName, providerName, selectedData.toString());
+        } catch(Throwable t) {
+            ExpressionEvaluationException exception = new ExpressionEvaluationException("Error evaluating MVEL rule '" + ruleName + "' expression '" + expression + "'.  Use the 'isdef' operator to check if a bean is bound in the context.", t);
+            return new MVELRuleEvalResult(exception, ruleName, providerName, selectedData.toString());
+        }
+    }
+
+    /**
+     * Get the names of the input variables referenced by the rule expression.
+     * @return The input variable names.
+     */
+    String[] getInputs() {
+        return inputs;
+    }
+}
@@ -15,7 +15,8 @@
 */
 package org.milyn.rules.mvel;
 
-import org.milyn.rules.RuleProvider;
+import org.milyn.rules.CompilableRuleProvider;
+import org.milyn.rules.CompiledRule;
 import org.milyn.rules.RuleEvalResult;
 import org.milyn.container.ExecutionContext;
 import org.milyn.SmooksException;
@@ -43,9 +44,10 @@ import java.util.List;
  *
  * @author <a href="mailto:tom.fennelly@jboss.com">tom.fennelly@jboss.com</a>
  */
-public class MVELProvider implements RuleProvider {
+public class MVELProvider implements CompilableRuleProvider {
 
     private static Log logger = LogFactory.getLog(MVELProvider.class);
+    private static final String MVEL_VARIABLES_VARIABLE_NAME = "VARS";
     private String name;
     private String src;
     private Map<String, ExpressionEvaluator> rules = new HashMap<String, ExpressionEvaluator>();
@@ -68,11 +70,7 @@ public class MVELProvider implements RuleProvider {
     }
 
     public RuleEvalResult evaluate(String ruleName, CharSequence selectedData, ExecutionContext context) throws SmooksException {
-        ExpressionEvaluator evaluator = rules.get(ruleName);
-
-        if (evaluator == null) {
-            throw new SmooksException("Unknown rule name '" + ruleName + "' on MVEL RuleProvider '" + name + "'.");
-        }
+        ExpressionEvaluator evaluator = getEvaluator(ruleName);
 
         try {
             return new MVELRuleEvalResult(evaluator.eval(context.getBeanContext().getBeanMap()), ruleName, name, selectedData.toString());
@@ -81,6 +79,42 @@ public class MVELProvider implements RuleProvider {
         }
     }
 
+    /**
+     * Compile the rule.
+     * <p/>
+     * The input beans referenced by the rule expression are resolved at compile time.  Successful
+     * evaluations of the returned rule return a shared {@link MVELRuleEvalResult}, with no text.
+     *
+     * @param ruleName The ruleName to be compiled.
+     * @return The compiled rule.
+     *
+     * @throws SmooksException Unknown rule name.
+     */
+    public CompiledRule compile(final String ruleName) throws SmooksException {
+        String expression = ((MVELExpressionEvaluator) getEvaluator(ruleName)).getExpression();
+
+        if(expression.contains(MVEL_VARIABLES_VARIABLE_NAME)) {
+            // Needs the VARS variable support of the MVELExpressionEvaluator...
+            return new CompiledRule() {
+                public RuleEvalResult evaluate(CharSequence selectedData, ExecutionContext context) throws SmooksException {
+                    return MVELProvider.this.evaluate(ruleName, selectedData, context);
+                }
+            };
+        }
+
+        return new CompiledMVELRule(ruleName, name, expression);
+    }
+
+    private ExpressionEvaluator getEvaluator(String ruleName) {
+        ExpressionEvaluator evaluator = rules.get(ruleName);
+
+        if (evaluator == null) {
+            throw new SmooksException("Unknown rule name '" + ruleName + "' on MVEL RuleProvider '" + name + "'.");
+        }
+
+        return evaluator;
+    }
+
     @SuppressWarnings("unchecked")
 	private void loadRules() {
         if (src == null) {
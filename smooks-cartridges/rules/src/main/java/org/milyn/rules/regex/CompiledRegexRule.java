@@ -0,0 +1,103 @@
+/*
+ * Milyn - Copyright (C) 2006 - 2010
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License (version 2.1) as published
+ * by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.
+ *
+ * See the GNU Lesser General Public License for more details:
+ * http://www.gnu.org/licenses/lgpl.txt
+ */
+package org.milyn.rules.regex;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.milyn.SmooksException;
+import org.milyn.assertion.AssertArgument;
+import org.milyn.container.ExecutionContext;
+import org.milyn.rules.CompiledRule;
+import org.milyn.rules.RuleEvalResult;
+
+/**
+ * Compiled Regex rule.
+ * <p/>
+ * Simple patterns are matched by a {@link SimpleRegex}.  All other patterns are matched
+ * using a per thread {@link Matcher}, which is reset for each evaluation.
+ */
+final class CompiledRegexRule implements CompiledRule
+{
+    private final String ruleName;
+    private final String providerName;
+    private final Pattern pattern;
+    private final SimpleRegex simpleRegex;
+    private final ThreadLocal<Matcher> matchers;
+    private final RegexRuleEvalResult matchedResult;
+
+    CompiledRegexRule(final String ruleName, final String providerName, final Pattern pattern)
+    {
+        this.ruleName = ruleName;
+        this.providerName = providerName;
+        this.pattern = pattern;
+        this.simpleRegex = SimpleRegex.compile(pattern);
+        if (simpleRegex == null)
+        {
+            matchers = new ThreadLocal<Matcher>()
+            {
+                @Override
+                protected Matcher initialValue()
+                {
+                    return pattern.matcher("");
+                }
+            };
+        }
+        else
+        {
+            matchers = null;
+        }
+        this.matchedResult = new RegexRuleEvalResult(true, ruleName, providerName, pattern, null);
+    }
+
+    public RuleEvalResult evaluate(final CharSequence selectedData, final ExecutionContext context) throws SmooksException
+    {
+        AssertArgument.isNotNull(selectedData, "selectedData");
+
+        final boolean matched;
+        if (simpleRegex != null)
+        {
+            matched = simpleRegex.matches(selectedData);
+        }
+        else
+        {
+            final Matcher matcher = matchers.get();
+            try
+            {
+                matched = matcher.reset(selectedData).matches();
+            }
+            finally
+            {
+                // Don't hold onto the data...
+                matcher.reset("");
+            }
+        }
+
+        if (matched)
+        {
+            return matchedResult;
+        }
+        return new RegexRuleEvalResult(false, ruleName, providerName, pattern, selectedData.toString());
+    }
+
+    /**
+     * Is this rule matched by a {@link SimpleRegex}.
+     * @return True if this rule is matched by a {@link SimpleRegex}, otherwise false.
+     */
+    boolean isSimple()
+    {
+        return simpleRegex != null;
+    }
+}
@@ -29,7 +29,8 @@ import org.milyn.assertion.AssertArgument;
 import org.milyn.container.ExecutionContext;
 import org.milyn.rules.RuleEvalResult;
 import org.milyn.rules.regex.RegexRuleEvalResult;
-import org.milyn.rules.RuleProvider;
+import org.milyn.rules.CompilableRuleProvider;
+import org.milyn.rules.CompiledRule;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
@@ -38,7 +39,7 @@ import org.apache.commons.logging.LogFactory;
  *
  * @author <a href="mailto:danielbevenius@gmail.com">Daniel Bevenius</a>
  */
-public class RegexProvider implements RuleProvider
+public class RegexProvider implements CompilableRuleProvider
 {
     /**
      * Logger.
@@ -84,15 +85,40 @@ public class RegexProvider implements RuleProvider
         AssertArgument.isNotNullAndNotEmpty(ruleName, "ruleName");
         AssertArgument.isNotNull(selectedData, "selectedData");
 
+        final Pattern pattern = getPattern(ruleName);
+        final boolean matched = pattern.matcher(selectedData).matches();
+
+        return new RegexRuleEvalResult(matched, ruleName, providerName, pattern, selectedData.toString());
+    }
+
+    /**
+     * Compile the rule.
+     * <p/>
+     * Simple patterns (character classes with fixed or bounded lengths, literal enumerations)
+     * are matched without the use of a {@link java.util.regex.Matcher}.  Successful evaluations of
+     * the returned rule return a shared {@link RegexRuleEvalResult}, with no text.
+     *
+     * @param ruleName The ruleName to be compiled.
+     * @return The compiled rule.
+     *
+     * @throws SmooksException Unknown rule name.
+     */
+    public CompiledRule compile(final String ruleName) throws SmooksException
+    {
+        AssertArgument.isNotNullAndNotEmpty(ruleName, "ruleName");
+
+        return new CompiledRegexRule(ruleName, providerName, getPattern(ruleName));
+    }
+
+    private Pattern getPattern(final String ruleName)
+    {
         final Pattern pattern = rules.get(ruleName);
 
         if (pattern == null) {
             throw new SmooksException("Unknown rule name '" + ruleName + "' on Regex RuleProvider '" + providerName + "'.");
         }
 
-        final boolean matched = pattern.matcher(selectedData).matches();
-
-        return new RegexRuleEvalResult(matched, ruleName, providerName, pattern, selectedData.toString());
+        return pattern;
     }
 
     public String getName()
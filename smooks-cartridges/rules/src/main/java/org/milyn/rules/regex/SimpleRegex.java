@@ -0,0 +1,605 @@
+/*
+ * Milyn - Copyright (C) 2006 - 2010
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License (version 2.1) as published
+ * by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.
+ *
+ * See the GNU Lesser General Public License for more details:
+ * http://www.gnu.org/licenses/lgpl.txt
+ */
+package org.milyn.rules.regex;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Matcher for simple regular expressions.
+ * <p/>
+ * Most validation rules are simple sequences of character classes with fixed or
+ * bounded lengths (e.g. "[A-Z]-[0-9]{5}", "\d{6}", "[a-zA-Z]*"), or enumerations of
+ * literal values (e.g. "GBP|EUR|USD").  These can be matched with a single pass over the data,
+ * without the backtracking, {@link java.util.regex.Matcher} and group state allocation of
+ * {@link Pattern}.
+ * <p/>
+ * Supported syntax:
+ * <ul>
+ *  <li>Literals, escaped metacharacters and the \t, \n, \r and \f escapes.</li>
+ *  <li>The ".", \d, \D, \w, \W, \s and \S predefined character classes.</li>
+ *  <li>Character classes, including ranges and negation e.g. "[^a-zA-Z_\-]".</li>
+ *  <li>The ?, *, +, {n}, {n,} and {n,m} greedy quantifiers.</li>
+ *  <li>Alternations of literals e.g. "a|b|c", "(a|b|c)" or "(?:a|b|c)".</li>
+ * </ul>
+ * Sequences are matched possessively, which only gives the same result as {@link Pattern}
+ * if no backtracking is ever required.  {@link #compile(Pattern)} therefore only accepts a sequence if
+ * the characters matched by each variable length element can not be matched by the element
+ * following it (or by any element following an optional element).
+ * <p/>
+ * Matching falls back to the {@link Pattern} if the data contains a surrogate character.
+ */
+final class SimpleRegex
+{
+    private static final String METACHARS = "\\^$.|?*+()[]{}";
+    private static final CharSet DIGIT = new CharSet(new char[] {'0', '9'}, false);
+    private static final CharSet WORD = new CharSet(new char[] {'0', '9', 'A', 'Z', '_', '_', 'a', 'z'}, false);
+    private static final CharSet SPACE = new CharSet(new char[] {'\t', '\r', ' ', ' '}, false);
+    private static final CharSet DOT = new CharSet(new char[] {'\n', '\n', '\r', '\r', '\u0085', '\u0085', '\u2028', '\u2029'}, true);
+
+    private final Pattern pattern;
+    private final Atom[] atoms;
+    private final String[] literals;
+
+    private SimpleRegex(final Pattern pattern, final Atom[] atoms, final String[] literals)
+    {
+        this.pattern = pattern;
+        this.atoms = atoms;
+        this.literals = literals;
+    }
+
+    /**
+     * Compile the supplied {@link Pattern}.
+     *
+     * @param pattern The pattern.
+     * @return The {@link SimpleRegex}, or null if the pattern is not supported.
+     */
+    static SimpleRegex compile(final Pattern pattern)
+    {
+        if (pattern.flags() != 0)
+        {
+            return null;
+        }
+
+        final String regex = pattern.pattern();
+        final String[] literals = parseLiterals(regex);
+        if (literals != null)
+        {
+            return new SimpleRegex(pattern, null, literals);
+        }
+
+        final Atom[] atoms = new Parser(regex).parse();
+        if (atoms == null || !isDeterministic(atoms))
+        {
+            return null;
+        }
+
+        return new SimpleRegex(pattern, atoms, null);
+    }
+
+    /**
+     * Does the supplied data match this regex.
+     * <p/>
+     * Same result as {@link java.util.regex.Matcher#matches()}.
+     *
+     * @param data The data.
+     * @return True if the data matches, otherwise false.
+     */
+    boolean matches(final CharSequence data)
+    {
+        if (literals != null)
+        {
+            return matchesLiteral(data);
+        }
+
+        final int length = data.length();
+        int index = 0;
+
+        for (int i = 0; i < atoms.length; i++)
+        {
+            final Atom atom = atoms[i];
+            int count = 0;
+
+            while (count < atom.max && index < length)
+            {
+                final char c = data.charAt(index);
+                if (c >= '\uD800' && c <= '\uDFFF')
+                {
+                    return pattern.matcher(data).matches();
+                }
+                if (!atom.charSet.contains(c))
+                {
+                    break;
+                }
+                index++;
+                count++;
+            }
+            if (count < atom.min)
+            {
+                return false;
+            }
+        }
+
+        return (index == length);
+    }
+
+    private boolean matchesLiteral(final CharSequence data)
+    {
+        final int length = data.length();
+
+        for (int i = 0; i < literals.length; i++)
+        {
+            final String literal = literals[i];
+            if (literal.length() == length)
+            {
+                int index = 0;
+                while (index < length && literal.charAt(index) == data.charAt(index))
+                {
+                    index++;
+                }
+                if (index == length)
+                {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private static boolean isDeterministic(final Atom[] atoms)
+    {
+        for (int i = 0; i < atoms.length; i++)
+        {
+            if (atoms[i].min != atoms[i].max)
+            {
+                // Backtracking could only hand characters to the following atoms up to, and
+                // including, the first one that must match at least one character...
+                for (int j = i + 1; j < atoms.length; j++)
+                {
+                    if (!atoms[i].charSet.isDisjoint(atoms[j].charSet))
+                    {
+                        return false;
+                    }
+                    if (atoms[j].min > 0)
+                    {
+                        break;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parse an alternation of literals e.g. "a|b|c", "(a|b|c)" or "(?:a|b|c)".
+     */
+    private static String[] parseLiterals(final String regex)
+    {
+        String alternation = regex;
+
+        if (alternation.startsWith("(?:") && alternation.endsWith(")"))
+        {
+            alternation = alternation.substring(3, alternation.length() - 1);
+        }
+        else if (alternation.startsWith("(") && alternation.endsWith(")"))
+        {
+            alternation = alternation.substring(1, alternation.length() - 1);
+        }
+        if (alternation.indexOf('|') == -1)
+        {
+            return null;
+        }
+
+        final List<String> literals = new ArrayList<String>();
+        final StringBuilder literal = new StringBuilder();
+
+        for (int i = 0; i < alternation.length(); i++)
+        {
+            final char c = alternation.charAt(i);
+
+            if (c == '|')
+            {
+                literals.add(literal.toString());
+                literal.setLength(0);
+            }
+            else if (c == '\\')
+            {
+                if (i + 1 == alternation.length() || METACHARS.indexOf(alternation.charAt(i + 1)) == -1)
+                {
+                    return null;
+                }
+                literal.append(alternation.charAt(++i));
+            }
+            else if (METACHARS.indexOf(c) != -1)
+            {
+                return null;
+            }
+            else
+            {
+                literal.append(c);
+            }
+        }
+        literals.add(literal.toString());
+
+        return literals.toArray(new String[literals.size()]);
+    }
+
+    /**
+     * A character class, with a quantifier.
+     */
+    private static final class Atom
+    {
+        private final CharSet charSet;
+        private final int min;
+        private final int max;
+
+        private Atom(final CharSet charSet, final int min, final int max)
+        {
+            this.charSet = charSet;
+            this.min = min;
+            this.max = max;
+        }
+    }
+
+    /**
+     * A set of characters, defined by a set of inclusive ranges (pairs of chars).
+     */
+    private static final class CharSet
+    {
+        private final char[] ranges;
+        private final boolean negated;
+
+        private CharSet(final char[] ranges, final boolean negated)
+        {
+            this.ranges = ranges;
+            this.negated = negated;
+        }
+
+        private static CharSet literal(final char c)
+        {
+            return new CharSet(new char[] {c, c}, false);
+        }
+
+        private boolean contains(final char c)
+        {
+            return inRanges(c) != negated;
+        }
+
+        private boolean inRanges(final char c)
+        {
+            for (int i = 0; i < ranges.length; i += 2)
+            {
+                if (c >= ranges[i] && c <= ranges[i + 1])
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean isDisjoint(final CharSet other)
+        {
+            if (negated && other.negated)
+            {
+                return false;
+            }
+            if (negated)
+            {
+                return other.isDisjoint(this);
+            }
+
+            if (!other.negated)
+            {
+                for (int i = 0; i < ranges.length; i += 2)
+                {
+                    if (overlaps(ranges[i], ranges[i + 1], other))
+                    {
+                        return false;
+                    }
+                }
+                return true;
+            }
+
+            // Other set is negated, so each of the chars in this set must be excluded from it.
+            // Large sets are assumed to not be disjoint...
+            if (size() > 0xFF)
+            {
+                return false;
+            }
+            for (int i = 0; i < ranges.length; i += 2)
+            {
+                for (int c = ranges[i]; c <= ranges[i + 1]; c++)
+                {
+                    if (other.contains((char) c))
+                    {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        private static boolean overlaps(final char from, final char to, final CharSet other)
+        {
+            for (int i = 0; i < other.ranges.length; i += 2)
+            {
+                if (from <= other.ranges[i + 1] && other.ranges[i] <= to)
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private int size()
+        {
+            int size = 0;
+            for (int i = 0; i < ranges.length; i += 2)
+            {
+                size += ranges[i + 1] - ranges[i] + 1;
+            }
+            return size;
+        }
+    }
+
+    /**
+     * Sequence parser.
+     */
+    private static final class Parser
+    {
+        private final String regex;
+        private int index;
+
+        private Parser(final String regex)
+        {
+            this.regex = regex;
+        }
+
+        /**
+         * @return The atom sequence, or null if the regex is not supported.
+         */
+        private Atom[] parse()
+        {
+            final List<Atom> atoms = new ArrayList<Atom>();
+
+            while (index < regex.length())
+            {
+                final CharSet charSet = parseCharSet();
+                if (charSet == null)
+                {
+                    return null;
+                }
+
+                final Atom atom = parseQuantifier(charSet);
+                if (atom == null)
+                {
+                    return null;
+                }
+                atoms.add(atom);
+            }
+
+            return atoms.toArray(new Atom[atoms.size()]);
+        }
+
+        private CharSet parseCharSet()
+        {
+            final char c = regex.charAt(index++);
+
+            switch (c)
+            {
+                case '.':
+                    return DOT;
+                case '[':
+                    return parseCharClass();
+                case '\\':
+                    return parseEscape();
+                default:
+                    if (METACHARS.indexOf(c) != -1)
+                    {
+                        return null;
+                    }
+                    return CharSet.literal(c);
+            }
+        }
+
+        private CharSet parseEscape()
+        {
+            if (index == regex.length())
+            {
+                return null;
+            }
+
+            final char c = regex.charAt(index++);
+            switch (c)
+            {
+                case 'd':
+                    return DIGIT;
+                case 'D':
+                    return new CharSet(DIGIT.ranges, true);
+                case 'w':
+                    return WORD;
+                case 'W':
+                    return new CharSet(WORD.ranges, true);
+                case 's':
+                    return SPACE;
+                case 'S':
+                    return new CharSet(SPACE.ranges, true);
+                case 't':
+                    return CharSet.literal('\t');
+                case 'n':
+                    return CharSet.literal('\n');
+                case 'r':
+                    return CharSet.literal('\r');
+                case 'f':
+                    return CharSet.literal('\f');
+                default:
+                    if (Character.isLetterOrDigit(c) || c > 0x7F)
+                    {
+                        // Anchors, back references, octal/hex/unicode escapes etc...
+                        return null;
+                    }
+                    return CharSet.literal(c);
+            }
+        }
+
+        private CharSet parseCharClass()
+        {
+            final StringBuilder ranges = new StringBuilder();
+            boolean negated = false;
+
+            if (index < regex.length() && regex.charAt(index) == '^')
+            {
+                negated = true;
+                index++;
+            }
+
+            while (index < regex.length())
+            {
+                char c = regex.charAt(index++);
+
+                if (c == ']')
+                {
+                    if (ranges.length() == 0)
+                    {
+                        return null;
+                    }
+                    return new CharSet(ranges.toString().toCharArray(), negated);
+                }
+
+                if (c == '[' || (c == '&' && index < regex.length() && regex.charAt(index) == '&'))
+                {
+                    // Unions and intersections...
+                    return null;
+                }
+
+                if (c == '\\')
+                {
+                    final CharSet escaped = parseEscape();
+                    if (escaped == null || escaped.negated)
+                    {
+                        return null;
+                    }
+                    if (escaped.ranges.length > 2 || escaped.ranges[0] != escaped.ranges[1])
+                    {
+                        // Predefined character class e.g. \d...
+                        ranges.append(escaped.ranges);
+                        continue;
+                    }
+                    c = escaped.ranges[0];
+                }
+
+                char to = c;
+                if (index + 1 < regex.length() && regex.charAt(index) == '-' && regex.charAt(index + 1) != ']')
+                {
+                    index++;
+                    to = regex.charAt(index++);
+                    if (to == '\\' || to == '[')
+                    {
+                        return null;
+                    }
+                    if (to < c)
+                    {
+                        return null;
+                    }
+                }
+                ranges.append(c).append(to);
+            }
+
+            // Unterminated...
+            return null;
+        }
+
+        private Atom parseQuantifier(final CharSet charSet)
+        {
+            int min = 1;
+            int max = 1;
+
+            if (index < regex.length())
+            {
+                final char c = regex.charAt(index);
+
+                if (c == '?')
+                {
+                    min = 0;
+                    index++;
+                }
+                else if (c == '*')
+                {
+                    min = 0;
+                    max = Integer.MAX_VALUE;
+                    index++;
+                }
+                else if (c == '+')
+                {
+                    max = Integer.MAX_VALUE;
+                    index++;
+                }
+                else if (c == '{')
+                {
+                    final int end = regex.indexOf('}', index);
+                    if (end == -1)
+                    {
+                        return null;
+                    }
+
+                    final String bounds = regex.substring(index + 1, end);
+                    final int comma = bounds.indexOf(',');
+                    try
+                    {
+                        if (comma == -1)
+                        {
+                            min = max = Integer.parseInt(bounds);
+                        }
+                        else
+                        {
+                            min = Integer.parseInt(bounds.substring(0, comma));
+                            if (comma == bounds.length() - 1)
+                            {
+                                max = Integer.MAX_VALUE;
+                            }
+                            else
+                            {
+                                max = Integer.parseInt(bounds.substring(comma + 1));
+                            }
+                        }
+                    }
+                    catch (final NumberFormatException e)
+                    {
+                        return null;
+                    }
+                    if (min < 0 || max < min)
+                    {
+                        return null;
+                    }
+                    index = end + 1;
+                }
+
+                if (index < regex.length() && (min != 1 || max != 1))
+                {
+                    final char modifier = regex.charAt(index);
+                    if (modifier == '?' || modifier == '+')
+                    {
+                        // Reluctant and possessive quantifiers...
+                        return null;
+                    }
+                }
+            }
+
+            return new Atom(charSet, min, max);
+        }
+    }
+}
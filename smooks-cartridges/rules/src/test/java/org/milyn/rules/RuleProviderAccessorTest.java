@@ -17,6 +17,7 @@ package org.milyn.rules;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 import org.junit.Test;
 import org.milyn.SmooksException;
@@ -106,6 +107,16 @@ public class RuleProviderAccessorTest
         RuleProviderAccessor.parseRuleProviderName("email");
     }
 
+    @Test
+    public void compile()
+    {
+        final CompiledRule rule = RuleProviderAccessor.compile(new MockProvider(), "email");
+        final RuleEvalResult result = rule.evaluate("some text", null);
+
+        assertTrue(result.matched());
+        assertEquals("email", result.getRuleName());
+    }
+
 
     public static class MockProvider implements RuleProvider
     {
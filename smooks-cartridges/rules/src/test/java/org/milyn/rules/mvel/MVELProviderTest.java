@@ -0,0 +1,123 @@
+/*
+ * Milyn - Copyright (C) 2006 - 2010
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License (version 2.1) as published
+ * by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.
+ *
+ * See the GNU Lesser General Public License for more details:
+ * http://www.gnu.org/licenses/lgpl.txt
+ */
+
+package org.milyn.rules.mvel;
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.milyn.SmooksException;
+import org.milyn.container.MockExecutionContext;
+import org.milyn.rules.CompiledRule;
+import org.milyn.rules.RuleEvalResult;
+
+/**
+ * Unit test for {@link MVELProvider}.
+ */
+public class MVELProviderTest
+{
+    private MVELProvider provider;
+    private MockExecutionContext context;
+    private Map<String, Object> orderItem;
+
+    @Before
+    public void setUp()
+    {
+        provider = new MVELProvider();
+        provider.setName("mvel");
+        provider.setSrc("/org/milyn/rules/mvel/rules.csv");
+
+        orderItem = new HashMap<String, Object>();
+        orderItem.put("quantity", 2);
+        orderItem.put("price", 10.0);
+
+        context = new MockExecutionContext();
+        context.getBeanContext().addBean("orderItem", orderItem);
+    }
+
+    @Test
+    public void evaluate()
+    {
+        assertTrue(provider.evaluate("quantity", "2", context).matched());
+        orderItem.put("quantity", 6);
+        assertFalse(provider.evaluate("quantity", "6", context).matched());
+    }
+
+    @Test
+    public void compile()
+    {
+        final CompiledRule rule = provider.compile("quantity");
+
+        assertArrayEquals(new String[] {"orderItem"}, ((CompiledMVELRule) rule).getInputs());
+        assertTrue(rule.evaluate("2", context).matched());
+        assertSame(rule.evaluate("2", context), rule.evaluate("2", context));
+
+        orderItem.put("quantity", 6);
+        final MVELRuleEvalResult result = (MVELRuleEvalResult) rule.evaluate("6", context);
+        assertFalse(result.matched());
+        assertEquals("quantity", result.getRuleName());
+        assertEquals("mvel", result.getRuleProviderName());
+        assertEquals("6", result.getText());
+    }
+
+    @Test
+    public void compile_isdef()
+    {
+        final CompiledRule rule = provider.compile("customerName");
+        final Map<String, Object> customer = new HashMap<String, Object>();
+
+        assertFalse(rule.evaluate("", context).matched());
+        context.getBeanContext().addBean("customer", customer);
+        assertFalse(rule.evaluate("", context).matched());
+        customer.put("name", "Joe");
+        assertTrue(rule.evaluate("Joe", context).matched());
+    }
+
+    @Test
+    public void compile_local_variable()
+    {
+        final CompiledRule rule = provider.compile("total");
+
+        assertTrue(rule.evaluate("", context).matched());
+        assertFalse(context.getBeanContext().getBeanMap().containsKey("total"));
+        orderItem.put("quantity", 10);
+        assertFalse(rule.evaluate("", context).matched());
+    }
+
+    @Test
+    public void compile_vars()
+    {
+        assertTrue(provider.compile("vars").evaluate("", context).matched());
+    }
+
+    @Test
+    public void compile_error()
+    {
+        final RuleEvalResult result = provider.compile("error").evaluate("", context);
+
+        assertFalse(result.matched());
+        assertNotNull(result.getEvalException());
+    }
+
+    @Test (expected = SmooksException.class)
+    public void compile_unknown_rule()
+    {
+        provider.compile("unknown");
+    }
+}
@@ -19,7 +19,9 @@ import static org.junit.Assert.*;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.milyn.SmooksException;
 import org.milyn.container.MockExecutionContext;
+import org.milyn.rules.CompiledRule;
 
 /**
  * Unit test for RegexProviderTest.
@@ -215,4 +217,46 @@ public class RegexProviderTest
         assertFalse(productsProvider.evaluate("id", "Z0123456789", null).matched());
         assertTrue(productsProvider.evaluate("id", "YZ012345678901234", null).matched());
     }
+
+    @Test
+    public void compile()
+    {
+        final CompiledRule rule = provider.compile("phoneNumberSE");
+
+        assertTrue(rule.evaluate("08-7549922", null).matched());
+        assertSame(rule.evaluate("08-7549922", null), rule.evaluate("031-123456", null));
+
+        final RegexRuleEvalResult result = (RegexRuleEvalResult) rule.evaluate("7549922", null);
+        assertFalse(result.matched());
+        assertEquals("phoneNumberSE", result.getRuleName());
+        assertEquals("7549922", result.getText());
+    }
+
+    @Test (expected = SmooksException.class)
+    public void compileUnknownRule()
+    {
+        provider.compile("unknown");
+    }
+
+    @Test
+    public void compiledRulesMatchEvaluate()
+    {
+        final String[][] data = {
+            {"email", "daniel.bevenius@gmail.com", "@gmail.com"},
+            {"phoneNumberSE", "08-7549922", "7549922", "08-75499", "08-75499221234"},
+            {"phoneNumberIN", "0493 - 3227341", "493 3227341", "93 02273419", "493 -- 3227341"},
+            {"phoneNumberIT", "02-343536", "02/343536", "02a343536"},
+            {"dateyyyyMMdd", "2002-01-31", "2002-01-32"},
+            {"time", "1 AM", "5:29:59 PM", "13:60:00"},
+        };
+
+        for (final String[] ruleData : data)
+        {
+            final CompiledRule rule = provider.compile(ruleData[0]);
+            for (int i = 1; i < ruleData.length; i++)
+            {
+                assertEquals(ruleData[0] + ": " + ruleData[i], provider.evaluate(ruleData[0], ruleData[i], null).matched(), rule.evaluate(ruleData[i], null).matched());
+            }
+        }
+    }
 }
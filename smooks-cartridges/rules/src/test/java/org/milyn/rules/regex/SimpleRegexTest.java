@@ -0,0 +1,121 @@
+/*
+ * Milyn - Copyright (C) 2006 - 2010
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License (version 2.1) as published
+ * by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.
+ *
+ * See the GNU Lesser General Public License for more details:
+ * http://www.gnu.org/licenses/lgpl.txt
+ */
+
+package org.milyn.rules.regex;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+/**
+ * Unit test for {@link SimpleRegex}.
+ */
+public class SimpleRegexTest
+{
+    private static final String[] SIMPLE = {
+        "[0-9]{6}",
+        "[A-Z]-[0-9]{5}",
+        "[A-Z][a-z]*, [A-Z][a-z]*",
+        "[a-zA-Z]*",
+        "\\d{2,4}-\\d{6,10}",
+        "\\d+\\.?x\\d{2}",
+        "[^,]*,\\d?x",
+        "\\w{3,}\\s\\S",
+        "[-a\\]b]+\\d",
+        ".{2}[\\d\\s]{0,3}",
+        "a\\*b\\{c",
+        "GBP|EUR|USD",
+        "(a|bb|)",
+        "(?:1\\.0|1\\.1)",
+    };
+
+    private static final String[] NOT_SIMPLE = {
+        "\\d{2,4}\\d",
+        "a*a",
+        "\\d+\\.?\\d{2}",
+        "[-a]+\\D",
+        "[a-z]*x?[a-z]",
+        ".*,",
+        "^\\d+$",
+        "(ab)+",
+        "a|b*",
+        "\\d+?",
+        "\\d*+",
+        "[a-z&&[^b]]",
+        "\\bword",
+        "\\u0041",
+    };
+
+    @Test
+    public void compile()
+    {
+        for (final String regex : SIMPLE)
+        {
+            assertNotNull(regex, SimpleRegex.compile(Pattern.compile(regex)));
+        }
+        for (final String regex : NOT_SIMPLE)
+        {
+            assertNull(regex, SimpleRegex.compile(Pattern.compile(regex)));
+        }
+        assertNull(SimpleRegex.compile(Pattern.compile("[a-z]*", Pattern.CASE_INSENSITIVE)));
+    }
+
+    @Test
+    public void matches()
+    {
+        final Random random = new Random(1234);
+        final char[] alphabet = "09aAzZbB_-,. \t\n*{\\]xGEUSPDR\u00e9".toCharArray();
+
+        for (final String regex : SIMPLE)
+        {
+            final Pattern pattern = Pattern.compile(regex);
+            final SimpleRegex simpleRegex = SimpleRegex.compile(pattern);
+
+            for (int i = 0; i < 5000; i++)
+            {
+                final StringBuilder data = new StringBuilder();
+                final int length = random.nextInt(12);
+                for (int j = 0; j < length; j++)
+                {
+                    data.append(alphabet[random.nextInt(alphabet.length)]);
+                }
+                assertEquals(regex + ": '" + data + "'", pattern.matcher(data).matches(), simpleRegex.matches(data));
+            }
+        }
+    }
+
+    @Test
+    public void matchesKnownValues()
+    {
+        final SimpleRegex customerNumber = SimpleRegex.compile(Pattern.compile("[A-Z]-[0-9]{5}"));
+        assertTrue(customerNumber.matches("A-12345"));
+        assertFalse(customerNumber.matches("123123"));
+        assertFalse(customerNumber.matches("A-123456"));
+        assertFalse(customerNumber.matches("A-1234"));
+
+        final SimpleRegex currency = SimpleRegex.compile(Pattern.compile("GBP|EUR|USD"));
+        assertTrue(currency.matches("EUR"));
+        assertFalse(currency.matches("EURO"));
+        assertFalse(currency.matches(""));
+
+        // Surrogate pairs are handled by the Pattern...
+        final SimpleRegex any = SimpleRegex.compile(Pattern.compile(".{2}"));
+        assertEquals(Pattern.matches(".{2}", "a\ud801\udc00"), any.matches("a\ud801\udc00"));
+        assertFalse(any.matches("\ud801\udc00"));
+    }
+}
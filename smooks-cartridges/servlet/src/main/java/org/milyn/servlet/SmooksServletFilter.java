@@ -215,6 +215,7 @@ public class SmooksServletFilter implements Filter {
 	 * @see javax.servlet.Phase#destroy()
 	 */
 	public void destroy() {
+        XMLServletResponseWrapper.shutdownFilterExecutor(smooksContainerContext);
         smooksContainerContext.getStore().close();
         servletConfig.getServletContext().removeAttribute(DeviceProfiler.PROFILE_STORE_CTX_KEY);
     }
@@ -19,7 +19,7 @@ package org.milyn.servlet.container;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.milyn.container.ApplicationContext;
-import org.milyn.container.ExecutionContext;
+import org.milyn.container.AbstractExecutionContext;
 import org.milyn.event.ExecutionEventListener;
 import org.milyn.javabean.context.BeanContext;
 import org.milyn.javabean.context.StandaloneBeanContext;
@@ -43,7 +43,7 @@ import java.util.Map;
  * Smooks ExecutionContext implementation for the HttpServlet container.
  * @author tfennelly
  */
-public class HttpServletExecutionContext implements ExecutionContext, HttpRequest {
+public class HttpServletExecutionContext extends AbstractExecutionContext implements HttpRequest {
 
     private static Log logger = LogFactory.getLog(HttpServletExecutionContext.class);
 
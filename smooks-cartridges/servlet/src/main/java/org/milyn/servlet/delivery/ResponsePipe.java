@@ -0,0 +1,237 @@
+/*
+	Milyn - Copyright (C) 2006 - 2010
+
+	This library is free software; you can redistribute it and/or
+	modify it under the terms of the GNU Lesser General Public
+	License (version 2.1) as published by the Free Software
+	Foundation.
+
+	This library is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+	See the GNU Lesser General Public License for more details:
+	http://www.gnu.org/licenses/lgpl.txt
+*/
+package org.milyn.servlet.delivery;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.io.Writer;
+
+/**
+ * Bounded character pipe.
+ * <p/>
+ * Connects the response content written by the Servlet (the pipe {@link #getWriter() Writer}) to
+ * the Smooks filter reading it on the filter thread (the pipe {@link #getReader() Reader}).  The Servlet
+ * blocks when the pipe buffer is full, so the content is never held in memory in full.
+ * <p/>
+ * Before the reader blocks waiting for more content, the "starvation" {@link Flushable} is flushed. This
+ * pushes the filter output produced so far out to the client while the Servlet is busy producing
+ * more content.
+ * <p/>
+ * If the Servlet fails before completing the content, the pipe is {@link #abort() aborted}, failing the
+ * reader rather than letting it filter the incomplete content.
+ */
+class ResponsePipe {
+
+    private char[] buffer;
+    private int readPosition;
+    private int count;
+    private boolean writerClosed;
+    private boolean readerClosed;
+    private boolean aborted;
+    private Throwable readerFailure;
+    private Flushable onReaderStarved;
+
+    private Writer writer = new PipeWriter();
+    private Reader reader = new PipeReader();
+
+    /**
+     * Constructor.
+     * @param capacity The pipe buffer capacity (characters).
+     * @param onReaderStarved Flushed before the reader blocks waiting for content.
+     */
+    ResponsePipe(int capacity, Flushable onReaderStarved) {
+        if(capacity < 1) {
+            throw new IllegalArgumentException("Invalid pipe capacity '" + capacity + "'.  Must be greater than zero.");
+        }
+        this.buffer = new char[capacity];
+        this.onReaderStarved = onReaderStarved;
+    }
+
+    /**
+     * Get the pipe writer.
+     * @return The pipe writer.
+     */
+    Writer getWriter() {
+        return writer;
+    }
+
+    /**
+     * Get the pipe reader.
+     * @return The pipe reader.
+     */
+    Reader getReader() {
+        return reader;
+    }
+
+    /**
+     * Close the reader end of the pipe.
+     * <p/>
+     * Content written to the pipe after the reader end is closed is discarded, or if a
+     * failure is supplied, results in an {@link IOException}.
+     *
+     * @param failure The reader failure, or null if the reader completed normally.
+     */
+    synchronized void closeReader(Throwable failure) {
+        readerClosed = true;
+        if(failure != null) {
+            readerFailure = failure;
+        }
+        notifyAll();
+    }
+
+    /**
+     * Abort the pipe.
+     * <p/>
+     * The reader fails on its next read (or immediately, if blocked waiting on content) and
+     * subsequent writes fail.
+     */
+    synchronized void abort() {
+        aborted = true;
+        notifyAll();
+    }
+
+    private synchronized void write(char[] chars, int offset, int length) throws IOException {
+        assertNotAborted();
+        if(writerClosed) {
+            throw new IOException("Response pipe writer closed.");
+        }
+
+        while(length > 0) {
+            while(count == buffer.length && !readerClosed && !aborted) {
+                waitOnPipe();
+            }
+            assertNotAborted();
+            if(readerClosed) {
+                assertNoReaderFailure();
+                // Reader is finished with the content... discard...
+                return;
+            }
+
+            int writePosition = (readPosition + count) % buffer.length;
+            int chunkLength = Math.min(length, Math.min(buffer.length - count, buffer.length - writePosition));
+
+            System.arraycopy(chars, offset, buffer, writePosition, chunkLength);
+            count += chunkLength;
+            offset += chunkLength;
+            length -= chunkLength;
+            notifyAll();
+        }
+    }
+
+    private synchronized void closeWriter() throws IOException {
+        writerClosed = true;
+        notifyAll();
+        assertNoReaderFailure();
+    }
+
+    private int read(char[] chars, int offset, int length) throws IOException {
+        boolean flushed = false;
+
+        if(length == 0) {
+            return 0;
+        }
+
+        while(true) {
+            synchronized (this) {
+                assertNotAborted();
+                if(readerClosed) {
+                    throw new IOException("Response pipe reader closed.");
+                }
+                if(count > 0) {
+                    int chunkLength = Math.min(length, Math.min(count, buffer.length - readPosition));
+
+                    System.arraycopy(buffer, readPosition, chars, offset, chunkLength);
+                    readPosition = (readPosition + chunkLength) % buffer.length;
+                    count -= chunkLength;
+                    notifyAll();
+
+                    return chunkLength;
+                }
+                if(writerClosed) {
+                    return -1;
+                }
+                if(flushed || onReaderStarved == null) {
+                    waitOnPipe();
+                    continue;
+                }
+            }
+
+            // Flush outside the lock so as not to block the writer on the flush...
+            onReaderStarved.flush();
+            flushed = true;
+        }
+    }
+
+    private void waitOnPipe() throws InterruptedIOException {
+        try {
+            wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting on response pipe.");
+        }
+    }
+
+    private void assertNotAborted() throws IOException {
+        if(aborted) {
+            throw new IOException("Response pipe aborted.  The response content is incomplete.");
+        }
+    }
+
+    private void assertNoReaderFailure() throws IOException {
+        if(readerFailure != null) {
+            IOException ioException = new IOException("Response filtering failed.");
+            ioException.initCause(readerFailure);
+            throw ioException;
+        }
+    }
+
+    private class PipeWriter extends Writer {
+
+        public void write(char[] chars, int offset, int length) throws IOException {
+            ResponsePipe.this.write(chars, offset, length);
+        }
+
+        public void write(int c) throws IOException {
+            ResponsePipe.this.write(new char[] {(char) c}, 0, 1);
+        }
+
+        public void write(String string, int offset, int length) throws IOException {
+            char[] chars = new char[length];
+            string.getChars(offset, offset + length, chars, 0);
+            ResponsePipe.this.write(chars, 0, length);
+        }
+
+        public void flush() {
+        }
+
+        public void close() throws IOException {
+            closeWriter();
+        }
+    }
+
+    private class PipeReader extends Reader {
+
+        public int read(char[] chars, int offset, int length) throws IOException {
+            return ResponsePipe.this.read(chars, offset, length);
+        }
+
+        public void close() {
+            closeReader(null);
+        }
+    }
+}
@@ -3,8 +3,11 @@ package org.milyn.servlet.delivery;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.milyn.SmooksException;
+import org.milyn.cdr.ParameterAccessor;
+import org.milyn.container.ApplicationContext;
 import org.milyn.container.ExecutionContext;
 import org.milyn.delivery.Filter;
+import org.milyn.delivery.sax.SmooksSAXFilter;
 import org.milyn.payload.FilterResult;
 import org.milyn.payload.FilterSource;
 import org.milyn.delivery.dom.SmooksDOMFilter;
@@ -20,8 +23,23 @@ import javax.xml.transform.Source;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
 import java.util.List;
 import java.util.Vector;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * XML/XHTML/HTML Servlet Response Wrapper.
@@ -30,6 +48,26 @@ import java.util.Vector;
  * Servlet response filter chain via the {@link org.milyn.servlet.SmooksServletFilter}.  
  * <p/>
  * <b style="color: red">This is the default ServletResponse wrapper.</b>
+ *
+ * <h3>Streaming</h3>
+ * By default, the response content is captured in full before being filtered and delivered.
+ * When the "<b>servlet.response.streaming</b>" global parameter is set to "true" and the
+ * configured filter is the SAX filter, the response content is instead piped into the filter
+ * (running on a separate thread) as it is written by the Servlet, and the filter output is
+ * written progressively to the underlying response.  The pipe buffer size (in characters) is
+ * set through the "<b>servlet.response.streaming.buffer.size</b>" global parameter (default 8192).
+ * <p/>
+ * The filters run on a shared thread pool, the size of which is set through the
+ * "<b>servlet.response.streaming.max.threads</b>" global parameter (default 50).  When all the pool
+ * threads are busy, the response is captured in full and filtered on delivery, as in non-streaming mode.
+ * <pre>
+ * &lt;params&gt;
+ *     &lt;param name="stream.filter.type"&gt;SAX&lt;/param&gt;
+ *     &lt;param name="servlet.response.streaming"&gt;true&lt;/param&gt;
+ * &lt;/params&gt;
+ * </pre>
+ * Note that in streaming mode, the Content-Length header is not set on the response, and a
+ * filtering error after the response is committed can't be reported to the client.
  * @author tfennelly
  */
 public class XMLServletResponseWrapper extends ServletResponseWrapper {
@@ -67,6 +105,42 @@ public class XMLServletResponseWrapper extends ServletResponseWrapper {
 	 * Servlet or Filter.
 	 */
 	public static final String SOURCE_DOCUMENT = XMLServletResponseWrapper.class.toString();
+	/**
+	 * Streaming response global parameter name.
+	 */
+	public static final String STREAMING_RESPONSE = "servlet.response.streaming";
+	/**
+	 * Streaming response pipe buffer size global parameter name.
+	 */
+	public static final String STREAMING_BUFFER_SIZE = "servlet.response.streaming.buffer.size";
+	/**
+	 * Streaming response filter thread pool size global parameter name.
+	 */
+	public static final String STREAMING_MAX_THREADS = "servlet.response.streaming.max.threads";
+	/**
+	 * Application context key for the streaming response filter thread pool.
+	 */
+	private static final String FILTER_EXECUTOR_CTX_KEY = XMLServletResponseWrapper.class.getName() + "#filterExecutor";
+	/**
+	 * Is the response streamed through the filter.
+	 */
+	private boolean streamingResponse;
+	/**
+	 * The response pipe - streaming mode only.
+	 */
+	private ResponsePipe responsePipe;
+	/**
+	 * The filter task - streaming mode only.
+	 */
+	private Future<?> filterTask;
+	/**
+	 * Has {@link #deliverResponse()} been called.
+	 */
+	private boolean deliveryStarted;
+	/**
+	 * The filter thread failure, if any - streaming mode only.
+	 */
+	private volatile Throwable filterFailure;
 	
 	/**
 	 * Constructor.
@@ -77,6 +151,13 @@ public class XMLServletResponseWrapper extends ServletResponseWrapper {
 		super(executionContext, originalResponse);
         smooksFilter = executionContext.getDeliveryConfig().newFilter(executionContext);
 		initHeaderActions(executionContext.getDeliveryConfig().getObjects("http-response-header"));
+		if(ParameterAccessor.getBoolParameter(STREAMING_RESPONSE, false, executionContext.getDeliveryConfig())) {
+			if(smooksFilter instanceof SmooksSAXFilter) {
+				streamingResponse = true;
+			} else {
+				logger.debug("Ignoring '" + STREAMING_RESPONSE + "' parameter.  Response streaming is only supported by the SAX filter.");
+			}
+		}
 	}
 
 	/**
@@ -111,7 +192,7 @@ public class XMLServletResponseWrapper extends ServletResponseWrapper {
 		if(stream != null) {
 			return stream;
 		}
-		stream = new SmooksServletOutputStream(this, charArrayWriter);
+		stream = new SmooksServletOutputStream(this, getContentWriter());
 		return stream;
 	}		
 	
@@ -125,10 +206,112 @@ public class XMLServletResponseWrapper extends ServletResponseWrapper {
 		if(printWriter != null) {
 			return printWriter;
 		}
-		printWriter = new SmooksPrintWriter(charArrayWriter, this);
+		printWriter = new SmooksPrintWriter(getContentWriter(), this);
 		return printWriter;
 	}
 	
+	/**
+	 * Get the Writer to which the response content is to be written.
+	 * <p/>
+	 * In streaming mode, this starts the filter task.
+	 * @return The content Writer.
+	 * @throws IOException Unable to get the underlying response OutputStream.
+	 */
+	private Writer getContentWriter() throws IOException {
+		if(!streamingResponse) {
+			return charArrayWriter;
+		}
+
+		// The headers need to be modified before the response is committed...
+		modifyResponseHeaders();
+
+		int bufferSize = Integer.parseInt(ParameterAccessor.getStringParameter(STREAMING_BUFFER_SIZE, "8192", getContainerRequest().getDeliveryConfig()));
+		final Writer responseWriter = new BufferedWriter(new OutputStreamWriter(getResponse().getOutputStream(), getCharacterEncoding())) {
+			public void close() throws IOException {
+				// Don't let the filter close the underlying response stream...
+				flush();
+			}
+		};
+		final ResponsePipe pipe = new ResponsePipe(bufferSize, responseWriter);
+
+		try {
+			filterTask = getFilterExecutor(getContainerRequest()).submit(new Runnable() {
+				public void run() {
+					ExecutionContext executionContext = getContainerRequest();
+
+					FilterSource.setSource(executionContext, new StreamSource(pipe.getReader()));
+					FilterResult.setResults(executionContext, new StreamResult(responseWriter));
+					Filter.setCurrentExecutionContext(executionContext);
+					try {
+						smooksFilter.doFilter();
+						responseWriter.flush();
+					} catch (Throwable t) {
+						filterFailure = t;
+					} finally {
+						Filter.removeCurrentExecutionContext();
+						pipe.closeReader(filterFailure);
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			logger.debug("All response filter threads are busy.  Capturing the response content in full before filtering.");
+			streamingResponse = false;
+			return charArrayWriter;
+		}
+		responsePipe = pipe;
+
+		return responsePipe.getWriter();
+	}
+
+	/**
+	 * Get the streaming response filter thread pool for the application context.
+	 * <p/>
+	 * The pool is bounded by the "<b>servlet.response.streaming.max.threads</b>" global parameter.  Idle
+	 * threads are released after 60 seconds.
+	 * @param executionContext The execution context.
+	 * @return The filter thread pool.
+	 */
+	private static ExecutorService getFilterExecutor(ExecutionContext executionContext) {
+		ApplicationContext appContext = executionContext.getContext();
+
+		synchronized (appContext) {
+			ExecutorService executor = (ExecutorService) appContext.getAttribute(FILTER_EXECUTOR_CTX_KEY);
+
+			if(executor == null) {
+				int maxThreads = Integer.parseInt(ParameterAccessor.getStringParameter(STREAMING_MAX_THREADS, "50", executionContext.getDeliveryConfig()));
+
+				executor = new ThreadPoolExecutor(0, maxThreads, 60, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), new FilterThreadFactory());
+				appContext.setAttribute(FILTER_EXECUTOR_CTX_KEY, executor);
+			}
+
+			return executor;
+		}
+	}
+
+	/**
+	 * Shut down the streaming response filter thread pool for the application context, if one was created.
+	 * @param appContext The application context.
+	 */
+	public static void shutdownFilterExecutor(ApplicationContext appContext) {
+		synchronized (appContext) {
+			ExecutorService executor = (ExecutorService) appContext.getAttribute(FILTER_EXECUTOR_CTX_KEY);
+
+			if(executor != null) {
+				executor.shutdown();
+				appContext.removeAttribute(FILTER_EXECUTOR_CTX_KEY);
+			}
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see javax.servlet.ServletResponse#setContentLength(int)
+	 */
+	public void setContentLength(int len) {
+		if(!streamingResponse) {
+			super.setContentLength(len);
+		}
+	}
+
 	/* (non-Javadoc)
 	 * @see javax.servlet.http.HttpServletResponse#addHeader(java.lang.String, java.lang.String)
 	 */
@@ -172,6 +355,11 @@ public class XMLServletResponseWrapper extends ServletResponseWrapper {
 	 * @return True if it's OK to add the named header to the response, otherwise false.
 	 */
 	private boolean assertAddHeader(String name) {
+		if(streamingResponse && name.equalsIgnoreCase("Content-Length")) {
+			// Length of the filtered response is not known up front...
+			return false;
+		}
+
 		int removeCount = removeHeaderActions.size();
 		
 		for(int i = 0; i < removeCount; i++){
@@ -187,6 +375,12 @@ public class XMLServletResponseWrapper extends ServletResponseWrapper {
 	 * @see org.milyn.delivery.response.ServletResponseWrapper#deliverResponse()
 	 */
 	public void deliverResponse() throws IOException {
+		deliveryStarted = true;
+		if(responsePipe != null) {
+			deliverStreamedResponse();
+			return;
+		}
+
 		OutputStreamWriter writer;
 		ByteArrayOutputStream outBuffer = new ByteArrayOutputStream(1024 * 10);
 		char[] content;
@@ -198,6 +392,9 @@ public class XMLServletResponseWrapper extends ServletResponseWrapper {
                 super.close();
             }
         };
+		if(stream != null) {
+			stream.flushDecoder();
+		}
 		content = charArrayWriter.toCharArray();
 		
 		try {
@@ -250,6 +447,51 @@ public class XMLServletResponseWrapper extends ServletResponseWrapper {
 		}
 	}
 
+	/**
+	 * Complete delivery of a streamed response.
+	 * <p/>
+	 * Closes the response pipe and waits for the filter task to complete.
+	 * @throws IOException Filtering failed.
+	 */
+	private void deliverStreamedResponse() throws IOException {
+		try {
+			// Closing the content writers closes the response pipe, signaling
+			// the end of the content to the filter...
+			if(stream != null) {
+				stream.close();
+			} else if(printWriter != null) {
+				printWriter.close();
+			}
+		} catch(IOException e) {
+			// Reported below...
+		}
+
+		awaitFilterTask();
+
+		if(filterFailure != null) {
+			IOException ioE = new IOException("Unable to deliver response.");
+			ioE.initCause(filterFailure);
+			throw ioE;
+		}
+		getResponse().getOutputStream().flush();
+	}
+
+	/**
+	 * Wait for the filter task to complete.
+	 * @throws InterruptedIOException Interrupted while waiting.
+	 */
+	private void awaitFilterTask() throws InterruptedIOException {
+		try {
+			filterTask.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting on response filtering.");
+		} catch (ExecutionException e) {
+			// Can't happen.  The task captures its own failures...
+			filterFailure = e.getCause();
+		}
+	}
+
 	/**
 	 * Modify the response headers.
 	 */
@@ -276,8 +518,20 @@ public class XMLServletResponseWrapper extends ServletResponseWrapper {
 
 	/**
 	 * Ensure all resources etc are closed
+	 * <p/>
+	 * In streaming mode, if the response was not delivered (the Servlet failed), the response
+	 * pipe is aborted and the filter task is allowed to terminate.
 	 */
 	public void close() {
+		if(responsePipe != null && !deliveryStarted) {
+			responsePipe.abort();
+			try {
+				awaitFilterTask();
+			} catch (InterruptedIOException e) {
+				logger.debug("Interrupted while waiting on aborted response filtering.");
+			}
+			return;
+		}
 		if(printWriter != null) {
 			printWriter.close();
 		}
@@ -291,6 +545,20 @@ public class XMLServletResponseWrapper extends ServletResponseWrapper {
 	}
 
 
+	/**
+	 * Streaming response filter thread factory.
+	 */
+	private static class FilterThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger threadCount = new AtomicInteger();
+
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "Smooks Response Filter-" + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+
 	/**
 	 * Smooks servlet output stream.
 	 * <p/>
@@ -300,11 +568,7 @@ public class XMLServletResponseWrapper extends ServletResponseWrapper {
 	class SmooksServletOutputStream extends ServletOutputStream {
 
 		/**
-		 * Content buffer writer.
-		 */
-		CharArrayWriter charArrayWriter;
-		/**
-		 * Content buffer print writer.
+		 * Content print writer.
 		 */
 		PrintWriter printWriter;
 		/**
@@ -312,26 +576,32 @@ public class XMLServletResponseWrapper extends ServletResponseWrapper {
 		 */
 		ServletResponseWrapper responseWrapper;
 		/**
-		 * Charset for binary decoding.
+		 * Incremental decoder for binary content.  Multi-byte characters can
+		 * be split across writes.
 		 */
-		String charSet; 
+		CharsetDecoder decoder;
+		ByteBuffer byteBuffer = ByteBuffer.allocate(1024);
+		CharBuffer charBuffer = CharBuffer.allocate(1024);
+		boolean decoderFlushed = false;
 		
 		/**
 		 * Constructor.
 		 * @param responseWrapper Response wrapper instance.
+		 * @param contentWriter Content writer.
 		 */
-		private SmooksServletOutputStream(XMLServletResponseWrapper responseWrapper, CharArrayWriter charArrayWriter) {
+		private SmooksServletOutputStream(XMLServletResponseWrapper responseWrapper, Writer contentWriter) {
 			this.responseWrapper = responseWrapper;
-			this.charArrayWriter = charArrayWriter;
-			printWriter = new PrintWriter(charArrayWriter);
-			charSet = responseWrapper.getCharacterEncoding();
+			printWriter = new PrintWriter(contentWriter);
+			decoder = Charset.forName(responseWrapper.getCharacterEncoding()).newDecoder()
+					.onMalformedInput(CodingErrorAction.REPLACE)
+					.onUnmappableCharacter(CodingErrorAction.REPLACE);
 		}		
 		
 		/* (non-Javadoc)
 		 * @see java.io.OutputStream#close()
 		 */
 		public void close() throws IOException {
-			charArrayWriter.close();
+			flushDecoder();
 			printWriter.close();
 			super.close();
 		}
@@ -339,19 +609,59 @@ public class XMLServletResponseWrapper extends ServletResponseWrapper {
 		 * @see java.io.OutputStream#write(int)
 		 */
 		public void write(int b) throws IOException {
-			printWriter.write(b);
+			byteBuffer.put((byte) b);
+			decode(false);
 		}		
 		/* (non-Javadoc)
 		 * @see java.io.OutputStream#write(byte[], int, int)
 		 */
 		public void write(byte[] b, int off, int len) throws IOException {
-			printWriter.write(new String(b, off, len, charSet));
+			while(len > 0) {
+				int chunkLength = Math.min(len, byteBuffer.remaining());
+
+				byteBuffer.put(b, off, chunkLength);
+				off += chunkLength;
+				len -= chunkLength;
+				decode(false);
+			}
 		}
 		/* (non-Javadoc)
 		 * @see java.io.OutputStream#write(byte[])
 		 */
 		public void write(byte[] b) throws IOException {
-			printWriter.write(new String(b, charSet));
+			write(b, 0, b.length);
+		}
+
+		/**
+		 * Decode any remaining bytes i.e. the end of the binary content.
+		 */
+		void flushDecoder() {
+			if(!decoderFlushed) {
+				decode(true);
+				while(decoder.flush(charBuffer).isOverflow()) {
+					writeDecodedChars();
+				}
+				writeDecodedChars();
+				decoderFlushed = true;
+			}
+		}
+
+		private void decode(boolean endOfInput) {
+			CoderResult result;
+
+			byteBuffer.flip();
+			do {
+				result = decoder.decode(byteBuffer, charBuffer, endOfInput);
+				writeDecodedChars();
+			} while(result.isOverflow());
+			// Leaves any incomplete multi-byte character in the buffer...
+			byteBuffer.compact();
+		}
+
+		private void writeDecodedChars() {
+			charBuffer.flip();
+			printWriter.write(charBuffer.array(), 0, charBuffer.limit());
+			charBuffer.clear();
 		}
 		/* (non-Javadoc)
 		 * @see javax.servlet.ServletOutputStream#print(boolean)
@@ -454,9 +764,9 @@ public class XMLServletResponseWrapper extends ServletResponseWrapper {
 	class SmooksPrintWriter extends PrintWriter {
 
 		/**
-		 * The CharArrayWriter capturing the content.
+		 * The Writer capturing the content.
 		 */
-		CharArrayWriter charArrayWriter;
+		Writer contentWriter;
 		/**
 		 * Wrapped response.
 		 */
@@ -464,22 +774,14 @@ public class XMLServletResponseWrapper extends ServletResponseWrapper {
 
 		/**
 		 * Constructor.
-		 * @param charArrayWriter Character buffer for catching the content.
+		 * @param contentWriter Writer for catching the content.
 		 * @param responseWrapper Response wrapper instance.
 		 * @throws IOException
 		 */
-		private SmooksPrintWriter(CharArrayWriter charArrayWriter, ServletResponseWrapper responseWrapper) throws IOException {
-			super(charArrayWriter);
-			this.charArrayWriter = charArrayWriter;
+		private SmooksPrintWriter(Writer contentWriter, ServletResponseWrapper responseWrapper) throws IOException {
+			super(contentWriter);
+			this.contentWriter = contentWriter;
 			this.responseWrapper = responseWrapper;
 		}
-		
-		/* (non-Javadoc)
-		 * @see java.io.Writer#close()
-		 */
-		public void close() {
-			super.close();
-			charArrayWriter.close();
-		}
 	}
 }
\ No newline at end of file
@@ -20,6 +20,9 @@ import java.io.PrintWriter;
 
 import javax.servlet.ServletOutputStream;
 
+import org.milyn.FilterSettings;
+import org.milyn.Smooks;
+import org.milyn.cdr.ParameterAccessor;
 import org.milyn.cdr.SmooksResourceConfiguration;
 import org.milyn.cdr.SmooksConfigurationException;
 import org.milyn.cdr.annotation.Configurator;
@@ -137,6 +140,114 @@ public class XMLServletResponseWrapperTest extends TestCase {
 		}
 	}
 	
+	public void test_deliverResponse_streaming() throws Exception {
+		Smooks smooks = new Smooks();
+
+		smooks.setFilterSettings(FilterSettings.DEFAULT_SAX);
+		ParameterAccessor.setParameter(XMLServletResponseWrapper.STREAMING_RESPONSE, "true", smooks);
+		ParameterAccessor.setParameter(XMLServletResponseWrapper.STREAMING_BUFFER_SIZE, "64", smooks);
+
+		XMLServletResponseWrapper wrapper = new XMLServletResponseWrapper(smooks.createExecutionContext(), mockSR);
+		MockServletOutputStream mockOS = new MockServletOutputStream();
+		StringBuilder expected = new StringBuilder();
+
+		mockSR.setupOutputStream(mockOS);
+
+		PrintWriter pw = wrapper.getWriter();
+		pw.write("<x>");
+		expected.append("<x>");
+		for(int i = 0; i < 2000; i++) {
+			pw.write("<a>" + i + "</a>");
+			expected.append("<a>").append(i).append("</a>");
+		}
+
+		// Content is filtered and delivered as it's written i.e. before deliverResponse...
+		long timeout = System.currentTimeMillis() + 10000;
+		while(mockOS.getContents().length() == 0 && System.currentTimeMillis() < timeout) {
+			Thread.sleep(10);
+		}
+		assertTrue(mockOS.getContents().length() > 0);
+
+		pw.write("</x>");
+		expected.append("</x>");
+		wrapper.deliverResponse();
+		wrapper.close();
+
+		assertEquals(expected.toString(), mockOS.getContents());
+	}
+
+	public void test_deliverResponse_streaming_OutputStream() throws Exception {
+		Smooks smooks = new Smooks();
+
+		smooks.setFilterSettings(FilterSettings.DEFAULT_SAX);
+		ParameterAccessor.setParameter(XMLServletResponseWrapper.STREAMING_RESPONSE, "true", smooks);
+
+		XMLServletResponseWrapper wrapper = new XMLServletResponseWrapper(smooks.createExecutionContext(), mockSR);
+		MockServletOutputStream mockOS = new MockServletOutputStream();
+
+		mockSR.setupOutputStream(mockOS);
+
+		ServletOutputStream os = wrapper.getOutputStream();
+		byte[] content = "<x>\u00e9\u20ac</x>".getBytes("UTF-8");
+
+		// Write the bytes 1 at a time, splitting the multi-byte characters...
+		for(int i = 0; i < content.length; i++) {
+			os.write(content, i, 1);
+		}
+
+		wrapper.deliverResponse();
+		wrapper.close();
+
+		// MockServletOutputStream decodes the content using the platform encoding...
+		assertEquals(new String(content), mockOS.getContents());
+	}
+
+	public void test_close_streaming_aborted() throws Exception {
+		Smooks smooks = new Smooks();
+
+		smooks.setFilterSettings(FilterSettings.DEFAULT_SAX);
+		ParameterAccessor.setParameter(XMLServletResponseWrapper.STREAMING_RESPONSE, "true", smooks);
+
+		XMLServletResponseWrapper wrapper = new XMLServletResponseWrapper(smooks.createExecutionContext(), mockSR);
+		MockServletOutputStream mockOS = new MockServletOutputStream();
+
+		mockSR.setupOutputStream(mockOS);
+
+		PrintWriter pw = wrapper.getWriter();
+		pw.write("<x><a>");
+
+		// The Servlet failed i.e. no deliverResponse.  Close aborts the pipe and waits for the filter to terminate...
+		wrapper.close();
+
+		pw.write("</a></x>");
+		assertTrue(pw.checkError());
+	}
+
+	public void test_deliverResponse_streaming_threadsBusy() throws Exception {
+		Smooks smooks = new Smooks();
+
+		smooks.setFilterSettings(FilterSettings.DEFAULT_SAX);
+		ParameterAccessor.setParameter(XMLServletResponseWrapper.STREAMING_RESPONSE, "true", smooks);
+		ParameterAccessor.setParameter(XMLServletResponseWrapper.STREAMING_MAX_THREADS, "1", smooks);
+
+		XMLServletResponseWrapper wrapper1 = new XMLServletResponseWrapper(smooks.createExecutionContext(), mockSR);
+		XMLServletResponseWrapper wrapper2 = new XMLServletResponseWrapper(smooks.createExecutionContext(), mockSR);
+		MockServletOutputStream mockOS = new MockServletOutputStream();
+
+		mockSR.setupOutputStream(mockOS);
+
+		// wrapper1 takes the only filter thread, so wrapper2 captures the content in full...
+		wrapper1.getWriter().write("<x>");
+		wrapper2.getWriter().write("<y>z</y>");
+		assertFalse(mockOS.getContents().endsWith("<y>z</y>"));
+
+		wrapper2.deliverResponse();
+		wrapper2.close();
+		assertTrue(mockOS.getContents().endsWith("<y>z</y>"));
+
+		wrapper1.close();
+	}
+
 	private static class MyTestTU implements DOMElementVisitor {
 		private String newName;
 		private boolean visitBefore;
@@ -40,6 +40,7 @@ import org.milyn.delivery.Filter;
 import org.milyn.event.report.annotation.VisitAfterReport;
 import org.milyn.event.report.annotation.VisitBeforeReport;
 import org.milyn.io.AbstractOutputStreamResource;
+import org.milyn.io.FragmentBuffer;
 import org.milyn.io.NullWriter;
 import org.milyn.templating.AbstractTemplateProcessor;
 import org.milyn.templating.TemplatingConfiguration;
@@ -51,7 +52,6 @@ import org.w3c.dom.Node;
 
 import java.io.IOException;
 import java.io.StringReader;
-import java.io.StringWriter;
 import java.io.Writer;
 import java.net.URL;
 import java.util.Map;
@@ -200,17 +200,18 @@ public class FreeMarkerTemplateProcessor extends AbstractTemplateProcessor imple
 	private void applyTemplate(Template template, Element element, ExecutionContext executionContext) throws SmooksException {
         // Apply the template...
         String templatingResult;
+        FragmentBuffer writer = FragmentBuffer.acquire(executionContext);
         try {
-            Writer writer = new StringWriter();
             Map<String, Object> model = FreeMarkerUtils.getMergedModel(executionContext);
 
             template.process(model, writer);
-            writer.flush();
             templatingResult = writer.toString();
         } catch (TemplateException e) {
             throw new SmooksException("Failed to apply FreeMarker template to fragment '" + DomUtils.getXPath(element) + "'.  Resource: " + config, e);
         } catch (IOException e) {
             throw new SmooksException("Failed to apply FreeMarker template to fragment '" + DomUtils.getXPath(element) + "'.  Resource: " + config, e);
+        } finally {
+            writer.release(executionContext);
         }
 
         // Create the replacement DOM text node containing the applied template...
@@ -342,10 +343,13 @@ public class FreeMarkerTemplateProcessor extends AbstractTemplateProcessor imple
 
     private void applyTemplate(Template template, SAXElement element, ExecutionContext executionContext) throws SmooksException {
         if (getAction() == Action.BIND_TO) {
-            Writer writer = new StringWriter();
-            applyTemplate(template, element, executionContext, writer);
-
-            executionContext.getBeanContext().addBean(getBindBeanId(), writer.toString(), new Fragment(element));
+            FragmentBuffer writer = FragmentBuffer.acquire(executionContext);
+            try {
+                applyTemplate(template, element, executionContext, writer);
+                executionContext.getBeanContext().addBean(getBindBeanId(), writer.toString(), new Fragment(element));
+            } finally {
+                writer.release(executionContext);
+            }
         } else {
             Writer writer = element.getWriter(this);
             applyTemplate(template, element, executionContext, writer);
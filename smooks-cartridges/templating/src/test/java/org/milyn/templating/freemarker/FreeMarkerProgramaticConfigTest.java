@@ -88,6 +88,57 @@ smooks.addVisitor(
         test_ftl(smooks, "<a><b><c>cvalue1</c><c>cvalue2</c><c>cvalue3</c></b></a>", "<a><b><x>'cvalue1'</x><x>'cvalue2'</x><x>'cvalue3'</x></b></a>");
     }
 
+    public void test_compactNodeModel_1() throws IOException, SAXException, ParserConfigurationException {
+        Smooks smooks = new Smooks();
+        DomModelCreator modelCreator = new DomModelCreator();
+
+        modelCreator.setCompactModel(true);
+        smooks.addVisitor(modelCreator, "$document");
+        smooks.addVisitor(
+                new FreeMarkerTemplateProcessor(new TemplatingConfiguration("<#foreach c in a.b.c>'${c}'</#foreach>")),
+                "$document"
+        );
+
+        smooks.setFilterSettings(FilterSettings.DEFAULT_SAX);
+        test_ftl(smooks, "<a><b><c>cvalue1</c><c>cvalue2</c><c>cvalue3</c></b></a>", "'cvalue1''cvalue2''cvalue3'");
+    }
+
+    public void test_compactNodeModel_2() throws IOException, SAXException, ParserConfigurationException {
+        Smooks smooks = new Smooks();
+        DomModelCreator modelCreator = new DomModelCreator();
+
+        modelCreator.setCompactModel(true);
+        smooks.addVisitor(modelCreator, "c");
+        smooks.addVisitor(
+                new FreeMarkerTemplateProcessor(new TemplatingConfiguration("<x>'${c}'</x>")),
+                "c"
+        );
+
+        smooks.setFilterSettings(FilterSettings.DEFAULT_SAX);
+        test_ftl(smooks, "<a><b><c>cvalue1</c><c>cvalue2</c><c>cvalue3</c></b></a>", "<a><b><x>'cvalue1'</x><x>'cvalue2'</x><x>'cvalue3'</x></b></a>");
+    }
+
+    public void test_compactNodeModel_3() throws IOException, SAXException, ParserConfigurationException {
+        Smooks smooks = new Smooks();
+        DomModelCreator modelCreator = new DomModelCreator();
+
+        modelCreator.setCompactModel(true);
+        smooks.addVisitor(modelCreator, "order");
+        smooks.addVisitor(
+                new FreeMarkerTemplateProcessor(new TemplatingConfiguration(
+                        "<o id=\"${order.@id}\" c=\"${order.header.customer}\" n=\"${order.header.customer.@number}\">" +
+                        "<#list order.items.item as i>[${i?node_name}:${i.@sku}:${i}]</#list>" +
+                        "|${order.items.item?size}|${order.header.@@text}|<#if order.@missing??>x<#else>none</#if>" +
+                        "|${order.header?parent?node_name}|<#list order?children as c>${c?node_name}</#list></o>")),
+                "order"
+        );
+
+        smooks.setFilterSettings(FilterSettings.DEFAULT_SAX);
+        test_ftl(smooks,
+                "<order id=\"1\"><header><customer number=\"123\">Joe</customer></header><items><item sku=\"a\">2</item><item sku=\"b\"><![CDATA[3]]></item></items></order>",
+                "<o id=\"1\" c=\"Joe\" n=\"123\">[item:a:2][item:b:3]|2|Joe|none|order|headeritems</o>");
+    }
+
     public void testFreeMarkerTrans_bind() throws SAXException, IOException {
         StringReader input;
         ExecutionContext context;
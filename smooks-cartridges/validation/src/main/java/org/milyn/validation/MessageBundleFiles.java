@@ -0,0 +1,144 @@
+/*
+ * Milyn - Copyright (C) 2006 - 2010
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License (version 2.1) as published
+ * by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.
+ *
+ * See the GNU Lesser General Public License for more details:
+ * http://www.gnu.org/licenses/lgpl.txt
+ */
+package org.milyn.validation;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.JarURLConnection;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.Enumeration;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.milyn.resource.URIResourceLocator;
+import org.milyn.util.ClassUtil;
+
+/**
+ * Validation rule message bundle files.
+ * <p/>
+ * Lists the Locale specific message bundle files ("&lt;baseName&gt;_&lt;locale&gt;.properties") of a message
+ * bundle, so as the {@link Validator} only needs to load the bundles of the Locales for which a message
+ * bundle file actually exists.  Looks in the same locations as the message bundle ClassLoader i.e. the
+ * file system and the classpath.
+ */
+final class MessageBundleFiles {
+
+    private static Log logger = LogFactory.getLog(MessageBundleFiles.class);
+
+    private static final String PROPERTIES_EXT = ".properties";
+
+    private MessageBundleFiles() {
+    }
+
+    /**
+     * Get the Locales of the message bundle files that exist for the specified message bundle.
+     *
+     * @param baseName The message bundle base name e.g. "rules/i18n/customer".
+     * @return The Locales, or null if one of the bundle folders cannot be listed (e.g. a bundle
+     * folder located via a http URL).
+     */
+    static Set<Locale> getLocales(String baseName) {
+        int lastSlash = baseName.lastIndexOf('/');
+        String folder = (lastSlash != -1 ? baseName.substring(0, lastSlash + 1) : "./");
+        String filePrefix = baseName.substring(lastSlash + 1) + "_";
+        Set<String> fileNames = new LinkedHashSet<String>();
+
+        try {
+            URI resolvedFolder = new URIResourceLocator().resolveURI(folder);
+            String scheme = resolvedFolder.getScheme();
+
+            addFileNames(new File(folder), fileNames);
+            if(scheme == null) {
+                addFileNames(new File(resolvedFolder.getPath()), fileNames);
+            } else if(!scheme.equals(URIResourceLocator.SCHEME_CLASSPATH)) {
+                return null;
+            }
+
+            String classpathFolder = resolvedFolder.getPath();
+            if(classpathFolder.startsWith("/")) {
+                classpathFolder = classpathFolder.substring(1);
+            }
+            for(URL folderURL : ClassUtil.getResources(classpathFolder, MessageBundleFiles.class)) {
+                if(folderURL.getProtocol().equals("file")) {
+                    addFileNames(new File(folderURL.toURI()), fileNames);
+                } else if(folderURL.getProtocol().equals("jar")) {
+                    addJarEntryNames(folderURL, classpathFolder, fileNames);
+                } else {
+                    return null;
+                }
+            }
+        } catch (IOException e) {
+            logger.debug("Unable to list the message bundle files of bundle '" + baseName + "'.", e);
+            return null;
+        } catch (URISyntaxException e) {
+            logger.debug("Unable to list the message bundle files of bundle '" + baseName + "'.", e);
+            return null;
+        }
+
+        Set<Locale> locales = new LinkedHashSet<Locale>();
+        for(String fileName : fileNames) {
+            if(fileName.startsWith(filePrefix) && fileName.endsWith(PROPERTIES_EXT)) {
+                String localeName = fileName.substring(filePrefix.length(), fileName.length() - PROPERTIES_EXT.length());
+                if(localeName.length() > 0) {
+                    locales.add(toLocale(localeName));
+                }
+            }
+        }
+
+        return locales;
+    }
+
+    private static void addFileNames(File folder, Set<String> fileNames) {
+        String[] folderFileNames = folder.list();
+
+        if(folderFileNames != null) {
+            for(String fileName : folderFileNames) {
+                fileNames.add(fileName);
+            }
+        }
+    }
+
+    private static void addJarEntryNames(URL folderURL, String folder, Set<String> fileNames) throws IOException {
+        JarFile jarFile = ((JarURLConnection) folderURL.openConnection()).getJarFile();
+        String entryPrefix = (folder.endsWith("/") ? folder : folder + "/");
+        Enumeration<JarEntry> entries = jarFile.entries();
+
+        while(entries.hasMoreElements()) {
+            String entryName = entries.nextElement().getName();
+            if(entryName.startsWith(entryPrefix) && entryName.indexOf('/', entryPrefix.length()) == -1) {
+                fileNames.add(entryName.substring(entryPrefix.length()));
+            }
+        }
+    }
+
+    private static Locale toLocale(String localeName) {
+        String[] tokens = localeName.split("_", 3);
+
+        if(tokens.length == 1) {
+            return new Locale(tokens[0]);
+        } else if(tokens.length == 2) {
+            return new Locale(tokens[0], tokens[1]);
+        } else {
+            return new Locale(tokens[0], tokens[1], tokens[2]);
+        }
+    }
+}
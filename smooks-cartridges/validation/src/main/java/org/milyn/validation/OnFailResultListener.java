@@ -0,0 +1,45 @@
+/*
+ * Milyn - Copyright (C) 2006 - 2010
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License (version 2.1) as published
+ * by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.
+ *
+ * See the GNU Lesser General Public License for more details:
+ * http://www.gnu.org/licenses/lgpl.txt
+ */
+package org.milyn.validation;
+
+/**
+ * Validation failure listener.
+ * <p/>
+ * Receives {@link OnFailResult}s from a {@link StreamingValidationResult} as they
+ * occur during filtering.
+ *
+ * @see OnFailResultQueue
+ */
+public interface OnFailResultListener {
+
+    /**
+     * Validation failure event.
+     * <p/>
+     * Called on the filtering thread.
+     *
+     * @param result The validation failure.
+     * @param onFail The failure level.
+     */
+    void onFail(OnFailResult result, OnFail onFail);
+
+    /**
+     * Validation complete event.
+     * <p/>
+     * Called once, at the end of the filter operation (whether or not it completed successfully).
+     *
+     * @param validationResult The validation result, containing the final failure counts.
+     */
+    void onComplete(StreamingValidationResult validationResult);
+}
@@ -0,0 +1,140 @@
+/*
+ * Milyn - Copyright (C) 2006 - 2010
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License (version 2.1) as published
+ * by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.
+ *
+ * See the GNU Lesser General Public License for more details:
+ * http://www.gnu.org/licenses/lgpl.txt
+ */
+package org.milyn.validation;
+
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.milyn.SmooksException;
+import org.milyn.rules.RuleEvalResult;
+
+/**
+ * Bounded queue {@link OnFailResultListener}.
+ * <p/>
+ * Hands the {@link OnFailResult}s over to a consumer thread.  The filtering thread
+ * blocks when the queue is full, so a slow consumer throttles the filter rather than
+ * the failures building up in memory.
+ * <p/>
+ * The consumer calls {@link #take()} until it returns null (validation complete):
+ * <pre>
+ * OnFailResultQueue queue = new OnFailResultQueue(1000);
+ * StreamingValidationResult result = new StreamingValidationResult(queue);
+ *
+ * // Filter on another thread...
+ * executor.execute(new Runnable() {
+ *     public void run() {
+ *         smooks.filterSource(source, result);
+ *     }
+ * });
+ *
+ * OnFailResult onFailResult;
+ * while((onFailResult = queue.take()) != null) {
+ *     ...
+ * }
+ * </pre>
+ */
+public class OnFailResultQueue implements OnFailResultListener {
+
+    private static final OnFailResult END_OF_STREAM = new EndOfStream();
+
+    private final BlockingQueue<OnFailResult> queue;
+    private volatile boolean complete = false;
+
+    /**
+     * Public constructor.
+     * @param capacity The queue capacity.
+     */
+    public OnFailResultQueue(int capacity) {
+        queue = new ArrayBlockingQueue<OnFailResult>(capacity);
+    }
+
+    public void onFail(OnFailResult result, OnFail onFail) {
+        put(result);
+    }
+
+    public void onComplete(StreamingValidationResult validationResult) {
+        put(END_OF_STREAM);
+    }
+
+    /**
+     * Take the next {@link OnFailResult} from the queue, waiting if necessary.
+     * @return The next {@link OnFailResult}, or null if validation has completed and
+     * all failures have been taken.
+     * @throws InterruptedException Interrupted while waiting.
+     */
+    public OnFailResult take() throws InterruptedException {
+        if(complete) {
+            return null;
+        }
+        return toResult(queue.take());
+    }
+
+    /**
+     * Take the next {@link OnFailResult} from the queue, waiting up to the specified time if necessary.
+     * @param timeout How long to wait.
+     * @param unit The timeout unit.
+     * @return The next {@link OnFailResult}, or null if validation has completed and
+     * all failures have been taken, or the timeout expired (see {@link #isComplete()}).
+     * @throws InterruptedException Interrupted while waiting.
+     */
+    public OnFailResult poll(long timeout, TimeUnit unit) throws InterruptedException {
+        if(complete) {
+            return null;
+        }
+        return toResult(queue.poll(timeout, unit));
+    }
+
+    /**
+     * Has validation completed and all failures been taken from the queue.
+     * @return True if validation has completed and all failures have been taken, otherwise false.
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    private OnFailResult toResult(OnFailResult result) {
+        if(result == END_OF_STREAM) {
+            complete = true;
+            return null;
+        }
+        return result;
+    }
+
+    private void put(OnFailResult result) {
+        try {
+            queue.put(result);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SmooksException("Interrupted while waiting to queue validation result.", e);
+        }
+    }
+
+    private static class EndOfStream implements OnFailResult {
+        public String getFailFragmentPath() {
+            return null;
+        }
+        public RuleEvalResult getFailRuleResult() {
+            return null;
+        }
+        public String getMessage() {
+            return null;
+        }
+        public String getMessage(Locale locale) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Milyn - Copyright (C) 2006 - 2010
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License (version 2.1) as published
+ * by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.
+ *
+ * See the GNU Lesser General Public License for more details:
+ * http://www.gnu.org/licenses/lgpl.txt
+ */
+package org.milyn.validation;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import org.milyn.assertion.AssertArgument;
+
+/**
+ * Streaming validation result.
+ * <p/>
+ * Unlike {@link ValidationResult}, the {@link OnFailResult}s are not accumulated in memory.
+ * They are pushed to an {@link OnFailResultListener} as they occur, and only counted
+ * on this result instance.  This makes it possible to validate very large messages that
+ * produce a large number of failures.
+ * <p/>
+ * The number of results delivered to the listener can be capped per {@link OnFail}
+ * level (see {@link #setMaxResults(OnFail, int)}).  Failures beyond the cap are counted but
+ * not delivered.  Counts are available via {@link #getNumFailures(OnFail)} and
+ * {@link #getNumDropped(OnFail)}.
+ * <p/>
+ * {@link #getOKs()}, {@link #getWarnings()} and {@link #getErrors()} always return
+ * empty lists.  The {@link OnFail#FATAL} result is retained (see {@link #getFatal()}).
+ *
+ * <h3>Usage</h3>
+ * <pre>
+ * StreamingValidationResult result = new StreamingValidationResult(listener).setMaxResults(OnFail.OK, 0);
+ *
+ * smooks.filterSource(source, result);
+ * </pre>
+ */
+public class StreamingValidationResult extends ValidationResult {
+
+    private final OnFailResultListener listener;
+    private final Map<OnFail, Integer> maxResults = new EnumMap<OnFail, Integer>(OnFail.class);
+    private final Map<OnFail, Counter> failureCounts = new EnumMap<OnFail, Counter>(OnFail.class);
+    private boolean complete = false;
+
+    /**
+     * Public constructor.
+     * @param listener The listener to which the {@link OnFailResult}s are to be delivered.
+     */
+    public StreamingValidationResult(OnFailResultListener listener) {
+        AssertArgument.isNotNull(listener, "listener");
+        this.listener = listener;
+        for(OnFail onFail : OnFail.values()) {
+            failureCounts.put(onFail, new Counter());
+        }
+    }
+
+    /**
+     * Set the maximum number of {@link OnFailResult}s to be delivered to the
+     * listener for the specified {@link OnFail} level.
+     * <p/>
+     * Default is unlimited.  Set to zero to only count failures at the level.
+     *
+     * @param onFail The failure level.
+     * @param maxResults The maximum number of results to deliver.
+     * @return This instance.
+     */
+    public StreamingValidationResult setMaxResults(OnFail onFail, int maxResults) {
+        AssertArgument.isNotNull(onFail, "onFail");
+        if(maxResults < 0) {
+            throw new IllegalArgumentException("Invalid 'maxResults' value '" + maxResults + "'.  Must be zero or greater.");
+        }
+        this.maxResults.put(onFail, maxResults);
+        return this;
+    }
+
+    /**
+     * Get the total number of failures reported at the specified {@link OnFail} level,
+     * including failures not delivered to the listener.
+     * @param onFail The failure level.
+     * @return The number of failures.
+     */
+    public int getNumFailures(OnFail onFail) {
+        return failureCounts.get(onFail).count;
+    }
+
+    /**
+     * Get the number of failures reported at the specified {@link OnFail} level that
+     * were not delivered to the listener because the level's cap was exceeded.
+     * @param onFail The failure level.
+     * @return The number of dropped failures.
+     */
+    public int getNumDropped(OnFail onFail) {
+        return failureCounts.get(onFail).dropped;
+    }
+
+    @Override
+    public int getNumFailures() {
+        int numFailures = 0;
+        for(Counter counter : failureCounts.values()) {
+            numFailures += counter.count;
+        }
+        return numFailures;
+    }
+
+    /**
+     * Has validation completed i.e. has the filter operation ended.
+     * @return True if validation has completed, otherwise false.
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    @Override
+    protected void addResult(final OnFailResult result, final OnFail onFail) {
+        AssertArgument.isNotNull(result, "result");
+        AssertArgument.isNotNull(onFail, "onFail");
+
+        Counter counter = failureCounts.get(onFail);
+        Integer max = maxResults.get(onFail);
+
+        counter.count++;
+        if(onFail == OnFail.FATAL) {
+            super.addResult(result, onFail);
+        }
+        if(max != null && counter.count > max) {
+            counter.dropped++;
+        } else {
+            listener.onFail(result, onFail);
+        }
+    }
+
+    /**
+     * Mark validation as complete, notifying the listener.
+     * <p/>
+     * Called at the end of the filter operation.  Subsequent calls are ignored.
+     */
+    protected void complete() {
+        if(complete) {
+            return;
+        }
+        complete = true;
+        listener.onComplete(this);
+    }
+
+    private static class Counter {
+        private int count;
+        private int dropped;
+    }
+}
@@ -18,6 +18,10 @@ import java.io.IOException;
 import java.io.File;
 import java.io.InputStream;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -36,6 +40,7 @@ import org.milyn.cdr.SmooksResourceConfiguration;
 import org.milyn.cdr.SmooksConfigurationException;
 import org.milyn.container.ApplicationContext;
 import org.milyn.container.ExecutionContext;
+import org.milyn.delivery.ExecutionLifecycleCleanable;
 import org.milyn.delivery.annotation.Initialize;
 import org.milyn.delivery.dom.DOMVisitAfter;
 import org.milyn.delivery.sax.SAXElement;
@@ -43,6 +48,7 @@ import org.milyn.delivery.sax.SAXVisitAfter;
 import org.milyn.delivery.sax.SAXVisitBefore;
 import org.milyn.delivery.sax.SAXUtil;
 import org.milyn.rules.RuleEvalResult;
+import org.milyn.rules.CompiledRule;
 import org.milyn.rules.RuleProvider;
 import org.milyn.rules.RuleProviderAccessor;
 import org.w3c.dom.Element;
@@ -87,10 +93,29 @@ import org.w3c.dom.Element;
  */
 @VisitBeforeReport(condition = "false")
 @VisitAfterReport(summary = "Applied validation rule '${resource.parameters.name}'.")
-public final class Validator implements SAXVisitBefore, SAXVisitAfter, DOMVisitAfter
+public final class Validator implements SAXVisitBefore, SAXVisitAfter, DOMVisitAfter, ExecutionLifecycleCleanable
 {
     private static Log logger = LogFactory.getLog(Validator.class);
 
+    /**
+     * FreeMarker expressions and directives (interpolations, FTL tags and user directive calls).
+     */
+    private static final Pattern FTL_EXPRESSION = Pattern.compile("\\$\\{(.*?)\\}|#\\{(.*?)\\}|</?[#@](.*?)>|\\[/?[#@](.*?)\\]", Pattern.DOTALL);
+    /**
+     * Top level names within a FreeMarker expression i.e. names not preceded by a '.' or '?'.
+     */
+    private static final Pattern FTL_TOP_LEVEL_NAME = Pattern.compile("(?<![\\w.?])([A-Za-z_]\\w*)");
+    /**
+     * FreeMarker constructs through which a template can reference beans that cannot be worked out
+     * from the template text (included/imported templates, special variables and dynamic evaluation).
+     */
+    private static final Pattern FTL_DYNAMIC_REFERENCE = Pattern.compile("[<\\[]#(include|import|visit|recurse)\\b|\\.(vars|data_model|globals|main|namespace|locals)\\b|\\?(eval|interpret)\\b");
+    /**
+     * Message bundle ClassLoader.  A single instance is used so as the {@link ResourceBundle}
+     * cache is not defeated.
+     */
+    private static final ResourceBundleClassLoader RESOURCE_BUNDLE_CLASSLOADER = new ResourceBundleClassLoader();
+
     /**
      * The name of the rule that will be used by this validator.
      */
@@ -107,6 +132,10 @@ public final class Validator implements SAXVisitBefore, SAXVisitAfter, DOMVisitA
      * Rule provider for this validator.
      */
     private RuleProvider ruleProvider;
+    /**
+     * The compiled rule.  Set once, after the rest of the runtime configuration (see {@link #initialize(ExecutionContext)}).
+     */
+    private volatile CompiledRule compiledRule;
     /**
      * The validation failure level. Default is OnFail.ERROR.
      */
@@ -134,6 +163,19 @@ public final class Validator implements SAXVisitBefore, SAXVisitAfter, DOMVisitA
      * The maximum number of failures permitted per {@link ValidationResult} instance..
      */
     private int maxFails;
+    /**
+     * Failure message templates, by Locale.
+     */
+    private final ConcurrentMap<Locale, MessageTemplate> messageTemplates = new ConcurrentHashMap<Locale, MessageTemplate>();
+    /**
+     * The IDs of the beans referenced by the failure message templates.
+     */
+    private volatile Set<String> referencedBeanIds = Collections.emptySet();
+    /**
+     * Capture the whole bean context for failures, because one of the failure message templates
+     * references beans that cannot be worked out from the template text.
+     */
+    private volatile boolean captureAllBeans = false;
 
     /**
      * No-args constructor required by Smooks.
@@ -174,13 +216,13 @@ public final class Validator implements SAXVisitBefore, SAXVisitAfter, DOMVisitA
             OnFailResultImpl result = _validate(element.getAttribute(targetAttribute), executionContext);
             if(result != null) {
                 result.setFailFragmentPath(SAXUtil.getXPath(element) + "/@" + targetAttribute);
-                assertValidationException(result, executionContext);
+                reportFailure(result, executionContext);
             }
         } else {
             OnFailResultImpl result = _validate(element.getTextContent(), executionContext);
             if(result != null) {
                 result.setFailFragmentPath(SAXUtil.getXPath(element));
-                assertValidationException(result, executionContext);
+                reportFailure(result, executionContext);
             }
         }
     }
@@ -191,24 +233,35 @@ public final class Validator implements SAXVisitBefore, SAXVisitAfter, DOMVisitA
             OnFailResultImpl result = _validate(element.getAttribute(targetAttribute), executionContext);
             if(result != null) {
                 result.setFailFragmentPath(DomUtils.getXPath(element) + "/@" + targetAttribute);
-                assertValidationException(result, executionContext);
+                reportFailure(result, executionContext);
             }
         } else {
             OnFailResultImpl result = _validate(element.getTextContent(), executionContext);
             if(result != null) {
                 result.setFailFragmentPath(DomUtils.getXPath(element));
-                assertValidationException(result, executionContext);
+                reportFailure(result, executionContext);
             }
         }
     }
 
-    private void assertValidationException(OnFailResultImpl result, ExecutionContext executionContext) {
+    public void executeExecutionLifecycleCleanup(ExecutionContext executionContext) {
+        ValidationResult validationResult = (ValidationResult) FilterResult.getResult(executionContext, ValidationResult.class);
+
+        if(validationResult instanceof StreamingValidationResult) {
+            ((StreamingValidationResult) validationResult).complete();
+        }
+    }
+
+    private void reportFailure(OnFailResultImpl result, ExecutionContext executionContext) {
+        ValidationResult validationResult = getValidationResult(executionContext);
+
+        validationResult.addResult(result, onFail);
+
         if (onFail == OnFail.FATAL) {
             throw new ValidationException("A FATAL validation failure has occured " + result, result);
         }
 
-        ValidationResult validationResult = getValidationResult(executionContext);
-        if(validationResult != null && validationResult.getNumFailures() > maxFails) {
+        if(validationResult.getNumFailures() > maxFails) {
             throw new ValidationException("The maximum number of allowed validation failures (" + maxFails + ") has been exceeded.", result);
         }
     }
@@ -227,27 +280,29 @@ public final class Validator implements SAXVisitBefore, SAXVisitAfter, DOMVisitA
     {
         OnFailResultImpl result = _validate(text, executionContext);
         if(result != null) {
-            assertValidationException(result, executionContext);
+            reportFailure(result, executionContext);
         }
     }
 
     /**
      * Validate will lookup the configured RuleProvider and validate the text against the
      * rule specfied by the composite rule name.
+     * <p/>
+     * The returned failure is not yet reported.  The caller reports it (see {@link #reportFailure(OnFailResultImpl, ExecutionContext)})
+     * once the fail fragment path has been set on it.
      *
      * @param text The selected data to perform the evaluation on.
      * @param executionContext The Smooks {@link org.milyn.container.ExecutionContext}.
-     *
-     * @throws ValidationException A FATAL Validation failure has occured, or the maximum number of
-     * allowed failures has been exceeded.
+     * @return The validation failure, or null if the rule matched.
      */
     private OnFailResultImpl _validate(final String text, final ExecutionContext executionContext) throws ValidationException
     {
-        if(ruleProvider == null) {
-            setRuleProvider(executionContext);
+        CompiledRule rule = compiledRule;
+        if(rule == null) {
+            rule = initialize(executionContext);
         }
 
-        final RuleEvalResult result = ruleProvider.evaluate(ruleName, text, executionContext);
+        final RuleEvalResult result = rule.evaluate(text, executionContext);
 
         if(logger.isDebugEnabled()) {
             logger.debug(result);
@@ -255,11 +310,9 @@ public final class Validator implements SAXVisitBefore, SAXVisitAfter, DOMVisitA
 
         if (!result.matched())
         {
-            ValidationResult validationResult = getValidationResult(executionContext);
             OnFailResultImpl onFailResult = new OnFailResultImpl();
             onFailResult.setRuleResult(result);
-            onFailResult.setBeanContext(executionContext.getBeanContext().getBeanMap());
-            validationResult.addResult(onFailResult, onFail);
+            onFailResult.setBeanContext(captureBeanContext(executionContext));
 
             return onFailResult;
         }
@@ -267,6 +320,144 @@ public final class Validator implements SAXVisitBefore, SAXVisitAfter, DOMVisitA
         return null;
     }
 
+    /**
+     * Capture the beans referenced by the failure message templates.
+     * <p/>
+     * Only the referenced beans are captured (not the whole bean context), as the failure
+     * result may be held for the remainder of the filter operation (or longer).  The message itself
+     * is only rendered on demand (see {@link OnFailResultImpl#getMessage(Locale)}).
+     * <p/>
+     * The referenced beans are worked out from the message templates of all the message bundle files when
+     * the validator is initialized (see {@link #scanMessageTemplates()}).  The whole bean context is captured
+     * if any of the templates references beans that cannot be worked out from the template text.
+     *
+     * @param executionContext The Smooks {@link org.milyn.container.ExecutionContext}.
+     * @return The referenced beans.
+     */
+    private Map<String, Object> captureBeanContext(ExecutionContext executionContext) {
+        Map<String, Object> beanMap = executionContext.getBeanContext().getBeanMap();
+
+        if(captureAllBeans) {
+            // Need to create a shallow copy as the context data may change...
+            return new HashMap<String, Object>(beanMap);
+        }
+
+        Set<String> beanIds = referencedBeanIds;
+        if(beanIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        Map<String, Object> capturedBeans = new HashMap<String, Object>();
+        for(String beanId : beanIds) {
+            Object bean = beanMap.get(beanId);
+            if(bean != null) {
+                capturedBeans.put(beanId, bean);
+            }
+        }
+
+        return capturedBeans;
+    }
+
+    private MessageTemplate getMessageTemplate(Locale locale) throws MissingResourceException {
+        MessageTemplate messageTemplate = messageTemplates.get(locale);
+
+        if(messageTemplate == null) {
+            String message = null;
+            if(ruleName != null) {
+                ResourceBundle bundle = getMessageBundle(locale);
+                if(bundle != null) {
+                    message = bundle.getString(ruleName);
+                }
+            }
+
+            messageTemplate = new MessageTemplate(message);
+            MessageTemplate existing = messageTemplates.putIfAbsent(locale, messageTemplate);
+            if(existing != null) {
+                return existing;
+            }
+            addReferencedBeanIds(messageTemplate);
+        }
+
+        return messageTemplate;
+    }
+
+    /**
+     * Load and analyse the failure message templates of the default Locale and of the Locales for which a
+     * message bundle file exists, so as the beans referenced by all of the templates are known before any
+     * failures are captured.  All the available Locales are scanned if the message bundle files cannot
+     * be listed (see {@link MessageBundleFiles}).
+     * <p/>
+     * Templates of any other Locale are analysed when first used.
+     */
+    private void scanMessageTemplates() {
+        if(ruleName == null) {
+            return;
+        }
+
+        Map<ResourceBundle, MessageTemplate> bundleTemplates = new IdentityHashMap<ResourceBundle, MessageTemplate>();
+        Set<Locale> bundleFileLocales = MessageBundleFiles.getLocales(messageBundleBaseName);
+        List<Locale> locales = new ArrayList<Locale>();
+
+        locales.add(Locale.getDefault());
+        locales.add(new Locale(""));
+        if(bundleFileLocales != null) {
+            locales.addAll(bundleFileLocales);
+        } else {
+            locales.addAll(Arrays.asList(Locale.getAvailableLocales()));
+        }
+        for(Locale locale : locales) {
+            ResourceBundle bundle;
+            try {
+                bundle = ResourceBundle.getBundle(messageBundleBaseName, locale, RESOURCE_BUNDLE_CLASSLOADER);
+            } catch (MissingResourceException e) {
+                // No bundle for the Locale.  Reported if/when the message is requested...
+                continue;
+            }
+
+            MessageTemplate messageTemplate = bundleTemplates.get(bundle);
+            if(messageTemplate == null) {
+                try {
+                    messageTemplate = new MessageTemplate(bundle.getString(ruleName));
+                } catch (MissingResourceException e) {
+                    // No message defined for the rule.  Reported if/when the message is requested...
+                    continue;
+                }
+                bundleTemplates.put(bundle, messageTemplate);
+                addReferencedBeanIds(messageTemplate);
+            }
+            messageTemplates.putIfAbsent(locale, messageTemplate);
+        }
+    }
+
+    private synchronized void addReferencedBeanIds(MessageTemplate messageTemplate) {
+        Set<String> beanIds = messageTemplate.referencedNames;
+
+        if(!messageTemplate.analysable) {
+            captureAllBeans = true;
+        }
+        if(referencedBeanIds.containsAll(beanIds)) {
+            return;
+        }
+
+        Set<String> allBeanIds = new HashSet<String>(referencedBeanIds);
+        allBeanIds.addAll(beanIds);
+        referencedBeanIds = allBeanIds;
+    }
+
+    /**
+     * @param locale The Locale to look up.
+     * @return {@link ResourceBundle} for the Locale and message bundle base name. Or null if no bundle exists.
+     */
+    private ResourceBundle getMessageBundle(final Locale locale) {
+        try {
+            return ResourceBundle.getBundle(messageBundleBaseName, locale, RESOURCE_BUNDLE_CLASSLOADER);
+        } catch (final MissingResourceException e) {
+            logger.warn("Failed to load Validation rule message bundle '" + messageBundleBaseName + "'.  This resource must be on the classpath!", e);
+        }
+
+        return null;
+    }
+
     private ValidationResult getValidationResult(ExecutionContext executionContext) {
         ValidationResult validationResult = (ValidationResult) FilterResult.getResult(executionContext, ValidationResult.class);
         // Create a new ValidationResult if one was not available in the execution context.
@@ -278,9 +469,9 @@ public final class Validator implements SAXVisitBefore, SAXVisitAfter, DOMVisitA
         return validationResult;
     }
 
-    private synchronized void setRuleProvider(ExecutionContext executionContext) {
-        if(ruleProvider != null) {
-            return;
+    private synchronized CompiledRule initialize(ExecutionContext executionContext) {
+        if(compiledRule != null) {
+            return compiledRule;
         }
 
         ruleProvider = RuleProviderAccessor.get(appContext, ruleProviderName);
@@ -290,6 +481,7 @@ public final class Validator implements SAXVisitBefore, SAXVisitAfter, DOMVisitA
 
         // Configure the base bundle name for validation failure messages...
         setMessageBundleBaseName();
+        scanMessageTemplates();
 
         // Configure the maxFails per ValidationResult instance...
         String maxFailsConfig = executionContext.getConfigParameter(OnFailResult.MAX_FAILS);
@@ -302,6 +494,11 @@ public final class Validator implements SAXVisitBefore, SAXVisitAfter, DOMVisitA
         } else {
             maxFails = Integer.MAX_VALUE;
         }
+
+        // Compile the rule last.  The volatile write publishes the above configuration...
+        compiledRule = RuleProviderAccessor.compile(ruleProvider, ruleName);
+
+        return compiledRule;
     }
 
     private void setMessageBundleBaseName() {
@@ -384,11 +581,7 @@ public final class Validator implements SAXVisitBefore, SAXVisitAfter, DOMVisitA
         }
 
         public void setBeanContext(Map<String, Object> beanContext) {
-            // Need to create a shallow copy as the context data may change.
-            // Even this is not foolproof, as internal bean data can also be
-            // overwritten by the bean context!!
-            this.beanContext = new HashMap();
-            this.beanContext.putAll(beanContext);
+            this.beanContext = beanContext;
         }
 
         public String getMessage() {
@@ -400,79 +593,82 @@ public final class Validator implements SAXVisitBefore, SAXVisitAfter, DOMVisitA
                 return ruleResult.getEvalException().getMessage();
             }
 
-            String message = getMessage(locale, ruleName);
+            MessageTemplate messageTemplate = getMessageTemplate(locale);
             // If no ResouceBundle was configured then use this instances toString
-            if (message == null) {
+            if (messageTemplate.message == null) {
                 return toString();
             }
 
-            if (message.startsWith("ftl:")) {
-                // TODO: Is there a way to optimize this e.g. attach the compiled template
-                // to the bundle as an object and then get back using ResourceBundle.getObject??
-                // I timed it and it was able to create and apply 10000 templates in about 2500 ms
-                // on an "average" spec machine, so it's not toooooo bad, and it's only done on demand :)
-                FreeMarkerTemplate template = new FreeMarkerTemplate(message.substring("ftl:".length()));
-                beanContext.put("ruleResult", ruleResult);
-                beanContext.put("path", failFragmentPath);
-                message = template.apply(beanContext);
+            if (messageTemplate.template != null) {
+                Map<String, Object> templateModel = new HashMap<String, Object>(beanContext);
+                templateModel.put("ruleResult", ruleResult);
+                templateModel.put("path", failFragmentPath);
+                return messageTemplate.template.apply(templateModel);
             }
 
-            return message;
+            return messageTemplate.message;
         }
 
-        private String getMessage(final Locale locale, final String messageName) {
-            final ResourceBundle bundle = getMessageBundle(locale);
-            if (messageName == null || bundle == null)
-                return null;
-
-           return bundle.getString(messageName);
-         }
+        @Override
+        public String toString() {
+            return "[" + failFragmentPath + "] " + ruleResult.toString();
+        }
+    }
 
-        /*
-        public String getMessage(Locale locale) {
-            if(ruleResult.getEvalException() != null) {
-                return ruleResult.getEvalException().getMessage();
+    /**
+     * Failure message template for a Locale.
+     * <p/>
+     * "ftl:" messages are compiled once and shared by all the failure results.
+     */
+    private static class MessageTemplate {
+
+        private final String message;
+        private final FreeMarkerTemplate template;
+        private final Set<String> referencedNames;
+        private final boolean analysable;
+
+        private MessageTemplate(String message) {
+            this.message = message;
+            if(message != null && message.startsWith("ftl:")) {
+                String templateText = message.substring("ftl:".length());
+                template = new FreeMarkerTemplate(templateText);
+                referencedNames = getReferencedNames(templateText);
+                analysable = !FTL_DYNAMIC_REFERENCE.matcher(templateText).find();
             } else {
-                ResourceBundle bundle = getMessageBundle(locale);
-
-                String message = bundle.getString(ruleName);
-                if (message != null && message.startsWith("ftl:")) {
-                    // TODO: Is there a way to optimize this e.g. attach the compiled template
-                    // to the bundle as an object and then get back using ResourceBundle.getObject??
-                    // I timed it and it was able to create and apply 10000 templates in about 2500 ms
-                    // on an "average" spec machine, so it's not toooooo bad, and it's only done on demand :)
-                    FreeMarkerTemplate template = new FreeMarkerTemplate(message.substring("ftl:".length()));
-                    beanContext.put("ruleResult", ruleResult);
-                    beanContext.put("path", failFragmentPath);
-                    message = template.apply(beanContext);
-                }
-
-                return message;
+                template = null;
+                referencedNames = Collections.emptySet();
+                analysable = true;
             }
         }
-        */
 
         /**
-         * @param The Locale to look up.
-         * @return {@link ResourceBundle} for the Locale and message bundle base name. Or null if no bundle exists.
+         * Get the top level names referenced in the template.
+         * <p/>
+         * This is a superset of the bean IDs referenced in the template (it can include
+         * directive names, literals etc), which is fine as only names matching bean IDs
+         * are captured.
          */
-        private ResourceBundle getMessageBundle(final Locale locale) {
-            try {
-                return ResourceBundle.getBundle(messageBundleBaseName, locale, new ResourceBundleClassLoader());
-            } catch (final MissingResourceException e) {
-                logger.warn("Failed to load Validation rule message bundle '" + messageBundleBaseName + "'.  This resource must be on the classpath!", e);
+        private static Set<String> getReferencedNames(String templateText) {
+            Set<String> names = new HashSet<String>();
+            Matcher expressionMatcher = FTL_EXPRESSION.matcher(templateText);
+
+            while(expressionMatcher.find()) {
+                for(int i = 1; i <= expressionMatcher.groupCount(); i++) {
+                    String expression = expressionMatcher.group(i);
+                    if(expression != null) {
+                        Matcher nameMatcher = FTL_TOP_LEVEL_NAME.matcher(expression);
+                        while(nameMatcher.find()) {
+                            names.add(nameMatcher.group(1));
+                        }
+                    }
+                }
             }
 
-            return null;
-        }
-
-        @Override
-        public String toString() {
-            return "[" + failFragmentPath + "] " + ruleResult.toString();
+            return names;
         }
     }
 
-    private class ResourceBundleClassLoader extends ClassLoader {
+    private static class ResourceBundleClassLoader extends ClassLoader {
         @Override
         public InputStream getResourceAsStream(String name) {
             try {
@@ -0,0 +1,155 @@
+/*
+ * Milyn - Copyright (C) 2006 - 2010
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License (version 2.1) as published
+ * by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.
+ *
+ * See the GNU Lesser General Public License for more details:
+ * http://www.gnu.org/licenses/lgpl.txt
+ */
+package org.milyn.validation;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import javax.xml.transform.stream.StreamSource;
+
+import junit.framework.TestCase;
+
+import org.milyn.Smooks;
+import org.milyn.SmooksException;
+import org.xml.sax.SAXException;
+
+/**
+ * Test for {@link StreamingValidationResult} and {@link OnFailResultQueue}.
+ */
+public class StreamingValidationResultTest extends TestCase {
+
+    private Smooks smooks;
+
+    protected void setUp() throws IOException, SAXException {
+        smooks = new Smooks(getClass().getResourceAsStream("order/smooks-config.xml"));
+    }
+
+    protected void tearDown() {
+        smooks.close();
+    }
+
+    public void test_listener() {
+        MockListener listener = new MockListener();
+        StreamingValidationResult result = new StreamingValidationResult(listener);
+
+        smooks.filterSource(new StreamSource(getClass().getResourceAsStream("order/order-message-01.xml")), result);
+
+        assertTrue(listener.completed);
+        assertTrue(result.isComplete());
+        assertEquals(4, result.getNumFailures());
+        assertEquals(3, result.getNumFailures(OnFail.ERROR));
+        assertEquals(1, result.getNumFailures(OnFail.WARN));
+        assertEquals(0, result.getNumDropped(OnFail.ERROR));
+
+        // Nothing is accumulated on the result...
+        assertTrue(result.getErrors().isEmpty());
+        assertTrue(result.getWarnings().isEmpty());
+
+        // Messages are rendered after the filter operation, from the captured beans...
+        assertEquals(4, listener.results.size());
+        assertEquals(OnFail.ERROR, listener.levels.get(0));
+        assertEquals("Invalid customer number '123123' at '/order/header/customer/@number'.  Customer number must match pattern '[A-Z]-[0-9]{5}'.", listener.results.get(0).getMessage());
+        assertEquals(OnFail.WARN, listener.levels.get(1));
+        assertEquals("Invalid customer name 'Joe' at '/order/header/customer'.  Customer name must match pattern '[A-Z][a-z]*, [A-Z][a-z]*'.", listener.results.get(1).getMessage());
+        assertEquals("Invalid product ID '222' at '/order/order-items/order-item[2]/product'.  Product ID must match pattern '[0-9]{6}'.", listener.results.get(2).getMessage());
+        assertEquals("Order 12129 (Customer 123123) contains an order item for product 222 which contains an invalid quantity of 7. This quantity exceeds the maximum permited quantity for this product (5).", listener.results.get(3).getMessage());
+    }
+
+    public void test_otherLocaleMessage() {
+        MockListener listener = new MockListener();
+        StreamingValidationResult result = new StreamingValidationResult(listener);
+        Locale maltese = new Locale("mt");
+
+        smooks.filterSource(new StreamSource(getClass().getResourceAsStream("order/order-message-01.xml")), result);
+
+        // The "order" bean is only referenced by the Maltese templates, one of them through ".vars"...
+        assertEquals("Invalid customer number '123123' on order.", listener.results.get(0).getMessage(maltese));
+        assertEquals("Invalid customer name 'Joe' on order.", listener.results.get(1).getMessage(maltese));
+    }
+
+    public void test_maxResults() {
+        MockListener listener = new MockListener();
+        StreamingValidationResult result = new StreamingValidationResult(listener).setMaxResults(OnFail.ERROR, 1).setMaxResults(OnFail.WARN, 0);
+
+        smooks.filterSource(new StreamSource(getClass().getResourceAsStream("order/order-message-01.xml")), result);
+
+        assertEquals(4, result.getNumFailures());
+        assertEquals(3, result.getNumFailures(OnFail.ERROR));
+        assertEquals(2, result.getNumDropped(OnFail.ERROR));
+        assertEquals(1, result.getNumFailures(OnFail.WARN));
+        assertEquals(1, result.getNumDropped(OnFail.WARN));
+        assertEquals(1, listener.results.size());
+        assertEquals(OnFail.ERROR, listener.levels.get(0));
+    }
+
+    public void test_fatal() {
+        MockListener listener = new MockListener();
+        StreamingValidationResult result = new StreamingValidationResult(listener);
+
+        try {
+            smooks.filterSource(new StreamSource(getClass().getResourceAsStream("order/order-message-03.xml")), result);
+            fail("Expected SmooksException");
+        } catch(SmooksException e) {
+            assertEquals(5, result.getNumFailures());
+            assertEquals(1, result.getNumFailures(OnFail.FATAL));
+            assertNotNull(result.getFatal());
+            assertEquals(OnFail.FATAL, listener.levels.get(listener.levels.size() - 1));
+            assertTrue(listener.completed);
+        }
+    }
+
+    public void test_queue() throws InterruptedException {
+        OnFailResultQueue queue = new OnFailResultQueue(1);
+        final StreamingValidationResult result = new StreamingValidationResult(queue);
+        List<OnFailResult> results = new ArrayList<OnFailResult>();
+
+        Thread filterThread = new Thread() {
+            public void run() {
+                smooks.filterSource(new StreamSource(getClass().getResourceAsStream("order/order-message-01.xml")), result);
+            }
+        };
+        filterThread.start();
+
+        OnFailResult onFailResult;
+        while((onFailResult = queue.take()) != null) {
+            results.add(onFailResult);
+        }
+        filterThread.join();
+
+        assertTrue(queue.isComplete());
+        assertNull(queue.take());
+        assertEquals(4, results.size());
+        assertEquals("Invalid product ID '222' at '/order/order-items/order-item[2]/product'.  Product ID must match pattern '[0-9]{6}'.", results.get(2).getMessage());
+    }
+
+    private static class MockListener implements OnFailResultListener {
+
+        private List<OnFailResult> results = new ArrayList<OnFailResult>();
+        private List<OnFail> levels = new ArrayList<OnFail>();
+        private boolean completed = false;
+
+        public void onFail(OnFailResult result, OnFail onFail) {
+            results.add(result);
+            levels.add(onFail);
+        }
+
+        public void onComplete(StreamingValidationResult validationResult) {
+            assertFalse(completed);
+            completed = true;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+	Milyn - Copyright (C) 2006 - 2010
+
+	This library is free software; you can redistribute it and/or
+	modify it under the terms of the GNU Lesser General Public
+	License (version 2.1) as published by the Free Software
+	Foundation.
+
+	This library is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+	See the GNU Lesser General Public License for more details:
+	http://www.gnu.org/licenses/lgpl.txt
+*/
+package org.milyn.smooks.maven;
+
+import org.apache.maven.artifact.DependencyResolutionRequiredException;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.project.MavenProject;
+import org.jfrog.maven.annomojo.annotations.MojoGoal;
+import org.jfrog.maven.annomojo.annotations.MojoParameter;
+import org.jfrog.maven.annomojo.annotations.MojoPhase;
+import org.jfrog.maven.annomojo.annotations.MojoRequiresDependencyResolution;
+import org.milyn.cdr.ConfigSnapshot;
+import org.milyn.cdr.SmooksConfigurationException;
+import org.xml.sax.SAXException;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.List;
+
+/**
+ * Smooks configuration snapshot Mojo.
+ * <p/>
+ * Creates a {@link ConfigSnapshot} for each of the configured Smooks configurations and writes it to the
+ * build output directory, next to the configuration.  The configurations (and any cartridges they use) are
+ * loaded from the project runtime classpath.
+ */
+@MojoGoal("snapshot")
+@MojoPhase("process-classes")
+@MojoRequiresDependencyResolution("runtime")
+public class SnapshotMojo extends AbstractMojo {
+
+    @MojoParameter(expression = "${project}", required = true, readonly = true)
+    private MavenProject project;
+
+    @MojoParameter(required = true, description = "Comma separated list of Smooks configuration classpath URIs.  Must be the same URIs as are used to load the configurations at runtime e.g. '/com/acme/smooks-config.xml'.")
+    private String configs;
+
+    @MojoParameter(expression = "${project.build.outputDirectory}", required = false)
+    private File outputDirectory;
+
+    public void execute() throws MojoExecutionException {
+        ClassLoader classLoader = createProjectClassLoader();
+        Thread currentThread = Thread.currentThread();
+        ClassLoader contextClassLoader = currentThread.getContextClassLoader();
+
+        currentThread.setContextClassLoader(classLoader);
+        try {
+            for(String config : configs.split(",")) {
+                String configURI = config.trim();
+
+                if(configURI.length() == 0) {
+                    continue;
+                }
+                if(configURI.indexOf(':') != -1) {
+                    throw new MojoExecutionException("Invalid Smooks configuration URI '" + configURI + "'.  Must be a classpath URI e.g. '/com/acme/smooks-config.xml'.");
+                }
+
+                String snapshotPath = (configURI.startsWith("/") ? configURI.substring(1) : configURI) + ConfigSnapshot.SNAPSHOT_FILE_EXTENSION;
+                File snapshotFile = new File(outputDirectory, snapshotPath);
+
+                ConfigSnapshot.createSnapshotFile(configURI, snapshotFile, classLoader);
+                getLog().info("Smooks configuration snapshot for '" + configURI + "' generated in '" + snapshotFile.getAbsolutePath() + "'.");
+            }
+        } catch (SmooksConfigurationException e) {
+            throw new MojoExecutionException("Error Executing Smooks Maven Plugin.  See chained cause.", e);
+        } catch (SAXException e) {
+            throw new MojoExecutionException("Error Executing Smooks Maven Plugin.  See chained cause.", e);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Error Executing Smooks Maven Plugin.  See chained cause.", e);
+        } catch (URISyntaxException e) {
+            throw new MojoExecutionException("Error Executing Smooks Maven Plugin.  See chained cause.", e);
+        } finally {
+            currentThread.setContextClassLoader(contextClassLoader);
+        }
+    }
+
+    private ClassLoader createProjectClassLoader() throws MojoExecutionException {
+        try {
+            List classpathElements = project.getRuntimeClasspathElements();
+            URL[] classpathURLs = new URL[classpathElements.size()];
+
+            for(int i = 0; i < classpathURLs.length; i++) {
+                classpathURLs[i] = new File((String) classpathElements.get(i)).toURI().toURL();
+            }
+
+            return new URLClassLoader(classpathURLs, getClass().getClassLoader());
+        } catch (DependencyResolutionRequiredException e) {
+            throw new MojoExecutionException("Error Executing Smooks Maven Plugin.  See chained cause.", e);
+        } catch (MalformedURLException e) {
+            throw new MojoExecutionException("Error Executing Smooks Maven Plugin.  See chained cause.", e);
+        }
+    }
+}
@@ -19,6 +19,7 @@ package org.milyn;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.milyn.assertion.AssertArgument;
+import org.milyn.cdr.ConfigSnapshot;
 import org.milyn.cdr.SmooksResourceConfiguration;
 import org.milyn.cdr.SmooksConfigurationException;
 import org.milyn.javabean.context.BeanContext;
@@ -52,10 +53,18 @@ import javax.xml.transform.stream.StreamSource;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.reflect.Method;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * Smooks executor class.
@@ -105,6 +114,18 @@ public class Smooks {
      * after the first execution context has been created.
      */
     private volatile boolean isConfigurable = true;
+    /**
+     * Executor for asynchronous filtering.
+     */
+    private Executor executor;
+    /**
+     * The default executor, if created by this instance.
+     */
+    private ExecutorService defaultExecutor;
+    /**
+     * Flag indicating whether or not the Smooks instance has been {@link #close() closed}.
+     */
+    private boolean closed = false;
 
     /**
      * Public Default Constructor.
@@ -187,6 +208,36 @@ public class Smooks {
         context.setClassLoader(classLoader);
     }
 
+    /**
+     * Set the {@link Executor} used for {@link #filterSourceAsync(Source, Result[]) asynchronous filtering}.
+     * <p/>
+     * If not set, a default {@link Executor} is created on the first asynchronous filter operation.
+     * The default {@link Executor} uses a virtual thread per filter operation on JVMs that support
+     * virtual threads, and a fixed size pool of daemon threads (one per available processor) otherwise.
+     *
+     * @param executor The executor.
+     * @throws IllegalStateException This Smooks instance has been {@link #close() closed}.
+     */
+    public synchronized void setExecutor(Executor executor) throws IllegalStateException {
+        AssertArgument.isNotNull(executor, "executor");
+        assertIsNotClosed();
+        this.executor = executor;
+    }
+
+    /**
+     * Get the {@link Executor} used for {@link #filterSourceAsync(Source, Result[]) asynchronous filtering}.
+     * @return The executor.
+     * @throws IllegalStateException This Smooks instance has been {@link #close() closed}.
+     */
+    public synchronized Executor getExecutor() throws IllegalStateException {
+        assertIsNotClosed();
+        if(executor == null) {
+            defaultExecutor = createDefaultExecutor();
+            executor = defaultExecutor;
+        }
+        return executor;
+    }
+
     /**
      * Set the filter settings for this Smooks instance.
      * @param filterSettings The filter settings to be used.
@@ -289,6 +340,9 @@ public class Smooks {
      * Add a set of resource configurations to this Smooks instance.
      * <p/>
      * Uses the {@link org.milyn.resource.URIResourceLocator} class to load the resource.
+     * If a {@link ConfigSnapshot} resource is available for the configuration (resourceURI +
+     * "{@value org.milyn.cdr.ConfigSnapshot#SNAPSHOT_FILE_EXTENSION}"), and is current, the
+     * configurations are loaded from the snapshot.
      * <p/>
      * These configurations do not overwrite previously added configurations.
      * They are added to the list of configurations on this Smooks instance.
@@ -302,16 +356,29 @@ public class Smooks {
         AssertArgument.isNotNullAndNotEmpty(resourceURI, "resourceURI");
 
         InputStream resourceConfigStream;
+        InputStream snapshotStream = null;
         URIResourceLocator resourceLocator = new URIResourceLocator();
 
         resourceConfigStream = resourceLocator.getResource(resourceURI);
         try {
+            try {
+                snapshotStream = resourceLocator.getResource(resourceURI + ConfigSnapshot.SNAPSHOT_FILE_EXTENSION);
+            } catch (IOException e) {
+                // No configuration snapshot...
+            }
+
             URI resourceURIObj = new URI(resourceURI);
-            addConfigurations(URIUtil.getParent(resourceURIObj).toString(), resourceConfigStream);
+            addConfigurations(URIUtil.getParent(resourceURIObj).toString(), resourceConfigStream, snapshotStream);
         } catch (URISyntaxException e) {
             logger.error("Failed to load Smooks resource configuration '" + resourceURI + "'.", e);
         } finally {
-            resourceConfigStream.close();
+            try {
+                resourceConfigStream.close();
+            } finally {
+                if(snapshotStream != null) {
+                    snapshotStream.close();
+                }
+            }
         }
     }
 
@@ -331,11 +398,15 @@ public class Smooks {
      * @throws SAXException Error parsing the resource stream.
      */
     public void addConfigurations(String baseURI, InputStream resourceConfigStream) throws SAXException, IOException {
+        addConfigurations(baseURI, resourceConfigStream, null);
+    }
+
+    private void addConfigurations(String baseURI, InputStream resourceConfigStream, InputStream snapshotStream) throws SAXException, IOException {
         assertIsConfigurable();
         AssertArgument.isNotNullAndNotEmpty(baseURI, "baseURI");
         AssertArgument.isNotNull(resourceConfigStream, "resourceConfigStream");
         try {
-            context.getStore().registerResources(baseURI, resourceConfigStream);
+            context.getStore().registerResources(baseURI, resourceConfigStream, snapshotStream);
         } catch (URISyntaxException e) {
             throw new IOException("Failed to read resource configuration. Invalid 'baseURI'.");
         }
@@ -463,8 +534,8 @@ public class Smooks {
         AssertArgument.isNotNull(source, "source");
         AssertArgument.isNotNull(executionContext, "executionContext");
 
-        if(classLoader != null) {
-            ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        if(classLoader != null && classLoader != contextClassLoader) {
             Thread.currentThread().setContextClassLoader(classLoader);
             try {
                 _filter(executionContext, source, results);
@@ -476,6 +547,60 @@ public class Smooks {
         }
     }
 
+    /**
+     * Asynchronously filter the content in the supplied {@link Source} instance, outputing data
+     * to the supplied {@link Result} instances.
+     * <p/>
+     * The {@link ExecutionContext} is created on the calling thread, and the filter operation
+     * is executed on the configured {@link #setExecutor(Executor) Executor}.
+     *
+     * @param source           The filter Source.
+     * @param results          The filter Results.
+     * @return A {@link Future} for the filter operation, returning the operation's {@link ExecutionContext}.
+     * A failed filter operation results in an {@link java.util.concurrent.ExecutionException} from
+     * {@link Future#get()}, wrapping the {@link SmooksException}.
+     * @throws IllegalStateException This Smooks instance has been {@link #close() closed}.
+     */
+    public Future<ExecutionContext> filterSourceAsync(Source source, Result... results) throws IllegalStateException {
+        synchronized (this) {
+            assertIsNotClosed();
+        }
+        return filterSourceAsync(createExecutionContext(), source, results);
+    }
+
+    /**
+     * Asynchronously filter the content in the supplied {@link Source} instance, outputing data
+     * to the supplied {@link Result} instances.
+     * <p/>
+     * The filter operation is executed on the configured {@link #setExecutor(Executor) Executor}.
+     * The supplied {@link ExecutionContext} must not be used by the caller until the filter operation
+     * is complete.
+     *
+     * @param executionContext The {@link ExecutionContext} for this filter operation. See
+     *                         {@link #createExecutionContext(String)}.
+     * @param source           The filter Source.
+     * @param results          The filter Results.
+     * @return A {@link Future} for the filter operation, returning the supplied {@link ExecutionContext}.
+     * A failed filter operation results in an {@link java.util.concurrent.ExecutionException} from
+     * {@link Future#get()}, wrapping the {@link SmooksException}.
+     * @throws IllegalStateException This Smooks instance has been {@link #close() closed}.
+     */
+    public Future<ExecutionContext> filterSourceAsync(final ExecutionContext executionContext, final Source source, final Result... results) throws IllegalStateException {
+        AssertArgument.isNotNull(source, "source");
+        AssertArgument.isNotNull(executionContext, "executionContext");
+
+        FutureTask<ExecutionContext> filterTask = new FutureTask<ExecutionContext>(new Callable<ExecutionContext>() {
+            public ExecutionContext call() throws Exception {
+                filterSource(executionContext, source, results);
+                return executionContext;
+            }
+        });
+
+        getExecutor().execute(filterTask);
+
+        return filterTask;
+    }
+
     private void _filter(ExecutionContext executionContext, Source source, Result... results) {
         ExecutionEventListener eventListener = executionContext.getEventListener();
 
@@ -564,12 +689,55 @@ public class Smooks {
      * Close this Smooks instance and all associated resources.
      * <p/>
      * Should result in the {@link org.milyn.delivery.annotation.Uninitialize uninitialization}
-     * of all allocated {@link org.milyn.delivery.ContentHandler} instances.
+     * of all allocated {@link org.milyn.delivery.ContentHandler} instances.  Asynchronous filtering is
+     * not supported after the instance has been closed.
      */
     public void close() {
+        synchronized (this) {
+            closed = true;
+            if(defaultExecutor != null) {
+                defaultExecutor.shutdown();
+                defaultExecutor = null;
+                executor = null;
+            }
+        }
         context.getStore().close();
     }
 
+    /**
+     * Create the default asynchronous filtering executor.
+     * <p/>
+     * Uses a virtual thread per task executor if supported by the JVM, otherwise a fixed size
+     * daemon thread pool, sized to the number of available processors.
+     */
+    private static ExecutorService createDefaultExecutor() {
+        try {
+            Method virtualThreadExecutorFactory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) virtualThreadExecutorFactory.invoke(null);
+        } catch (NoSuchMethodException e) {
+            // Virtual threads not supported... use a daemon thread pool...
+        } catch (Exception e) {
+            logger.debug("Failed to create virtual thread executor.  Using a daemon thread pool.", e);
+        }
+
+        return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "Smooks Filter");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Assert that the instance has not been closed, throwing an exception if it has.
+     */
+    private void assertIsNotClosed() {
+        if(closed) {
+            throw new IllegalStateException("Unsupported call to asynchronous filtering method after Smooks instance has been closed.");
+        }
+    }
+
     /**
      * Assert that the instance is configurable, throwing an exception if it is not.
      */
@@ -0,0 +1,693 @@
+/*
+	Milyn - Copyright (C) 2006 - 2010
+
+	This library is free software; you can redistribute it and/or
+	modify it under the terms of the GNU Lesser General Public
+	License (version 2.1) as published by the Free Software
+	Foundation.
+
+	This library is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+	See the GNU Lesser General Public License for more details:
+	http://www.gnu.org/licenses/lgpl.txt
+*/
+
+package org.milyn.cdr;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.milyn.assertion.AssertArgument;
+import org.milyn.expression.ExecutionContextExpressionEvaluator;
+import org.milyn.expression.ExpressionEvaluator;
+import org.milyn.io.StreamUtils;
+import org.milyn.net.URIUtil;
+import org.milyn.profile.BasicProfile;
+import org.milyn.profile.DefaultProfileSet;
+import org.milyn.profile.Profile;
+import org.milyn.profile.ProfileSet;
+import org.milyn.resource.URIResourceLocator;
+import org.milyn.util.ClassUtil;
+import org.xml.sax.SAXException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Precompiled Smooks configuration snapshot.
+ * <p/>
+ * Digesting an XML Smooks configuration (see {@link XMLConfigDigester}) involves parsing it into a DOM,
+ * validating it against the configuration XSDs and filtering each extended configuration element
+ * through a nested Smooks instance.  For configurations with many imports (e.g. EDI mapping models),
+ * this can take a significant amount of time.  A snapshot is a compact binary form of the digested
+ * {@link SmooksResourceConfigurationList}, which can be loaded without any of these steps.
+ * <p/>
+ * A snapshot records a content hash of every configuration source from which it was created i.e. the
+ * configuration itself, its imports and the extended configuration digest resources.  A snapshot is only
+ * used if the hashes of all these sources still match, so a stale snapshot is never loaded.
+ *
+ * <h3>Build time snapshots</h3>
+ * A snapshot can be created at build time and packaged next to the configuration, with the same name plus a
+ * "{@value #SNAPSHOT_FILE_EXTENSION}" extension.  Such a snapshot is picked up when the configuration is loaded
+ * by URI i.e. via {@link org.milyn.Smooks#Smooks(String)} or {@link org.milyn.Smooks#addConfigurations(String)}.
+ * <p/>
+ * In a Maven build, create the snapshot via the maven-smooks-plugin "snapshot" goal.  Otherwise use
+ * {@link #createSnapshotFile(String, File, ClassLoader)}, with the configuration (and any cartridges it uses)
+ * on the classpath.  The configuration URI must be the same URI as is used to load the configuration at runtime
+ * e.g. "/com/acme/smooks-config.xml".
+ *
+ * <h3>First run snapshots</h3>
+ * If the "{@value #SNAPSHOT_DIR_SYSKEY}" system property is set to a directory, a snapshot is created the first
+ * time a configuration is loaded and reused from then on.  The snapshot files are keyed by a hash of the
+ * base URI and the configuration.
+ *
+ * <h3>Limitations</h3>
+ * A snapshot can only be created for configurations where:
+ * <ul>
+ *  <li>all {@link Parameter} values are String values (with optional parameter configuration XML), and</li>
+ *  <li>all condition evaluators are {@link ExecutionContextExpressionEvaluator} implementations that can be
+ *      recreated from their expression.</li>
+ * </ul>
+ * This is the case for all configurations created by the {@link XMLConfigDigester}.  If a snapshot cannot be
+ * created for a configuration, the configuration is simply digested each time it is loaded.
+ *
+ * @see XMLConfigDigester
+ */
+public final class ConfigSnapshot {
+
+    private static Log logger = LogFactory.getLog(ConfigSnapshot.class);
+
+    /**
+     * Snapshot file extension.
+     */
+    public static final String SNAPSHOT_FILE_EXTENSION = ".snapshot";
+    /**
+     * First run snapshot directory system property key.
+     */
+    public static final String SNAPSHOT_DIR_SYSKEY = "org.milyn.cdr.snapshot.dir";
+
+    private static final int MAGIC = 0x534D4B53;
+    private static final int FORMAT_VERSION = 1;
+
+    private static final byte ROOT_SOURCE = 0;
+    private static final byte URI_SOURCE = 1;
+    private static final byte CLASSPATH_SOURCE = 2;
+
+    private final String baseURI;
+    private final List<Source> sources = new ArrayList<Source>();
+    private SmooksResourceConfigurationList configList;
+    private byte[] configData;
+
+    private ConfigSnapshot(String baseURI) {
+        this.baseURI = baseURI;
+    }
+
+    /**
+     * Create a snapshot by digesting the supplied XML Smooks configuration.
+     *
+     * @param configStream The configuration stream.
+     * @param baseURI The base URI to be associated with the configuration stream.
+     * @param classLoader The ClassLoader to be used.
+     * @return The configuration snapshot.
+     * @throws SAXException Error parsing the configuration.
+     * @throws IOException  Error reading the configuration.
+     * @throws SmooksConfigurationException  Invalid configuration.
+     */
+    public static ConfigSnapshot create(InputStream configStream, String baseURI, ClassLoader classLoader) throws SAXException, IOException, URISyntaxException, SmooksConfigurationException {
+        AssertArgument.isNotNull(configStream, "configStream");
+        AssertArgument.isNotNullAndNotEmpty(baseURI, "baseURI");
+
+        return create(readConfig(configStream), baseURI, classLoader);
+    }
+
+    private static ConfigSnapshot create(String config, String baseURI, ClassLoader classLoader) throws SAXException, IOException, URISyntaxException, SmooksConfigurationException {
+        ConfigSnapshot snapshot = new ConfigSnapshot(baseURI);
+
+        snapshot.sources.add(new Source(ROOT_SOURCE, null, null, hash(config)));
+        snapshot.configList = XMLConfigDigester.digestConfig(config, baseURI, classLoader, snapshot);
+
+        return snapshot;
+    }
+
+    /**
+     * Read a snapshot.
+     * <p/>
+     * The resource configurations are not decoded until {@link #getConfigList()} is called, so
+     * {@link #isCurrent(java.io.InputStream, String, ClassLoader)} can be checked first.
+     *
+     * @param snapshotStream The snapshot stream.
+     * @return The configuration snapshot.
+     * @throws IOException Error reading the snapshot, or the stream is not a (supported) snapshot.
+     */
+    public static ConfigSnapshot read(InputStream snapshotStream) throws IOException {
+        AssertArgument.isNotNull(snapshotStream, "snapshotStream");
+
+        DataInputStream input = new DataInputStream(new BufferedInputStream(snapshotStream));
+        if(input.readInt() != MAGIC) {
+            throw new IOException("Not a Smooks configuration snapshot.");
+        }
+        int formatVersion = input.readInt();
+        if(formatVersion != FORMAT_VERSION) {
+            throw new IOException("Unsupported Smooks configuration snapshot format version '" + formatVersion + "'.  Expected version '" + FORMAT_VERSION + "'.");
+        }
+
+        ConfigSnapshot snapshot = new ConfigSnapshot(readString(input));
+        int sourceCount = input.readInt();
+        for(int i = 0; i < sourceCount; i++) {
+            byte type = input.readByte();
+            String base = readString(input);
+            String path = readString(input);
+            byte[] hash = new byte[input.readUnsignedByte()];
+
+            input.readFully(hash);
+            snapshot.sources.add(new Source(type, base, path, hash));
+        }
+
+        snapshot.configData = new byte[input.readInt()];
+        input.readFully(snapshot.configData);
+
+        return snapshot;
+    }
+
+    /**
+     * Write this snapshot.
+     *
+     * @param snapshotStream The output stream.
+     * @throws IOException Error writing the snapshot.
+     * @throws SmooksConfigurationException The snapshot configuration list contains a configuration
+     * that cannot be written to a snapshot.
+     */
+    public void write(OutputStream snapshotStream) throws IOException, SmooksConfigurationException {
+        AssertArgument.isNotNull(snapshotStream, "snapshotStream");
+
+        byte[] data = configData;
+        if(data == null) {
+            // Encode the configs before writing anything, so we fail before writing
+            // anything if the list contains configs that can't be snapshot...
+            data = encode(configList);
+        }
+
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(snapshotStream));
+        output.writeInt(MAGIC);
+        output.writeInt(FORMAT_VERSION);
+        writeString(baseURI, output);
+        output.writeInt(sources.size());
+        for(Source source : sources) {
+            output.writeByte(source.type);
+            writeString(source.base, output);
+            writeString(source.path, output);
+            output.writeByte(source.hash.length);
+            output.write(source.hash);
+        }
+        output.writeInt(data.length);
+        output.write(data);
+        output.flush();
+    }
+
+    /**
+     * Get the base URI of the configuration from which the snapshot was created.
+     * @return The configuration base URI.
+     */
+    public String getBaseURI() {
+        return baseURI;
+    }
+
+    /**
+     * Is this snapshot current for the supplied configuration.
+     * <p/>
+     * Checks the configuration and base URI, as well as all the other configuration
+     * sources used to create the snapshot (imports etc).
+     *
+     * @param configStream The configuration stream.
+     * @param baseURI The base URI to be associated with the configuration stream.
+     * @param classLoader The ClassLoader to be used.
+     * @return True if the snapshot is current, otherwise false.
+     * @throws IOException Error reading the configuration stream.
+     */
+    public boolean isCurrent(InputStream configStream, String baseURI, ClassLoader classLoader) throws IOException {
+        AssertArgument.isNotNull(configStream, "configStream");
+        return isCurrent(readConfig(configStream), baseURI, classLoader);
+    }
+
+    private boolean isCurrent(String config, String baseURI, ClassLoader classLoader) {
+        if(!this.baseURI.equals(baseURI)) {
+            return false;
+        }
+
+        for(Source source : sources) {
+            String sourceConfig;
+
+            if(source.type == ROOT_SOURCE) {
+                sourceConfig = config;
+            } else {
+                sourceConfig = source.readConfig(classLoader);
+            }
+            if(sourceConfig == null || !MessageDigest.isEqual(source.hash, hash(sourceConfig))) {
+                if(logger.isDebugEnabled()) {
+                    logger.debug("Smooks configuration snapshot for '" + baseURI + "' is not current.  Configuration source '" + source + "' has been modified.");
+                }
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Get the {@link SmooksResourceConfigurationList} captured in this snapshot.
+     * <p/>
+     * A new list is decoded on each call for a snapshot that was {@link #read(java.io.InputStream) read}.
+     *
+     * @return The configuration list.
+     * @throws IOException Error decoding the snapshot.
+     */
+    public SmooksResourceConfigurationList getConfigList() throws IOException {
+        if(configData != null) {
+            return decode(new DataInputStream(new ByteArrayInputStream(configData)), baseURI);
+        }
+        return configList;
+    }
+
+    /**
+     * Load the supplied configuration from the supplied snapshot (if current), otherwise digest it.
+     * <p/>
+     * If no snapshot is supplied, the first run snapshot directory is checked, if configured
+     * (see {@link #SNAPSHOT_DIR_SYSKEY}).
+     *
+     * @param configStream The configuration stream.
+     * @param baseURI The base URI to be associated with the configuration stream.
+     * @param snapshotStream The configuration snapshot stream, or null if there's no snapshot available.
+     * @param classLoader The ClassLoader to be used.
+     * @return The configuration list.
+     * @throws SAXException Error parsing the configuration.
+     * @throws IOException  Error reading the configuration.
+     * @throws SmooksConfigurationException  Invalid configuration.
+     */
+    static SmooksResourceConfigurationList digestConfig(InputStream configStream, String baseURI, InputStream snapshotStream, ClassLoader classLoader) throws SAXException, IOException, URISyntaxException, SmooksConfigurationException {
+        String snapshotDir = System.getProperty(SNAPSHOT_DIR_SYSKEY);
+
+        if(snapshotStream == null && snapshotDir == null) {
+            return XMLConfigDigester.digestConfig(configStream, baseURI, classLoader);
+        }
+
+        String config = readConfig(configStream);
+        SmooksResourceConfigurationList configList;
+
+        if(snapshotStream != null) {
+            configList = load(snapshotStream, config, baseURI, classLoader);
+            if(configList != null || snapshotDir == null) {
+                return (configList != null ? configList : XMLConfigDigester.digestConfig(config, baseURI, classLoader, null));
+            }
+        }
+
+        File snapshotFile = new File(snapshotDir, toHex(hash(baseURI + '\n' + config)) + SNAPSHOT_FILE_EXTENSION);
+        if(snapshotFile.exists()) {
+            InputStream fileStream = new FileInputStream(snapshotFile);
+            try {
+                configList = load(fileStream, config, baseURI, classLoader);
+            } finally {
+                fileStream.close();
+            }
+            if(configList != null) {
+                return configList;
+            }
+        }
+
+        ConfigSnapshot snapshot = create(config, baseURI, classLoader);
+        snapshot.write(snapshotFile);
+
+        return snapshot.configList;
+    }
+
+    private static SmooksResourceConfigurationList load(InputStream snapshotStream, String config, String baseURI, ClassLoader classLoader) {
+        try {
+            ConfigSnapshot snapshot = read(snapshotStream);
+
+            if(snapshot.isCurrent(config, baseURI, classLoader)) {
+                return snapshot.getConfigList();
+            }
+            logger.info("Ignoring Smooks configuration snapshot for '" + baseURI + "'.  The snapshot is not current.");
+        } catch (Exception e) {
+            logger.warn("Ignoring Smooks configuration snapshot for '" + baseURI + "'.  Unable to read snapshot.", e);
+        }
+
+        return null;
+    }
+
+    private void write(File snapshotFile) {
+        File dir = snapshotFile.getParentFile();
+        File tempFile = null;
+
+        try {
+            dir.mkdirs();
+            tempFile = File.createTempFile("snapshot-", ".tmp", dir);
+
+            OutputStream fileStream = new FileOutputStream(tempFile);
+            try {
+                write(fileStream);
+            } finally {
+                fileStream.close();
+            }
+
+            // Rename into place, so as other processes never see a partially written snapshot...
+            if(!tempFile.renameTo(snapshotFile) && !snapshotFile.exists()) {
+                logger.warn("Failed to rename Smooks configuration snapshot file '" + tempFile.getAbsolutePath() + "' to '" + snapshotFile.getAbsolutePath() + "'.");
+            }
+        } catch (Exception e) {
+            logger.warn("Failed to write Smooks configuration snapshot for '" + baseURI + "' to directory '" + dir.getAbsolutePath() + "'.", e);
+        } finally {
+            if(tempFile != null && tempFile.exists()) {
+                tempFile.delete();
+            }
+        }
+    }
+
+    /**
+     * Record an imported configuration source.
+     * @param base The import base URI.
+     * @param path The import path.
+     * @param config The imported configuration.
+     */
+    void addSource(String base, String path, String config) {
+        sources.add(new Source(URI_SOURCE, base, path, hash(config)));
+    }
+
+    /**
+     * Record a classpath configuration source (e.g. an extended configuration digest resource).
+     * @param path The classpath resource path.
+     * @param classLoader The ClassLoader from which the resource is loaded.
+     */
+    void addClasspathSource(String path, ClassLoader classLoader) {
+        for(Source source : sources) {
+            if(source.type == CLASSPATH_SOURCE && source.path.equals(path)) {
+                return;
+            }
+        }
+
+        Source source = new Source(CLASSPATH_SOURCE, null, path, null);
+        String config = source.readConfig(classLoader);
+        if(config == null) {
+            throw new SmooksConfigurationException("Unable to locate classpath configuration resource '" + path + "'.");
+        }
+        source.hash = hash(config);
+        sources.add(source);
+    }
+
+    private static byte[] encode(SmooksResourceConfigurationList configList) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        Map<ExpressionEvaluator, Integer> evaluators = new IdentityHashMap<ExpressionEvaluator, Integer>();
+
+        List<ProfileSet> profiles = configList.getProfiles();
+        output.writeInt(profiles.size());
+        for(ProfileSet profileSet : profiles) {
+            List<String> profileNames = new ArrayList<String>();
+            Iterator profileIterator = profileSet.iterator();
+
+            while(profileIterator.hasNext()) {
+                profileNames.add(((Profile) profileIterator.next()).getName());
+            }
+
+            writeString(profileSet.getBaseProfile(), output);
+            output.writeInt(profileNames.size());
+            for(String profileName : profileNames) {
+                writeString(profileName, output);
+            }
+        }
+
+        output.writeInt(configList.size());
+        for(int i = 0; i < configList.size(); i++) {
+            SmooksResourceConfiguration config = configList.get(i);
+            ExpressionEvaluator evaluator = config.getConditionEvaluator();
+
+            writeString(config.getSelector(), output);
+            writeString(config.getSelectorNamespaceURI(), output);
+            writeString(config.getTargetProfile(), output);
+            writeString(config.getResource(), output);
+            writeString(config.getExplicitResourceType(), output);
+            writeString(config.getExtendedConfigNS(), output);
+            output.writeBoolean(config.isDefaultResource());
+
+            if(evaluator == null) {
+                output.writeInt(-1);
+            } else {
+                Integer evaluatorIndex = evaluators.get(evaluator);
+
+                if(evaluatorIndex == null) {
+                    if(!(evaluator instanceof ExecutionContextExpressionEvaluator) || evaluator.getExpression() == null) {
+                        throw new SmooksConfigurationException("Unable to create Smooks configuration snapshot.  Unsupported condition evaluator type '" + evaluator.getClass().getName() + "' on resource configuration: " + config);
+                    }
+                    evaluatorIndex = evaluators.size();
+                    evaluators.put(evaluator, evaluatorIndex);
+                    output.writeInt(evaluatorIndex);
+                    writeString(evaluator.getClass().getName(), output);
+                    writeString(evaluator.getExpression(), output);
+                } else {
+                    output.writeInt(evaluatorIndex);
+                }
+            }
+
+            List parameters = config.getParameterList();
+            List<Parameter> parameterList = new ArrayList<Parameter>();
+            if(parameters != null) {
+                for(Object parameter : parameters) {
+                    if(parameter instanceof List) {
+                        parameterList.addAll((List<Parameter>) parameter);
+                    } else {
+                        parameterList.add((Parameter) parameter);
+                    }
+                }
+            }
+            output.writeInt(parameterList.size());
+            for(Parameter parameter : parameterList) {
+                Object objValue = parameter.getObjValue();
+
+                if(objValue != null && !(objValue instanceof String) && parameter.getType() == null) {
+                    throw new SmooksConfigurationException("Unable to create Smooks configuration snapshot.  Parameter '" + parameter.getName() + "' has a non String value of type '" + objValue.getClass().getName() + "' on resource configuration: " + config);
+                }
+                writeString(parameter.getName(), output);
+                writeString(parameter.getType(), output);
+                writeString(parameter.getValue(), output);
+                writeString(parameter.getXMLData(), output);
+            }
+        }
+        output.flush();
+
+        return bytes.toByteArray();
+    }
+
+    private static SmooksResourceConfigurationList decode(DataInputStream input, String baseURI) throws IOException {
+        SmooksResourceConfigurationList configList = new SmooksResourceConfigurationList(baseURI);
+        List<ExpressionEvaluator> evaluators = new ArrayList<ExpressionEvaluator>();
+
+        int profileSetCount = input.readInt();
+        for(int i = 0; i < profileSetCount; i++) {
+            DefaultProfileSet profileSet = new DefaultProfileSet(readString(input));
+            int profileCount = input.readInt();
+
+            for(int ii = 0; ii < profileCount; ii++) {
+                profileSet.addProfile(new BasicProfile(readString(input)));
+            }
+            configList.add(profileSet);
+        }
+
+        int configCount = input.readInt();
+        for(int i = 0; i < configCount; i++) {
+            SmooksResourceConfiguration config = new SmooksResourceConfiguration(readString(input));
+
+            config.setSelectorNamespaceURI(readString(input));
+            config.setTargetProfile(readString(input));
+            config.setResource(readString(input));
+            config.setResourceType(readString(input));
+            config.setExtendedConfigNS(readString(input));
+            config.setDefaultResource(input.readBoolean());
+
+            int evaluatorIndex = input.readInt();
+            if(evaluatorIndex != -1) {
+                if(evaluatorIndex == evaluators.size()) {
+                    String evaluatorClass = readString(input);
+                    String expression = readString(input);
+
+                    evaluators.add(ExpressionEvaluator.Factory.createInstance(evaluatorClass, expression));
+                }
+                config.setConditionEvaluator(evaluators.get(evaluatorIndex));
+            }
+
+            int parameterCount = input.readInt();
+            for(int ii = 0; ii < parameterCount; ii++) {
+                String name = readString(input);
+                String type = readString(input);
+                String value = readString(input);
+                Parameter parameter = new Parameter(name, value, type);
+
+                parameter.setXMLData(readString(input));
+                config.setParameter(parameter);
+            }
+
+            configList.add(config);
+        }
+
+        return configList;
+    }
+
+    private static String readConfig(InputStream configStream) throws IOException {
+        // Read the same way as the XMLConfigDigester, so as the hashes match...
+        return StreamUtils.readStream(new InputStreamReader(configStream));
+    }
+
+    private static void writeString(String string, DataOutputStream output) throws IOException {
+        if(string == null) {
+            output.writeInt(-1);
+        } else {
+            byte[] bytes = string.getBytes("UTF-8");
+
+            output.writeInt(bytes.length);
+            output.write(bytes);
+        }
+    }
+
+    private static String readString(DataInputStream input) throws IOException {
+        int length = input.readInt();
+
+        if(length == -1) {
+            return null;
+        }
+
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+
+        return new String(bytes, "UTF-8");
+    }
+
+    private static byte[] hash(String config) {
+        try {
+            return MessageDigest.getInstance("SHA-1").digest(config.getBytes("UTF-8"));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 MessageDigest not supported by the JVM.", e);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException("UTF-8 not supported by the JVM.", e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+
+        for(byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16));
+            hex.append(Character.forDigit(b & 0xF, 16));
+        }
+
+        return hex.toString();
+    }
+
+    /**
+     * Create a snapshot of the configuration at the specified URI and write it to a snapshot file.
+     * <p/>
+     * The snapshot is created with the same base URI as is used by {@link org.milyn.Smooks#addConfigurations(String)},
+     * so it is picked up when the configuration is loaded via the same URI at runtime.
+     *
+     * @param configURI The configuration URI.
+     * @param snapshotFile The snapshot file.
+     * @param classLoader The ClassLoader to be used.
+     * @throws SAXException Error parsing the configuration.
+     * @throws IOException  Error reading the configuration or writing the snapshot file.
+     * @throws URISyntaxException Invalid configuration URI.
+     * @throws SmooksConfigurationException Invalid configuration, or the configuration cannot be written to a snapshot.
+     */
+    public static void createSnapshotFile(String configURI, File snapshotFile, ClassLoader classLoader) throws SAXException, IOException, URISyntaxException, SmooksConfigurationException {
+        AssertArgument.isNotNullAndNotEmpty(configURI, "configURI");
+        AssertArgument.isNotNull(snapshotFile, "snapshotFile");
+
+        InputStream configStream = new URIResourceLocator().getResource(configURI);
+        ConfigSnapshot snapshot;
+
+        try {
+            snapshot = create(configStream, URIUtil.getParent(new URI(configURI)).toString(), classLoader);
+        } finally {
+            configStream.close();
+        }
+
+        if(snapshotFile.getParentFile() != null) {
+            snapshotFile.getParentFile().mkdirs();
+        }
+        OutputStream snapshotStream = new FileOutputStream(snapshotFile);
+        try {
+            snapshot.write(snapshotStream);
+        } finally {
+            snapshotStream.close();
+        }
+    }
+
+    private static class Source {
+
+        private final byte type;
+        private final String base;
+        private final String path;
+        private byte[] hash;
+
+        private Source(byte type, String base, String path, byte[] hash) {
+            this.type = type;
+            this.base = base;
+            this.path = path;
+            this.hash = hash;
+        }
+
+        private String readConfig(ClassLoader classLoader) {
+            try {
+                InputStream stream;
+
+                if(type == CLASSPATH_SOURCE) {
+                    stream = ClassUtil.getResourceAsStream(path, (classLoader != null ? classLoader : ConfigSnapshot.class.getClassLoader()));
+                } else {
+                    URIResourceLocator resourceLocator = new URIResourceLocator();
+
+                    resourceLocator.setBaseURI(new URI(base));
+                    stream = resourceLocator.getResource(path);
+                }
+
+                if(stream == null) {
+                    return null;
+                }
+                try {
+                    return ConfigSnapshot.readConfig(stream);
+                } finally {
+                    stream.close();
+                }
+            } catch (Exception e) {
+                logger.debug("Unable to read configuration source '" + this + "'.", e);
+                return null;
+            }
+        }
+
+        public String toString() {
+            if(type == ROOT_SOURCE) {
+                return "<root>";
+            } else if(type == CLASSPATH_SOURCE) {
+                return "classpath:" + path;
+            }
+            return base + " -> " + path;
+        }
+    }
+}
@@ -1,8 +1,10 @@
 package org.milyn.cdr;
 
+import java.io.StringReader;
 import java.util.List;
 
 import org.milyn.delivery.ContentDeliveryConfig;
+import org.milyn.xml.XmlUtil;
 import org.w3c.dom.Element;
 
 /**
@@ -18,7 +20,8 @@ public class Parameter {
 	private String type;
 	private Object objValue;
 
-    private Element xml;
+    private volatile Element xml;
+    private String xmlData;
 
     /**
 	 * Public constructor.
@@ -163,6 +166,40 @@ public class Parameter {
      * @return Parameter configuration xml.
      */
     public Element getXml() {
+        if(xml == null && xmlData != null) {
+            synchronized (this) {
+                if(xml == null) {
+                    try {
+                        xml = XmlUtil.parseStream(new StringReader(xmlData)).getDocumentElement();
+                    } catch (Exception e) {
+                        throw new SmooksConfigurationException("Failed to parse configuration xml for parameter '" + name + "'.", e);
+                    }
+                }
+            }
+        }
         return xml;
     }
+
+    /**
+     * Set the serialized parameter configuration xml.
+     * <p/>
+     * Used when loading a {@link ConfigSnapshot}.  The xml is only parsed
+     * if/when {@link #getXml()} is called.
+     *
+     * @param xmlData Serialized parameter configuration xml.
+     */
+    void setXMLData(String xmlData) {
+        this.xmlData = xmlData;
+    }
+
+    /**
+     * Get the serialized parameter configuration xml.
+     * @return The serialized parameter configuration xml, or null if the parameter has no xml.
+     */
+    String getXMLData() {
+        if(xmlData == null && xml != null) {
+            return XmlUtil.serialize(xml, false);
+        }
+        return xmlData;
+    }
 }
@@ -584,6 +584,16 @@ public class SmooksResourceConfiguration {
         this.resourceType = resourceType;
     }
 
+    /**
+     * Get the resource type, as explicitly set on this configuration.
+     *
+     * @return The explicitly set resource type, or null if not set.
+     * @see #setResourceType(String)
+     */
+    String getExplicitResourceType() {
+        return resourceType;
+    }
+
     /**
      * Get the selector definition for this SmooksResourceConfiguration.
      *
@@ -215,6 +215,26 @@ public class SmooksResourceConfigurationStore {
      * @see SmooksResourceConfiguration
      */
     public SmooksResourceConfigurationList registerResources(String baseURI, InputStream resourceConfigStream) throws SAXException, IOException, URISyntaxException {
+        return registerResources(baseURI, resourceConfigStream, null);
+    }
+
+    /**
+     * Register the set of resources specified in the supplied XML configuration
+     * stream.
+     * <p/>
+     * The resources are loaded from the supplied {@link ConfigSnapshot} stream, if the snapshot
+     * is current for the configuration.  Otherwise, the configuration is digested.
+     *
+     * @param baseURI The base URI to be associated with the configuration stream.
+     * @param resourceConfigStream XML resource configuration stream.
+     * @param snapshotStream {@link ConfigSnapshot} stream for the configuration, or null if
+     * there's no snapshot available.
+     * @return The SmooksResourceConfigurationList created from the added resource configuration.
+     * @throws SAXException Error parsing the resource stream.
+     * @throws IOException Error reading resource stream.
+     * @see SmooksResourceConfiguration
+     */
+    public SmooksResourceConfigurationList registerResources(String baseURI, InputStream resourceConfigStream, InputStream snapshotStream) throws SAXException, IOException, URISyntaxException {
         SmooksResourceConfigurationList configList;
 
         if(baseURI == null || baseURI.trim().equals("")) {
@@ -224,7 +244,7 @@ public class SmooksResourceConfigurationStore {
             throw new IllegalArgumentException("null 'resourceConfigStream' arg in method call.");
         }
 
-        configList = XMLConfigDigester.digestConfig(resourceConfigStream, baseURI, applicationContext.getClassLoader());
+        configList = ConfigSnapshot.digestConfig(resourceConfigStream, baseURI, snapshotStream, applicationContext.getClassLoader());
         addSmooksResourceConfigurationList(configList);
         
         return configList;
@@ -73,6 +73,7 @@ public final class XMLConfigDigester {
 
     private Map<String, Smooks> extendedConfigDigesters = new HashMap<String, Smooks>();
     private static ThreadLocal<Boolean> extentionDigestOn = new ThreadLocal<Boolean>();
+    private ConfigSnapshot snapshot;
 
     /**
      * Private constructor.
@@ -186,6 +187,34 @@ public final class XMLConfigDigester {
         return list;
     }
     
+    /**
+     * Digest the XML Smooks configuration, recording the configuration sources on the supplied
+     * {@link ConfigSnapshot}.
+     *
+     * @param configData The configuration.
+     * @param baseURI The base URI to be associated with the configuration.
+     * @param classLoader The ClassLoader to be used.
+     * @param snapshot The snapshot on which the configuration sources are to be recorded.
+     * @return The {@link SmooksResourceConfigurationList}.
+     * @throws SAXException Error parsing the configuration.
+     * @throws IOException  Error reading the configuration.
+     * @throws SmooksConfigurationException  Invalid configuration..
+     */
+    static SmooksResourceConfigurationList digestConfig(String configData, String baseURI, ClassLoader classLoader, ConfigSnapshot snapshot) throws SAXException, IOException, URISyntaxException, SmooksConfigurationException {
+        SmooksResourceConfigurationList list = new SmooksResourceConfigurationList(baseURI);
+
+        setExtentionDigestOff();
+        XMLConfigDigester digester = new XMLConfigDigester(list);
+
+        if(classLoader != null) {
+            digester.classLoader = classLoader;
+        }
+        digester.snapshot = snapshot;
+        digester.digestConfigRecursively(new StringReader(configData), baseURI);
+
+        return list;
+    }
+
     /**
      * Get the active resource configuration list.
      * @return The active resource configuration list.
@@ -388,21 +417,21 @@ public final class XMLConfigDigester {
                 resourceStream = resourceLocator.getResource(file);
                 try {
                     List<Element> importParams = DomUtils.getElements(importElement, "param", null);
-                    if(!importParams.isEmpty()) {
-                        // Inject parameters into import config...
-                        String importConfig = StreamUtils.readStreamAsString(resourceStream);
+                    String importConfig = StreamUtils.readStream(new InputStreamReader(resourceStream));
 
-                        for (Element importParam : importParams) {
-                            String paramName = DomUtils.getAttributeValue(importParam, "name");
-                            String paramValue = XmlUtil.serialize(importParam.getChildNodes());
+                    if(snapshot != null) {
+                        snapshot.addSource(baseURI.toString(), file, importConfig);
+                    }
 
-                            importConfig = importConfig.replaceAll("@" + paramName + "@", paramValue);
-                        }
+                    // Inject parameters into import config...
+                    for (Element importParam : importParams) {
+                        String paramName = DomUtils.getAttributeValue(importParam, "name");
+                        String paramValue = XmlUtil.serialize(importParam.getChildNodes());
 
-                        digestConfigRecursively(new StringReader(importConfig), URIUtil.getParent(fileURI).toString()); // the file's parent URI becomes the new base URI.
-                    } else {
-                        digestConfigRecursively(new InputStreamReader(resourceStream), URIUtil.getParent(fileURI).toString()); // the file's parent URI becomes the new base URI.
+                        importConfig = importConfig.replaceAll("@" + paramName + "@", paramValue);
                     }
+
+                    digestConfigRecursively(new StringReader(importConfig), URIUtil.getParent(fileURI).toString()); // the file's parent URI becomes the new base URI.
                 } finally {
                     resourceStream.close();
                 }
@@ -541,6 +570,10 @@ public final class XMLConfigDigester {
         ExtensionContext extentionContext;
         Element conditionElement = DomUtils.getElement(configElement, "condition", 1);
 
+        if(snapshot != null) {
+            snapshot.addClasspathSource(getExtendedConfigPath(configNamespace), classLoader);
+        }
+
         // Create the ExtenstionContext and set it on the ExecutionContext...
         if(conditionElement != null && (conditionElement.getNamespaceURI().equals(XSD_V10) || conditionElement.getNamespaceURI().equals(XSD_V11))) {
             extentionContext = new ExtensionContext(this, defaultSelector, defaultNamespace, defaultProfile, digestCondition(conditionElement));
@@ -565,15 +598,7 @@ public final class XMLConfigDigester {
         Smooks smooks = extendedConfigDigesters.get(configNamespace);
 
         if(smooks == null) {
-            URI namespaceURI;
-
-            try {
-                namespaceURI = new URI(configNamespace);
-            } catch (URISyntaxException e) {
-                throw new SmooksConfigurationException("Unable to parse extended config namespace URI '" + configNamespace + "'.", e);
-            }
-
-            String resourcePath = "/META-INF" + namespaceURI.getPath() + "-smooks.xml";
+            String resourcePath = getExtendedConfigPath(configNamespace);
             File resourceFile = new File(resourcePath);
             String baseURI = resourceFile.getParent().replace('\\', '/');
 
@@ -590,6 +615,7 @@ public final class XMLConfigDigester {
                 XMLConfigDigester configDigester = new XMLConfigDigester(extConfigList);
 
                 configDigester.extendedConfigDigesters = extendedConfigDigesters;
+                configDigester.snapshot = snapshot;
                 configDigester.digestConfigRecursively(new InputStreamReader(ClassUtil.getResourceAsStream(resourcePath, classLoader)), baseURI);
                 configStore.addSmooksResourceConfigurationList(extConfigList);
             } catch (Exception e) {
@@ -607,6 +633,18 @@ public final class XMLConfigDigester {
         return smooks;
     }
 
+    private static String getExtendedConfigPath(String configNamespace) {
+        URI namespaceURI;
+
+        try {
+            namespaceURI = new URI(configNamespace);
+        } catch (URISyntaxException e) {
+            throw new SmooksConfigurationException("Unable to parse extended config namespace URI '" + configNamespace + "'.", e);
+        }
+
+        return "/META-INF" + namespaceURI.getPath() + "-smooks.xml";
+    }
+
     private void assertExtendedConfigOK(String configNamespace, String resourcePath) {
         InputStream resourceStream = ClassUtil.getResourceAsStream(resourcePath, classLoader);
 
@@ -0,0 +1,44 @@
+/*
+	Milyn - Copyright (C) 2006 - 2010
+
+	This library is free software; you can redistribute it and/or
+	modify it under the terms of the GNU Lesser General Public
+	License (version 2.1) as published by the Free Software
+	Foundation.
+
+	This library is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+	See the GNU Lesser General Public License for more details:
+	http://www.gnu.org/licenses/lgpl.txt
+*/
+package org.milyn.container;
+
+/**
+ * Abstract {@link ExecutionContext} implementation.
+ * <p/>
+ * Implements the typed {@link ContextKey} attribute methods, holding the attributes in {@link ContextSlots}.
+ * {@link ExecutionContext} implementations should extend this class (rather than implement
+ * {@link ExecutionContext} directly), so as to inherit any methods added to the {@link ExecutionContext}
+ * interface in later releases.
+ */
+public abstract class AbstractExecutionContext implements ExecutionContext {
+
+    /**
+     * Typed key attribute slots.
+     */
+    private ContextSlots slots = new ContextSlots();
+
+    public <T> T get(ContextKey<T> key) {
+        return slots.get(key);
+    }
+
+    public <T> void set(ContextKey<T> key, T value) {
+        slots.set(key, value);
+    }
+
+    public void remove(ContextKey<?> key) {
+        slots.remove(key);
+    }
+}
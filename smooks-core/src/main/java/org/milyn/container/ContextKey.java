@@ -0,0 +1,134 @@
+/*
+	Milyn - Copyright (C) 2006 - 2010
+
+	This library is free software; you can redistribute it and/or
+	modify it under the terms of the GNU Lesser General Public
+	License (version 2.1) as published by the Free Software
+	Foundation.
+
+	This library is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+	See the GNU Lesser General Public License for more details:
+	http://www.gnu.org/licenses/lgpl.txt
+*/
+package org.milyn.container;
+
+import org.milyn.assertion.AssertArgument;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Typed {@link ExecutionContext} attribute key.
+ * <p/>
+ * Each key is allocated a dense slot index when it is created.  Attributes bound to an {@link ExecutionContext}
+ * through a key ({@link ExecutionContext#set(ContextKey, Object)}) are stored in an array indexed by the
+ * key slot, so getting and setting the attribute involves no hashing, key String building or locking.
+ * <p/>
+ * Keys should be created once, at class load or configuration time (typically as <code>static final</code>
+ * fields).  Keys for named resources (e.g. a key per datasource name) should be acquired through a
+ * {@link Family}, which allocates a single key per name.
+ * <pre>
+ * private static final ContextKey&lt;Connection&gt; CONNECTION = new ContextKey&lt;Connection&gt;("connection");
+ * ....
+ * executionContext.set(CONNECTION, connection);
+ * Connection connection = executionContext.get(CONNECTION);
+ * </pre>
+ *
+ * @param <T> The attribute type.
+ */
+public final class ContextKey<T> {
+
+    private static final AtomicInteger slotCount = new AtomicInteger();
+
+    private final String name;
+    private final int slot;
+
+    /**
+     * Public constructor.
+     * <p/>
+     * Allocates a new slot.
+     *
+     * @param name The key name.  Used for debugging purposes only.
+     */
+    public ContextKey(String name) {
+        AssertArgument.isNotNullAndNotEmpty(name, "name");
+        this.name = name;
+        this.slot = slotCount.getAndIncrement();
+    }
+
+    /**
+     * Get the key name.
+     * @return The key name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Get the key slot index.
+     * @return The key slot index.
+     */
+    public int getSlot() {
+        return slot;
+    }
+
+    /**
+     * Get the number of slots allocated to date.
+     * @return The number of slots allocated.
+     */
+    public static int getSlotCount() {
+        return slotCount.get();
+    }
+
+    public String toString() {
+        return name;
+    }
+
+    /**
+     * Family of {@link ContextKey ContextKeys} for named resources.
+     * <p/>
+     * Allocates a single key (and slot) per resource name, replacing the "prefix + name" String keys
+     * typically used to bind named resources to the {@link ExecutionContext}.
+     *
+     * @param <T> The attribute type.
+     */
+    public static final class Family<T> {
+
+        private final String prefix;
+        private final ConcurrentMap<Object, ContextKey<T>> keys = new ConcurrentHashMap<Object, ContextKey<T>>();
+
+        /**
+         * Public constructor.
+         * @param prefix Key name prefix.  Used for debugging purposes only.
+         */
+        public Family(String prefix) {
+            AssertArgument.isNotNullAndNotEmpty(prefix, "prefix");
+            this.prefix = prefix;
+        }
+
+        /**
+         * Get the key for the specified resource name.
+         * @param name The resource name.
+         * @return The resource key.
+         */
+        public ContextKey<T> get(Object name) {
+            ContextKey<T> key = keys.get(name);
+
+            if(key == null) {
+                AssertArgument.isNotNull(name, "name");
+                ContextKey<T> newKey = new ContextKey<T>(prefix + name);
+
+                key = keys.putIfAbsent(name, newKey);
+                if(key == null) {
+                    key = newKey;
+                }
+            }
+
+            return key;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+	Milyn - Copyright (C) 2006 - 2010
+
+	This library is free software; you can redistribute it and/or
+	modify it under the terms of the GNU Lesser General Public
+	License (version 2.1) as published by the Free Software
+	Foundation.
+
+	This library is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+	See the GNU Lesser General Public License for more details:
+	http://www.gnu.org/licenses/lgpl.txt
+*/
+package org.milyn.container;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * {@link ContextKey} slot storage for {@link ExecutionContext} implementations.
+ * <p/>
+ * The slot array is allocated on the first bound value and only grows to cover the highest slot
+ * bound to date, so an {@link ExecutionContext} that uses few keys does not pay for all of the
+ * slots allocated in the JVM (e.g. to {@link ContextKey.Family} keys).
+ * <p/>
+ * Not synchronized.  As with the rest of the {@link ExecutionContext} state, the slots are expected to be
+ * accessed by the filtering thread only.
+ */
+public final class ContextSlots {
+
+    private static final Object[] NO_VALUES = new Object[0];
+
+    private Object[] values = NO_VALUES;
+
+    /**
+     * Get the value bound to the specified key.
+     * @param key The key.
+     * @return The value, or null if no value is bound to the key.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(ContextKey<T> key) {
+        int slot = key.getSlot();
+
+        if(slot < values.length) {
+            return (T) values[slot];
+        }
+        return null;
+    }
+
+    /**
+     * Bind a value to the specified key.
+     * @param key The key.
+     * @param value The value.  Null unbinds the key.
+     */
+    public <T> void set(ContextKey<T> key, T value) {
+        int slot = key.getSlot();
+
+        if(slot >= values.length) {
+            if(value == null) {
+                return;
+            }
+
+            // Grow to cover this slot, doubling (within the slots allocated to date) to limit the
+            // number of copies...
+            Object[] newValues = new Object[Math.max(slot + 1, Math.min(values.length * 2, ContextKey.getSlotCount()))];
+            System.arraycopy(values, 0, newValues, 0, values.length);
+            values = newValues;
+        }
+        values[slot] = value;
+    }
+
+    /**
+     * Unbind the specified key.
+     * @param key The key.
+     */
+    public void remove(ContextKey<?> key) {
+        int slot = key.getSlot();
+
+        if(slot < values.length) {
+            values[slot] = null;
+        }
+    }
+
+    /**
+     * Clear all slots.
+     */
+    public void clear() {
+        java.util.Arrays.fill(values, null);
+    }
+
+    public String toString() {
+        Map<String, Object> boundValues = new LinkedHashMap<String, Object>();
+
+        for(int i = 0; i < values.length; i++) {
+            if(values[i] != null) {
+                boundValues.put("slot[" + i + "]", values[i]);
+            }
+        }
+
+        return boundValues.toString();
+    }
+}
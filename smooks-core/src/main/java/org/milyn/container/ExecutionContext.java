@@ -25,6 +25,8 @@ import java.net.URI;
 
 /**
  * Smooks execution context interface definition.
+ * <p/>
+ * Implementations should extend {@link AbstractExecutionContext}.
  *
  * @author tfennelly
  */
@@ -181,4 +183,31 @@ public interface ExecutionContext extends BoundAttributeStore {
      * @param beanContext The BeanContext.
      */
     public void setBeanContext(BeanContext beanContext);
+
+    /**
+     * Get the execution scoped attribute bound to the specified typed key.
+     * <p/>
+     * Typed key attributes are held in indexed slots (see {@link ContextKey}), separately from
+     * the Object keyed attributes ({@link #getAttribute(Object)}).  They are not included
+     * in {@link #getAttributes()}.
+     *
+     * @param key The attribute key.
+     * @return The attribute value, or null if no value is bound to the key.
+     */
+    public <T> T get(ContextKey<T> key);
+
+    /**
+     * Bind an execution scoped attribute to the specified typed key.
+     * @param key The attribute key.
+     * @param value The attribute value.
+     * @see #get(ContextKey)
+     */
+    public <T> void set(ContextKey<T> key, T value);
+
+    /**
+     * Unbind the execution scoped attribute bound to the specified typed key.
+     * @param key The attribute key.
+     * @see #get(ContextKey)
+     */
+    public void remove(ContextKey<?> key);
 }
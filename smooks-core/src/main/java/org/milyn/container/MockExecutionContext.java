@@ -37,7 +37,7 @@ import java.util.Map;
  *
  * @author tfennelly
  */
-public class MockExecutionContext implements ExecutionContext {
+public class MockExecutionContext extends AbstractExecutionContext {
 
 	public String contextPath;
 	public URI docSource;
@@ -18,6 +18,7 @@ package org.milyn.container.standalone;
 
 import org.milyn.cdr.ParameterAccessor;
 import org.milyn.container.ApplicationContext;
+import org.milyn.container.AbstractExecutionContext;
 import org.milyn.container.ExecutionContext;
 import org.milyn.delivery.ContentDeliveryConfig;
 import org.milyn.delivery.ContentDeliveryConfigBuilder;
@@ -37,7 +38,7 @@ import java.util.Hashtable;
  * Standalone Container Request implementation.
  * @author tfennelly
  */
-public class StandaloneExecutionContext implements ExecutionContext {
+public class StandaloneExecutionContext extends AbstractExecutionContext {
 
     private ProfileSet targetProfileSet;
     private Hashtable<Object, Object> attributes = new Hashtable<Object, Object>();
@@ -18,6 +18,7 @@ package org.milyn.db;
 import org.milyn.SmooksException;
 import org.milyn.delivery.Fragment;
 import org.milyn.util.CollectionsUtil;
+import org.milyn.container.ContextKey;
 import org.milyn.container.ExecutionContext;
 import org.milyn.delivery.dom.DOMVisitBefore;
 import org.milyn.delivery.sax.SAXElement;
@@ -39,9 +40,9 @@ import java.util.Set;
  */
 public abstract class AbstractDataSource implements SAXVisitBefore, DOMVisitBefore, Producer, VisitLifecycleCleanable, ExecutionLifecycleCleanable {
 
-    private static final String DS_CONTEXT_KEY_PREFIX = AbstractDataSource.class.getName() + "#datasource:";
-    private static final String CONNECTION_CONTEXT_KEY_PREFIX = AbstractDataSource.class.getName() + "#connection:";
-    private static final String TRANSACTION_MANAGER_CONTEXT_KEY_PREFIX = AbstractDataSource.class.getName() + "#transactionManager:";
+    private static final ContextKey.Family<AbstractDataSource> DS_CONTEXT_KEYS = new ContextKey.Family<AbstractDataSource>(AbstractDataSource.class.getName() + "#datasource:");
+    private static final ContextKey.Family<Connection> CONNECTION_CONTEXT_KEYS = new ContextKey.Family<Connection>(AbstractDataSource.class.getName() + "#connection:");
+    private static final ContextKey.Family<TransactionManager> TRANSACTION_MANAGER_CONTEXT_KEYS = new ContextKey.Family<TransactionManager>(AbstractDataSource.class.getName() + "#transactionManager:");
 
     public final void visitBefore(SAXElement element, ExecutionContext executionContext) throws SmooksException, IOException {
         bind(executionContext);
@@ -63,15 +64,19 @@ public abstract class AbstractDataSource implements SAXVisitBefore, DOMVisitBefo
     }
 
     protected void bind(ExecutionContext executionContext) {
-        executionContext.setAttribute(DS_CONTEXT_KEY_PREFIX + getName(), this);
+        executionContext.set(DS_CONTEXT_KEYS.get(getName()), this);
     }
 
     protected void unbind(ExecutionContext executionContext) {
+        String name = getName();
+        ContextKey<Connection> connectionKey = CONNECTION_CONTEXT_KEYS.get(name);
+        ContextKey<TransactionManager> transactionManagerKey = TRANSACTION_MANAGER_CONTEXT_KEYS.get(name);
+
         try {
-            Connection connection = (Connection) executionContext.getAttribute(CONNECTION_CONTEXT_KEY_PREFIX + getName());
+            Connection connection = executionContext.get(connectionKey);
 
             if(connection != null) {
-            	TransactionManager transactionManager = (TransactionManager) executionContext.getAttribute(TRANSACTION_MANAGER_CONTEXT_KEY_PREFIX  + getName());
+            	TransactionManager transactionManager = executionContext.get(transactionManagerKey);
             	if(transactionManager == null) {
             		throw new SmooksException("No TransactionManager is set for the datasource '" + getName() + "'");
             	}
@@ -85,23 +90,24 @@ public abstract class AbstractDataSource implements SAXVisitBefore, DOMVisitBefo
                         }
                     }
                 } finally {
-                    executionContext.removeAttribute(CONNECTION_CONTEXT_KEY_PREFIX + getName());
+                    executionContext.remove(connectionKey);
                     connection.close();
                 }
             }
         } catch (SQLException e) {
             throw new SmooksException("Unable to unbind DataSource '" + getName() + "'.", e);
         } finally {
-            executionContext.removeAttribute(DS_CONTEXT_KEY_PREFIX + getName());
-            executionContext.removeAttribute(TRANSACTION_MANAGER_CONTEXT_KEY_PREFIX + getName());
+            executionContext.remove(DS_CONTEXT_KEYS.get(name));
+            executionContext.remove(transactionManagerKey);
         }
     }
 
     public static Connection getConnection(String dataSourceName, ExecutionContext executionContext) throws SmooksException {
-        Connection connection = (Connection) executionContext.getAttribute(CONNECTION_CONTEXT_KEY_PREFIX + dataSourceName);
+        ContextKey<Connection> connectionKey = CONNECTION_CONTEXT_KEYS.get(dataSourceName);
+        Connection connection = executionContext.get(connectionKey);
 
         if(connection == null) {
-            AbstractDataSource datasource = (AbstractDataSource) executionContext.getAttribute(DS_CONTEXT_KEY_PREFIX + dataSourceName);
+            AbstractDataSource datasource = executionContext.get(DS_CONTEXT_KEYS.get(dataSourceName));
 
             if(datasource == null) {
                 throw new SmooksException("DataSource '" + dataSourceName + "' not bound to context.  Configure an '" + AbstractDataSource.class.getName() +  "' implementation and target it at '#document'.");
@@ -112,8 +118,8 @@ public abstract class AbstractDataSource implements SAXVisitBefore, DOMVisitBefo
                 TransactionManager transactionManager = datasource.createTransactionManager(connection);
                 transactionManager.begin();
 
-                executionContext.setAttribute(CONNECTION_CONTEXT_KEY_PREFIX + dataSourceName, connection);
-                executionContext.setAttribute(TRANSACTION_MANAGER_CONTEXT_KEY_PREFIX + dataSourceName, transactionManager);
+                executionContext.set(connectionKey, connection);
+                executionContext.set(TRANSACTION_MANAGER_CONTEXT_KEYS.get(dataSourceName), transactionManager);
             } catch (SQLException e) {
                 throw new SmooksException("Unable to open connection to dataSource '" + dataSourceName + "'.", e);
             }
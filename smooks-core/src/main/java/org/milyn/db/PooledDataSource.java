@@ -0,0 +1,457 @@
+/*
+	Milyn - Copyright (C) 2006 - 2010
+
+	This library is free software; you can redistribute it and/or
+	modify it under the terms of the GNU Lesser General Public
+	License (version 2.1) as published by the Free Software
+	Foundation.
+
+	This library is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+	See the GNU Lesser General Public License for more details:
+	http://www.gnu.org/licenses/lgpl.txt
+*/
+package org.milyn.db;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.milyn.assertion.AssertArgument;
+import org.milyn.cdr.annotation.ConfigParam;
+import org.milyn.delivery.annotation.Initialize;
+import org.milyn.delivery.annotation.Uninitialize;
+import org.milyn.event.report.annotation.VisitAfterReport;
+import org.milyn.event.report.annotation.VisitBeforeReport;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pooled DataSource.
+ * <p/>
+ * A {@link DirectDataSource} that pools its JDBC connections, instead of opening a new connection
+ * for every {@link org.milyn.container.ExecutionContext}.  A connection is borrowed from the pool the first time
+ * it is requested on an {@link org.milyn.container.ExecutionContext} and is returned to the pool when the datasource
+ * is unbound from the {@link org.milyn.container.ExecutionContext} (after the commit/rollback).
+ * <p/>
+ * Pool configuration (on top of the {@link DirectDataSource} configuration):
+ * <ul>
+ *  <li><b>minSize</b>: Minimum number of idle connections kept in the pool.  Default 0.</li>
+ *  <li><b>maxSize</b>: Maximum number of connections (in use + idle).  Default 10.</li>
+ *  <li><b>maxWait</b>: Maximum time (milliseconds) to wait for a connection when the pool is exhausted.  Default 30000.</li>
+ *  <li><b>idleTimeout</b>: Time (milliseconds) after which an idle connection is closed (down to "minSize" connections).  Default 600000.</li>
+ *  <li><b>validationQuery</b>: Optional SQL query used to validate a connection before it is borrowed from the pool.
+ *      If not configured, a connection is only checked to be open.</li>
+ * </ul>
+ * Pool metrics are available through the getter methods e.g. {@link #getActiveCount()}, {@link #getCreatedCount()}.
+ */
+@VisitBeforeReport(summary = "Bind PooledDataSource <b>${resource.parameters.datasource}</b> to ExecutionContext.", detailTemplate = "reporting/PooledDataSource_before.html")
+@VisitAfterReport(summary = "Cleaning up PooledDataSource <b>${resource.parameters.datasource}</b>. Includes performing commit/rollback and returning the connection to the pool.", detailTemplate = "reporting/PooledDataSource_after.html")
+public class PooledDataSource extends DirectDataSource {
+
+    private static Log logger = LogFactory.getLog(PooledDataSource.class);
+
+    @ConfigParam(defaultVal = "0")
+    private int minSize = 0;
+
+    @ConfigParam(defaultVal = "10")
+    private int maxSize = 10;
+
+    @ConfigParam(defaultVal = "30000")
+    private long maxWait = 30000;
+
+    @ConfigParam(defaultVal = "600000")
+    private long idleTimeout = 600000;
+
+    @ConfigParam(use = ConfigParam.Use.OPTIONAL)
+    private String validationQuery;
+
+    /**
+     * Idle connections.  Most recently used first.
+     */
+    private final LinkedList<PooledConnection> idleConnections = new LinkedList<PooledConnection>();
+    private Semaphore permits;
+    private volatile boolean closed = false;
+
+    private final AtomicInteger activeCount = new AtomicInteger();
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong createdCount = new AtomicLong();
+    private final AtomicLong destroyedCount = new AtomicLong();
+    private final AtomicLong waitTimeoutCount = new AtomicLong();
+
+    public PooledDataSource setName(String name) {
+        super.setName(name);
+        return this;
+    }
+
+    public PooledDataSource setAutoCommit(boolean autoCommit) {
+        super.setAutoCommit(autoCommit);
+        return this;
+    }
+
+    public PooledDataSource setDriver(Class driver) {
+        super.setDriver(driver);
+        return this;
+    }
+
+    public PooledDataSource setUrl(String url) {
+        super.setUrl(url);
+        return this;
+    }
+
+    public PooledDataSource setUsername(String username) {
+        super.setUsername(username);
+        return this;
+    }
+
+    public PooledDataSource setPassword(String password) {
+        super.setPassword(password);
+        return this;
+    }
+
+    public PooledDataSource setMinSize(int minSize) {
+        if(minSize < 0) {
+            throw new IllegalArgumentException("Invalid 'minSize' arg value '" + minSize + "'.  Value must not be negative.");
+        }
+        this.minSize = minSize;
+        return this;
+    }
+
+    public PooledDataSource setMaxSize(int maxSize) {
+        if(maxSize < 1) {
+            throw new IllegalArgumentException("Invalid 'maxSize' arg value '" + maxSize + "'.  Value must be greater than zero.");
+        }
+        this.maxSize = maxSize;
+        return this;
+    }
+
+    public PooledDataSource setMaxWait(long maxWait) {
+        if(maxWait < 0) {
+            throw new IllegalArgumentException("Invalid 'maxWait' arg value '" + maxWait + "'.  Value must not be negative.");
+        }
+        this.maxWait = maxWait;
+        return this;
+    }
+
+    public PooledDataSource setIdleTimeout(long idleTimeout) {
+        if(idleTimeout < 0) {
+            throw new IllegalArgumentException("Invalid 'idleTimeout' arg value '" + idleTimeout + "'.  Value must not be negative.");
+        }
+        this.idleTimeout = idleTimeout;
+        return this;
+    }
+
+    public PooledDataSource setValidationQuery(String validationQuery) {
+        AssertArgument.isNotNullAndNotEmpty(validationQuery, "validationQuery");
+        this.validationQuery = validationQuery;
+        return this;
+    }
+
+    @Initialize
+    public void registerDriver() throws SQLException {
+        super.registerDriver();
+
+        if(minSize > maxSize) {
+            throw new SQLException("Invalid PooledDataSource '" + getName() + "' configuration.  'minSize' (" + minSize + ") is greater than 'maxSize' (" + maxSize + ").");
+        }
+
+        permits = new Semaphore(maxSize, true);
+        closed = false;
+
+        // Prefill the pool...
+        synchronized (idleConnections) {
+            while(idleConnections.size() < minSize) {
+                idleConnections.addFirst(createConnection());
+            }
+        }
+    }
+
+    @Uninitialize
+    public void close() {
+        List<PooledConnection> connections;
+
+        closed = true;
+        synchronized (idleConnections) {
+            connections = new ArrayList<PooledConnection>(idleConnections);
+            idleConnections.clear();
+        }
+        // Connections currently in use are closed as they are returned...
+        for(PooledConnection connection : connections) {
+            destroyConnection(connection);
+        }
+    }
+
+    public Connection getConnection() throws SQLException {
+        if(permits == null) {
+            throw new SQLException("PooledDataSource '" + getName() + "' not initialized.");
+        }
+        if(closed) {
+            throw new SQLException("PooledDataSource '" + getName() + "' is closed.");
+        }
+
+        try {
+            if(!permits.tryAcquire(maxWait, TimeUnit.MILLISECONDS)) {
+                waitTimeoutCount.incrementAndGet();
+                throw new SQLException("Timed out waiting " + maxWait + "ms for a connection from PooledDataSource '" + getName() + "'.  All " + maxSize + " connections are in use.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            SQLException sqlE = new SQLException("Interrupted while waiting for a connection from PooledDataSource '" + getName() + "'.");
+            sqlE.initCause(e);
+            throw sqlE;
+        }
+
+        try {
+            PooledConnection connection = borrowIdleConnection();
+
+            if(connection == null) {
+                connection = createConnection();
+            }
+            activeCount.incrementAndGet();
+            borrowCount.incrementAndGet();
+
+            return connection.newHandle();
+        } catch (SQLException e) {
+            permits.release();
+            throw e;
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Get the number of connections currently in use.
+     * @return The number of connections currently in use.
+     */
+    public int getActiveCount() {
+        return activeCount.get();
+    }
+
+    /**
+     * Get the number of idle connections in the pool.
+     * @return The number of idle connections in the pool.
+     */
+    public int getIdleCount() {
+        synchronized (idleConnections) {
+            return idleConnections.size();
+        }
+    }
+
+    /**
+     * Get the number of connections borrowed from the pool.
+     * @return The number of connections borrowed from the pool.
+     */
+    public long getBorrowCount() {
+        return borrowCount.get();
+    }
+
+    /**
+     * Get the number of physical connections opened by the pool.
+     * @return The number of physical connections opened by the pool.
+     */
+    public long getCreatedCount() {
+        return createdCount.get();
+    }
+
+    /**
+     * Get the number of physical connections closed by the pool (idle timeout, failed validation etc).
+     * @return The number of physical connections closed by the pool.
+     */
+    public long getDestroyedCount() {
+        return destroyedCount.get();
+    }
+
+    /**
+     * Get the number of {@link #getConnection()} calls that timed out waiting for a connection.
+     * @return The number of timed out connection requests.
+     */
+    public long getWaitTimeoutCount() {
+        return waitTimeoutCount.get();
+    }
+
+    public String toString() {
+        return "PooledDataSource '" + getName() + "' [active: " + getActiveCount() + ", idle: " + getIdleCount() + ", borrowed: " + getBorrowCount() + ", created: " + getCreatedCount() + ", destroyed: " + getDestroyedCount() + ", timeouts: " + getWaitTimeoutCount() + "]";
+    }
+
+    private PooledConnection borrowIdleConnection() {
+        while(true) {
+            PooledConnection connection;
+
+            synchronized (idleConnections) {
+                if(idleConnections.isEmpty()) {
+                    return null;
+                }
+                connection = idleConnections.removeFirst();
+            }
+
+            if(isValid(connection)) {
+                return connection;
+            }
+            destroyConnection(connection);
+        }
+    }
+
+    private void returnConnection(PooledConnection connection) {
+        try {
+            activeCount.decrementAndGet();
+            if(closed || connection.connection.isClosed()) {
+                destroyConnection(connection);
+            } else {
+                connection.lastUsed = System.currentTimeMillis();
+                synchronized (idleConnections) {
+                    idleConnections.addFirst(connection);
+                }
+                evictIdleConnections();
+            }
+        } catch (SQLException e) {
+            destroyConnection(connection);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void evictIdleConnections() {
+        long evictBefore = System.currentTimeMillis() - idleTimeout;
+        List<PooledConnection> evicted = null;
+
+        synchronized (idleConnections) {
+            // Least recently used connections are at the end of the list...
+            while(idleConnections.size() > minSize && idleConnections.getLast().lastUsed < evictBefore) {
+                if(evicted == null) {
+                    evicted = new ArrayList<PooledConnection>();
+                }
+                evicted.add(idleConnections.removeLast());
+            }
+        }
+        if(evicted != null) {
+            for(PooledConnection connection : evicted) {
+                destroyConnection(connection);
+            }
+        }
+    }
+
+    private boolean isValid(PooledConnection connection) {
+        try {
+            if(connection.connection.isClosed()) {
+                return false;
+            }
+            if(validationQuery != null) {
+                Statement statement = connection.connection.createStatement();
+                try {
+                    statement.execute(validationQuery);
+                } finally {
+                    statement.close();
+                }
+            }
+            return true;
+        } catch (SQLException e) {
+            logger.debug("PooledDataSource '" + getName() + "' connection failed validation.  Discarding connection.", e);
+            return false;
+        }
+    }
+
+    private PooledConnection createConnection() throws SQLException {
+        PooledConnection connection = new PooledConnection(super.getConnection());
+
+        createdCount.incrementAndGet();
+        return connection;
+    }
+
+    private void destroyConnection(PooledConnection connection) {
+        destroyedCount.incrementAndGet();
+        try {
+            connection.connection.close();
+        } catch (SQLException e) {
+            logger.debug("Error closing PooledDataSource '" + getName() + "' connection.", e);
+        }
+    }
+
+    /**
+     * Pooled physical connection.
+     */
+    private class PooledConnection {
+
+        private final Connection connection;
+        private long lastUsed = System.currentTimeMillis();
+
+        private PooledConnection(Connection connection) {
+            this.connection = connection;
+        }
+
+        /**
+         * Create a new {@link Connection} handle for the borrower.  Closing the handle returns
+         * the connection to the pool.
+         * @return The connection handle.
+         */
+        private Connection newHandle() {
+            return (Connection) Proxy.newProxyInstance(PooledDataSource.class.getClassLoader(), new Class[] {Connection.class}, new ConnectionHandle(this));
+        }
+    }
+
+    /**
+     * Borrowed connection handle.
+     */
+    private class ConnectionHandle implements InvocationHandler {
+
+        private PooledConnection pooledConnection;
+
+        private ConnectionHandle(PooledConnection pooledConnection) {
+            this.pooledConnection = pooledConnection;
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String methodName = method.getName();
+
+            if(methodName.equals("close")) {
+                PooledConnection connection = release();
+                if(connection != null) {
+                    returnConnection(connection);
+                }
+                return null;
+            } else if(methodName.equals("isClosed")) {
+                PooledConnection connection = getPooledConnection();
+                return (connection == null || connection.connection.isClosed());
+            } else if(methodName.equals("equals")) {
+                return (proxy == args[0]);
+            } else if(methodName.equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            } else if(methodName.equals("toString")) {
+                return "Pooled connection handle [" + getPooledConnection() + "]";
+            }
+
+            PooledConnection connection = getPooledConnection();
+            if(connection == null) {
+                throw new SQLException("Connection handle is closed.  Connection has been returned to PooledDataSource '" + getName() + "'.");
+            }
+            try {
+                return method.invoke(connection.connection, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        }
+
+        private synchronized PooledConnection getPooledConnection() {
+            return pooledConnection;
+        }
+
+        private synchronized PooledConnection release() {
+            PooledConnection connection = pooledConnection;
+            pooledConnection = null;
+            return connection;
+        }
+    }
+}
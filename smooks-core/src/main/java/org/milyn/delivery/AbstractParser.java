@@ -24,10 +24,14 @@ import org.milyn.cdr.SmooksResourceConfiguration;
 import org.milyn.cdr.annotation.Configurator;
 import org.milyn.container.ExecutionContext;
 import org.milyn.delivery.sax.SAXHandler;
+import org.milyn.delivery.sax.UTF8XMLWriter;
+import org.milyn.payload.ByteBufferSource;
+import org.milyn.payload.ChannelResult;
+import org.milyn.payload.ChannelSource;
 import org.milyn.payload.JavaSource;
 import org.milyn.payload.FilterSource;
 import org.milyn.delivery.java.JavaXMLReader;
-import org.milyn.delivery.java.XStreamXMLReader;
+import org.milyn.delivery.java.ObjectGraphXMLReader;
 import org.milyn.io.NullReader;
 import org.milyn.io.NullWriter;
 import org.milyn.util.ClassUtil;
@@ -51,6 +55,7 @@ import java.io.UnsupportedEncodingException;
 import java.io.Writer;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Stack;
@@ -154,6 +159,11 @@ public class AbstractParser {
 	            StreamSource streamSource = (StreamSource) source;
 	            if (streamSource.getReader() != null) {
 	                return streamSource.getReader();
+	            } else if (streamSource instanceof ByteBufferSource) {
+	                // Decode the buffer directly, rather than through an InputStreamReader...
+	                return ((ByteBufferSource) streamSource).createReader(toCharset(contentEncoding));
+	            } else if (streamSource instanceof ChannelSource) {
+	                return ((ChannelSource) streamSource).createReader(toCharset(contentEncoding));
 	            } else if (streamSource.getInputStream() != null) {
 	            	return streamToReader(streamSource.getInputStream(), contentEncoding);
 				} else if (streamSource.getSystemId() != null) {
@@ -199,6 +209,14 @@ public class AbstractParser {
 		}
 	}
 
+    static Charset toCharset(String contentEncoding) {
+        try {
+            return Charset.forName(contentEncoding != null ? contentEncoding : "UTF-8");
+        } catch (IllegalArgumentException e) {
+            throw new SmooksException("Unsupported content encoding '" + contentEncoding + "'.", e);
+        }
+    }
+
     protected InputSource createInputSource(XMLReader inputReader, Source source, String contentEncoding) {
         InputSource inputSource;
         if (inputReader instanceof StreamReader) { // Base on marker interface StreamReader, the Source will be created from Reader or from inputStream
@@ -259,12 +277,17 @@ public class AbstractParser {
         StreamResult streamResult = (StreamResult) result;
         if (streamResult.getWriter() != null) {
             return streamResult.getWriter();
+        } else if (streamResult instanceof ChannelResult) {
+            return ((ChannelResult) streamResult).createWriter(toCharset(executionContext != null ? executionContext.getContentEncoding() : null));
         } else if (streamResult.getOutputStream() != null) {
             try {
-                if (executionContext != null) {
-                    return new OutputStreamWriter(streamResult.getOutputStream(), executionContext.getContentEncoding());
+                String encoding = (executionContext != null ? executionContext.getContentEncoding() : "UTF-8");
+
+                if (UTF8XMLWriter.isUTF8(encoding)) {
+                    // Encodes straight into a byte buffer...
+                    return new UTF8XMLWriter(streamResult.getOutputStream());
                 } else {
-                    return new OutputStreamWriter(streamResult.getOutputStream(), "UTF-8");
+                    return new OutputStreamWriter(streamResult.getOutputStream(), encoding);
                 }
             } catch (UnsupportedEncodingException e) {
                 throw new SmooksException("Unable to encode output stream.", e);
@@ -294,7 +317,7 @@ public class AbstractParser {
             // the smooks config (via the reader features) and (b) not turned off via the supplied JavaSource...
             boolean eventStreamingOn = (!isFeatureOff(JavaSource.FEATURE_GENERATE_EVENT_STREAM, saxDriverConfig) && javaSource.isEventStreamRequired());
             if (eventStreamingOn && javaSource.getSourceObjects() != null) {
-                reader = new XStreamXMLReader();
+                reader = new ObjectGraphXMLReader();
             } else {
                 reader = new NullSourceXMLReader();
             }
@@ -18,7 +18,9 @@ package org.milyn.delivery;
 import org.milyn.SmooksException;
 import org.milyn.util.CollectionsUtil;
 import org.milyn.cdr.annotation.Config;
+import org.milyn.cdr.annotation.ConfigParam;
 import org.milyn.cdr.SmooksResourceConfiguration;
+import org.milyn.container.ContextKey;
 import org.milyn.container.ExecutionContext;
 import org.milyn.delivery.dom.DOMVisitBefore;
 import org.milyn.delivery.sax.DynamicSAXElementVisitorList;
@@ -29,6 +31,9 @@ import org.milyn.delivery.sax.SAXVisitAfter;
 import org.milyn.delivery.sax.SAXVisitBefore;
 import org.milyn.delivery.ordering.Producer;
 import org.milyn.xml.DomUtils;
+import org.milyn.xml.compact.CompactDocument;
+import org.milyn.xml.compact.CompactElement;
+import org.milyn.xml.compact.CompactNameTable;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
@@ -98,19 +103,45 @@ import java.util.Set;
  * at any given time, with each new "order-item" model overwriting the previous "order-item" model.
  * All this ensures that the memory footprint is kept to a minimum.
  *
+ * <h2>Compact Model</h2>
+ * When used with SAX filtering, the "compactModel" parameter can be set to "true" to have the model
+ * built as a compact, read-only, {@link CompactDocument} instead of a full W3C DOM:
+ * <pre>
+ * &lt;resource-config selector="order,order-item"&gt;
+ *     &lt;resource&gt;org.milyn.delivery.DomModelCreator&lt;/resource&gt;
+ *     &lt;param name="compactModel"&gt;true&lt;/param&gt;
+ * &lt;/resource-config&gt;
+ * </pre>
+ * Compact model are much cheaper to build and hold in memory, and are templated natively by FreeMarker
+ * (see {@link org.milyn.xml.compact.CompactNodeModel}).  However, they do not support DOM modification,
+ * have no owner {@link Document}, and their storage is reused: a compact model is only valid until the
+ * next fragment with the same name is started.  Components that need to hold onto a model beyond that
+ * point, or need a full DOM (e.g. Groovy scripts using {@link #popCreator(ExecutionContext)}), should
+ * not use compact model.
+ *
  * @author <a href="mailto:tom.fennelly@gmail.com">tom.fennelly@gmail.com</a>
  */
 public class DomModelCreator implements DOMVisitBefore, SAXVisitBefore, SAXVisitAfter, Producer {
 
+    private static final ContextKey<Stack<SAXElementVisitor>> DOM_CREATOR_STACK_KEY = new ContextKey<Stack<SAXElementVisitor>>(DomModelCreator.class.getName() + "#domCreatorStack");
+
     DocumentBuilder documentBuilder;
 
     @Config
     private SmooksResourceConfiguration config;
 
+    @ConfigParam(defaultVal = "false")
+    private boolean compactModel;
+    private CompactNameTable nameTable = new CompactNameTable();
+
     public DomModelCreator() throws ParserConfigurationException {
         documentBuilder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
     }
 
+    public void setCompactModel(boolean compactModel) {
+        this.compactModel = compactModel;
+    }
+
     public Set<String> getProducts() {
         return CollectionsUtil.toSet(config.getTargetElement());
     }
@@ -122,7 +153,11 @@ public class DomModelCreator implements DOMVisitBefore, SAXVisitBefore, SAXVisit
     public void visitBefore(SAXElement element, ExecutionContext executionContext) throws SmooksException, IOException {
         // Push a new DOMCreator onto the DOMCreator stack and install it in the
         // Dynamic Vistor list in the SAX handler...
-        pushCreator(new DOMCreator(), executionContext);
+        if(compactModel) {
+            pushCreator(new CompactDOMCreator(getCompactDocument(element, executionContext)), executionContext);
+        } else {
+            pushCreator(new DOMCreator(), executionContext);
+        }
     }
 
     public void visitAfter(SAXElement element, ExecutionContext executionContext) throws SmooksException, IOException {
@@ -136,12 +171,29 @@ public class DomModelCreator implements DOMVisitBefore, SAXVisitBefore, SAXVisit
         nodeModel.getModels().put(DomUtils.getName(element), element);
     }
 
-    private void pushCreator(DOMCreator domCreator, ExecutionContext executionContext) {
-        Stack<DOMCreator> domCreatorStack = (Stack<DOMCreator>) executionContext.getAttribute(DOMCreator.class);
+    private CompactDocument getCompactDocument(SAXElement element, ExecutionContext executionContext) {
+        Element previousModel = DOMModel.getModel(executionContext).getModels().get(element.getName().getLocalPart());
+
+        if(previousModel instanceof CompactElement) {
+            CompactDocument previousDocument = ((CompactElement) previousModel).getCompactDocument();
+
+            // Reuse the storage of the previous model of the same name, as long as it was created
+            // by this creator and is not still being built (i.e. we're not nested inside it)...
+            if(previousDocument.getNameTable() == nameTable && previousDocument.isComplete()) {
+                previousDocument.reset();
+                return previousDocument;
+            }
+        }
+
+        return new CompactDocument(nameTable);
+    }
+
+    private void pushCreator(SAXElementVisitor domCreator, ExecutionContext executionContext) {
+        Stack<SAXElementVisitor> domCreatorStack = executionContext.get(DOM_CREATOR_STACK_KEY);
 
         if(domCreatorStack == null) {
-            domCreatorStack = new Stack<DOMCreator>();
-            executionContext.setAttribute(DOMCreator.class, domCreatorStack);
+            domCreatorStack = new Stack<SAXElementVisitor>();
+            executionContext.set(DOM_CREATOR_STACK_KEY, domCreatorStack);
         } else if(!domCreatorStack.isEmpty()) {
             // We need to remove the current DOMCreator from the dynamic visitor list because
             // we want to stop nodes being added to it and instead, have them added to the new
@@ -156,8 +208,14 @@ public class DomModelCreator implements DOMVisitBefore, SAXVisitBefore, SAXVisit
         domCreatorStack.push(domCreator);
     }
 
+    /**
+     * Pop the current DOM creator.
+     * @param executionContext The execution context.
+     * @return The DOM created by the popped creator, or null if the creator stack is empty or the popped
+     * creator built a compact model.
+     */
     public Document popCreator(ExecutionContext executionContext) {
-        Stack<DOMCreator> domCreatorStack = (Stack<DOMCreator>) executionContext.getAttribute(DOMCreator.class);
+        Stack<SAXElementVisitor> domCreatorStack = executionContext.get(DOM_CREATOR_STACK_KEY);
 
         if(domCreatorStack == null) {
             throw new IllegalStateException("No DOM Creator Stack available.");
@@ -165,10 +223,13 @@ public class DomModelCreator implements DOMVisitBefore, SAXVisitBefore, SAXVisit
             try {
                 // Remove the current DOMCreators from the dynamic visitor list...
                 if(!domCreatorStack.isEmpty()) {
-                    DOMCreator removedCreator = domCreatorStack.pop();
+                    SAXElementVisitor removedCreator = domCreatorStack.pop();
                     DynamicSAXElementVisitorList.removeDynamicVisitor(removedCreator, executionContext);
 
-                    return removedCreator.document;
+                    if(removedCreator instanceof DOMCreator) {
+                        return ((DOMCreator) removedCreator).document;
+                    }
+                    return null;
                 } else {
                     return null;
                 }
@@ -236,4 +297,62 @@ public class DomModelCreator implements DOMVisitBefore, SAXVisitBefore, SAXVisit
             currentNode = currentNode.getParentNode();
         }
     }
+
+    private class CompactDOMCreator implements SAXElementVisitor {
+
+        private CompactDocument document;
+
+        private CompactDOMCreator(CompactDocument document) {
+            this.document = document;
+        }
+
+        public void visitBefore(SAXElement element, ExecutionContext executionContext) throws SmooksException, IOException {
+            boolean isDocumentElement = (document.getNodeCount() == 0);
+
+            document.startElement(element.getName(), element.getAttributes());
+            if(isDocumentElement) {
+                addNodeModel(document.getDocumentElement(), executionContext);
+            }
+        }
+
+        public void onChildText(SAXElement element, SAXText childText, ExecutionContext executionContext) throws SmooksException, IOException {
+            if(document.isComplete() || isWhitespace(childText)) {
+                // Ignore text outside the document element and pure whitespace...
+                return;
+            }
+
+            switch (childText.getType()) {
+                case TEXT:
+                case ENTITY:
+                    document.appendText(childText.getCharacters(), childText.getOffset(), childText.getLength(), Node.TEXT_NODE);
+                    break;
+                case CDATA:
+                    document.appendText(childText.getCharacters(), childText.getOffset(), childText.getLength(), Node.CDATA_SECTION_NODE);
+                    break;
+                case COMMENT:
+                    document.appendText(childText.getCharacters(), childText.getOffset(), childText.getLength(), Node.COMMENT_NODE);
+                    break;
+            }
+        }
+
+        public void onChildElement(SAXElement element, SAXElement childElement, ExecutionContext executionContext) throws SmooksException, IOException {
+        }
+
+        public void visitAfter(SAXElement element, ExecutionContext executionContext) throws SmooksException, IOException {
+            document.endElement();
+        }
+
+        private boolean isWhitespace(SAXText text) {
+            char[] characters = text.getCharacters();
+            int end = text.getOffset() + text.getLength();
+
+            for(int i = text.getOffset(); i < end; i++) {
+                if(characters[i] > ' ') {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
 }
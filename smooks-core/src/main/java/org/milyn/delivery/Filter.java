@@ -19,6 +19,9 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.milyn.SmooksException;
 import org.milyn.Smooks;
+import org.milyn.payload.ByteBufferSource;
+import org.milyn.payload.ChannelResult;
+import org.milyn.payload.ChannelSource;
 import org.milyn.payload.FilterSource;
 import org.milyn.payload.FilterResult;
 import org.milyn.cdr.ParameterAccessor;
@@ -178,6 +181,10 @@ public abstract class Filter {
             StreamSource streamSource = (StreamSource) source;
             if(streamSource.getReader() != null) {
                 return streamSource.getReader();
+            } else if(streamSource instanceof ByteBufferSource) {
+                return ((ByteBufferSource) streamSource).createReader(AbstractParser.toCharset(executionContext != null ? executionContext.getContentEncoding() : null));
+            } else if(streamSource instanceof ChannelSource) {
+                return ((ChannelSource) streamSource).createReader(AbstractParser.toCharset(executionContext != null ? executionContext.getContentEncoding() : null));
             } else if(streamSource.getInputStream() != null) {
                 try {
                     if(executionContext instanceof ExecutionContext) {
@@ -204,6 +211,8 @@ public abstract class Filter {
         StreamResult streamResult = (StreamResult) result;
         if(streamResult.getWriter() != null) {
             return streamResult.getWriter();
+        } else if(streamResult instanceof ChannelResult) {
+            return ((ChannelResult) streamResult).createWriter(AbstractParser.toCharset(executionContext != null ? executionContext.getContentEncoding() : null));
         } else if(streamResult.getOutputStream() != null) {
             try {
                 if(executionContext instanceof ExecutionContext) {
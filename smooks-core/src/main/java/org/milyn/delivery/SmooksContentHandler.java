@@ -133,5 +133,22 @@ public abstract class SmooksContentHandler extends DefaultHandler2 implements SA
         nestedContentHandler = null;
     }
 
+    /**
+     * Reset this nested content handler so it can be reused to process another
+     * fragment of the parent handler's event stream.
+     * <p/>
+     * Reattaches this handler to its execution context and to its parent handler.
+     */
+    protected void reset() {
+        endReplayed = false;
+        lastEvent = null;
+        depth = 0;
+        attachHandler();
+
+        if(parentContentHandler != null) {
+            parentContentHandler.nestedContentHandler = this;
+        }
+    }
+
     public abstract void cleanup();
 }
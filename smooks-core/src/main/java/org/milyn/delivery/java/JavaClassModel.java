@@ -0,0 +1,456 @@
+/*
+	Milyn - Copyright (C) 2006 - 2010
+
+	This library is free software; you can redistribute it and/or
+	modify it under the terms of the GNU Lesser General Public
+	License (version 2.1) as published by the Free Software
+	Foundation.
+
+	This library is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+	See the GNU Lesser General Public License for more details:
+	http://www.gnu.org/licenses/lgpl.txt
+*/
+package org.milyn.delivery.java;
+
+import org.milyn.container.ApplicationContext;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.URI;
+import java.net.URL;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Cached Java class event stream model, used by the {@link ObjectGraphXMLReader}.
+ * <p/>
+ * Holds the (accessible) properties of a class, plus the element naming rules.  Element
+ * names, aliases and "class" attribute values follow the XStream conventions, so as to be
+ * compatible with the {@link XStreamXMLReader} event stream.
+ *
+ * @see ObjectGraphXMLReader
+ */
+final class JavaClassModel {
+
+    private static final Map<Class<?>, String> ALIASES = new HashMap<Class<?>, String>();
+    private static final Map<Class<?>, Class<?>> DEFAULT_IMPLEMENTATIONS = new HashMap<Class<?>, Class<?>>();
+    private static final Map<Class<?>, Class<?>> PRIMITIVE_WRAPPERS = new HashMap<Class<?>, Class<?>>();
+    private static final Class<?>[] VALUE_TYPES = new Class<?>[] {
+            String.class, StringBuffer.class, StringBuilder.class, Boolean.class, Character.class,
+            Byte.class, Short.class, Integer.class, Long.class, Float.class, Double.class,
+            BigInteger.class, BigDecimal.class, Enum.class, Date.class, Class.class, Locale.class, URL.class, URI.class, File.class, Currency.class};
+    private static final Set<String> OPEN = Collections.emptySet();
+
+    static {
+        ALIASES.put(String.class, "string");
+        ALIASES.put(StringBuffer.class, "string-buffer");
+        ALIASES.put(StringBuilder.class, "string-builder");
+        ALIASES.put(Boolean.class, "boolean");
+        ALIASES.put(Character.class, "char");
+        ALIASES.put(Byte.class, "byte");
+        ALIASES.put(Short.class, "short");
+        ALIASES.put(Integer.class, "int");
+        ALIASES.put(Long.class, "long");
+        ALIASES.put(Float.class, "float");
+        ALIASES.put(Double.class, "double");
+        ALIASES.put(BigInteger.class, "big-int");
+        ALIASES.put(BigDecimal.class, "big-decimal");
+        ALIASES.put(Object.class, "object");
+        ALIASES.put(Date.class, "date");
+        ALIASES.put(java.sql.Date.class, "sql-date");
+        ALIASES.put(java.sql.Time.class, "sql-time");
+        ALIASES.put(java.sql.Timestamp.class, "sql-timestamp");
+        ALIASES.put(GregorianCalendar.class, "gregorian-calendar");
+        ALIASES.put(Class.class, "java-class");
+        ALIASES.put(Locale.class, "locale");
+        ALIASES.put(URL.class, "url");
+        ALIASES.put(File.class, "file");
+        ALIASES.put(Currency.class, "currency");
+        ALIASES.put(ArrayList.class, "list");
+        ALIASES.put(LinkedList.class, "linked-list");
+        ALIASES.put(Vector.class, "vector");
+        ALIASES.put(HashSet.class, "set");
+        ALIASES.put(LinkedHashSet.class, "linked-hash-set");
+        ALIASES.put(TreeSet.class, "tree-set");
+        ALIASES.put(HashMap.class, "map");
+        ALIASES.put(LinkedHashMap.class, "linked-hash-map");
+        ALIASES.put(TreeMap.class, "tree-map");
+        ALIASES.put(Hashtable.class, "hashtable");
+        ALIASES.put(Properties.class, "properties");
+
+        DEFAULT_IMPLEMENTATIONS.put(Collection.class, ArrayList.class);
+        DEFAULT_IMPLEMENTATIONS.put(List.class, ArrayList.class);
+        DEFAULT_IMPLEMENTATIONS.put(Set.class, HashSet.class);
+        DEFAULT_IMPLEMENTATIONS.put(SortedSet.class, TreeSet.class);
+        DEFAULT_IMPLEMENTATIONS.put(Map.class, HashMap.class);
+        DEFAULT_IMPLEMENTATIONS.put(SortedMap.class, TreeMap.class);
+        DEFAULT_IMPLEMENTATIONS.put(Calendar.class, GregorianCalendar.class);
+
+        PRIMITIVE_WRAPPERS.put(Boolean.TYPE, Boolean.class);
+        PRIMITIVE_WRAPPERS.put(Character.TYPE, Character.class);
+        PRIMITIVE_WRAPPERS.put(Byte.TYPE, Byte.class);
+        PRIMITIVE_WRAPPERS.put(Short.TYPE, Short.class);
+        PRIMITIVE_WRAPPERS.put(Integer.TYPE, Integer.class);
+        PRIMITIVE_WRAPPERS.put(Long.TYPE, Long.class);
+        PRIMITIVE_WRAPPERS.put(Float.TYPE, Float.class);
+        PRIMITIVE_WRAPPERS.put(Double.TYPE, Double.class);
+    }
+
+    private final Class<?> type;
+    private final String elementName;
+    private final Property[] properties;
+    private volatile Set<String> elementNames;
+
+    private JavaClassModel(Class<?> type) {
+        this.type = type;
+        this.elementName = toElementName(type);
+        this.properties = createProperties(type);
+    }
+
+    /**
+     * Get the model for the specified class.
+     * <p/>
+     * Models are cached on the supplied {@link ApplicationContext}.
+     *
+     * @param type The class.
+     * @param appContext The application context, or null if the model is not to be cached.
+     * @return The class model.
+     */
+    @SuppressWarnings("unchecked")
+    static JavaClassModel getModel(Class<?> type, ApplicationContext appContext) {
+        if(appContext == null) {
+            return new JavaClassModel(type);
+        }
+
+        ConcurrentMap<Class<?>, JavaClassModel> models = (ConcurrentMap<Class<?>, JavaClassModel>) appContext.getAttribute(JavaClassModel.class);
+        if(models == null) {
+            models = new ConcurrentHashMap<Class<?>, JavaClassModel>();
+            appContext.setAttribute(JavaClassModel.class, models);
+        }
+
+        JavaClassModel model = models.get(type);
+        if(model == null) {
+            model = new JavaClassModel(type);
+            models.put(type, model);
+        }
+
+        return model;
+    }
+
+    Class<?> getType() {
+        return type;
+    }
+
+    /**
+     * Get the element name for instances of this class.
+     * @return The element name.
+     */
+    String getElementName() {
+        return elementName;
+    }
+
+    Property[] getProperties() {
+        return properties;
+    }
+
+    /**
+     * Get the (lowercase) names of all the elements that can be generated for the properties
+     * of an instance of this class.
+     * <p/>
+     * Calculated from the declared property types.  The set is "open" (returns null) if it can't
+     * be determined from the declared types e.g. a property is a Collection, or of a non-final
+     * (possibly subclassed) bean type.
+     *
+     * @param appContext The application context.
+     * @return The element names, or null if the set of names is open.
+     */
+    Set<String> getElementNames(ApplicationContext appContext) {
+        if(elementNames == null) {
+            Set<String> names = calculateElementNames(appContext, new HashSet<Class<?>>());
+            elementNames = (names != null ? names : OPEN);
+        }
+        return (elementNames != OPEN ? elementNames : null);
+    }
+
+    private Set<String> calculateElementNames(ApplicationContext appContext, Set<Class<?>> inProgress) {
+        Set<String> names = new HashSet<String>();
+
+        inProgress.add(type);
+        for(Property property : properties) {
+            Class<?> propertyType = property.getType();
+
+            names.add(property.getLowerCaseName());
+            if(isValueType(propertyType)) {
+                continue;
+            } else if(Calendar.class.isAssignableFrom(propertyType)) {
+                names.add("time");
+                names.add("timezone");
+            } else if(propertyType.isArray() && isValueType(propertyType.getComponentType()) && Modifier.isFinal(propertyType.getComponentType().getModifiers())) {
+                names.add(toElementName(propertyType.getComponentType()).toLowerCase());
+            } else if(Modifier.isFinal(propertyType.getModifiers()) && !propertyType.isArray() && !inProgress.contains(propertyType)) {
+                JavaClassModel propertyModel = getModel(propertyType, appContext);
+                Set<String> propertyNames;
+
+                if(propertyModel.elementNames != null) {
+                    propertyNames = propertyModel.getElementNames(appContext);
+                } else {
+                    propertyNames = propertyModel.calculateElementNames(appContext, inProgress);
+                }
+                if(propertyNames == null) {
+                    return null;
+                }
+                names.addAll(propertyNames);
+            } else {
+                return null;
+            }
+        }
+        inProgress.remove(type);
+
+        return Collections.unmodifiableSet(names);
+    }
+
+    /**
+     * Is the supplied type a value type i.e. a type whose instances are output as element text.
+     * @param type The type.
+     * @return True if the type is a value type, otherwise false.
+     */
+    static boolean isValueType(Class<?> type) {
+        if(type.isPrimitive() || type == byte[].class || type == char[].class) {
+            return true;
+        }
+        for(Class<?> valueType : VALUE_TYPES) {
+            if(valueType.isAssignableFrom(type)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get the element name for the specified type.
+     * <p/>
+     * The {@link #toSerializedName(Class) serialized name}, escaped as per {@link #escapeName(String)}.
+     *
+     * @param type The type.
+     * @return The element name.
+     */
+    static String toElementName(Class<?> type) {
+        return escapeName(toSerializedName(type));
+    }
+
+    /**
+     * Get the serialized (unescaped) name for the specified type.
+     * <p/>
+     * The XStream alias, if defined, otherwise the class name.  Array names are the component
+     * name with an "-array" suffix.
+     *
+     * @param type The type.
+     * @return The serialized name.
+     */
+    static String toSerializedName(Class<?> type) {
+        if(type.isArray()) {
+            Class<?> componentType = type.getComponentType();
+            if(componentType == Object.class) {
+                return "object-array";
+            }
+            return toSerializedName(componentType) + "-array";
+        }
+
+        type = normalize(type);
+
+        String alias = ALIASES.get(type);
+        if(alias != null) {
+            return alias;
+        }
+        return type.getName();
+    }
+
+    /**
+     * Escape a class or field name for use as an element name.
+     * <p/>
+     * As per the XStream XmlFriendlyReplacer, '$' is replaced by "_-" and '_' by "__".
+     *
+     * @param name The name.
+     * @return The escaped name.
+     */
+    static String escapeName(String name) {
+        if(name.indexOf('$') == -1 && name.indexOf('_') == -1) {
+            return name;
+        }
+
+        StringBuilder escapedName = new StringBuilder(name.length() + 8);
+        for(int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if(c == '$') {
+                escapedName.append("_-");
+            } else if(c == '_') {
+                escapedName.append("__");
+            } else {
+                escapedName.append(c);
+            }
+        }
+
+        return escapedName.toString();
+    }
+
+    /**
+     * Reverse of {@link #escapeName(String)}.
+     *
+     * @param escapedName The escaped name.
+     * @return The unescaped name.
+     */
+    static String unescapeName(String escapedName) {
+        if(escapedName.indexOf('_') == -1) {
+            return escapedName;
+        }
+
+        StringBuilder name = new StringBuilder(escapedName.length());
+        for(int i = 0; i < escapedName.length(); i++) {
+            char c = escapedName.charAt(i);
+            if(c == '_' && i + 1 < escapedName.length()) {
+                char next = escapedName.charAt(i + 1);
+                if(next == '-') {
+                    name.append('$');
+                    i++;
+                    continue;
+                } else if(next == '_') {
+                    name.append('_');
+                    i++;
+                    continue;
+                }
+            }
+            name.append(c);
+        }
+
+        return name.toString();
+    }
+
+    /**
+     * Get the "class" attribute value for a property value of the specified type.
+     *
+     * @param declaredType The declared property type.
+     * @param actualType The actual property value type.
+     * @return The "class" attribute value, or null if the "class" attribute is not required.
+     */
+    static String toClassAttribute(Class<?> declaredType, Class<?> actualType) {
+        if(declaredType.isPrimitive()) {
+            declaredType = PRIMITIVE_WRAPPERS.get(declaredType);
+        }
+        actualType = normalize(actualType);
+        if(actualType == declaredType || actualType == DEFAULT_IMPLEMENTATIONS.get(declaredType)) {
+            return null;
+        }
+
+        if(actualType.isArray()) {
+            return toSerializedName(actualType);
+        }
+        String alias = ALIASES.get(actualType);
+        if(alias != null) {
+            return alias;
+        }
+        return actualType.getName();
+    }
+
+    private static Class<?> normalize(Class<?> type) {
+        if(type.isPrimitive()) {
+            return PRIMITIVE_WRAPPERS.get(type);
+        }
+        if(Enum.class.isAssignableFrom(type) && !type.isEnum()) {
+            // Enum constant with a body...
+            return type.getSuperclass();
+        }
+        return type;
+    }
+
+    private static Property[] createProperties(Class<?> type) {
+        List<Property> properties = new ArrayList<Property>();
+        Set<String> names = new HashSet<String>();
+
+        if(isValueType(type) || type.isArray() || Collection.class.isAssignableFrom(type) || Map.class.isAssignableFrom(type)) {
+            return new Property[0];
+        }
+
+        // Subclass properties first, as with XStream.  Hidden superclass fields are qualified by a "defined-in" attribute...
+        Class<?> declaringClass = type;
+        while(declaringClass != null && declaringClass != Object.class) {
+            for(Field field : declaringClass.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+
+                if(Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isSynthetic()) {
+                    continue;
+                }
+                if(!field.isAccessible()) {
+                    field.setAccessible(true);
+                }
+                if(names.add(field.getName())) {
+                    properties.add(new Property(field, null));
+                } else {
+                    properties.add(new Property(field, declaringClass.getName()));
+                }
+            }
+            declaringClass = declaringClass.getSuperclass();
+        }
+
+        return properties.toArray(new Property[properties.size()]);
+    }
+
+    /**
+     * Java object property (field).
+     */
+    static final class Property {
+
+        private final Field field;
+        private final String name;
+        private final String elementName;
+        private final String lowerCaseName;
+        private final String definedIn;
+
+        private Property(Field field, String definedIn) {
+            this.field = field;
+            this.name = field.getName();
+            this.elementName = escapeName(name);
+            this.lowerCaseName = elementName.toLowerCase();
+            this.definedIn = definedIn;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        /**
+         * Get the element name for this property i.e. the {@link #escapeName(String) escaped} field name.
+         * @return The element name.
+         */
+        String getElementName() {
+            return elementName;
+        }
+
+        String getLowerCaseName() {
+            return lowerCaseName;
+        }
+
+        /**
+         * Get the name of the class in which this property is defined, if this property hides
+         * a subclass property of the same name.
+         * @return The defining class name, or null if the property is not hidden.
+         */
+        String getDefinedIn() {
+            return definedIn;
+        }
+
+        Class<?> getType() {
+            return field.getType();
+        }
+
+        Object getValue(Object object) throws IllegalAccessException {
+            return field.get(object);
+        }
+    }
+}
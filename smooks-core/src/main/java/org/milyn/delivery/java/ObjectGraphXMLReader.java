@@ -0,0 +1,547 @@
+/*
+	Milyn - Copyright (C) 2006 - 2010
+
+	This library is free software; you can redistribute it and/or
+	modify it under the terms of the GNU Lesser General Public
+	License (version 2.1) as published by the Free Software
+	Foundation.
+
+	This library is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+	See the GNU Lesser General Public License for more details:
+	http://www.gnu.org/licenses/lgpl.txt
+*/
+package org.milyn.delivery.java;
+
+import com.thoughtworks.xstream.core.util.Base64Encoder;
+import org.milyn.cdr.SmooksConfigurationException;
+import org.milyn.cdr.SmooksResourceConfiguration;
+import org.milyn.cdr.annotation.ConfigParam;
+import org.milyn.container.ApplicationContext;
+import org.milyn.container.ExecutionContext;
+import org.milyn.delivery.ContentDeliveryConfig;
+import org.milyn.delivery.sax.DynamicSAXElementVisitorList;
+import org.milyn.delivery.sax.SAXContentDeliveryConfig;
+import org.milyn.delivery.sax.SAXElementVisitorMap;
+import org.milyn.payload.FilterResult;
+import org.milyn.payload.JavaSource;
+import org.xml.sax.*;
+import org.xml.sax.helpers.AttributesImpl;
+
+import javax.xml.transform.stream.StreamResult;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.net.URL;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.*;
+
+/**
+ * Object graph based {@link JavaXMLReader}.
+ * <p/>
+ * Generates the SAX event stream by walking the source object graph directly, using
+ * cached per class property (field) accessors.  This is the default Java {@link XMLReader} for Smooks.
+ * <p/>
+ * The event stream is compatible with that of the {@link XStreamXMLReader} for JavaBeans, Collections,
+ * Maps, arrays and the common value types (Strings, primitives and their wrappers, BigDecimal,
+ * Dates, Enums etc).  byte arrays are Base64 encoded.  Fields that are static, transient or <code>null</code> are not output.
+ * Collections, Maps and arrays are streamed directly from the source objects.
+ *
+ * <h3>Object References</h3>
+ * Objects that appear more than once in the graph (including cycles) are output once.  Subsequent
+ * occurrences are output as an empty element with a "reference" attribute, containing the relative
+ * path to the first occurrence e.g. <code>&lt;parent reference="../.." /&gt;</code>.
+ *
+ * <h3>Pruning</h3>
+ * Setting the "pruneUnselectedBranches" parameter to "true" stops the reader generating
+ * events for object properties that no configured SAX visitor can target.  This can significantly
+ * reduce the cost of Java to Java transformations that only bind a small part of a large object graph.
+ * <pre>
+ * &lt;reader class="org.milyn.delivery.java.ObjectGraphXMLReader"&gt;
+ *     &lt;params&gt;
+ *         &lt;param name="pruneUnselectedBranches"&gt;true&lt;/param&gt;
+ *     &lt;/params&gt;
+ * &lt;/reader&gt;
+ * </pre>
+ * Pruning is only applied in SAX filtering, and is disabled while any of the following
+ * is the case:
+ * <ul>
+ *  <li>A visitor is targeted at all elements ("*").</li>
+ *  <li>The event stream is being serialized to a {@link StreamResult}.</li>
+ *  <li>An {@link org.milyn.event.ExecutionEventListener} is set on the execution context.</li>
+ *  <li>A dynamic visitor is registered (e.g. by a {@link org.milyn.delivery.DomModelCreator}),
+ *      or an enclosing element is targeted by a {@link org.milyn.delivery.sax.SAXVisitChildren} visitor.</li>
+ * </ul>
+ * A property is only pruned if its element name is not targeted, and the names of all the elements
+ * that could be generated from it can be determined from its declared type and are not targeted.
+ */
+public class ObjectGraphXMLReader implements JavaXMLReader {
+
+    private static final String ENTRY = "entry";
+    private static final String NULL = "null";
+    private static final String CLASS = "class";
+    private static final String DEFINED_IN = "defined-in";
+    private static final String REFERENCE = "reference";
+
+    @ConfigParam(defaultVal = "false")
+    private boolean pruneUnselectedBranches = false;
+
+    private List<Object> sourceObjects;
+    private ExecutionContext executionContext;
+    private ApplicationContext appContext;
+    private ContentHandler contentHandler;
+    private EntityResolver entityResolver;
+    private DTDHandler dtdHandler;
+    private ErrorHandler errorHandler;
+    private Map<String, Boolean> features = new HashMap<String, Boolean>();
+    private Map<String, Object> properties = new HashMap<String, Object>();
+
+    // Per parse state...
+    private final AttributesImpl attributes = new AttributesImpl();
+    private char[] textBuffer = new char[64];
+    private DateFormat dateFormat;
+    private IdentityHashMap<Object, String[]> references;
+    private List<PathElement> path = new ArrayList<PathElement>();
+    private Map<String, SAXElementVisitorMap> visitorConfig;
+    private DynamicSAXElementVisitorList dynamicVisitors;
+    private int childVisitorDepth;
+
+    public void setSourceObjects(List<Object> sourceObjects) throws SmooksConfigurationException {
+        this.sourceObjects = sourceObjects;
+    }
+
+    public void setExecutionContext(ExecutionContext executionContext) {
+        this.executionContext = executionContext;
+        if(executionContext != null) {
+            appContext = executionContext.getContext();
+        }
+    }
+
+    public void parse(InputSource input) throws IOException, SAXException {
+        if(sourceObjects == null) {
+            throw new SAXException("Source Java Objects not set.");
+        }
+        if(contentHandler == null) {
+            throw new SAXException("ContentHandler not set.");
+        }
+
+        visitorConfig = getVisitorConfig();
+        contentHandler.startDocument();
+        for(Object sourceObject : sourceObjects) {
+            // References are resolved per source object...
+            references = new IdentityHashMap<Object, String[]>();
+            path.clear();
+            childVisitorDepth = 0;
+
+            if(sourceObject == null) {
+                startElement(NULL);
+                endElement(NULL);
+            } else {
+                writeObject(JavaClassModel.toElementName(sourceObject.getClass()), sourceObject, Object.class, null);
+            }
+        }
+        contentHandler.endDocument();
+    }
+
+    public void parse(String systemId) throws IOException, SAXException {
+        parse((InputSource) null);
+    }
+
+    private void writeObject(String elementName, Object object, Class<?> declaredType, String definedIn) throws SAXException {
+        Class<?> type = object.getClass();
+
+        // The root element is named by its type, so no class attribute...
+        String classAttribute = (path.isEmpty() ? null : JavaClassModel.toClassAttribute(declaredType, type));
+        if(classAttribute != null) {
+            attributes.addAttribute("", CLASS, CLASS, "CDATA", classAttribute);
+        }
+        if(definedIn != null) {
+            attributes.addAttribute("", DEFINED_IN, DEFINED_IN, "CDATA", definedIn);
+        }
+
+        if(JavaClassModel.isValueType(type)) {
+            startElement(elementName);
+            writeText(toText(object));
+            endElement(elementName);
+            return;
+        }
+
+        String[] referencedPath = references.get(object);
+        if(referencedPath != null) {
+            attributes.addAttribute("", REFERENCE, REFERENCE, "CDATA", toRelativePath(elementName, referencedPath));
+            startElement(elementName);
+            endElement(elementName);
+            return;
+        }
+
+        startElement(elementName);
+        references.put(object, getPath());
+
+        if(type.isArray()) {
+            writeArray(object);
+        } else if(object instanceof Collection) {
+            for(Object item : (Collection<?>) object) {
+                writeItem(item);
+            }
+        } else if(object instanceof Properties) {
+            for(Map.Entry<?, ?> entry : ((Properties) object).entrySet()) {
+                attributes.addAttribute("", "name", "name", "CDATA", String.valueOf(entry.getKey()));
+                attributes.addAttribute("", "value", "value", "CDATA", String.valueOf(entry.getValue()));
+                startElement("property");
+                endElement("property");
+            }
+        } else if(object instanceof Map) {
+            for(Map.Entry<?, ?> entry : ((Map<?, ?>) object).entrySet()) {
+                startElement(ENTRY);
+                writeItem(entry.getKey());
+                writeItem(entry.getValue());
+                endElement(ENTRY);
+            }
+        } else if(object instanceof Calendar) {
+            Calendar calendar = (Calendar) object;
+            writeValue("time", Long.toString(calendar.getTimeInMillis()));
+            writeValue("timezone", calendar.getTimeZone().getID());
+        } else {
+            writeProperties(object, JavaClassModel.getModel(type, appContext));
+        }
+
+        endElement(elementName);
+    }
+
+    private void writeProperties(Object object, JavaClassModel model) throws SAXException {
+        for(JavaClassModel.Property property : model.getProperties()) {
+            Object value;
+
+            try {
+                value = property.getValue(object);
+            } catch (IllegalAccessException e) {
+                throw new SAXException("Unable to read field '" + property.getName() + "' on class '" + model.getType().getName() + "'.", e);
+            }
+
+            if(value != null && !isPruned(property, value)) {
+                writeObject(property.getElementName(), value, property.getType(), property.getDefinedIn());
+            }
+        }
+    }
+
+    private void writeItem(Object item) throws SAXException {
+        if(item == null) {
+            startElement(NULL);
+            endElement(NULL);
+        } else {
+            Class<?> type = item.getClass();
+            writeObject(JavaClassModel.toElementName(type), item, type, null);
+        }
+    }
+
+    private void writeArray(Object array) throws SAXException {
+        Class<?> componentType = array.getClass().getComponentType();
+
+        if(!componentType.isPrimitive()) {
+            for(Object item : (Object[]) array) {
+                writeItem(item);
+            }
+        } else if(componentType == Integer.TYPE) {
+            for(int item : (int[]) array) {
+                writeValue("int", Integer.toString(item));
+            }
+        } else if(componentType == Long.TYPE) {
+            for(long item : (long[]) array) {
+                writeValue("long", Long.toString(item));
+            }
+        } else if(componentType == Double.TYPE) {
+            for(double item : (double[]) array) {
+                writeValue("double", Double.toString(item));
+            }
+        } else {
+            String elementName = JavaClassModel.toElementName(componentType);
+            int length = Array.getLength(array);
+
+            for(int i = 0; i < length; i++) {
+                writeValue(elementName, String.valueOf(Array.get(array, i)));
+            }
+        }
+    }
+
+    private void writeValue(String elementName, String text) throws SAXException {
+        startElement(elementName);
+        writeText(text);
+        endElement(elementName);
+    }
+
+    private void startElement(String elementName) throws SAXException {
+        PathElement parent = (path.isEmpty() ? null : path.get(path.size() - 1));
+        PathElement pathElement = new PathElement(elementName, (parent != null ? parent.nextIndex(elementName) : 1));
+
+        if(visitorConfig != null && hasChildVisitors(elementName, parent == null)) {
+            pathElement.childVisitors = true;
+            childVisitorDepth++;
+        }
+        path.add(pathElement);
+
+        contentHandler.startElement("", elementName, elementName, attributes);
+        attributes.clear();
+    }
+
+    private void endElement(String elementName) throws SAXException {
+        contentHandler.endElement("", elementName, elementName);
+
+        PathElement pathElement = path.remove(path.size() - 1);
+        if(pathElement.childVisitors) {
+            childVisitorDepth--;
+        }
+    }
+
+    private void writeText(String text) throws SAXException {
+        int length = text.length();
+
+        if(length == 0) {
+            return;
+        }
+        if(textBuffer.length < length) {
+            textBuffer = new char[Math.max(length, textBuffer.length * 2)];
+        }
+        text.getChars(0, length, textBuffer, 0);
+        contentHandler.characters(textBuffer, 0, length);
+    }
+
+    private String toText(Object value) {
+        if(value instanceof Enum) {
+            return ((Enum<?>) value).name();
+        } else if(value instanceof Date) {
+            if(value.getClass().getName().startsWith("java.sql.")) {
+                return value.toString();
+            }
+            if(dateFormat == null) {
+                dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.S z");
+            }
+            return dateFormat.format((Date) value);
+        } else if(value instanceof Class) {
+            return ((Class<?>) value).getName();
+        } else if(value instanceof URL) {
+            return ((URL) value).toExternalForm();
+        } else if(value instanceof Currency) {
+            return ((Currency) value).getCurrencyCode();
+        } else if(value instanceof char[]) {
+            return new String((char[]) value);
+        } else if(value instanceof byte[]) {
+            return new Base64Encoder().encode((byte[]) value);
+        }
+        return value.toString();
+    }
+
+    private String[] getPath() {
+        String[] pathSteps = new String[path.size()];
+
+        for(int i = 0; i < pathSteps.length; i++) {
+            pathSteps[i] = path.get(i).toString();
+        }
+
+        return pathSteps;
+    }
+
+    private String toRelativePath(String elementName, String[] referencedPath) {
+        // Relative to the referencing element (not yet on the path)...
+        PathElement parent = path.get(path.size() - 1);
+        String[] currentPath = new String[path.size() + 1];
+        StringBuilder relativePath = new StringBuilder();
+        int commonLength = 0;
+
+        for(int i = 0; i < path.size(); i++) {
+            currentPath[i] = path.get(i).toString();
+        }
+        currentPath[path.size()] = new PathElement(elementName, parent.peekIndex(elementName)).toString();
+
+        while(commonLength < referencedPath.length && commonLength < currentPath.length && referencedPath[commonLength].equals(currentPath[commonLength])) {
+            commonLength++;
+        }
+        for(int i = commonLength; i < currentPath.length; i++) {
+            if(relativePath.length() > 0) {
+                relativePath.append('/');
+            }
+            relativePath.append("..");
+        }
+        for(int i = commonLength; i < referencedPath.length; i++) {
+            relativePath.append('/').append(referencedPath[i]);
+        }
+
+        return relativePath.toString();
+    }
+
+    private Map<String, SAXElementVisitorMap> getVisitorConfig() {
+        if(!pruneUnselectedBranches || executionContext == null) {
+            return null;
+        }
+
+        ContentDeliveryConfig deliveryConfig = executionContext.getDeliveryConfig();
+        if(!(deliveryConfig instanceof SAXContentDeliveryConfig)) {
+            return null;
+        }
+        if(executionContext.getEventListener() != null) {
+            return null;
+        }
+        if(executionContext.isDefaultSerializationOn() && FilterResult.getResult(executionContext, StreamResult.class) != null) {
+            return null;
+        }
+
+        Map<String, SAXElementVisitorMap> optimizedVisitorConfig = ((SAXContentDeliveryConfig) deliveryConfig).getOptimizedVisitorConfig();
+        if(optimizedVisitorConfig.containsKey("*") || optimizedVisitorConfig.containsKey("**")) {
+            return null;
+        }
+
+        return optimizedVisitorConfig;
+    }
+
+    private boolean hasChildVisitors(String elementName, boolean isRoot) {
+        SAXElementVisitorMap elementConfig = visitorConfig.get(elementName.toLowerCase());
+
+        if(elementConfig != null && elementConfig.getChildVisitors() != null && !elementConfig.getChildVisitors().isEmpty()) {
+            return true;
+        }
+        if(isRoot) {
+            elementConfig = visitorConfig.get(SmooksResourceConfiguration.DOCUMENT_FRAGMENT_SELECTOR);
+            return (elementConfig != null && elementConfig.getChildVisitors() != null && !elementConfig.getChildVisitors().isEmpty());
+        }
+
+        return false;
+    }
+
+    private boolean isPruned(JavaClassModel.Property property, Object value) {
+        if(visitorConfig == null || childVisitorDepth > 0 || visitorConfig.containsKey(property.getLowerCaseName())) {
+            return false;
+        }
+
+        if(dynamicVisitors == null) {
+            dynamicVisitors = DynamicSAXElementVisitorList.getList(executionContext);
+        }
+        if(dynamicVisitors != null && (!dynamicVisitors.getVisitBefores().isEmpty() || !dynamicVisitors.getChildVisitors().isEmpty() || !dynamicVisitors.getVisitAfters().isEmpty())) {
+            return false;
+        }
+
+        Class<?> type = value.getClass();
+        if(JavaClassModel.isValueType(type)) {
+            return true;
+        }
+        if(type.isArray() || value instanceof Collection || value instanceof Map || value instanceof Calendar) {
+            return false;
+        }
+
+        Set<String> elementNames = JavaClassModel.getModel(type, appContext).getElementNames(appContext);
+        if(elementNames == null) {
+            return false;
+        }
+        for(String elementName : elementNames) {
+            if(visitorConfig.containsKey(elementName)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    public boolean getFeature(String name) throws SAXNotRecognizedException, SAXNotSupportedException {
+        Boolean value = features.get(name);
+        return (value != null && value);
+    }
+
+    public void setFeature(String name, boolean value) throws SAXNotRecognizedException, SAXNotSupportedException {
+        // Need to ignore some features....
+        if(name.equals(JavaSource.FEATURE_GENERATE_EVENT_STREAM)) {
+            return;
+        }
+        features.put(name, value);
+    }
+
+    public Object getProperty(String name) throws SAXNotRecognizedException, SAXNotSupportedException {
+        return properties.get(name);
+    }
+
+    public void setProperty(String name, Object value) throws SAXNotRecognizedException, SAXNotSupportedException {
+        properties.put(name, value);
+    }
+
+    public void setEntityResolver(EntityResolver resolver) {
+        this.entityResolver = resolver;
+    }
+
+    public EntityResolver getEntityResolver() {
+        return entityResolver;
+    }
+
+    public void setDTDHandler(DTDHandler handler) {
+        this.dtdHandler = handler;
+    }
+
+    public DTDHandler getDTDHandler() {
+        return dtdHandler;
+    }
+
+    public void setContentHandler(ContentHandler handler) {
+        this.contentHandler = handler;
+    }
+
+    public ContentHandler getContentHandler() {
+        return contentHandler;
+    }
+
+    public void setErrorHandler(ErrorHandler handler) {
+        this.errorHandler = handler;
+    }
+
+    public ErrorHandler getErrorHandler() {
+        return errorHandler;
+    }
+
+    /**
+     * Element on the current element path.
+     */
+    private static class PathElement {
+
+        private final String name;
+        private final int index;
+        private Map<String, Integer> childCounts;
+        private boolean childVisitors;
+        private String step;
+
+        private PathElement(String name, int index) {
+            this.name = name;
+            this.index = index;
+        }
+
+        private int nextIndex(String childName) {
+            int index = peekIndex(childName);
+
+            if(childCounts == null) {
+                childCounts = new HashMap<String, Integer>();
+            }
+            childCounts.put(childName, index);
+
+            return index;
+        }
+
+        private int peekIndex(String childName) {
+            if(childCounts == null) {
+                return 1;
+            }
+
+            Integer count = childCounts.get(childName);
+            return (count != null ? count + 1 : 1);
+        }
+
+        /**
+         * Get the reference path step for this element.
+         * <p/>
+         * As with XStream, reference paths are made up of the unescaped element names.
+         */
+        @Override
+        public String toString() {
+            if(step == null) {
+                String unescapedName = JavaClassModel.unescapeName(name);
+                step = (index == 1 ? unescapedName : unescapedName + "[" + index + "]");
+            }
+            return step;
+        }
+    }
+}
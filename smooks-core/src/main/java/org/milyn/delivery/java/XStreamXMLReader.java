@@ -29,7 +29,8 @@ import java.util.List;
 /**
  * XStream based {@link JavaXMLReader}.
  * <p/>
- * This is the default Java {@link XMLReader} for Smooks.
+ * The default Java {@link XMLReader} for Smooks is the {@link ObjectGraphXMLReader}.  This
+ * reader can be configured where the full XStream converter set is required.
  *
  * @author <a href="mailto:tom.fennelly@gmail.com">tom.fennelly@gmail.com</a>
  */
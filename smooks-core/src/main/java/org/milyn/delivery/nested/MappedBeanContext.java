@@ -0,0 +1,250 @@
+/*
+	Milyn - Copyright (C) 2006 - 2010
+
+	This library is free software; you can redistribute it and/or
+	modify it under the terms of the GNU Lesser General Public
+	License (version 2.1) as published by the Free Software
+	Foundation.
+
+	This library is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+	See the GNU Lesser General Public License for more details:
+	http://www.gnu.org/licenses/lgpl.txt
+*/
+package org.milyn.delivery.nested;
+
+import org.milyn.assertion.AssertArgument;
+import org.milyn.container.ExecutionContext;
+import org.milyn.delivery.Fragment;
+import org.milyn.javabean.context.BeanContext;
+import org.milyn.javabean.lifecycle.BeanContextLifecycleEvent;
+import org.milyn.javabean.lifecycle.BeanContextLifecycleObserver;
+import org.milyn.javabean.lifecycle.BeanLifecycle;
+import org.milyn.javabean.repository.BeanId;
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Nested execution {@link BeanContext}.
+ * <p/>
+ * Beans whose ids are mapped to the parent execution (the "mapBeans") are stored directly on
+ * the parent {@link BeanContext}, and the lifecycle events for them are fired on the parent
+ * {@link BeanContext} as well as on this context.  All other beans are stored on the nested
+ * execution's local {@link BeanContext}.
+ *
+ * @see NestedExecutionVisitor
+ */
+class MappedBeanContext implements BeanContext {
+
+    private ExecutionContext executionContext;
+    private BeanContext localContext;
+    private ExecutionContext parentExecutionContext;
+    private BeanContext parentContext;
+    private Map<String, BeanId> parentBeanIds;
+    private Map<String, Object> beanMap = new MappedBeanMap();
+
+    /**
+     * Package private constructor.
+     * @param executionContext The nested execution context.
+     * @param localContext The nested execution's local bean context.
+     * @param parentExecutionContext The parent execution context.
+     * @param parentBeanIds The mapped bean ids, as registered on the parent, keyed by bean id name.
+     */
+    MappedBeanContext(ExecutionContext executionContext, BeanContext localContext, ExecutionContext parentExecutionContext, Map<String, BeanId> parentBeanIds) {
+        this.executionContext = executionContext;
+        this.localContext = localContext;
+        this.parentExecutionContext = parentExecutionContext;
+        this.parentContext = parentExecutionContext.getBeanContext();
+        this.parentBeanIds = parentBeanIds;
+    }
+
+    public void addBean(BeanId beanId, Object bean) {
+        addBean(beanId, bean, null);
+    }
+
+    public void addBean(BeanId beanId, Object bean, Fragment source) {
+        AssertArgument.isNotNull(beanId, "beanId");
+
+        BeanId parentBeanId = parentBeanIds.get(beanId.getName());
+        if(parentBeanId != null) {
+            if(!parentContext.containsBean(parentBeanId)) {
+                // First add of the bean for the current parent fragment.  The matching END_FRAGMENT
+                // is fired by the NestedExecutionVisitor, when it removes the bean again...
+                parentContext.notifyObservers(new BeanContextLifecycleEvent(parentExecutionContext, source, BeanLifecycle.START_FRAGMENT, parentBeanId, bean));
+            }
+            parentContext.addBean(parentBeanId, bean, source);
+            localContext.notifyObservers(new BeanContextLifecycleEvent(executionContext, source, BeanLifecycle.ADD, beanId, bean));
+        } else {
+            localContext.addBean(beanId, bean, source);
+        }
+    }
+
+    public void addBean(String beanId, Object bean) {
+        addBean(beanId, bean, null);
+    }
+
+    public void addBean(String beanId, Object bean, Fragment source) {
+        AssertArgument.isNotNull(beanId, "beanId");
+
+        addBean(getBeanId(beanId), bean, source);
+    }
+
+    public BeanId getBeanId(String beanId) {
+        return localContext.getBeanId(beanId);
+    }
+
+    public boolean containsBean(BeanId beanId) {
+        AssertArgument.isNotNull(beanId, "beanId");
+
+        BeanId parentBeanId = parentBeanIds.get(beanId.getName());
+        if(parentBeanId != null) {
+            return parentContext.containsBean(parentBeanId);
+        }
+        return localContext.containsBean(beanId);
+    }
+
+    public Object getBean(BeanId beanId) {
+        AssertArgument.isNotNull(beanId, "beanId");
+
+        BeanId parentBeanId = parentBeanIds.get(beanId.getName());
+        if(parentBeanId != null) {
+            return parentContext.getBean(parentBeanId);
+        }
+        return localContext.getBean(beanId);
+    }
+
+    public Object getBean(String beanId) {
+        BeanId parentBeanId = parentBeanIds.get(beanId);
+        if(parentBeanId != null) {
+            return parentContext.getBean(parentBeanId);
+        }
+        return localContext.getBean(beanId);
+    }
+
+    public <T> T getBean(Class<T> beanType) {
+        T bean = localContext.getBean(beanType);
+
+        if(bean == null) {
+            for(BeanId parentBeanId : parentBeanIds.values()) {
+                Object parentBean = parentContext.getBean(parentBeanId);
+                if(beanType.isInstance(parentBean)) {
+                    return beanType.cast(parentBean);
+                }
+            }
+        }
+
+        return bean;
+    }
+
+    public void changeBean(BeanId beanId, Object bean, Fragment source) {
+        AssertArgument.isNotNull(beanId, "beanId");
+
+        BeanId parentBeanId = parentBeanIds.get(beanId.getName());
+        if(parentBeanId != null) {
+            parentContext.changeBean(parentBeanId, bean, source);
+            localContext.notifyObservers(new BeanContextLifecycleEvent(executionContext, source, BeanLifecycle.CHANGE, beanId, bean));
+        } else {
+            localContext.changeBean(beanId, bean, source);
+        }
+    }
+
+    public Object removeBean(BeanId beanId, Fragment source) {
+        AssertArgument.isNotNull(beanId, "beanId");
+
+        BeanId parentBeanId = parentBeanIds.get(beanId.getName());
+        if(parentBeanId != null) {
+            Object bean = parentContext.removeBean(parentBeanId, source);
+            localContext.notifyObservers(new BeanContextLifecycleEvent(executionContext, source, BeanLifecycle.REMOVE, beanId, null));
+            return bean;
+        }
+        return localContext.removeBean(beanId, source);
+    }
+
+    public Object removeBean(String beanId, Fragment source) {
+        return removeBean(getBeanId(beanId), source);
+    }
+
+    /**
+     * Clear the local bean context.
+     * <p/>
+     * Mapped beans on the parent bean context are not cleared.
+     */
+    public void clear() {
+        localContext.clear();
+    }
+
+    public void addObserver(BeanContextLifecycleObserver observer) {
+        localContext.addObserver(observer);
+    }
+
+    public void notifyObservers(BeanContextLifecycleEvent event) {
+        BeanId parentBeanId = parentBeanIds.get(event.getBeanId().getName());
+
+        if(parentBeanId != null) {
+            // Fire the event on the parent, as though it was fired by the parent execution...
+            parentContext.notifyObservers(new BeanContextLifecycleEvent(parentExecutionContext, event.getSource(), event.getLifecycle(), parentBeanId, event.getBean()));
+        }
+        localContext.notifyObservers(event);
+    }
+
+    public void removeObserver(BeanContextLifecycleObserver observer) {
+        localContext.removeObserver(observer);
+    }
+
+    public Map<String, Object> getBeanMap() {
+        return beanMap;
+    }
+
+    public void setBeanInContext(BeanId beanId, boolean inContext) {
+        BeanId parentBeanId = parentBeanIds.get(beanId.getName());
+        if(parentBeanId != null) {
+            parentContext.setBeanInContext(parentBeanId, inContext);
+        } else {
+            localContext.setBeanInContext(beanId, inContext);
+        }
+    }
+
+    public BeanContext newSubContext(ExecutionContext executionContext) {
+        return new MappedBeanContext(executionContext, localContext.newSubContext(executionContext), parentExecutionContext, parentBeanIds);
+    }
+
+    public String toString() {
+        return localContext.toString();
+    }
+
+    /**
+     * Bean map view.  Mapped beans are read from the parent bean context.
+     */
+    private class MappedBeanMap extends AbstractMap<String, Object> {
+
+        public Object get(Object key) {
+            return MappedBeanContext.this.getBean((String) key);
+        }
+
+        public boolean containsKey(Object key) {
+            return parentBeanIds.containsKey(key) || localContext.getBeanMap().containsKey(key);
+        }
+
+        public Object put(String key, Object value) {
+            Object previous = get(key);
+            addBean(key, value);
+            return previous;
+        }
+
+        public Set<Entry<String, Object>> entrySet() {
+            Map<String, Object> mergedMap = new LinkedHashMap<String, Object>(localContext.getBeanMap());
+
+            for(BeanId parentBeanId : parentBeanIds.values()) {
+                mergedMap.put(parentBeanId.getName(), parentContext.getBean(parentBeanId));
+            }
+
+            return Collections.unmodifiableMap(mergedMap).entrySet();
+        }
+    }
+}
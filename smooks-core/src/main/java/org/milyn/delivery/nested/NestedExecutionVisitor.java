@@ -41,11 +41,24 @@ import org.xml.sax.XMLReader;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
  * Nested Smooks execution visitor.
+ * <p/>
+ * By default, a new nested {@link ExecutionContext} and content handler are created for each
+ * visited element, and the "mapBeans" are copied onto the parent bean context at the end of the
+ * fragment.
+ * <p/>
+ * In "reuseExecution" mode, a single nested {@link ExecutionContext} and content handler are
+ * created per parent execution and reset between fragments.  The "mapBeans" are stored directly on the
+ * parent bean context (so their lifecycle events are fired on the parent as they happen), and
+ * are removed from the parent at the end of the fragment.  Note that in this mode, the nested
+ * {@link ExecutionContext} attributes are retained across fragments, so the nested visitors must
+ * not depend on a clean {@link ExecutionContext} per fragment.
  *
  * @author <a href="mailto:tom.fennelly@gmail.com">tom.fennelly@gmail.com</a>
  */
@@ -61,6 +74,10 @@ public class NestedExecutionVisitor implements SAXVisitBefore, VisitLifecycleCle
     @ConfigParam(defaultVal = "true")
     private boolean inheritBeanContext;
 
+    @ConfigParam(defaultVal = "false")
+    private boolean reuseExecution;
+    private Map<String, BeanId> mapBeanIdsByName = new LinkedHashMap<String, BeanId>();
+
     @AppContext
     private ApplicationContext applicationContext;
 
@@ -74,10 +91,17 @@ public class NestedExecutionVisitor implements SAXVisitBefore, VisitLifecycleCle
         this.smooksInstance = smooksInstance;
     }
 
+    public void setReuseExecution(boolean reuseExecution) {
+        this.reuseExecution = reuseExecution;
+    }
+
     @Initialize
     public void preRegBeanIds() {
         for(String preRegBeanId : mapBeans) {
-            mapBeanIds.add(applicationContext.getBeanIdStore().register(preRegBeanId));
+            BeanId beanId = applicationContext.getBeanIdStore().register(preRegBeanId);
+
+            mapBeanIds.add(beanId);
+            mapBeanIdsByName.put(preRegBeanId, beanId);
         }
     }
 
@@ -89,6 +113,11 @@ public class NestedExecutionVisitor implements SAXVisitBefore, VisitLifecycleCle
     }
 
     public void visitBefore(SAXElement element, ExecutionContext executionContext) throws SmooksException, IOException {
+        if(reuseExecution) {
+            visitBeforeReusable(element, executionContext);
+            return;
+        }
+
         Smooks smooks = getSmooksInstance();
         ExecutionContext nestedExecutionContext = smooks.createExecutionContext();
 
@@ -117,6 +146,43 @@ public class NestedExecutionVisitor implements SAXVisitBefore, VisitLifecycleCle
         // the content handler and redirect the reader events to it...
     }
 
+    private void visitBeforeReusable(SAXElement element, ExecutionContext executionContext) {
+        SmooksContentHandler parentContentHandler = SmooksContentHandler.getHandler(executionContext);
+
+        if(parentContentHandler.getNestedContentHandler() != null) {
+            throw new SmooksException("Illegal use of more than one nested content handler fired on the same element.");
+        }
+
+        ReusableExecution reusableExecution = (ReusableExecution) executionContext.getAttribute(this);
+        ExecutionContext nestedExecutionContext;
+        SAXHandler nestedContentHandler;
+
+        if(reusableExecution == null) {
+            // First fragment for this parent execution...
+            nestedExecutionContext = getSmooksInstance().createExecutionContext();
+            nestedExecutionContext.setEventListener(executionContext.getEventListener());
+            nestedExecutionContext.setBeanContext(new MappedBeanContext(nestedExecutionContext, nestedExecutionContext.getBeanContext(), executionContext, mapBeanIdsByName));
+            nestedContentHandler = new SAXHandler(nestedExecutionContext, element.getWriter(this), parentContentHandler);
+
+            reusableExecution = new ReusableExecution(nestedExecutionContext, nestedContentHandler);
+            executionContext.setAttribute(this, reusableExecution);
+        } else {
+            nestedExecutionContext = reusableExecution.executionContext;
+            nestedContentHandler = reusableExecution.contentHandler;
+            nestedContentHandler.reset(element.getWriter(this));
+            DynamicSAXElementVisitorList.getList(nestedExecutionContext).clear();
+            AbstractParser.detachXMLReader(nestedExecutionContext);
+        }
+
+        DynamicSAXElementVisitorList.propogateDynamicVisitors(executionContext, nestedExecutionContext);
+
+        XMLReader xmlReader = AbstractParser.getXMLReader(executionContext);
+        AbstractParser.attachXMLReader(xmlReader, nestedExecutionContext);
+        xmlReader.setContentHandler(nestedContentHandler);
+
+        executionContext.setAttribute(NestedExecutionVisitor.class, nestedExecutionContext);
+    }
+
     public Set<? extends Object> getProducts() {
         return CollectionsUtil.toSet(mapBeans);
     }
@@ -141,7 +207,22 @@ public class NestedExecutionVisitor implements SAXVisitBefore, VisitLifecycleCle
         ExecutionContext nestedExecutionContext = (ExecutionContext) executionContext.getAttribute(NestedExecutionVisitor.class);
 
         try {
-            if(nestedExecutionContext != null) {
+            if(nestedExecutionContext != null && reuseExecution) {
+                BeanContext parentBeanContext = executionContext.getBeanContext();
+
+                // The mapped beans were added directly to the parent context (firing the start events).
+                // Fire the end events, remove them again and clear the nested beans, ready for the
+                // next fragment...
+                for(BeanId beanId : mapBeanIds) {
+                    Object bean = parentBeanContext.getBean(beanId);
+
+                    if(bean != null) {
+                        parentBeanContext.notifyObservers(new BeanContextLifecycleEvent(executionContext, null, BeanLifecycle.END_FRAGMENT, beanId, bean));
+                        parentBeanContext.removeBean(beanId, null);
+                    }
+                }
+                nestedExecutionContext.getBeanContext().clear();
+            } else if(nestedExecutionContext != null) {
                 BeanContext parentBeanContext = executionContext.getBeanContext();
                 BeanContext nestedBeanContext = nestedExecutionContext.getBeanContext();
 
@@ -160,4 +241,18 @@ public class NestedExecutionVisitor implements SAXVisitBefore, VisitLifecycleCle
             executionContext.removeAttribute(NestedExecutionVisitor.class);            
         }
     }
+
+    /**
+     * Nested execution reused across the fragments of a parent execution.
+     */
+    private static class ReusableExecution {
+
+        private ExecutionContext executionContext;
+        private SAXHandler contentHandler;
+
+        private ReusableExecution(ExecutionContext executionContext, SAXHandler contentHandler) {
+            this.executionContext = executionContext;
+            this.contentHandler = contentHandler;
+        }
+    }
 }
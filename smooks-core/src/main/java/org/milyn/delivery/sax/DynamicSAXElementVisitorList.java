@@ -47,6 +47,12 @@ public class DynamicSAXElementVisitorList {
     public List<SAXVisitAfter> getVisitAfters() {
         return visitAfters;
     }
+
+    public void clear() {
+        visitBefores.clear();
+        childVisitors.clear();
+        visitAfters.clear();
+    }
     
     public static DynamicSAXElementVisitorList getList(ExecutionContext executionContext) {
         return (DynamicSAXElementVisitorList) executionContext.getAttribute(DynamicSAXElementVisitorList.class);
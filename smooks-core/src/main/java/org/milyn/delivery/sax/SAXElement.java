@@ -265,6 +265,46 @@ public class SAXElement {
         return accumulatedText;
     }
 
+    /**
+     * Get the {@link SAXText} objects associated with this {@link SAXElement},
+     * as an {@link #accumulateText() accumulated} {@link CharSequence}.
+     * <p/>
+     * Same content as {@link #getTextContent()}, but avoids creating a {@link String} (unless
+     * one has already been created).  The returned {@link CharSequence} may be a buffer that is reused
+     * by this {@link SAXElement} instance, so it must not be retained.  Use {@link #getTextContent()}
+     * if the text needs to be retained.
+     *
+     * @return The {@link SAXText} objects associated with this {@link SAXElement},
+     * as an {@link #accumulateText() accumulated} {@link CharSequence}.
+     * @throws SmooksException This {@link SAXElement} instance does not have
+     * {@link #accumulateText() text accumulation} turned on.
+     * @see #getTextContent()
+     */
+    public CharSequence getTextContentAsCharSequence() throws SmooksException {
+        if(text == null) {
+            throw new SmooksException("Illegal call to getTextContentAsCharSequence().  SAXElement instance not accumulating SAXText Objects.  You must call SAXElement.accumulateText(), or annotate the Visitor implementation class with the @TextConsumer annotation.");
+        }
+
+        if(accumulatedText != null) {
+            return accumulatedText;
+        }
+
+        if(textAccumulator == null) {
+            textAccumulator = new StringWriter();
+        }
+
+        textAccumulator.getBuffer().setLength(0);
+        for(SAXText textObj : text) {
+            try {
+                textObj.toWriter(textAccumulator);
+            } catch (IOException e) {
+                throw new RuntimeException("Unexpected IOException.", e);
+            }
+        }
+
+        return textAccumulator.getBuffer();
+    }
+
     /**
      * Get the writer to which this element should be writen to.
      * <p/>
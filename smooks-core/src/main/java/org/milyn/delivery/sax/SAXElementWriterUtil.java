@@ -26,27 +26,36 @@ import java.io.Writer;
 
 /**
  * {@link SAXElement} XML writing/serialization utility class.
+ * <p/>
+ * Writing to a {@link UTF8XMLWriter} goes through its pre-encoded element names and table
+ * driven escaping.
  * 
  * @author <a href="mailto:tom.fennelly@gmail.com">tom.fennelly@gmail.com</a>
  */
 public class SAXElementWriterUtil {
 
     public static void writeEmptyElement(SAXElement element, Writer writer, boolean encodeSpecialChars) throws IOException {
-        if(writer != null) {
+        if(writer instanceof UTF8XMLWriter) {
+            ((UTF8XMLWriter) writer).writeStartElement(element.getName(), element.getAttributes(), encodeSpecialChars, true);
+        } else if(writer != null) {
             writeUnclosedElement(element, writer, encodeSpecialChars);
             writer.write(" />");
         }
     }
 
     public static void writeStartElement(SAXElement element, Writer writer, boolean encodeSpecialChars) throws IOException {
-        if(writer != null) {
+        if(writer instanceof UTF8XMLWriter) {
+            ((UTF8XMLWriter) writer).writeStartElement(element.getName(), element.getAttributes(), encodeSpecialChars, false);
+        } else if(writer != null) {
             writeUnclosedElement(element, writer, encodeSpecialChars);
             writer.write(">");
         }
     }
 
     public static void writeEndElement(SAXElement element, Writer writer) throws IOException {
-        if(writer != null) {
+        if(writer instanceof UTF8XMLWriter) {
+            ((UTF8XMLWriter) writer).writeEndElement(element.getName());
+        } else if(writer != null) {
             QName name = element.getName();
             String prefix = name.getPrefix();
 
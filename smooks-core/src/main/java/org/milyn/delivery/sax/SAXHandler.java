@@ -123,6 +123,19 @@ public class SAXHandler extends SmooksContentHandler {
     public void cleanup() {
     }
 
+    /**
+     * Reset this (nested) handler so it can be reused to process another fragment.
+     * @param writer The writer for the next fragment.
+     */
+    public void reset(Writer writer) {
+        this.writer = writer;
+        defaultSerializationOn = execContext.isDefaultSerializationOn() && !(writer instanceof NullWriter);
+        currentProcessor = null;
+        currentTextType = TextType.TEXT;
+        cdataNodeBuilder.setLength(0);
+        reset();
+    }
+
     public void startElement(StartElementEvent startEvent) throws SAXException {
         WriterManagedSAXElement element;
         boolean isRoot = (currentProcessor == null);
@@ -157,7 +157,9 @@ public class SAXText {
     public void toWriter(Writer writer, boolean encodeSpecialChars) throws IOException {
         if(writer != null) {
             if(type == TextType.TEXT) {
-                if(encodeSpecialChars) {
+                if(writer instanceof UTF8XMLWriter) {
+                    ((UTF8XMLWriter) writer).writeText(characters, offset, length, encodeSpecialChars);
+                } else if(encodeSpecialChars) {
                     XmlUtil.encodeTextValue(characters, offset, length, writer);
                 } else {
                     writer.write(characters, offset, length);
@@ -0,0 +1,404 @@
+/*
+	Milyn - Copyright (C) 2006 - 2010
+
+	This library is free software; you can redistribute it and/or
+	modify it under the terms of the GNU Lesser General Public
+	License (version 2.1) as published by the Free Software
+	Foundation.
+
+	This library is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+	See the GNU Lesser General Public License for more details:
+	http://www.gnu.org/licenses/lgpl.txt
+*/
+package org.milyn.delivery.sax;
+
+import org.milyn.assertion.AssertArgument;
+import org.xml.sax.Attributes;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.QName;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * UTF-8 XML {@link Writer}.
+ * <p/>
+ * Encodes straight into a byte buffer that is written to the target {@link OutputStream} or
+ * {@link WritableByteChannel} in large chunks.  On top of the standard {@link Writer} methods, it
+ * provides table driven escaping of text and attribute values ({@link #writeText(char[], int, int, boolean)},
+ * {@link #writeStartElement(QName, Attributes, boolean, boolean)}) and writes element names from
+ * pre-encoded bytes cached per {@link QName}.
+ * <p/>
+ * Used by the SAX filter for {@link javax.xml.transform.stream.StreamResult StreamResult} output streams when the
+ * content encoding is UTF-8.  {@link SAXElementWriterUtil} and {@link SAXText} use the XML specific methods
+ * when writing to an instance of this class.
+ * <p/>
+ * Unpaired surrogate chars are written as '?' (same as {@link java.io.OutputStreamWriter}).  Not thread safe.
+ *
+ * @see SAXElementWriterUtil
+ */
+public class UTF8XMLWriter extends Writer {
+
+    private static final int BUFFER_SIZE = 32 * 1024;
+    private static final int MAX_CACHED_NAMES = 512;
+    private static final int NO_SURROGATE = -1;
+
+    private static final byte[][] TEXT_ESCAPES = new byte[128][];
+    private static final byte[][] ATTRIBUTE_ESCAPES = new byte[128][];
+
+    static {
+        TEXT_ESCAPES['<'] = ATTRIBUTE_ESCAPES['<'] = toBytes("&lt;");
+        TEXT_ESCAPES['>'] = ATTRIBUTE_ESCAPES['>'] = toBytes("&gt;");
+        TEXT_ESCAPES['&'] = ATTRIBUTE_ESCAPES['&'] = toBytes("&amp;");
+        ATTRIBUTE_ESCAPES['\''] = toBytes("&apos;");
+        ATTRIBUTE_ESCAPES['"'] = toBytes("&quot;");
+    }
+
+    private OutputStream outputStream;
+    private WritableByteChannel channel;
+    private ByteBuffer channelBuffer;
+
+    private byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+    private char[] scratch = new char[256];
+    private int pendingHighSurrogate = NO_SURROGATE;
+    private Map<QName, EncodedName> names = new HashMap<QName, EncodedName>();
+
+    /**
+     * Public constructor.
+     * @param outputStream The target output stream.  Does not need to be buffered.
+     */
+    public UTF8XMLWriter(OutputStream outputStream) {
+        AssertArgument.isNotNull(outputStream, "outputStream");
+        this.outputStream = outputStream;
+    }
+
+    /**
+     * Public constructor.
+     * @param channel The target channel.
+     */
+    public UTF8XMLWriter(WritableByteChannel channel) {
+        AssertArgument.isNotNull(channel, "channel");
+        this.channel = channel;
+        this.channelBuffer = ByteBuffer.wrap(buffer);
+    }
+
+    /**
+     * Is the supplied encoding name UTF-8.
+     * @param encoding The encoding name.
+     * @return True if the encoding is UTF-8, otherwise false.
+     */
+    public static boolean isUTF8(String encoding) {
+        return "UTF-8".equalsIgnoreCase(encoding) || "UTF8".equalsIgnoreCase(encoding);
+    }
+
+    /**
+     * Write an element start tag.
+     * @param name The element name.
+     * @param attributes The element attributes.  Can be null.
+     * @param encodeSpecialChars Encode special XML characters in the attribute values.
+     * @param empty Write an empty element (i.e. "&lt;a /&gt;").
+     * @throws IOException Write exception.
+     */
+    public void writeStartElement(QName name, Attributes attributes, boolean encodeSpecialChars, boolean empty) throws IOException {
+        writeBytes(getEncodedName(name).startTag);
+        if(attributes != null) {
+            writeAttributes(attributes, encodeSpecialChars);
+        }
+        if(empty) {
+            ensureCapacity(3);
+            buffer[position++] = ' ';
+            buffer[position++] = '/';
+            buffer[position++] = '>';
+        } else {
+            ensureCapacity(1);
+            buffer[position++] = '>';
+        }
+    }
+
+    /**
+     * Write an element end tag.
+     * @param name The element name.
+     * @throws IOException Write exception.
+     */
+    public void writeEndElement(QName name) throws IOException {
+        writeBytes(getEncodedName(name).endTag);
+    }
+
+    /**
+     * Write text.
+     * @param characters The text character buffer.
+     * @param offset The text offset.
+     * @param length The text length.
+     * @param encodeSpecialChars Encode special XML characters ('&lt;', '&gt;' and '&amp;').
+     * @throws IOException Write exception.
+     */
+    public void writeText(char[] characters, int offset, int length, boolean encodeSpecialChars) throws IOException {
+        encode(characters, offset, length, (encodeSpecialChars ? TEXT_ESCAPES : null));
+    }
+
+    public void write(int c) throws IOException {
+        scratch[0] = (char) c;
+        encode(scratch, 0, 1, null);
+    }
+
+    public void write(char[] chars, int offset, int length) throws IOException {
+        encode(chars, offset, length, null);
+    }
+
+    public void write(String string) throws IOException {
+        write(string, 0, string.length());
+    }
+
+    public void write(String string, int offset, int length) throws IOException {
+        encode(string, offset, length, null);
+    }
+
+    public void flush() throws IOException {
+        flushBuffer();
+        if(outputStream != null) {
+            outputStream.flush();
+        }
+    }
+
+    public void close() throws IOException {
+        try {
+            ensureCapacity(0);
+            flushBuffer();
+        } finally {
+            if(outputStream != null) {
+                outputStream.close();
+            } else {
+                channel.close();
+            }
+        }
+    }
+
+    private void writeAttributes(Attributes attributes, boolean encodeSpecialChars) throws IOException {
+        int attribCount = attributes.getLength();
+
+        for(int i = 0; i < attribCount; i++) {
+            String attQName = attributes.getQName(i);
+            String attValue = attributes.getValue(i);
+
+            ensureCapacity(1);
+            buffer[position++] = ' ';
+            if(attQName != null && attQName.length() > 0) {
+                encode(attQName, 0, attQName.length(), null);
+            } else {
+                String localName = attributes.getLocalName(i);
+                encode(localName, 0, localName.length(), null);
+            }
+
+            byte quote = '"';
+            if(!encodeSpecialChars && attValue.indexOf('"') != -1) {
+                quote = '\'';
+            }
+            ensureCapacity(2);
+            buffer[position++] = '=';
+            buffer[position++] = quote;
+            encode(attValue, 0, attValue.length(), (encodeSpecialChars ? ATTRIBUTE_ESCAPES : null));
+            ensureCapacity(1);
+            buffer[position++] = quote;
+        }
+    }
+
+    private EncodedName getEncodedName(QName name) {
+        EncodedName encodedName = names.get(name);
+
+        // QName equality does not include the prefix...
+        if(encodedName == null || !encodedName.prefix.equals(name.getPrefix())) {
+            if(names.size() == MAX_CACHED_NAMES) {
+                names.clear();
+            }
+            encodedName = new EncodedName(name);
+            names.put(name, encodedName);
+        }
+
+        return encodedName;
+    }
+
+    private void encode(String string, int offset, int length, byte[][] escapes) throws IOException {
+        while(length > 0) {
+            int count = Math.min(length, scratch.length);
+
+            string.getChars(offset, offset + count, scratch, 0);
+            encode(scratch, 0, count, escapes);
+            offset += count;
+            length -= count;
+        }
+    }
+
+    private void encode(char[] chars, int offset, int length, byte[][] escapes) throws IOException {
+        byte[] buffer = this.buffer;
+        int position = this.position;
+        int highSurrogate = pendingHighSurrogate;
+        int end = offset + length;
+
+        // Tracked locally until the end of the write...
+        pendingHighSurrogate = NO_SURROGATE;
+        for(int i = offset; i < end; i++) {
+            char c = chars[i];
+
+            if(position + 4 > buffer.length) {
+                this.position = position;
+                flushBuffer();
+                position = 0;
+            }
+
+            if(c < 0x80 && highSurrogate == NO_SURROGATE) {
+                if(escapes != null && escapes[c] != null) {
+                    this.position = position;
+                    writeBytes(escapes[c]);
+                    position = this.position;
+                } else {
+                    buffer[position++] = (byte) c;
+                }
+            } else if(highSurrogate != NO_SURROGATE) {
+                if(Character.isLowSurrogate(c)) {
+                    int codePoint = Character.toCodePoint((char) highSurrogate, c);
+
+                    buffer[position++] = (byte) (0xF0 | (codePoint >> 18));
+                    buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                    buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                    buffer[position++] = (byte) (0x80 | (codePoint & 0x3F));
+                } else {
+                    // Unpaired high surrogate.  Reprocess the current char...
+                    buffer[position++] = '?';
+                    i--;
+                }
+                highSurrogate = NO_SURROGATE;
+            } else if(c < 0x800) {
+                buffer[position++] = (byte) (0xC0 | (c >> 6));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            } else if(Character.isHighSurrogate(c)) {
+                // May be paired with the first char of the next write...
+                highSurrogate = c;
+            } else if(Character.isLowSurrogate(c)) {
+                buffer[position++] = '?';
+            } else {
+                buffer[position++] = (byte) (0xE0 | (c >> 12));
+                buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+
+        this.position = position;
+        this.pendingHighSurrogate = highSurrogate;
+    }
+
+    private void writeBytes(byte[] bytes) throws IOException {
+        ensureCapacity(Math.min(bytes.length, buffer.length - 1));
+        if(bytes.length > buffer.length - position) {
+            flushBuffer();
+            writeTarget(bytes, bytes.length);
+        } else {
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            position += bytes.length;
+        }
+    }
+
+    /**
+     * Make room for the specified number of bytes in the buffer, writing a '?' for an unpaired
+     * high surrogate left over from a previous write.
+     * @param byteCount The number of bytes.
+     * @throws IOException Write exception.
+     */
+    private void ensureCapacity(int byteCount) throws IOException {
+        if(position + byteCount + 1 > buffer.length) {
+            flushBuffer();
+        }
+        if(pendingHighSurrogate != NO_SURROGATE) {
+            pendingHighSurrogate = NO_SURROGATE;
+            buffer[position++] = '?';
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        if(position > 0) {
+            writeTarget(buffer, position);
+            position = 0;
+        }
+    }
+
+    private void writeTarget(byte[] bytes, int length) throws IOException {
+        if(outputStream != null) {
+            outputStream.write(bytes, 0, length);
+        } else {
+            ByteBuffer byteBuffer = (bytes == buffer ? channelBuffer : ByteBuffer.wrap(bytes));
+
+            byteBuffer.clear().limit(length);
+            while(byteBuffer.hasRemaining()) {
+                channel.write(byteBuffer);
+            }
+        }
+    }
+
+    private static byte[] toBytes(String string) {
+        byte[] bytes = new byte[string.length()];
+
+        for(int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) string.charAt(i);
+        }
+
+        return bytes;
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        int length = 0;
+        for(byte[] part : parts) {
+            length += part.length;
+        }
+
+        byte[] bytes = new byte[length];
+        int offset = 0;
+        for(byte[] part : parts) {
+            System.arraycopy(part, 0, bytes, offset, part.length);
+            offset += part.length;
+        }
+
+        return bytes;
+    }
+
+    /**
+     * Pre-encoded element start and end tag bytes.
+     */
+    private static class EncodedName {
+
+        private String prefix;
+        private byte[] startTag;
+        private byte[] endTag;
+
+        private EncodedName(QName name) {
+            String qualifiedName;
+
+            prefix = name.getPrefix();
+            if(prefix != null && !prefix.equals(XMLConstants.NULL_NS_URI)) {
+                qualifiedName = prefix + ":" + name.getLocalPart();
+            } else {
+                qualifiedName = name.getLocalPart();
+            }
+
+            byte[] nameBytes = utf8(qualifiedName);
+            startTag = concat(toBytes("<"), nameBytes);
+            endTag = concat(toBytes("</"), nameBytes, toBytes(">"));
+        }
+
+        private static byte[] utf8(String string) {
+            try {
+                return string.getBytes("UTF-8");
+            } catch (UnsupportedEncodingException e) {
+                throw new IllegalStateException("UTF-8 encoding not supported.", e);
+            }
+        }
+    }
+}
@@ -20,6 +20,7 @@ import org.apache.commons.logging.LogFactory;
 import org.milyn.SmooksException;
 import org.milyn.assertion.AssertArgument;
 import org.milyn.cdr.annotation.ConfigParam;
+import org.milyn.container.ContextKey;
 import org.milyn.container.ExecutionContext;
 import org.milyn.delivery.ExecutionLifecycleCleanable;
 import org.milyn.delivery.Fragment;
@@ -65,7 +66,7 @@ public abstract class AbstractOutputStreamResource implements SAXVisitBefore, DO
 
     protected static final String RESOURCE_CONTEXT_KEY_PREFIX = AbstractOutputStreamResource.class.getName() + "#outputresource:";
 
-    private static final String OUTPUTSTREAM_CONTEXT_KEY_PREFIX = AbstractOutputStreamResource.class.getName() + "#outputstream:";
+    private static final ContextKey.Family<Closeable> OUTPUTSTREAM_CONTEXT_KEYS = new ContextKey.Family<Closeable>(AbstractOutputStreamResource.class.getName() + "#outputstream:");
 
     @ConfigParam
     private String resourceName;
@@ -157,15 +158,15 @@ public abstract class AbstractOutputStreamResource implements SAXVisitBefore, DO
     		final String resourceName,
             final ExecutionContext executionContext) throws SmooksException
     {
-        String resourceKey = OUTPUTSTREAM_CONTEXT_KEY_PREFIX + resourceName;
-        Object resourceIOObj = executionContext.getAttribute( resourceKey );
+        ContextKey<Closeable> resourceKey = OUTPUTSTREAM_CONTEXT_KEYS.get( resourceName );
+        Closeable resourceIOObj = executionContext.get( resourceKey );
 
         if( resourceIOObj == null )
         {
             AbstractOutputStreamResource resource = (AbstractOutputStreamResource) executionContext.getAttribute( RESOURCE_CONTEXT_KEY_PREFIX + resourceName );
             OutputStream outputStream = openOutputStream(resource, resourceName, executionContext);
 
-            executionContext.setAttribute( resourceKey, outputStream );
+            executionContext.set( resourceKey, (Closeable) outputStream );
             return outputStream;
         } else {
             if(resourceIOObj instanceof OutputStream) {
@@ -190,15 +191,15 @@ public abstract class AbstractOutputStreamResource implements SAXVisitBefore, DO
      * @throws SmooksException Unable to access OutputStream.
      */
     public static Writer getOutputWriter(final String resourceName, final ExecutionContext executionContext) throws SmooksException {
-        String resourceKey = OUTPUTSTREAM_CONTEXT_KEY_PREFIX + resourceName;
-        Object resourceIOObj = executionContext.getAttribute( resourceKey );
+        ContextKey<Closeable> resourceKey = OUTPUTSTREAM_CONTEXT_KEYS.get( resourceName );
+        Closeable resourceIOObj = executionContext.get( resourceKey );
 
         if( resourceIOObj == null ) {
             AbstractOutputStreamResource resource = (AbstractOutputStreamResource) executionContext.getAttribute( RESOURCE_CONTEXT_KEY_PREFIX + resourceName );
             OutputStream outputStream = openOutputStream(resource, resourceName, executionContext);
             Writer outputStreamWriter = new OutputStreamWriter(outputStream, resource.getWriterEncoding());
 
-            executionContext.setAttribute( resourceKey, outputStreamWriter );
+            executionContext.set( resourceKey, (Closeable) outputStreamWriter );
             return outputStreamWriter;
         } else {
             if(resourceIOObj instanceof Writer) {
@@ -239,12 +240,12 @@ public abstract class AbstractOutputStreamResource implements SAXVisitBefore, DO
 	{
 		try
 		{
-            Closeable output = (Closeable) executionContext.getAttribute( OUTPUTSTREAM_CONTEXT_KEY_PREFIX + getResourceName() );
+            Closeable output = executionContext.get( OUTPUTSTREAM_CONTEXT_KEYS.get( getResourceName() ) );
             close( output );
 		}
 		finally
 		{
-            executionContext.removeAttribute( OUTPUTSTREAM_CONTEXT_KEY_PREFIX + getResourceName() );
+            executionContext.remove( OUTPUTSTREAM_CONTEXT_KEYS.get( getResourceName() ) );
             executionContext.removeAttribute( RESOURCE_CONTEXT_KEY_PREFIX + getResourceName() );
 		}
 	}
@@ -0,0 +1,202 @@
+/*
+ * Milyn - Copyright (C) 2006 - 2010
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License (version 2.1) as published
+ * by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.
+ *
+ * See the GNU Lesser General Public License for more details:
+ * http://www.gnu.org/licenses/lgpl.txt
+ */
+
+package org.milyn.io;
+
+import org.milyn.assertion.AssertArgument;
+import org.milyn.container.ExecutionContext;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reusable fragment capture buffer.
+ * <p/>
+ * A {@link Writer} that writes into a reusable char buffer, exposing the captured content as a
+ * {@link CharSequence}.  The content can be written onward to another {@link Writer}
+ * ({@link #writeTo(Writer)}) without creating a {@link String}.  A {@link String} is only
+ * created by {@link #toString()} (or {@link #subSequence(int, int)}).
+ * <p/>
+ * Buffers are pooled per {@link ExecutionContext}.  {@link #acquire(ExecutionContext) Acquire} a buffer
+ * for capturing a fragment and {@link #release(ExecutionContext) release} it once the captured content
+ * is no longer needed.  The content of a released buffer must not be used.
+ * <pre>
+ * FragmentBuffer buffer = FragmentBuffer.acquire(executionContext);
+ * try {
+ *     serialize(fragment, buffer);
+ *     beanContext.addBean(beanId, buffer.trim().toString(), source);
+ * } finally {
+ *     buffer.release(executionContext);
+ * }
+ * </pre>
+ */
+public class FragmentBuffer extends Writer implements CharSequence {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    /**
+     * Buffers larger than this are not kept when released back to the pool.
+     */
+    private static final int MAX_POOLED_CAPACITY = 256 * 1024;
+
+    private char[] chars = new char[INITIAL_CAPACITY];
+    private int offset;
+    private int length;
+
+    /**
+     * Public constructor.
+     * <p/>
+     * Creates an unpooled buffer.  Use {@link #acquire(ExecutionContext)} for a pooled buffer.
+     */
+    public FragmentBuffer() {
+    }
+
+    /**
+     * Acquire a buffer from the {@link ExecutionContext} buffer pool.
+     * <p/>
+     * The buffer is empty.
+     *
+     * @param executionContext The execution context.
+     * @return The buffer.
+     */
+    public static FragmentBuffer acquire(ExecutionContext executionContext) {
+        AssertArgument.isNotNull(executionContext, "executionContext");
+        List<FragmentBuffer> pool = getPool(executionContext);
+
+        if(pool.isEmpty()) {
+            return new FragmentBuffer();
+        }
+        return pool.remove(pool.size() - 1);
+    }
+
+    /**
+     * Release this buffer back to the {@link ExecutionContext} buffer pool.
+     * @param executionContext The execution context from which the buffer was acquired.
+     */
+    public void release(ExecutionContext executionContext) {
+        AssertArgument.isNotNull(executionContext, "executionContext");
+        reset();
+        getPool(executionContext).add(this);
+    }
+
+    /**
+     * Clear the buffer content.
+     */
+    public void reset() {
+        if(chars.length > MAX_POOLED_CAPACITY) {
+            chars = new char[INITIAL_CAPACITY];
+        }
+        offset = 0;
+        length = 0;
+    }
+
+    /**
+     * Remove leading and trailing whitespace from the buffer content (as {@link String#trim()}).
+     * <p/>
+     * The content is not copied.
+     *
+     * @return This buffer instance.
+     */
+    public FragmentBuffer trim() {
+        while(length > 0 && chars[offset] <= ' ') {
+            offset++;
+            length--;
+        }
+        while(length > 0 && chars[offset + length - 1] <= ' ') {
+            length--;
+        }
+        return this;
+    }
+
+    /**
+     * Write the buffer content to the supplied {@link Writer}.
+     * @param writer The writer.
+     * @throws IOException Error writing to the writer.
+     */
+    public void writeTo(Writer writer) throws IOException {
+        writer.write(chars, offset, length);
+    }
+
+    public void write(int c) {
+        ensureCapacity(1);
+        chars[offset + length] = (char) c;
+        length++;
+    }
+
+    public void write(char[] cbuf, int off, int len) {
+        ensureCapacity(len);
+        System.arraycopy(cbuf, off, chars, offset + length, len);
+        length += len;
+    }
+
+    public void write(String str, int off, int len) {
+        ensureCapacity(len);
+        str.getChars(off, off + len, chars, offset + length);
+        length += len;
+    }
+
+    public void flush() {
+    }
+
+    public void close() {
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public char charAt(int index) {
+        if(index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds.  Length " + length + ".");
+        }
+        return chars[offset + index];
+    }
+
+    public CharSequence subSequence(int start, int end) {
+        if(start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException("Invalid sub sequence [" + start + ", " + end + "].  Length " + length + ".");
+        }
+        return new String(chars, offset + start, end - start);
+    }
+
+    public String toString() {
+        return new String(chars, offset, length);
+    }
+
+    private void ensureCapacity(int count) {
+        int required = offset + length + count;
+
+        if(required > chars.length) {
+            char[] newChars = new char[Math.max(chars.length * 2, length + count)];
+
+            System.arraycopy(chars, offset, newChars, 0, length);
+            chars = newChars;
+            offset = 0;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<FragmentBuffer> getPool(ExecutionContext executionContext) {
+        List<FragmentBuffer> pool = (List<FragmentBuffer>) executionContext.getAttribute(FragmentBuffer.class);
+
+        if(pool == null) {
+            pool = new ArrayList<FragmentBuffer>();
+            executionContext.setAttribute(FragmentBuffer.class, pool);
+        }
+
+        return pool;
+    }
+}
@@ -0,0 +1,66 @@
+/*
+	Milyn - Copyright (C) 2006 - 2010
+
+	This library is free software; you can redistribute it and/or
+	modify it under the terms of the GNU Lesser General Public
+	License (version 2.1) as published by the Free Software
+	Foundation.
+
+	This library is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+	See the GNU Lesser General Public License for more details:
+	http://www.gnu.org/licenses/lgpl.txt
+*/
+package org.milyn.payload;
+
+import org.milyn.assertion.AssertArgument;
+import org.milyn.io.ByteBufferInputStream;
+import org.milyn.io.ByteBufferReader;
+
+import javax.xml.transform.stream.StreamSource;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * {@link ByteBuffer} based {@link javax.xml.transform.stream.StreamSource}.
+ * <p/>
+ * Supports heap, direct and mapped ({@link java.nio.MappedByteBuffer}) buffers.  Character based readers
+ * decode the buffer content in place (see {@link ByteBufferReader}), while binary
+ * ({@link org.milyn.delivery.StreamReader}) readers read the buffer through an {@link ByteBufferInputStream}.
+ * The buffer content is never copied to a byte array.
+ * <p/>
+ * The remaining content of the buffer (from its position to its limit) is filtered.  The buffer position is not
+ * modified.
+ *
+ * @see ChannelSource
+ */
+public class ByteBufferSource extends StreamSource {
+
+    private ByteBuffer source;
+
+    public ByteBufferSource(ByteBuffer source) {
+        super(new ByteBufferInputStream(assertNotNull(source).duplicate()));
+        this.source = source;
+    }
+
+    public ByteBuffer getSource() {
+        return source;
+    }
+
+    /**
+     * Create a {@link Reader} that decodes the buffer content directly.
+     * @param charset The content character set.
+     * @return The Reader.
+     */
+    public Reader createReader(Charset charset) {
+        return new ByteBufferReader(source.duplicate(), charset);
+    }
+
+    private static ByteBuffer assertNotNull(ByteBuffer source) {
+        AssertArgument.isNotNull(source, "source");
+        return source;
+    }
+}
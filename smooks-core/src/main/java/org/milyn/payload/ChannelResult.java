@@ -0,0 +1,78 @@
+/*
+	Milyn - Copyright (C) 2006 - 2010
+
+	This library is free software; you can redistribute it and/or
+	modify it under the terms of the GNU Lesser General Public
+	License (version 2.1) as published by the Free Software
+	Foundation.
+
+	This library is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+	See the GNU Lesser General Public License for more details:
+	http://www.gnu.org/licenses/lgpl.txt
+*/
+package org.milyn.payload;
+
+import org.milyn.assertion.AssertArgument;
+import org.milyn.io.ChannelWriter;
+
+import javax.xml.transform.stream.StreamResult;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+
+/**
+ * {@link WritableByteChannel} based {@link javax.xml.transform.stream.StreamResult}.
+ * <p/>
+ * The filter output is encoded straight into direct buffers, which are written to the channel in
+ * gathering writes (see {@link ChannelWriter}).
+ * <p/>
+ * As with other stream based results, Smooks closes the channel once filtering is complete
+ * (see {@link org.milyn.FilterSettings#setCloseResult(boolean)}).
+ */
+public class ChannelResult extends StreamResult {
+
+    private WritableByteChannel result;
+    private int chunkSize;
+    private int chunkCount;
+
+    public ChannelResult(WritableByteChannel result) {
+        this(result, ChannelWriter.DEFAULT_CHUNK_SIZE, ChannelWriter.DEFAULT_CHUNK_COUNT);
+    }
+
+    /**
+     * Public constructor.
+     * @param result The result channel.
+     * @param chunkSize The size of the direct buffers used to write the channel (bytes).
+     * @param chunkCount The number of direct buffers written in a single gathering write.
+     */
+    public ChannelResult(WritableByteChannel result, int chunkSize, int chunkCount) {
+        super();
+        AssertArgument.isNotNull(result, "result");
+        super.setOutputStream(Channels.newOutputStream(result));
+        this.result = result;
+        this.chunkSize = chunkSize;
+        this.chunkCount = chunkCount;
+    }
+
+    public final void setOutputStream(OutputStream outputStream) {
+        throw new UnsupportedOperationException("Cannot reset the OutputStream for this Result type.");
+    }
+
+    public WritableByteChannel getResult() {
+        return result;
+    }
+
+    /**
+     * Create a {@link Writer} that encodes straight into direct buffers for writing to the channel.
+     * @param charset The content character set.
+     * @return The Writer.
+     */
+    public Writer createWriter(Charset charset) {
+        return new ChannelWriter(result, charset, chunkSize, chunkCount);
+    }
+}
@@ -0,0 +1,76 @@
+/*
+	Milyn - Copyright (C) 2006 - 2010
+
+	This library is free software; you can redistribute it and/or
+	modify it under the terms of the GNU Lesser General Public
+	License (version 2.1) as published by the Free Software
+	Foundation.
+
+	This library is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+	See the GNU Lesser General Public License for more details:
+	http://www.gnu.org/licenses/lgpl.txt
+*/
+package org.milyn.payload;
+
+import org.milyn.assertion.AssertArgument;
+import org.milyn.io.ByteBufferReader;
+
+import javax.xml.transform.stream.StreamSource;
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+
+/**
+ * {@link ReadableByteChannel} based {@link javax.xml.transform.stream.StreamSource}.
+ * <p/>
+ * Character based readers decode the channel content from a direct buffer, filled from the channel in
+ * large chunks (see {@link ByteBufferReader}).  Binary ({@link org.milyn.delivery.StreamReader}) readers
+ * read the channel through an {@link java.io.InputStream} view of the channel.
+ * <p/>
+ * The channel must be in blocking mode.  As with other stream based sources, Smooks closes the channel
+ * once filtering is complete (see {@link org.milyn.FilterSettings#setCloseSource(boolean)}).
+ *
+ * @see ByteBufferSource
+ */
+public class ChannelSource extends StreamSource {
+
+    private ReadableByteChannel source;
+    private int bufferSize;
+
+    public ChannelSource(ReadableByteChannel source) {
+        this(source, ByteBufferReader.DEFAULT_CHANNEL_BUFFER_SIZE);
+    }
+
+    /**
+     * Public constructor.
+     * @param source The source channel.
+     * @param bufferSize The size of the direct buffer used to read the channel (bytes).
+     */
+    public ChannelSource(ReadableByteChannel source, int bufferSize) {
+        super(Channels.newInputStream(assertNotNull(source)));
+        this.source = source;
+        this.bufferSize = bufferSize;
+    }
+
+    public ReadableByteChannel getSource() {
+        return source;
+    }
+
+    /**
+     * Create a {@link Reader} that decodes the channel content directly.
+     * @param charset The content character set.
+     * @return The Reader.
+     */
+    public Reader createReader(Charset charset) {
+        return new ByteBufferReader(source, charset, bufferSize);
+    }
+
+    private static ReadableByteChannel assertNotNull(ReadableByteChannel source) {
+        AssertArgument.isNotNull(source, "source");
+        return source;
+    }
+}
@@ -16,9 +16,12 @@
 package org.milyn.util;
 
 import freemarker.ext.dom.NodeModel;
+import freemarker.template.TemplateModel;
 import org.milyn.container.ExecutionContext;
 import org.milyn.delivery.DOMModel;
 import org.milyn.javabean.context.BeanContext;
+import org.milyn.xml.compact.CompactElement;
+import org.milyn.xml.compact.CompactNodeModel;
 import org.w3c.dom.Element;
 
 import java.util.HashMap;
@@ -39,6 +42,10 @@ public abstract class FreeMarkerUtils {
      * current {@link ExecutionContext}, with the contents of the {@link DOMModel}
      * associated with the current {@link ExecutionContext}.  This is very useful
      * for templating with FreeMarker.
+     * <p/>
+     * Compact model (see {@link org.milyn.delivery.DomModelCreator}) are added as
+     * {@link CompactNodeModel CompactNodeModels}.  All other model are added as
+     * {@link NodeModel NodeModels}.
      *
      * @param executionContext The current execution context.
      * @return A merged templating model.
@@ -56,7 +63,7 @@ public abstract class FreeMarkerUtils {
 
             Set<Map.Entry<String, Element>> models = domModel.getModels().entrySet();
             for (Map.Entry<String, Element> entry : models) {
-                NodeModel nodeModel = getNodeModel(entry.getKey(), entry.getValue(), elementToNodeModelMap);
+                TemplateModel nodeModel = getNodeModel(entry.getKey(), entry.getValue(), elementToNodeModelMap);
                 model.put(entry.getKey(), nodeModel);
             }
         }
@@ -64,23 +71,30 @@ public abstract class FreeMarkerUtils {
         return model;
     }
 
-    private static NodeModel getNodeModel(String key, Element element, Map<String, ElementToNodeModel> elementToNodeModelMap) {
+    private static TemplateModel getNodeModel(String key, Element element, Map<String, ElementToNodeModel> elementToNodeModelMap) {
         ElementToNodeModel elementToNodeModel = elementToNodeModelMap.get(key);
 
         if(elementToNodeModel == null) {
             elementToNodeModel = new ElementToNodeModel();
             elementToNodeModelMap.put(key, elementToNodeModel);
             elementToNodeModel.element = element;
-            elementToNodeModel.nodeModel = NodeModel.wrap(element);
+            elementToNodeModel.nodeModel = wrap(element);
         } else if(elementToNodeModel.element != element) {
             // Must be a new element with the same name... update the map...
             elementToNodeModel.element = element;
-            elementToNodeModel.nodeModel = NodeModel.wrap(element);
+            elementToNodeModel.nodeModel = wrap(element);
         }
 
         return elementToNodeModel.nodeModel;
     }
 
+    private static TemplateModel wrap(Element element) {
+        if(element instanceof CompactElement) {
+            return new CompactNodeModel((CompactElement) element);
+        }
+        return NodeModel.wrap(element);
+    }
+
 
 	private static Map<String, ElementToNodeModel> getElementToNodeModelMap(ExecutionContext executionContext) {
 		@SuppressWarnings("unchecked")
@@ -96,6 +110,6 @@ public abstract class FreeMarkerUtils {
 
     private static class ElementToNodeModel {
         private Element element;
-        private NodeModel nodeModel;
+        private TemplateModel nodeModel;
     }
 }
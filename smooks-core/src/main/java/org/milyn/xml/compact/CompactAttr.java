@@ -0,0 +1,153 @@
+/*
+	Milyn - Copyright (C) 2006 - 2010
+
+	This library is free software; you can redistribute it and/or
+	modify it under the terms of the GNU Lesser General Public
+	License (version 2.1) as published by the Free Software
+	Foundation.
+
+	This library is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+	See the GNU Lesser General Public License for more details:
+	http://www.gnu.org/licenses/lgpl.txt
+*/
+package org.milyn.xml.compact;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.DOMException;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.w3c.dom.TypeInfo;
+
+import javax.xml.namespace.QName;
+
+/**
+ * Read-only W3C DOM {@link Attr} view of a {@link CompactDocument} attribute.
+ * <p/>
+ * Attributes are not part of the node tree, so the tree navigation methods all return null.
+ */
+public class CompactAttr extends CompactNode implements Attr {
+
+    private static final NodeList EMPTY_NODE_LIST = new NodeList() {
+        public Node item(int index) {
+            return null;
+        }
+        public int getLength() {
+            return 0;
+        }
+    };
+
+    private CompactElement ownerElement;
+    private int attribute;
+
+    CompactAttr(CompactElement ownerElement, int attribute) {
+        super(ownerElement.getCompactDocument(), -1);
+        this.ownerElement = ownerElement;
+        this.attribute = attribute;
+    }
+
+    /**
+     * Get the attribute name.
+     * @return The attribute name.
+     */
+    public QName getQName() {
+        return document.getAttributeName(attribute);
+    }
+
+    public short getNodeType() {
+        return Node.ATTRIBUTE_NODE;
+    }
+
+    public String getNodeName() {
+        return getName();
+    }
+
+    public String getName() {
+        return CompactDocument.toNodeName(getQName());
+    }
+
+    public String getNodeValue() throws DOMException {
+        return getValue();
+    }
+
+    public String getValue() {
+        return document.getAttributeValue(attribute);
+    }
+
+    public String getTextContent() throws DOMException {
+        return getValue();
+    }
+
+    public boolean getSpecified() {
+        return true;
+    }
+
+    public Element getOwnerElement() {
+        return ownerElement;
+    }
+
+    public String getNamespaceURI() {
+        String namespaceURI = getQName().getNamespaceURI();
+        return (namespaceURI.length() != 0 ? namespaceURI : null);
+    }
+
+    public String getPrefix() {
+        String prefix = getQName().getPrefix();
+        return (prefix.length() != 0 ? prefix : null);
+    }
+
+    public String getLocalName() {
+        return getQName().getLocalPart();
+    }
+
+    public boolean isId() {
+        return false;
+    }
+
+    public TypeInfo getSchemaTypeInfo() {
+        return null;
+    }
+
+    public Node getParentNode() {
+        return null;
+    }
+
+    public NodeList getChildNodes() {
+        return EMPTY_NODE_LIST;
+    }
+
+    public Node getFirstChild() {
+        return null;
+    }
+
+    public Node getLastChild() {
+        return null;
+    }
+
+    public Node getPreviousSibling() {
+        return null;
+    }
+
+    public Node getNextSibling() {
+        return null;
+    }
+
+    public boolean hasChildNodes() {
+        return false;
+    }
+
+    public boolean isSameNode(Node other) {
+        if(other instanceof CompactAttr) {
+            CompactAttr otherAttr = (CompactAttr) other;
+            return (otherAttr.ownerElement == ownerElement && otherAttr.attribute == attribute);
+        }
+        return false;
+    }
+
+    public void setValue(String value) throws DOMException {
+        throw readOnly();
+    }
+}
@@ -0,0 +1,74 @@
+/*
+	Milyn - Copyright (C) 2006 - 2010
+
+	This library is free software; you can redistribute it and/or
+	modify it under the terms of the GNU Lesser General Public
+	License (version 2.1) as published by the Free Software
+	Foundation.
+
+	This library is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+	See the GNU Lesser General Public License for more details:
+	http://www.gnu.org/licenses/lgpl.txt
+*/
+package org.milyn.xml.compact;
+
+import org.w3c.dom.CharacterData;
+import org.w3c.dom.DOMException;
+
+/**
+ * Abstract read-only W3C DOM {@link CharacterData} view of a {@link CompactDocument} text node.
+ */
+public abstract class CompactCharacterData extends CompactNode implements CharacterData {
+
+    CompactCharacterData(CompactDocument document, int node) {
+        super(document, node);
+    }
+
+    public String getNodeValue() throws DOMException {
+        return getData();
+    }
+
+    public String getData() throws DOMException {
+        return document.getText(node);
+    }
+
+    public String getTextContent() throws DOMException {
+        return getData();
+    }
+
+    public int getLength() {
+        return document.getTextLength(node);
+    }
+
+    public String substringData(int offset, int count) throws DOMException {
+        int length = getLength();
+
+        if(offset < 0 || offset > length || count < 0) {
+            throw new DOMException(DOMException.INDEX_SIZE_ERR, "Invalid substring offset/count.");
+        }
+        return getData().substring(offset, Math.min(length, offset + count));
+    }
+
+    public void setData(String data) throws DOMException {
+        throw readOnly();
+    }
+
+    public void appendData(String arg) throws DOMException {
+        throw readOnly();
+    }
+
+    public void insertData(int offset, String arg) throws DOMException {
+        throw readOnly();
+    }
+
+    public void deleteData(int offset, int count) throws DOMException {
+        throw readOnly();
+    }
+
+    public void replaceData(int offset, int count, String arg) throws DOMException {
+        throw readOnly();
+    }
+}
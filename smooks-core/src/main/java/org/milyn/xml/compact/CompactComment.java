@@ -0,0 +1,32 @@
+/*
+	Milyn - Copyright (C) 2006 - 2010
+
+	This library is free software; you can redistribute it and/or
+	modify it under the terms of the GNU Lesser General Public
+	License (version 2.1) as published by the Free Software
+	Foundation.
+
+	This library is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+	See the GNU Lesser General Public License for more details:
+	http://www.gnu.org/licenses/lgpl.txt
+*/
+package org.milyn.xml.compact;
+
+import org.w3c.dom.Comment;
+
+/**
+ * Read-only W3C DOM {@link Comment} view of a {@link CompactDocument} comment node.
+ */
+public class CompactComment extends CompactCharacterData implements Comment {
+
+    CompactComment(CompactDocument document, int node) {
+        super(document, node);
+    }
+
+    public String getNodeName() {
+        return "#comment";
+    }
+}
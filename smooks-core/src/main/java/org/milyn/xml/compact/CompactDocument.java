@@ -0,0 +1,447 @@
+/*
+	Milyn - Copyright (C) 2006 - 2010
+
+	This library is free software; you can redistribute it and/or
+	modify it under the terms of the GNU Lesser General Public
+	License (version 2.1) as published by the Free Software
+	Foundation.
+
+	This library is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+	See the GNU Lesser General Public License for more details:
+	http://www.gnu.org/licenses/lgpl.txt
+*/
+package org.milyn.xml.compact;
+
+import org.milyn.assertion.AssertArgument;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.Attributes;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.QName;
+
+/**
+ * Compact, read-only, XML node store.
+ * <p/>
+ * An array backed alternative to a W3C DOM {@link org.w3c.dom.Document} for holding a single
+ * element subtree (e.g. a message fragment).  Nodes are stored as indexes into a set of parallel
+ * int arrays, element and attribute names are references into a shared {@link CompactNameTable}, and
+ * all text and attribute values are slices of a single char buffer.
+ * <p/>
+ * The store is built in document order through the {@link #startElement(QName, Attributes)},
+ * {@link #appendText(char[], int, int, short)} and {@link #endElement()} methods, after which it can
+ * be read through a minimal read-only W3C DOM view (see {@link #getDocumentElement()}), or through
+ * FreeMarker (see {@link CompactNodeModel}).  All W3C DOM modification methods throw a
+ * {@link org.w3c.dom.DOMException}.
+ * <p/>
+ * A {@link CompactDocument} can be {@link #reset()} and reused.  Resetting invalidates all node
+ * views obtained from the document before the reset.
+ * <p/>
+ * Not thread safe.
+ *
+ * @see CompactNameTable
+ * @see CompactNodeModel
+ */
+public class CompactDocument {
+
+    private static final int INITIAL_NODE_CAPACITY = 32;
+    private static final int INITIAL_ATTRIBUTE_CAPACITY = 16;
+    private static final int INITIAL_CHAR_CAPACITY = 512;
+
+    private CompactNameTable nameTable;
+
+    // Node arrays...
+    private int nodeCount;
+    private short[] nodeTypes = new short[INITIAL_NODE_CAPACITY];
+    private int[] nodeNames = new int[INITIAL_NODE_CAPACITY];
+    private int[] parents = new int[INITIAL_NODE_CAPACITY];
+    private int[] firstChildren = new int[INITIAL_NODE_CAPACITY];
+    private int[] lastChildren = new int[INITIAL_NODE_CAPACITY];
+    private int[] nextSiblings = new int[INITIAL_NODE_CAPACITY];
+    private int[] previousSiblings = new int[INITIAL_NODE_CAPACITY];
+    // Text nodes: char buffer slice.  Element nodes: attribute array slice...
+    private int[] dataStarts = new int[INITIAL_NODE_CAPACITY];
+    private int[] dataLengths = new int[INITIAL_NODE_CAPACITY];
+
+    // Attribute arrays...
+    private int attributeCount;
+    private int[] attributeNames = new int[INITIAL_ATTRIBUTE_CAPACITY];
+    private int[] attributeValueStarts = new int[INITIAL_ATTRIBUTE_CAPACITY];
+    private int[] attributeValueLengths = new int[INITIAL_ATTRIBUTE_CAPACITY];
+
+    // Shared char buffer...
+    private int charCount;
+    private char[] chars = new char[INITIAL_CHAR_CAPACITY];
+
+    private int currentElement = -1;
+    private CompactNode[] nodeViews = new CompactNode[INITIAL_NODE_CAPACITY];
+
+    /**
+     * Public constructor.
+     * @param nameTable The name table used for interning the element and attribute names.
+     */
+    public CompactDocument(CompactNameTable nameTable) {
+        AssertArgument.isNotNull(nameTable, "nameTable");
+        this.nameTable = nameTable;
+    }
+
+    /**
+     * Get the name table used by this document.
+     * @return The name table.
+     */
+    public CompactNameTable getNameTable() {
+        return nameTable;
+    }
+
+    /**
+     * Reset this document so it can be reused.
+     * <p/>
+     * The node views obtained from this document before the reset must not be used after the reset.
+     */
+    public void reset() {
+        java.util.Arrays.fill(nodeViews, 0, nodeCount, null);
+        nodeCount = 0;
+        attributeCount = 0;
+        charCount = 0;
+        currentElement = -1;
+    }
+
+    /**
+     * Start an element.
+     * <p/>
+     * The first element started on the document is the document element.  It is an error
+     * to start a second document element.
+     *
+     * @param name The element name.
+     * @param attributes The element attributes.
+     * @return The element node index.
+     */
+    public int startElement(QName name, Attributes attributes) {
+        if(currentElement == -1 && nodeCount != 0) {
+            throw new IllegalStateException("Invalid call to startElement.  CompactDocument already has a document element.");
+        }
+
+        int element = addNode(Node.ELEMENT_NODE);
+        int attributeCount = (attributes != null ? attributes.getLength() : 0);
+
+        nodeNames[element] = nameTable.intern(name);
+        dataStarts[element] = this.attributeCount;
+        dataLengths[element] = attributeCount;
+        for(int i = 0; i < attributeCount; i++) {
+            addAttribute(attributes, i);
+        }
+
+        currentElement = element;
+
+        return element;
+    }
+
+    /**
+     * End the current element.
+     */
+    public void endElement() {
+        if(currentElement == -1) {
+            throw new IllegalStateException("Invalid call to endElement.  No open element.");
+        }
+        currentElement = parents[currentElement];
+    }
+
+    /**
+     * Append text to the current element.
+     * <p/>
+     * Ignored if there's no open element.
+     *
+     * @param characters The character buffer.
+     * @param offset The text offset within the character buffer.
+     * @param length The text length.
+     * @param nodeType The text node type ({@link Node#TEXT_NODE}, {@link Node#CDATA_SECTION_NODE}
+     * or {@link Node#COMMENT_NODE}).
+     */
+    public void appendText(char[] characters, int offset, int length, short nodeType) {
+        if(currentElement == -1) {
+            return;
+        }
+        if(nodeType != Node.TEXT_NODE && nodeType != Node.CDATA_SECTION_NODE && nodeType != Node.COMMENT_NODE) {
+            throw new IllegalArgumentException("Unsupported text node type '" + nodeType + "'.");
+        }
+
+        int textNode = addNode(nodeType);
+
+        nodeNames[textNode] = -1;
+        dataStarts[textNode] = appendChars(characters, offset, length);
+        dataLengths[textNode] = length;
+    }
+
+    /**
+     * Is the document complete i.e. has the document element been started and ended.
+     * @return True if the document is complete, otherwise false.
+     */
+    public boolean isComplete() {
+        return (nodeCount != 0 && currentElement == -1);
+    }
+
+    /**
+     * Get the document element.
+     * @return The document element, or null if no element has been started on this document.
+     */
+    public Element getDocumentElement() {
+        if(nodeCount == 0) {
+            return null;
+        }
+        return (Element) getNode(0);
+    }
+
+    /**
+     * Get the number of nodes in this document.
+     * @return The number of nodes in this document.
+     */
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    /* -------------------------------------------------------------------------------------
+     * Node accessors used by the node views...
+     * ------------------------------------------------------------------------------------- */
+
+    CompactNode getNode(int node) {
+        if(node < 0) {
+            return null;
+        }
+
+        CompactNode view = nodeViews[node];
+        if(view == null) {
+            switch (nodeTypes[node]) {
+                case Node.ELEMENT_NODE:
+                    view = new CompactElement(this, node);
+                    break;
+                case Node.TEXT_NODE:
+                    view = new CompactText(this, node);
+                    break;
+                case Node.CDATA_SECTION_NODE:
+                    view = new CompactCDATASection(this, node);
+                    break;
+                default:
+                    view = new CompactComment(this, node);
+                    break;
+            }
+            nodeViews[node] = view;
+        }
+
+        return view;
+    }
+
+    short getNodeType(int node) {
+        return nodeTypes[node];
+    }
+
+    QName getNodeName(int node) {
+        return nameTable.getName(nodeNames[node]);
+    }
+
+    int getParent(int node) {
+        return parents[node];
+    }
+
+    int getFirstChild(int node) {
+        return firstChildren[node];
+    }
+
+    int getLastChild(int node) {
+        return lastChildren[node];
+    }
+
+    int getNextSibling(int node) {
+        return nextSiblings[node];
+    }
+
+    int getPreviousSibling(int node) {
+        return previousSiblings[node];
+    }
+
+    String getText(int node) {
+        return new String(chars, dataStarts[node], dataLengths[node]);
+    }
+
+    void appendText(int node, StringBuilder builder) {
+        builder.append(chars, dataStarts[node], dataLengths[node]);
+    }
+
+    int getTextLength(int node) {
+        return dataLengths[node];
+    }
+
+    /**
+     * Append the text content of the specified node to the supplied builder.
+     * <p/>
+     * Comments are not included.
+     */
+    void appendTextContent(int node, StringBuilder builder) {
+        short nodeType = nodeTypes[node];
+
+        if(nodeType == Node.ELEMENT_NODE) {
+            for(int child = firstChildren[node]; child != -1; child = nextSiblings[child]) {
+                appendTextContent(child, builder);
+            }
+        } else if(nodeType != Node.COMMENT_NODE) {
+            appendText(node, builder);
+        }
+    }
+
+    int getAttributeCount(int element) {
+        return dataLengths[element];
+    }
+
+    /**
+     * Get the (document) attribute index of the specified element attribute.
+     */
+    int getAttribute(int element, int index) {
+        return dataStarts[element] + index;
+    }
+
+    int findAttribute(int element, String namespaceURI, String name) {
+        int start = dataStarts[element];
+        int end = start + dataLengths[element];
+
+        for(int attribute = start; attribute < end; attribute++) {
+            QName attributeName = nameTable.getName(attributeNames[attribute]);
+
+            if(namespaceURI == null) {
+                if(name.equals(toNodeName(attributeName))) {
+                    return attribute;
+                }
+            } else if(namespaceURI.equals(attributeName.getNamespaceURI()) && name.equals(attributeName.getLocalPart())) {
+                return attribute;
+            }
+        }
+
+        return -1;
+    }
+
+    QName getAttributeName(int attribute) {
+        return nameTable.getName(attributeNames[attribute]);
+    }
+
+    String getAttributeValue(int attribute) {
+        return new String(chars, attributeValueStarts[attribute], attributeValueLengths[attribute]);
+    }
+
+    static String toNodeName(QName name) {
+        String prefix = name.getPrefix();
+
+        if(prefix.length() == 0) {
+            return name.getLocalPart();
+        }
+        return prefix + ":" + name.getLocalPart();
+    }
+
+    /* -------------------------------------------------------------------------------------
+     * Builder internals...
+     * ------------------------------------------------------------------------------------- */
+
+    private int addNode(short nodeType) {
+        if(nodeCount == nodeTypes.length) {
+            growNodeArrays();
+        }
+
+        int node = nodeCount++;
+        int parent = currentElement;
+
+        nodeTypes[node] = nodeType;
+        parents[node] = parent;
+        firstChildren[node] = -1;
+        lastChildren[node] = -1;
+        nextSiblings[node] = -1;
+        previousSiblings[node] = -1;
+
+        if(parent != -1) {
+            int lastChild = lastChildren[parent];
+
+            if(lastChild == -1) {
+                firstChildren[parent] = node;
+            } else {
+                nextSiblings[lastChild] = node;
+                previousSiblings[node] = lastChild;
+            }
+            lastChildren[parent] = node;
+        }
+
+        return node;
+    }
+
+    private void addAttribute(Attributes attributes, int index) {
+        if(attributeCount == attributeNames.length) {
+            int newCapacity = attributeNames.length * 2;
+            attributeNames = copyOf(attributeNames, newCapacity);
+            attributeValueStarts = copyOf(attributeValueStarts, newCapacity);
+            attributeValueLengths = copyOf(attributeValueLengths, newCapacity);
+        }
+
+        String namespaceURI = attributes.getURI(index);
+        String qName = attributes.getQName(index);
+        String value = attributes.getValue(index);
+        int valueLength = value.length();
+
+        // Same namespace handling as SAXElement.toDOMElement...
+        if(namespaceURI != null && namespaceURI.equals(XMLConstants.NULL_NS_URI) && qName != null) {
+            if(qName.startsWith(XMLConstants.XMLNS_ATTRIBUTE)) {
+                namespaceURI = XMLConstants.XMLNS_ATTRIBUTE_NS_URI;
+            } else if(qName.startsWith("xml:")) {
+                namespaceURI = XMLConstants.XML_NS_URI;
+            }
+        }
+
+        attributeNames[attributeCount] = nameTable.intern(namespaceURI, attributes.getLocalName(index), qName);
+        ensureCharCapacity(valueLength);
+        value.getChars(0, valueLength, chars, charCount);
+        attributeValueStarts[attributeCount] = charCount;
+        attributeValueLengths[attributeCount] = valueLength;
+        charCount += valueLength;
+        attributeCount++;
+    }
+
+    private int appendChars(char[] characters, int offset, int length) {
+        int start = charCount;
+
+        ensureCharCapacity(length);
+        System.arraycopy(characters, offset, chars, charCount, length);
+        charCount += length;
+
+        return start;
+    }
+
+    private void ensureCharCapacity(int length) {
+        if(charCount + length > chars.length) {
+            char[] newChars = new char[Math.max(chars.length * 2, charCount + length)];
+            System.arraycopy(chars, 0, newChars, 0, charCount);
+            chars = newChars;
+        }
+    }
+
+    private void growNodeArrays() {
+        int newCapacity = nodeTypes.length * 2;
+        short[] newNodeTypes = new short[newCapacity];
+        CompactNode[] newNodeViews = new CompactNode[newCapacity];
+
+        System.arraycopy(nodeTypes, 0, newNodeTypes, 0, nodeCount);
+        System.arraycopy(nodeViews, 0, newNodeViews, 0, nodeCount);
+        nodeTypes = newNodeTypes;
+        nodeViews = newNodeViews;
+        nodeNames = copyOf(nodeNames, newCapacity);
+        parents = copyOf(parents, newCapacity);
+        firstChildren = copyOf(firstChildren, newCapacity);
+        lastChildren = copyOf(lastChildren, newCapacity);
+        nextSiblings = copyOf(nextSiblings, newCapacity);
+        previousSiblings = copyOf(previousSiblings, newCapacity);
+        dataStarts = copyOf(dataStarts, newCapacity);
+        dataLengths = copyOf(dataLengths, newCapacity);
+    }
+
+    private static int[] copyOf(int[] array, int newLength) {
+        int[] newArray = new int[newLength];
+        System.arraycopy(array, 0, newArray, 0, Math.min(array.length, newLength));
+        return newArray;
+    }
+}
@@ -0,0 +1,251 @@
+/*
+	Milyn - Copyright (C) 2006 - 2010
+
+	This library is free software; you can redistribute it and/or
+	modify it under the terms of the GNU Lesser General Public
+	License (version 2.1) as published by the Free Software
+	Foundation.
+
+	This library is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+	See the GNU Lesser General Public License for more details:
+	http://www.gnu.org/licenses/lgpl.txt
+*/
+package org.milyn.xml.compact;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.DOMException;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.w3c.dom.TypeInfo;
+
+import javax.xml.namespace.QName;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read-only W3C DOM {@link Element} view of a {@link CompactDocument} element node.
+ */
+public class CompactElement extends CompactNode implements Element {
+
+    CompactElement(CompactDocument document, int node) {
+        super(document, node);
+    }
+
+    /**
+     * Get the element name.
+     * @return The element name.
+     */
+    public QName getQName() {
+        return document.getNodeName(node);
+    }
+
+    public String getNodeName() {
+        return getTagName();
+    }
+
+    public String getTagName() {
+        return CompactDocument.toNodeName(getQName());
+    }
+
+    public String getNamespaceURI() {
+        String namespaceURI = getQName().getNamespaceURI();
+        return (namespaceURI.length() != 0 ? namespaceURI : null);
+    }
+
+    public String getPrefix() {
+        String prefix = getQName().getPrefix();
+        return (prefix.length() != 0 ? prefix : null);
+    }
+
+    public String getLocalName() {
+        return getQName().getLocalPart();
+    }
+
+    public boolean hasAttributes() {
+        return (document.getAttributeCount(node) != 0);
+    }
+
+    public NamedNodeMap getAttributes() {
+        return new AttributeMap();
+    }
+
+    public String getAttribute(String name) {
+        int attribute = document.findAttribute(node, null, name);
+
+        if(attribute == -1) {
+            return "";
+        }
+        return document.getAttributeValue(attribute);
+    }
+
+    public String getAttributeNS(String namespaceURI, String localName) throws DOMException {
+        int attribute = document.findAttribute(node, (namespaceURI != null ? namespaceURI : ""), localName);
+
+        if(attribute == -1) {
+            return "";
+        }
+        return document.getAttributeValue(attribute);
+    }
+
+    public boolean hasAttribute(String name) {
+        return (document.findAttribute(node, null, name) != -1);
+    }
+
+    public boolean hasAttributeNS(String namespaceURI, String localName) throws DOMException {
+        return (document.findAttribute(node, (namespaceURI != null ? namespaceURI : ""), localName) != -1);
+    }
+
+    public Attr getAttributeNode(String name) {
+        int attribute = document.findAttribute(node, null, name);
+
+        if(attribute == -1) {
+            return null;
+        }
+        return new CompactAttr(this, attribute);
+    }
+
+    public Attr getAttributeNodeNS(String namespaceURI, String localName) throws DOMException {
+        int attribute = document.findAttribute(node, (namespaceURI != null ? namespaceURI : ""), localName);
+
+        if(attribute == -1) {
+            return null;
+        }
+        return new CompactAttr(this, attribute);
+    }
+
+    public NodeList getElementsByTagName(String name) {
+        return getElementsByName(null, name);
+    }
+
+    public NodeList getElementsByTagNameNS(String namespaceURI, String localName) throws DOMException {
+        return getElementsByName((namespaceURI != null ? namespaceURI : ""), localName);
+    }
+
+    public TypeInfo getSchemaTypeInfo() {
+        return null;
+    }
+
+    /* -------------------------------------------------------------------------------------
+     * Modification methods...
+     * ------------------------------------------------------------------------------------- */
+
+    public void setAttribute(String name, String value) throws DOMException {
+        throw readOnly();
+    }
+
+    public void removeAttribute(String name) throws DOMException {
+        throw readOnly();
+    }
+
+    public Attr setAttributeNode(Attr newAttr) throws DOMException {
+        throw readOnly();
+    }
+
+    public Attr removeAttributeNode(Attr oldAttr) throws DOMException {
+        throw readOnly();
+    }
+
+    public void setAttributeNS(String namespaceURI, String qualifiedName, String value) throws DOMException {
+        throw readOnly();
+    }
+
+    public void removeAttributeNS(String namespaceURI, String localName) throws DOMException {
+        throw readOnly();
+    }
+
+    public Attr setAttributeNodeNS(Attr newAttr) throws DOMException {
+        throw readOnly();
+    }
+
+    public void setIdAttribute(String name, boolean isId) throws DOMException {
+        throw readOnly();
+    }
+
+    public void setIdAttributeNS(String namespaceURI, String localName, boolean isId) throws DOMException {
+        throw readOnly();
+    }
+
+    public void setIdAttributeNode(Attr idAttr, boolean isId) throws DOMException {
+        throw readOnly();
+    }
+
+    private NodeList getElementsByName(String namespaceURI, String name) {
+        final List<Node> elements = new ArrayList<Node>();
+
+        addDescendantElements(node, namespaceURI, name, elements);
+
+        return new NodeList() {
+            public Node item(int index) {
+                if(index < 0 || index >= elements.size()) {
+                    return null;
+                }
+                return elements.get(index);
+            }
+
+            public int getLength() {
+                return elements.size();
+            }
+        };
+    }
+
+    private void addDescendantElements(int parent, String namespaceURI, String name, List<Node> elements) {
+        for(int child = document.getFirstChild(parent); child != -1; child = document.getNextSibling(child)) {
+            if(document.getNodeType(child) == Node.ELEMENT_NODE) {
+                if(isNameMatch(document.getNodeName(child), namespaceURI, name)) {
+                    elements.add(document.getNode(child));
+                }
+                addDescendantElements(child, namespaceURI, name, elements);
+            }
+        }
+    }
+
+    private static boolean isNameMatch(QName qName, String namespaceURI, String name) {
+        if(namespaceURI == null) {
+            return name.equals("*") || name.equals(CompactDocument.toNodeName(qName));
+        }
+        return (namespaceURI.equals("*") || namespaceURI.equals(qName.getNamespaceURI())) && (name.equals("*") || name.equals(qName.getLocalPart()));
+    }
+
+    private class AttributeMap implements NamedNodeMap {
+
+        public Node getNamedItem(String name) {
+            return getAttributeNode(name);
+        }
+
+        public Node getNamedItemNS(String namespaceURI, String localName) throws DOMException {
+            return getAttributeNodeNS(namespaceURI, localName);
+        }
+
+        public Node item(int index) {
+            if(index < 0 || index >= getLength()) {
+                return null;
+            }
+            return new CompactAttr(CompactElement.this, document.getAttribute(node, index));
+        }
+
+        public int getLength() {
+            return document.getAttributeCount(node);
+        }
+
+        public Node setNamedItem(Node arg) throws DOMException {
+            throw readOnly();
+        }
+
+        public Node removeNamedItem(String name) throws DOMException {
+            throw readOnly();
+        }
+
+        public Node setNamedItemNS(Node arg) throws DOMException {
+            throw readOnly();
+        }
+
+        public Node removeNamedItemNS(String namespaceURI, String localName) throws DOMException {
+            throw readOnly();
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+	Milyn - Copyright (C) 2006 - 2010
+
+	This library is free software; you can redistribute it and/or
+	modify it under the terms of the GNU Lesser General Public
+	License (version 2.1) as published by the Free Software
+	Foundation.
+
+	This library is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+	See the GNU Lesser General Public License for more details:
+	http://www.gnu.org/licenses/lgpl.txt
+*/
+package org.milyn.xml.compact;
+
+import javax.xml.namespace.QName;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Element and attribute name table for {@link CompactDocument CompactDocuments}.
+ * <p/>
+ * Names are interned once and then referenced by index from the node arrays of every
+ * {@link CompactDocument} created against the table.  A table is typically owned by a
+ * single resource configuration and shared by all executions of that configuration,
+ * so it is safe for concurrent use.
+ *
+ * @see CompactDocument
+ */
+public class CompactNameTable {
+
+    private Map<QName, int[]> nameIndexes = new ConcurrentHashMap<QName, int[]>();
+    private volatile QName[] names = new QName[0];
+
+    /**
+     * Intern the supplied name.
+     * @param name The name.
+     * @return The name index.
+     */
+    public int intern(QName name) {
+        int index = lookup(name);
+
+        if(index != -1) {
+            return index;
+        }
+
+        synchronized (this) {
+            index = lookup(name);
+            if(index != -1) {
+                return index;
+            }
+
+            int[] indexes = nameIndexes.get(name);
+            QName[] newNames = new QName[names.length + 1];
+
+            index = names.length;
+            System.arraycopy(names, 0, newNames, 0, names.length);
+            newNames[index] = name;
+            names = newNames;
+
+            // QName equality ignores the prefix, so the same QName can map to a number of entries...
+            if(indexes == null) {
+                nameIndexes.put(name, new int[] {index});
+            } else {
+                int[] newIndexes = new int[indexes.length + 1];
+                System.arraycopy(indexes, 0, newIndexes, 0, indexes.length);
+                newIndexes[indexes.length] = index;
+                nameIndexes.put(name, newIndexes);
+            }
+        }
+
+        return index;
+    }
+
+    /**
+     * Intern the supplied name.
+     * @param namespaceURI The namespace URI, or null/empty if not namespaced.
+     * @param localName The local name.
+     * @param qName The qualified (prefixed) name.
+     * @return The name index.
+     */
+    public int intern(String namespaceURI, String localName, String qName) {
+        String prefix = "";
+
+        if(localName == null || localName.length() == 0) {
+            localName = qName;
+        }
+        if(qName != null) {
+            int colonIndex = qName.indexOf(':');
+            if(colonIndex != -1) {
+                prefix = qName.substring(0, colonIndex);
+            }
+        }
+
+        return intern(new QName((namespaceURI != null ? namespaceURI : ""), localName, prefix));
+    }
+
+    /**
+     * Get the name at the specified index.
+     * @param index The name index.
+     * @return The name.
+     */
+    public QName getName(int index) {
+        return names[index];
+    }
+
+    /**
+     * Get the number of names in the table.
+     * @return The number of names in the table.
+     */
+    public int size() {
+        return names.length;
+    }
+
+    private int lookup(QName name) {
+        int[] indexes = nameIndexes.get(name);
+
+        if(indexes != null) {
+            QName[] currentNames = names;
+            for(int index : indexes) {
+                if(currentNames[index].getPrefix().equals(name.getPrefix())) {
+                    return index;
+                }
+            }
+        }
+
+        return -1;
+    }
+}
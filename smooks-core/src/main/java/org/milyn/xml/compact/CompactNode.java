@@ -0,0 +1,243 @@
+/*
+	Milyn - Copyright (C) 2006 - 2010
+
+	This library is free software; you can redistribute it and/or
+	modify it under the terms of the GNU Lesser General Public
+	License (version 2.1) as published by the Free Software
+	Foundation.
+
+	This library is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+	See the GNU Lesser General Public License for more details:
+	http://www.gnu.org/licenses/lgpl.txt
+*/
+package org.milyn.xml.compact;
+
+import org.w3c.dom.DOMException;
+import org.w3c.dom.Document;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.w3c.dom.UserDataHandler;
+
+/**
+ * Abstract read-only W3C DOM {@link Node} view of a {@link CompactDocument} node.
+ * <p/>
+ * Compact nodes have no owner {@link Document}.  All modification methods throw a
+ * {@link DOMException} ({@link DOMException#NO_MODIFICATION_ALLOWED_ERR}).
+ */
+public abstract class CompactNode implements Node {
+
+    protected final CompactDocument document;
+    protected final int node;
+
+    CompactNode(CompactDocument document, int node) {
+        this.document = document;
+        this.node = node;
+    }
+
+    /**
+     * Get the {@link CompactDocument} that owns this node.
+     * @return The owning {@link CompactDocument}.
+     */
+    public CompactDocument getCompactDocument() {
+        return document;
+    }
+
+    public short getNodeType() {
+        return document.getNodeType(node);
+    }
+
+    public String getNodeValue() throws DOMException {
+        return null;
+    }
+
+    public Node getParentNode() {
+        return document.getNode(document.getParent(node));
+    }
+
+    public NodeList getChildNodes() {
+        return new ChildNodeList();
+    }
+
+    public Node getFirstChild() {
+        return document.getNode(document.getFirstChild(node));
+    }
+
+    public Node getLastChild() {
+        return document.getNode(document.getLastChild(node));
+    }
+
+    public Node getPreviousSibling() {
+        return document.getNode(document.getPreviousSibling(node));
+    }
+
+    public Node getNextSibling() {
+        return document.getNode(document.getNextSibling(node));
+    }
+
+    public NamedNodeMap getAttributes() {
+        return null;
+    }
+
+    public Document getOwnerDocument() {
+        return null;
+    }
+
+    public boolean hasChildNodes() {
+        return (document.getFirstChild(node) != -1);
+    }
+
+    public boolean hasAttributes() {
+        return false;
+    }
+
+    public String getNamespaceURI() {
+        return null;
+    }
+
+    public String getPrefix() {
+        return null;
+    }
+
+    public String getLocalName() {
+        return null;
+    }
+
+    public String getBaseURI() {
+        return null;
+    }
+
+    public String getTextContent() throws DOMException {
+        StringBuilder builder = new StringBuilder();
+        document.appendTextContent(node, builder);
+        return builder.toString();
+    }
+
+    public boolean isSameNode(Node other) {
+        return (other == this);
+    }
+
+    public boolean isEqualNode(Node arg) {
+        throw notSupported("isEqualNode");
+    }
+
+    public short compareDocumentPosition(Node other) throws DOMException {
+        throw notSupported("compareDocumentPosition");
+    }
+
+    public String lookupPrefix(String namespaceURI) {
+        throw notSupported("lookupPrefix");
+    }
+
+    public boolean isDefaultNamespace(String namespaceURI) {
+        throw notSupported("isDefaultNamespace");
+    }
+
+    public String lookupNamespaceURI(String prefix) {
+        throw notSupported("lookupNamespaceURI");
+    }
+
+    public boolean isSupported(String feature, String version) {
+        return false;
+    }
+
+    public Object getFeature(String feature, String version) {
+        return null;
+    }
+
+    public Object getUserData(String key) {
+        return null;
+    }
+
+    public Node cloneNode(boolean deep) {
+        throw notSupported("cloneNode");
+    }
+
+    public void normalize() {
+        // Compact documents are never modified, so there's nothing to normalize...
+    }
+
+    /* -------------------------------------------------------------------------------------
+     * Modification methods...
+     * ------------------------------------------------------------------------------------- */
+
+    public void setNodeValue(String nodeValue) throws DOMException {
+        throw readOnly();
+    }
+
+    public Node insertBefore(Node newChild, Node refChild) throws DOMException {
+        throw readOnly();
+    }
+
+    public Node replaceChild(Node newChild, Node oldChild) throws DOMException {
+        throw readOnly();
+    }
+
+    public Node removeChild(Node oldChild) throws DOMException {
+        throw readOnly();
+    }
+
+    public Node appendChild(Node newChild) throws DOMException {
+        throw readOnly();
+    }
+
+    public void setPrefix(String prefix) throws DOMException {
+        throw readOnly();
+    }
+
+    public void setTextContent(String textContent) throws DOMException {
+        throw readOnly();
+    }
+
+    public Object setUserData(String key, Object data, UserDataHandler handler) {
+        throw readOnly();
+    }
+
+    public String toString() {
+        return "[" + getNodeName() + ": " + getNodeValue() + "]";
+    }
+
+    protected static DOMException readOnly() {
+        return new DOMException(DOMException.NO_MODIFICATION_ALLOWED_ERR, "Compact DOM nodes are read-only.");
+    }
+
+    protected static DOMException notSupported(String method) {
+        return new DOMException(DOMException.NOT_SUPPORTED_ERR, "Method '" + method + "' is not supported on Compact DOM nodes.");
+    }
+
+    private class ChildNodeList implements NodeList {
+
+        private int[] children;
+
+        public Node item(int index) {
+            int[] children = getChildren();
+
+            if(index < 0 || index >= children.length) {
+                return null;
+            }
+            return document.getNode(children[index]);
+        }
+
+        public int getLength() {
+            return getChildren().length;
+        }
+
+        private int[] getChildren() {
+            if(children == null) {
+                int count = 0;
+                for(int child = document.getFirstChild(node); child != -1; child = document.getNextSibling(child)) {
+                    count++;
+                }
+                children = new int[count];
+                count = 0;
+                for(int child = document.getFirstChild(node); child != -1; child = document.getNextSibling(child)) {
+                    children[count++] = child;
+                }
+            }
+            return children;
+        }
+    }
+}
@@ -0,0 +1,265 @@
+/*
+	Milyn - Copyright (C) 2006 - 2010
+
+	This library is free software; you can redistribute it and/or
+	modify it under the terms of the GNU Lesser General Public
+	License (version 2.1) as published by the Free Software
+	Foundation.
+
+	This library is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+	See the GNU Lesser General Public License for more details:
+	http://www.gnu.org/licenses/lgpl.txt
+*/
+package org.milyn.xml.compact;
+
+import freemarker.template.AdapterTemplateModel;
+import freemarker.template.SimpleScalar;
+import freemarker.template.TemplateHashModel;
+import freemarker.template.TemplateModel;
+import freemarker.template.TemplateModelException;
+import freemarker.template.TemplateNodeModel;
+import freemarker.template.TemplateScalarModel;
+import freemarker.template.TemplateSequenceModel;
+import org.w3c.dom.Node;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * FreeMarker node model for {@link CompactDocument} nodes.
+ * <p/>
+ * A native FreeMarker model that reads directly from the {@link CompactDocument} node arrays, avoiding
+ * the per-node wrapping performed by {@link freemarker.ext.dom.NodeModel}.  Supports the commonly used
+ * subset of the {@link freemarker.ext.dom.NodeModel} navigation syntax:
+ * <ul>
+ *  <li><b>child.name</b>: The child elements with the specified name (<b>*</b> for all child elements).</li>
+ *  <li><b>@attribute</b>: The value of the specified attribute.</li>
+ *  <li><b>@@text</b>: The text content of the node.</li>
+ *  <li>The node as a string (e.g. <b>${order.header.customer}</b>): The text of an element with no child elements.</li>
+ *  <li>The <b>?children</b>, <b>?parent</b>, <b>?node_name</b>, <b>?node_type</b> and <b>?node_namespace</b> built-ins.</li>
+ * </ul>
+ * XPath expressions and the other <b>@@</b> keys are not supported.
+ */
+public class CompactNodeModel implements TemplateNodeModel, TemplateHashModel, TemplateScalarModel, TemplateSequenceModel, AdapterTemplateModel {
+
+    private CompactNode node;
+
+    /**
+     * Public constructor.
+     * @param node The node to be wrapped.
+     */
+    public CompactNodeModel(CompactNode node) {
+        this.node = node;
+    }
+
+    public Object getAdaptedObject(Class hint) {
+        return node;
+    }
+
+    /* -------------------------------------------------------------------------------------
+     * TemplateHashModel...
+     * ------------------------------------------------------------------------------------- */
+
+    public TemplateModel get(String key) throws TemplateModelException {
+        if(node.getNodeType() != Node.ELEMENT_NODE) {
+            return null;
+        }
+
+        CompactElement element = (CompactElement) node;
+        if(key.startsWith("@@")) {
+            if(key.equals("@@text")) {
+                return new SimpleScalar(element.getTextContent());
+            }
+            throw new TemplateModelException("Unsupported key '" + key + "'.  Only '@@text' is supported on Compact DOM node models.");
+        } else if(key.startsWith("@")) {
+            String attributeName = key.substring(1);
+            if(element.hasAttribute(attributeName)) {
+                return new SimpleScalar(element.getAttribute(attributeName));
+            }
+            return null;
+        }
+
+        List<CompactNode> children = new ArrayList<CompactNode>();
+        addChildElements(node, key, children);
+
+        return toModel(children);
+    }
+
+    public boolean isEmpty() {
+        return false;
+    }
+
+    /* -------------------------------------------------------------------------------------
+     * TemplateScalarModel...
+     * ------------------------------------------------------------------------------------- */
+
+    public String getAsString() throws TemplateModelException {
+        if(node.getNodeType() != Node.ELEMENT_NODE) {
+            return node.getTextContent();
+        }
+
+        CompactDocument document = node.getCompactDocument();
+        StringBuilder text = new StringBuilder();
+        for(int child = document.getFirstChild(node.node); child != -1; child = document.getNextSibling(child)) {
+            short nodeType = document.getNodeType(child);
+
+            if(nodeType == Node.ELEMENT_NODE) {
+                throw new TemplateModelException("Only elements with no child elements can be processed as text.  Element '" + node.getNodeName() + "' has child elements.");
+            } else if(nodeType != Node.COMMENT_NODE) {
+                document.appendText(child, text);
+            }
+        }
+
+        return text.toString();
+    }
+
+    /* -------------------------------------------------------------------------------------
+     * TemplateSequenceModel...
+     * ------------------------------------------------------------------------------------- */
+
+    public TemplateModel get(int index) {
+        return (index == 0 ? this : null);
+    }
+
+    public int size() {
+        return 1;
+    }
+
+    /* -------------------------------------------------------------------------------------
+     * TemplateNodeModel...
+     * ------------------------------------------------------------------------------------- */
+
+    public TemplateNodeModel getParentNode() {
+        Node parent = node.getParentNode();
+
+        if(parent == null) {
+            return null;
+        }
+        return new CompactNodeModel((CompactNode) parent);
+    }
+
+    public TemplateSequenceModel getChildNodes() {
+        List<CompactNode> children = new ArrayList<CompactNode>();
+        CompactDocument document = node.getCompactDocument();
+
+        if(node.getNodeType() == Node.ELEMENT_NODE) {
+            for(int child = document.getFirstChild(node.node); child != -1; child = document.getNextSibling(child)) {
+                children.add(document.getNode(child));
+            }
+        }
+
+        return new CompactNodeListModel(children);
+    }
+
+    public String getNodeName() {
+        if(node.getNodeType() == Node.ELEMENT_NODE) {
+            return node.getLocalName();
+        }
+        return node.getNodeName();
+    }
+
+    public String getNodeType() {
+        switch (node.getNodeType()) {
+            case Node.ELEMENT_NODE:
+                return "element";
+            case Node.COMMENT_NODE:
+                return "comment";
+            default:
+                return "text";
+        }
+    }
+
+    public String getNodeNamespace() {
+        String namespaceURI = node.getNamespaceURI();
+
+        if(namespaceURI == null && node.getNodeType() == Node.ELEMENT_NODE) {
+            return "";
+        }
+        return namespaceURI;
+    }
+
+    public boolean equals(Object obj) {
+        return (obj instanceof CompactNodeModel && ((CompactNodeModel) obj).node == node);
+    }
+
+    public int hashCode() {
+        return node.hashCode();
+    }
+
+    public String toString() {
+        return node.toString();
+    }
+
+    /**
+     * As with {@link freemarker.ext.dom.NodeModel}, a single node is returned as a node model, while
+     * 0 or 2+ nodes are returned as a list model.
+     */
+    private static TemplateModel toModel(List<CompactNode> nodes) {
+        if(nodes.size() == 1) {
+            return new CompactNodeModel(nodes.get(0));
+        }
+        return new CompactNodeListModel(nodes);
+    }
+
+    private static void addChildElements(CompactNode parent, String name, List<CompactNode> children) {
+        CompactDocument document = parent.getCompactDocument();
+        boolean allElements = name.equals("*");
+
+        for(int child = document.getFirstChild(parent.node); child != -1; child = document.getNextSibling(child)) {
+            if(document.getNodeType(child) == Node.ELEMENT_NODE) {
+                if(allElements || name.equals(document.getNodeName(child).getLocalPart())) {
+                    children.add(document.getNode(child));
+                }
+            }
+        }
+    }
+
+    /**
+     * Node list model.
+     */
+    private static class CompactNodeListModel implements TemplateSequenceModel, TemplateHashModel, TemplateScalarModel {
+
+        private List<CompactNode> nodes;
+
+        private CompactNodeListModel(List<CompactNode> nodes) {
+            this.nodes = nodes;
+        }
+
+        public TemplateModel get(int index) {
+            if(index < 0 || index >= nodes.size()) {
+                return null;
+            }
+            return new CompactNodeModel(nodes.get(index));
+        }
+
+        public int size() {
+            return nodes.size();
+        }
+
+        public TemplateModel get(String key) throws TemplateModelException {
+            if(key.startsWith("@")) {
+                throw new TemplateModelException("Key '" + key + "' is only applicable to a single node.  This list contains " + nodes.size() + " nodes.");
+            }
+
+            List<CompactNode> children = new ArrayList<CompactNode>();
+            for(CompactNode node : nodes) {
+                if(node.getNodeType() == Node.ELEMENT_NODE) {
+                    addChildElements(node, key, children);
+                }
+            }
+
+            return toModel(children);
+        }
+
+        public boolean isEmpty() {
+            return nodes.isEmpty();
+        }
+
+        public String getAsString() throws TemplateModelException {
+            throw new TemplateModelException("Only a single node can be processed as text.  This list contains " + nodes.size() + " nodes.");
+        }
+    }
+}
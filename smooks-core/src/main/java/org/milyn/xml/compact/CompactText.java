@@ -0,0 +1,49 @@
+/*
+	Milyn - Copyright (C) 2006 - 2010
+
+	This library is free software; you can redistribute it and/or
+	modify it under the terms of the GNU Lesser General Public
+	License (version 2.1) as published by the Free Software
+	Foundation.
+
+	This library is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+	See the GNU Lesser General Public License for more details:
+	http://www.gnu.org/licenses/lgpl.txt
+*/
+package org.milyn.xml.compact;
+
+import org.w3c.dom.Text;
+import org.w3c.dom.DOMException;
+
+/**
+ * Read-only W3C DOM {@link Text} view of a {@link CompactDocument} text node.
+ */
+public class CompactText extends CompactCharacterData implements Text {
+
+    CompactText(CompactDocument document, int node) {
+        super(document, node);
+    }
+
+    public String getNodeName() {
+        return "#text";
+    }
+
+    public boolean isElementContentWhitespace() {
+        return false;
+    }
+
+    public String getWholeText() {
+        return getData();
+    }
+
+    public Text splitText(int offset) throws DOMException {
+        throw readOnly();
+    }
+
+    public Text replaceWholeText(String content) throws DOMException {
+        throw readOnly();
+    }
+}
@@ -36,8 +36,14 @@ import org.xml.sax.SAXException;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import javax.xml.transform.Source;
 import javax.xml.transform.stream.StreamSource;
@@ -139,6 +145,85 @@ public class SmooksTest extends TestCase {
     }
 
 
+    public void test_filterSourceAsync() throws Exception {
+        Smooks smooks = new Smooks(getClass().getResourceAsStream("test_setClassLoader_01.xml"));
+        List<Future<ExecutionContext>> futures = new ArrayList<Future<ExecutionContext>>();
+        List<StringResult> results = new ArrayList<StringResult>();
+
+        try {
+            for(int i = 0; i < 50; i++) {
+                StringResult result = new StringResult();
+
+                results.add(result);
+                futures.add(smooks.filterSourceAsync(new StringSource("<a/>"), result));
+            }
+
+            for(int i = 0; i < 50; i++) {
+                assertNotNull(futures.get(i).get(10, TimeUnit.SECONDS));
+                assertEquals("<b></b>", results.get(i).getResult());
+            }
+        } finally {
+            smooks.close();
+        }
+    }
+
+    public void test_filterSourceAsync_executor() throws Exception {
+        Smooks smooks = new Smooks(getClass().getResourceAsStream("test_setClassLoader_01.xml"));
+        final List<Runnable> tasks = new ArrayList<Runnable>();
+        StringResult result = new StringResult();
+
+        smooks.setExecutor(new Executor() {
+            public void execute(Runnable task) {
+                tasks.add(task);
+            }
+        });
+
+        ExecutionContext executionContext = smooks.createExecutionContext();
+        Future<ExecutionContext> future = smooks.filterSourceAsync(executionContext, new StringSource("<a/>"), result);
+
+        assertEquals(1, tasks.size());
+        assertFalse(future.isDone());
+
+        tasks.get(0).run();
+        assertTrue(future.isDone());
+        assertSame(executionContext, future.get());
+        assertEquals("<b></b>", result.getResult());
+    }
+
+    public void test_filterSourceAsync_error() throws Exception {
+        Smooks smooks = new Smooks();
+
+        try {
+            Future<ExecutionContext> future = smooks.filterSourceAsync(new StringSource("<a><b></a>"), new StringResult());
+            future.get(10, TimeUnit.SECONDS);
+            fail("Expected ExecutionException.");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof SmooksException);
+        } finally {
+            smooks.close();
+        }
+    }
+
+    public void test_filterSourceAsync_closed() throws Exception {
+        Smooks smooks = new Smooks();
+
+        smooks.filterSourceAsync(new StringSource("<a/>"), new StringResult()).get(10, TimeUnit.SECONDS);
+        smooks.close();
+
+        try {
+            smooks.filterSourceAsync(new StringSource("<a/>"), new StringResult());
+            fail("Expected IllegalStateException.");
+        } catch (IllegalStateException e) {
+            assertEquals("Unsupported call to asynchronous filtering method after Smooks instance has been closed.", e.getMessage());
+        }
+        try {
+            smooks.getExecutor();
+            fail("Expected IllegalStateException.");
+        } catch (IllegalStateException e) {
+            // Expected...
+        }
+    }
+
     public void test_setResourceLocator() throws IOException, SAXException {
         Smooks smooks = new Smooks("classpath:/org/milyn/test_setClassLoader_01.xml");
 
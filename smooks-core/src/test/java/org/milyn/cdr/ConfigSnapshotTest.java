@@ -0,0 +1,199 @@
+/*
+	Milyn - Copyright (C) 2006 - 2010
+
+	This library is free software; you can redistribute it and/or
+	modify it under the terms of the GNU Lesser General Public
+	License (version 2.1) as published by the Free Software
+	Foundation.
+
+	This library is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+	See the GNU Lesser General Public License for more details:
+	http://www.gnu.org/licenses/lgpl.txt
+*/
+
+package org.milyn.cdr;
+
+import junit.framework.TestCase;
+import org.milyn.Smooks;
+import org.milyn.io.FileUtils;
+import org.milyn.payload.StringResult;
+import org.milyn.payload.StringSource;
+import org.milyn.profile.ProfileSet;
+import org.xml.sax.SAXException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.Iterator;
+
+/**
+ * Unit tests for {@link ConfigSnapshot}.
+ */
+public class ConfigSnapshotTest extends TestCase {
+
+    private File workDir;
+
+    protected void setUp() throws Exception {
+        workDir = File.createTempFile("snapshot-test", "");
+        workDir.delete();
+        workDir.mkdirs();
+    }
+
+    protected void tearDown() throws Exception {
+        System.getProperties().remove(ConfigSnapshot.SNAPSHOT_DIR_SYSKEY);
+        deleteDir(workDir);
+    }
+
+    public void test_snapshot_v10() throws Exception {
+        assertSnapshotOK("/org/milyn/cdr/", "testconfig2.cdrl");
+    }
+
+    public void test_snapshot_conditions_imports() throws Exception {
+        assertSnapshotOK("/org/milyn/cdr/xsd11/conditiontests/", "config06.xml");
+        assertSnapshotOK("/org/milyn/cdr/xsd11/importtests/", "paramaterized_import_main.xml");
+    }
+
+    public void test_snapshot_extensions() throws Exception {
+        assertSnapshotOK("/org/milyn/cdr/xsd11/extensiontests/", "config_01.xml");
+        assertSnapshotOK("/org/milyn/visitors/set/", "config-02.xml");
+    }
+
+    public void test_not_current() throws Exception {
+        File config = writeConfig("main.xml", "<smooks-resource-list xmlns=\"http://www.milyn.org/xsd/smooks-1.1.xsd\"><import file=\"import.xml\" /></smooks-resource-list>");
+        File importConfig = writeConfig("import.xml", "<smooks-resource-list xmlns=\"http://www.milyn.org/xsd/smooks-1.1.xsd\"><resource-config selector=\"a\"><resource>x.txt</resource></resource-config></smooks-resource-list>");
+        String baseURI = workDir.toURI().toString();
+
+        ConfigSnapshot snapshot = readSnapshot(writeSnapshot(ConfigSnapshot.create(new FileInputStream(config), baseURI, null)));
+        assertTrue(snapshot.isCurrent(new FileInputStream(config), baseURI, null));
+        assertFalse(snapshot.isCurrent(new FileInputStream(config), "/some/other/base/", null));
+        assertFalse(snapshot.isCurrent(new ByteArrayInputStream("<smooks-resource-list />".getBytes()), baseURI, null));
+
+        // Modify the imported config...
+        writeConfig("import.xml", "<smooks-resource-list xmlns=\"http://www.milyn.org/xsd/smooks-1.1.xsd\"><resource-config selector=\"b\"><resource>x.txt</resource></resource-config></smooks-resource-list>");
+        assertFalse(snapshot.isCurrent(new FileInputStream(config), baseURI, null));
+
+        // And remove it...
+        importConfig.delete();
+        assertFalse(snapshot.isCurrent(new FileInputStream(config), baseURI, null));
+    }
+
+    public void test_build_time_snapshot() throws IOException, SAXException {
+        File config = writeConfig("main.xml", "<smooks-resource-list xmlns=\"http://www.milyn.org/xsd/smooks-1.1.xsd\"><import file=\"import.xml\" /></smooks-resource-list>");
+        writeConfig("import.xml", "<smooks-resource-list xmlns=\"http://www.milyn.org/xsd/smooks-1.1.xsd\"><resource-config selector=\"a\"><resource>x.txt</resource></resource-config></smooks-resource-list>");
+        String configURI = config.getAbsolutePath().replace('\\', '/');
+
+        try {
+            ConfigSnapshot.createSnapshotFile(configURI, new File(configURI + ConfigSnapshot.SNAPSHOT_FILE_EXTENSION), getClass().getClassLoader());
+        } catch (Exception e) {
+            fail(e.getMessage());
+        }
+        assertTrue(new File(config.getAbsolutePath() + ConfigSnapshot.SNAPSHOT_FILE_EXTENSION).exists());
+        assertEquals("a", getLastConfigList(new Smooks(configURI)).get(0).getSelector());
+
+        // Modify the imported config.  The snapshot is no longer current, so the config must be digested...
+        writeConfig("import.xml", "<smooks-resource-list xmlns=\"http://www.milyn.org/xsd/smooks-1.1.xsd\"><resource-config selector=\"b\"><resource>x.txt</resource></resource-config></smooks-resource-list>");
+        assertEquals("b", getLastConfigList(new Smooks(configURI)).get(0).getSelector());
+    }
+
+    public void test_first_run_snapshot() throws IOException, SAXException {
+        System.setProperty(ConfigSnapshot.SNAPSHOT_DIR_SYSKEY, workDir.getAbsolutePath());
+
+        assertSetElementDataOK(new Smooks("/org/milyn/visitors/set/config-02.xml"));
+
+        File[] snapshots = workDir.listFiles();
+        assertTrue(snapshots.length > 0);
+        long lastModified = snapshots[0].lastModified();
+
+        // Loaded from the snapshots...
+        assertSetElementDataOK(new Smooks("/org/milyn/visitors/set/config-02.xml"));
+        assertEquals(snapshots.length, workDir.listFiles().length);
+        assertEquals(lastModified, snapshots[0].lastModified());
+    }
+
+    private void assertSetElementDataOK(Smooks smooks) {
+        StringResult result = new StringResult();
+
+        smooks.filterSource(new StringSource("<a><b><d><e>some text</e></d></b></a>"), result);
+        assertEquals("<a><c><d><xxx:z xmlns:xxx=\"http://xxx\">some text</xxx:z></d></c></a>", result.getResult());
+    }
+
+    private void assertSnapshotOK(String baseURI, String config) throws SAXException, IOException, URISyntaxException {
+        ConfigSnapshot snapshot = ConfigSnapshot.create(getClass().getResourceAsStream(baseURI + config), baseURI, null);
+        SmooksResourceConfigurationList digestedList = snapshot.getConfigList();
+        SmooksResourceConfigurationList snapshotList;
+
+        snapshot = readSnapshot(writeSnapshot(snapshot));
+        assertTrue(snapshot.isCurrent(getClass().getResourceAsStream(baseURI + config), baseURI, null));
+
+        snapshotList = snapshot.getConfigList();
+        assertNotSame(snapshotList, snapshot.getConfigList());
+        assertEquals(baseURI, snapshotList.getName());
+        assertEquals(digestedList.size(), snapshotList.size());
+        for(int i = 0; i < digestedList.size(); i++) {
+            SmooksResourceConfiguration digestedConfig = digestedList.get(i);
+            SmooksResourceConfiguration snapshotConfig = snapshotList.get(i);
+
+            assertEquals(digestedConfig.toXML(), snapshotConfig.toXML());
+            assertEquals(digestedConfig.getResourceType(), snapshotConfig.getResourceType());
+            assertEquals(digestedConfig.getExtendedConfigNS(), snapshotConfig.getExtendedConfigNS());
+            assertEquals(digestedConfig.isDefaultResource(), snapshotConfig.isDefaultResource());
+            assertEquals(digestedConfig.getParameterCount(), snapshotConfig.getParameterCount());
+            if(digestedConfig.getConditionEvaluator() != null) {
+                assertEquals(digestedConfig.getConditionEvaluator().getClass(), snapshotConfig.getConditionEvaluator().getClass());
+            }
+        }
+
+        assertEquals(digestedList.getProfiles().size(), snapshotList.getProfiles().size());
+        for(int i = 0; i < digestedList.getProfiles().size(); i++) {
+            ProfileSet digestedProfiles = digestedList.getProfiles().get(i);
+            ProfileSet snapshotProfiles = snapshotList.getProfiles().get(i);
+
+            assertEquals(digestedProfiles.getBaseProfile(), snapshotProfiles.getBaseProfile());
+            assertEquals(digestedProfiles.toString(), snapshotProfiles.toString());
+        }
+    }
+
+    private byte[] writeSnapshot(ConfigSnapshot snapshot) throws IOException {
+        ByteArrayOutputStream snapshotBytes = new ByteArrayOutputStream();
+        snapshot.write(snapshotBytes);
+        return snapshotBytes.toByteArray();
+    }
+
+    private ConfigSnapshot readSnapshot(byte[] snapshot) throws IOException {
+        return ConfigSnapshot.read(new ByteArrayInputStream(snapshot));
+    }
+
+    private File writeConfig(String name, String config) throws IOException {
+        File file = new File(workDir, name);
+        FileUtils.writeFile(config.getBytes(), file);
+        return file;
+    }
+
+    private SmooksResourceConfigurationList getLastConfigList(Smooks smooks) {
+        Iterator<SmooksResourceConfigurationList> listIt = smooks.getApplicationContext().getStore().getSmooksResourceConfigurationLists();
+        SmooksResourceConfigurationList list = null;
+
+        while(listIt.hasNext()) {
+            list = listIt.next();
+        }
+
+        return list;
+    }
+
+    private void deleteDir(File dir) {
+        File[] files = dir.listFiles();
+
+        if(files != null) {
+            for(File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+}
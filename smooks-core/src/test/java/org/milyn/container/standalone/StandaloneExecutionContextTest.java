@@ -22,6 +22,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.milyn.Smooks;
 import org.milyn.SmooksUtil;
+import org.milyn.container.ContextKey;
 import org.milyn.profile.DefaultProfileSet;
 
 /**
@@ -46,6 +47,53 @@ public class StandaloneExecutionContextTest
         assertTrue( attributes.contains( value ) );
 	}
 	
+	@Test
+	public void typedAttributes()
+	{
+        final ContextKey<String> key = new ContextKey<String>("testKey");
+
+        assertNull( context.get( key ) );
+        context.set( key, "testValue" );
+        assertEquals( "testValue", context.get( key ) );
+
+        // Typed attributes are not in the Object keyed attributes...
+        assertFalse( context.getAttributes().containsKey( key ) );
+        assertNull( context.getAttribute( key ) );
+
+        context.remove( key );
+        assertNull( context.get( key ) );
+	}
+
+	@Test
+	public void typedAttributes_keyCreatedAfterContext()
+	{
+        // Slot allocated after the context was created.  Slot storage must grow...
+        final ContextKey<Integer> key1 = new ContextKey<Integer>("key1");
+        final ContextKey<Integer> key2 = new ContextKey<Integer>("key2");
+
+        context.remove( key2 );
+        context.set( key2, 2 );
+        context.set( key1, 1 );
+        assertEquals( new Integer(1), context.get( key1 ) );
+        assertEquals( new Integer(2), context.get( key2 ) );
+	}
+
+	@Test
+	public void keyFamily()
+	{
+        final ContextKey.Family<String> family = new ContextKey.Family<String>("prefix:");
+
+        assertSame( family.get( "a" ), family.get( "a" ) );
+        assertSame( family.get( 1 ), family.get( 1 ) );
+        assertNotSame( family.get( "a" ), family.get( "b" ) );
+        assertEquals( "prefix:a", family.get( "a" ).getName() );
+
+        context.set( family.get( "a" ), "A" );
+        context.set( family.get( "b" ), "B" );
+        assertEquals( "A", context.get( family.get( "a" ) ) );
+        assertEquals( "B", context.get( family.get( "b" ) ) );
+	}
+
 	@Before
 	public void setup()
 	{
@@ -0,0 +1,232 @@
+/*
+	Milyn - Copyright (C) 2006 - 2010
+
+	This library is free software; you can redistribute it and/or
+	modify it under the terms of the GNU Lesser General Public
+	License (version 2.1) as published by the Free Software
+	Foundation.
+
+	This library is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+	See the GNU Lesser General Public License for more details:
+	http://www.gnu.org/licenses/lgpl.txt
+*/
+package org.milyn.db;
+
+import junit.framework.TestCase;
+import org.hsqldb.jdbcDriver;
+import org.milyn.Smooks;
+import org.milyn.SmooksException;
+import org.milyn.container.ExecutionContext;
+import org.milyn.delivery.sax.SAXElement;
+import org.milyn.delivery.sax.SAXVisitBefore;
+import org.milyn.payload.StringSource;
+import org.milyn.util.HsqlServer;
+import org.xml.sax.SAXException;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Unit tests for {@link PooledDataSource}.
+ */
+public class PooledDataSourceTest extends TestCase {
+
+    private static final String VALIDATION_QUERY = "select count(*) from INFORMATION_SCHEMA.SYSTEM_USERS";
+
+    private HsqlServer hsqlServer;
+
+    protected void setUp() throws Exception {
+        hsqlServer = new HsqlServer(9995);
+    }
+
+    protected void tearDown() throws Exception {
+        hsqlServer.stop();
+    }
+
+    public void test_reuse() throws SQLException {
+        PooledDataSource datasource = createDataSource(2);
+
+        try {
+            for(int i = 0; i < 5; i++) {
+                Connection connection = datasource.getConnection();
+
+                execute(connection, VALIDATION_QUERY);
+                assertEquals(1, datasource.getActiveCount());
+                connection.close();
+                assertEquals(0, datasource.getActiveCount());
+                assertEquals(1, datasource.getIdleCount());
+            }
+            assertEquals(5, datasource.getBorrowCount());
+            assertEquals(1, datasource.getCreatedCount());
+            assertEquals(0, datasource.getDestroyedCount());
+        } finally {
+            datasource.close();
+        }
+        assertEquals(0, datasource.getIdleCount());
+        assertEquals(1, datasource.getDestroyedCount());
+    }
+
+    public void test_closed_handle() throws SQLException {
+        PooledDataSource datasource = createDataSource(2);
+
+        try {
+            Connection connection = datasource.getConnection();
+
+            assertFalse(connection.isClosed());
+            connection.close();
+            assertTrue(connection.isClosed());
+            // Closing a second time has no effect...
+            connection.close();
+            assertEquals(1, datasource.getIdleCount());
+            try {
+                connection.createStatement();
+                fail("Expected SQLException");
+            } catch(SQLException e) {
+                // Expected
+            }
+        } finally {
+            datasource.close();
+        }
+    }
+
+    public void test_max_wait() throws SQLException {
+        PooledDataSource datasource = createDataSource(1);
+
+        datasource.setMaxWait(100);
+        try {
+            Connection connection = datasource.getConnection();
+            try {
+                datasource.getConnection();
+                fail("Expected SQLException");
+            } catch(SQLException e) {
+                assertTrue(e.getMessage().startsWith("Timed out waiting 100ms for a connection from PooledDataSource 'PooledDS'."));
+            }
+            assertEquals(1, datasource.getWaitTimeoutCount());
+
+            connection.close();
+            datasource.getConnection().close();
+            assertEquals(1, datasource.getCreatedCount());
+        } finally {
+            datasource.close();
+        }
+    }
+
+    public void test_validation() throws SQLException {
+        PooledDataSource datasource = createDataSource(2);
+
+        datasource.setValidationQuery("select x from UNKNOWN_TABLE");
+        try {
+            datasource.getConnection().close();
+            // Idle connection fails validation.  Should be replaced...
+            datasource.getConnection().close();
+            assertEquals(2, datasource.getCreatedCount());
+            assertEquals(1, datasource.getDestroyedCount());
+        } finally {
+            datasource.close();
+        }
+    }
+
+    public void test_idle_timeout() throws SQLException, InterruptedException {
+        PooledDataSource datasource = createDataSource(2);
+
+        datasource.setIdleTimeout(50);
+        try {
+            Connection connection1 = datasource.getConnection();
+            Connection connection2 = datasource.getConnection();
+
+            connection1.close();
+            Thread.sleep(200);
+            connection2.close();
+            assertEquals(1, datasource.getIdleCount());
+            assertEquals(1, datasource.getDestroyedCount());
+        } finally {
+            datasource.close();
+        }
+    }
+
+    public void test_min_size() throws SQLException {
+        PooledDataSource datasource = createDataSource(2);
+
+        datasource.setMinSize(2);
+        datasource.setIdleTimeout(0);
+        datasource.registerDriver();
+        try {
+            assertEquals(2, datasource.getIdleCount());
+            assertEquals(2, datasource.getCreatedCount());
+            datasource.getConnection().close();
+            assertEquals(2, datasource.getIdleCount());
+        } finally {
+            datasource.close();
+        }
+    }
+
+    public void test_smooks_programmatic() throws IOException, SAXException, SQLException {
+        Smooks smooks = new Smooks();
+        PooledDataSource datasource = createDataSource(2);
+
+        smooks.addVisitor(datasource);
+        smooks.addVisitor(new SAXVisitBefore() {
+            public void visitBefore(SAXElement element, ExecutionContext executionContext) throws SmooksException, IOException {
+                try {
+                    execute(AbstractDataSource.getConnection("PooledDS", executionContext), VALIDATION_QUERY);
+                } catch (SQLException e) {
+                    throw new SmooksException("Query failed.", e);
+                }
+            }
+        }, "b");
+
+        try {
+            for(int i = 0; i < 5; i++) {
+                smooks.filterSource(new StringSource("<a><b/><b/></a>"));
+                assertEquals(0, datasource.getActiveCount());
+            }
+            assertEquals(5, datasource.getBorrowCount());
+            assertEquals(1, datasource.getCreatedCount());
+        } finally {
+            smooks.close();
+        }
+        // Smooks.close uninitializes the datasource...
+        assertEquals(0, datasource.getIdleCount());
+    }
+
+    public void test_smooks_config() throws IOException, SAXException {
+        Smooks smooks = new Smooks(getClass().getResourceAsStream("pooled-ds-lifecycle.xml"));
+
+        try {
+            for(int i = 0; i < 5; i++) {
+                smooks.filterSource(new StringSource("<a></a>"));
+            }
+        } finally {
+            smooks.close();
+        }
+    }
+
+    private PooledDataSource createDataSource(int maxSize) throws SQLException {
+        PooledDataSource datasource = new PooledDataSource()
+                .setName("PooledDS")
+                .setDriver(jdbcDriver.class)
+                .setUrl(hsqlServer.getUrl())
+                .setUsername(hsqlServer.getUsername())
+                .setPassword(hsqlServer.getPassword())
+                .setAutoCommit(true)
+                .setMaxSize(maxSize);
+
+        datasource.registerDriver();
+
+        return datasource;
+    }
+
+    private static void execute(Connection connection, String sql) throws SQLException {
+        Statement statement = connection.createStatement();
+        try {
+            statement.execute(sql);
+        } finally {
+            statement.close();
+        }
+    }
+}
@@ -21,6 +21,9 @@ import org.milyn.FilterSettings;
 import org.milyn.container.ExecutionContext;
 import org.milyn.io.StreamUtils;
 import org.milyn.xml.XmlUtil;
+import org.milyn.xml.compact.CompactElement;
+import org.w3c.dom.DOMException;
+import org.w3c.dom.Element;
 import org.xml.sax.SAXException;
 
 import javax.xml.transform.stream.StreamSource;
@@ -180,6 +183,88 @@ public class DomModelCreatorTest extends TestCase {
                 XmlUtil.serialize(nodeModel.getModels().get("product"), true)));
     }
 
+    public void test_sax_compact_01() throws IOException, SAXException {
+        Smooks smooks = new Smooks(getClass().getResourceAsStream("node-model-03.xml"));
+
+        smooks.setFilterSettings(FilterSettings.DEFAULT_SAX);
+
+        ExecutionContext executionContext = smooks.createExecutionContext();
+        smooks.filterSource(executionContext, new StreamSource(getClass().getResourceAsStream("order-message.xml")), null);
+
+        DOMModel nodeModel = DOMModel.getModel(executionContext);
+
+        assertTrue(
+                StreamUtils.compareCharStreams(
+                "<order>\n" +
+                "    <header>\n" +
+                "        <date>Wed Nov 15 13:45:28 EST 2006</date>\n" +
+                "        <customer number=\"123123\">Joe &gt; the man</customer>\n" +
+                "    </header>\n" +
+                "    <order-items/>\n" +
+                "</order>",
+                XmlUtil.serialize(nodeModel.getModels().get("order"), true)));
+
+        assertTrue(
+                StreamUtils.compareCharStreams(
+                "        <order-item>\n" +
+                "            <quantity>7</quantity>\n" +
+                "            <price>5.20</price>\n" +
+                "        </order-item>",
+                XmlUtil.serialize(nodeModel.getModels().get("order-item"), true)));
+
+        assertTrue(
+                StreamUtils.compareCharStreams(
+                "<product>222</product>",
+                XmlUtil.serialize(nodeModel.getModels().get("product"), true)));
+
+        Element order = nodeModel.getModels().get("order");
+        assertTrue(order instanceof CompactElement);
+        assertEquals("123123", ((Element)order.getElementsByTagName("customer").item(0)).getAttribute("number"));
+        assertEquals("Joe > the man", order.getElementsByTagName("customer").item(0).getTextContent());
+        try {
+            order.setAttribute("id", "1");
+            fail("Expected DOMException.");
+        } catch(DOMException e) {
+            assertEquals(DOMException.NO_MODIFICATION_ALLOWED_ERR, e.code);
+        }
+
+        // Compact model storage is reused for each new model of the same name...
+        assertEquals(4, ModelCatcher.elements.size());
+        assertSame(((CompactElement)ModelCatcher.elements.get(0)).getCompactDocument(), ((CompactElement)ModelCatcher.elements.get(2)).getCompactDocument());
+        assertSame(((CompactElement)ModelCatcher.elements.get(1)).getCompactDocument(), ((CompactElement)ModelCatcher.elements.get(3)).getCompactDocument());
+        assertNotSame(ModelCatcher.elements.get(1), ModelCatcher.elements.get(3));
+    }
+
+    public void test_sax_compact_02() throws IOException, SAXException {
+        Smooks smooks = new Smooks(getClass().getResourceAsStream("node-model-03.xml"));
+
+        smooks.setFilterSettings(FilterSettings.DEFAULT_SAX);
+
+        ExecutionContext executionContext = smooks.createExecutionContext();
+        smooks.filterSource(executionContext, new StreamSource(getClass().getResourceAsStream("order-message-with-ns.xml")), null);
+
+        DOMModel nodeModel = DOMModel.getModel(executionContext);
+
+        assertTrue(
+                StreamUtils.compareCharStreams(
+                "        <ordi:order-item xmlns:ordi=\"http://ordi\">\n" +
+                "            <ordi:quantity>7</ordi:quantity>\n" +
+                "            <ordi:price>5.20</ordi:price>\n" +
+                "        </ordi:order-item>",
+                XmlUtil.serialize(nodeModel.getModels().get("order-item"), true)));
+
+        assertTrue(
+                StreamUtils.compareCharStreams(
+                "<ordi:product xmlns:ordi=\"http://ordi\">222</ordi:product>",
+                XmlUtil.serialize(nodeModel.getModels().get("product"), true)));
+
+        Element orderItem = nodeModel.getModels().get("order-item");
+        assertEquals("http://ordi", orderItem.getNamespaceURI());
+        assertEquals("ordi", orderItem.getPrefix());
+        assertEquals("order-item", orderItem.getLocalName());
+        assertEquals("7", orderItem.getElementsByTagNameNS("http://ordi", "quantity").item(0).getTextContent());
+    }
+
     public void test_dom() throws IOException, SAXException {
         Smooks smooks = new Smooks(getClass().getResourceAsStream("node-model-01.xml"));
         ExecutionContext executionContext = smooks.createExecutionContext();
@@ -0,0 +1,227 @@
+/*
+	Milyn - Copyright (C) 2006 - 2010
+
+	This library is free software; you can redistribute it and/or
+	modify it under the terms of the GNU Lesser General Public
+	License (version 2.1) as published by the Free Software
+	Foundation.
+
+	This library is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+	See the GNU Lesser General Public License for more details:
+	http://www.gnu.org/licenses/lgpl.txt
+*/
+package org.milyn.delivery.java;
+
+import junit.framework.TestCase;
+import org.milyn.Smooks;
+import org.milyn.SmooksException;
+import org.milyn.cdr.SmooksResourceConfiguration;
+import org.milyn.cdr.annotation.Configurator;
+import org.milyn.container.ExecutionContext;
+import org.milyn.delivery.sax.SAXElement;
+import org.milyn.delivery.sax.SAXVisitBefore;
+import org.milyn.payload.FilterResult;
+import org.milyn.payload.JavaSource;
+import org.milyn.payload.StringResult;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Unit test for {@link ObjectGraphXMLReader}.
+ */
+public class ObjectGraphXMLReaderTest extends TestCase {
+
+    public void test_default_reader() {
+        Smooks smooks = new Smooks();
+        StringResult result = new StringResult();
+
+        smooks.filterSource(new JavaSource(new MyBean1()), result);
+        assertEquals("<org.milyn.delivery.java.MyBean1><prop1>true</prop1><prop2>hello</prop2><prop3>1111</prop3><mybean2><prop5>true</prop5><prop6>hello</prop6></mybean2></org.milyn.delivery.java.MyBean1>", result.getResult());
+    }
+
+    public void test_collections() throws IOException, SAXException {
+        Container container = new Container();
+
+        container.list.add("a");
+        container.list.add(null);
+        container.list.add(new MyBean2());
+        container.map.put("k", 2L);
+        container.object = new MyBean2();
+
+        assertEquals("<org.milyn.delivery.java.ObjectGraphXMLReaderTest_-Container>" +
+                        "<list><string>a</string><null/><org.milyn.delivery.java.MyBean2><prop5>true</prop5><prop6>hello</prop6></org.milyn.delivery.java.MyBean2></list>" +
+                        "<linkedList class=\"linked-list\"/>" +
+                        "<map><entry><string>k</string><long>2</long></entry></map>" +
+                        "<ints><int>1</int><int>2</int></ints>" +
+                        "<strings><string>x</string><null/></strings>" +
+                        "<object class=\"org.milyn.delivery.java.MyBean2\"><prop5>true</prop5><prop6>hello</prop6></object>" +
+                        "<type>GREEN</type>" +
+                        "</org.milyn.delivery.java.ObjectGraphXMLReaderTest_-Container>",
+                parse(container, false));
+    }
+
+    public void test_references() throws IOException, SAXException {
+        Node a = new Node("a");
+        Node b = new Node("b");
+
+        a.next = b;
+        b.next = a;
+        a.children.add(b);
+        a.children.add(a);
+
+        assertEquals("<org.milyn.delivery.java.ObjectGraphXMLReaderTest_-Node>" +
+                        "<name>a</name>" +
+                        "<next><name>b</name><next reference=\"../..\"/><children/></next>" +
+                        "<children><org.milyn.delivery.java.ObjectGraphXMLReaderTest_-Node reference=\"../../next\"/><org.milyn.delivery.java.ObjectGraphXMLReaderTest_-Node reference=\"../..\"/></children>" +
+                        "</org.milyn.delivery.java.ObjectGraphXMLReaderTest_-Node>",
+                parse(a, false));
+    }
+
+    public void test_pruning() throws IOException, SAXException {
+        assertEquals("<org.milyn.delivery.java.MyBean1><mybean2><prop5>true</prop5></mybean2></org.milyn.delivery.java.MyBean1>", parse(new MyBean1(), true));
+    }
+
+    public void test_pruning_off_when_serializing() throws IOException, SAXException {
+        Smooks smooks = new Smooks();
+        smooks.addVisitor(new MockVisitBefore(), "prop5");
+        ExecutionContext executionContext = smooks.createExecutionContext();
+        FilterResult.setResults(executionContext, new StringResult());
+
+        assertEquals("<org.milyn.delivery.java.MyBean1><prop1>true</prop1><prop2>hello</prop2><prop3>1111</prop3><mybean2><prop5>true</prop5><prop6>hello</prop6></mybean2></org.milyn.delivery.java.MyBean1>",
+                parse(new MyBean1(), true, executionContext));
+    }
+
+    public void test_same_as_xstream() throws IOException, SAXException {
+        Smooks smooks = new Smooks();
+        Extended_Bean bean = new Extended_Bean();
+        Node node = new Node("n");
+
+        node.next = node;
+        bean.container = new Container();
+        bean.container.list.add(node);
+        bean.container.map.put("node", node);
+        bean.container.object = new MyBean2();
+        ((Base_Bean) bean).base_name = "base";
+        bean.name = "extended";
+        ((Base_Bean) bean).name = "hidden";
+
+        SmooksResourceConfiguration xstreamConfig = new SmooksResourceConfiguration();
+        xstreamConfig.setParameter("includeEnclosingDocument", "false");
+
+        assertEquals(parse(new XStreamXMLReader(), xstreamConfig, bean, smooks.createExecutionContext()),
+                parse(new ObjectGraphXMLReader(), new SmooksResourceConfiguration(), bean, smooks.createExecutionContext()));
+    }
+
+    private String parse(Object object, boolean prune) throws IOException, SAXException {
+        Smooks smooks = new Smooks();
+        smooks.addVisitor(new MockVisitBefore(), "prop5");
+        return parse(object, prune, smooks.createExecutionContext());
+    }
+
+    private String parse(Object object, boolean prune, ExecutionContext executionContext) throws IOException, SAXException {
+        SmooksResourceConfiguration readerConfig = new SmooksResourceConfiguration();
+
+        readerConfig.setParameter("pruneUnselectedBranches", Boolean.toString(prune));
+        return parse(new ObjectGraphXMLReader(), readerConfig, object, executionContext);
+    }
+
+    private String parse(JavaXMLReader reader, SmooksResourceConfiguration readerConfig, Object object, ExecutionContext executionContext) throws IOException, SAXException {
+        StringBuilderHandler handler = new StringBuilderHandler();
+
+        Configurator.configure(reader, readerConfig, executionContext.getContext());
+        reader.setExecutionContext(executionContext);
+        reader.setSourceObjects(Arrays.asList(object));
+        reader.setContentHandler(handler);
+        reader.parse((String) null);
+
+        return handler.xml.toString();
+    }
+
+    public static class Container {
+        private List<Object> list = new ArrayList<Object>();
+        private List<Object> linkedList = new LinkedList<Object>();
+        private Map<String, Object> map = new HashMap<String, Object>();
+        private int[] ints = {1, 2};
+        private String[] strings = {"x", null};
+        private Object object;
+        private Type type = Type.GREEN;
+        private transient String transientProp = "transient";
+        private static String staticProp = "static";
+    }
+
+    public static class Base_Bean {
+        private String name;
+        private String base_name;
+        private AtomicInteger count = new AtomicInteger(3);
+    }
+
+    public static class Extended_Bean extends Base_Bean {
+        private String name;
+        private AtomicLong total_count = new AtomicLong(4);
+        private Container container;
+    }
+
+    public static enum Type {
+        GREEN
+    }
+
+    public static class Node {
+        private String name;
+        private Node next;
+        private List<Node> children = new ArrayList<Node>();
+
+        public Node(String name) {
+            this.name = name;
+        }
+    }
+
+    private static class MockVisitBefore implements SAXVisitBefore {
+        public void visitBefore(SAXElement element, ExecutionContext executionContext) throws SmooksException, IOException {
+        }
+    }
+
+    private static class StringBuilderHandler extends DefaultHandler {
+
+        private StringBuilder xml = new StringBuilder();
+        private boolean open;
+
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            closeStart();
+            xml.append('<').append(qName);
+            for(int i = 0; i < attributes.getLength(); i++) {
+                xml.append(' ').append(attributes.getQName(i)).append("=\"").append(attributes.getValue(i)).append('"');
+            }
+            open = true;
+        }
+
+        public void characters(char[] ch, int start, int length) {
+            closeStart();
+            xml.append(ch, start, length);
+        }
+
+        public void endElement(String uri, String localName, String qName) {
+            if(open) {
+                xml.append("/>");
+                open = false;
+            } else {
+                xml.append("</").append(qName).append('>');
+            }
+        }
+
+        private void closeStart() {
+            if(open) {
+                xml.append('>');
+                open = false;
+            }
+        }
+    }
+}
@@ -25,16 +25,48 @@ import java.util.List;
 public class NestedExecutionVisitorTest extends TestCase {
 
     public void test() throws IOException, SAXException {
-        Smooks smooks = new Smooks(getClass().getResourceAsStream("config-01.xml"));
+        List<BeanContextLifecycleEvent> events = test("config-01.xml");
+
+        assertFragmentEvents(events);
+    }
+
+    public void test_reuseExecution() throws IOException, SAXException {
+        List<BeanContextLifecycleEvent> events = test("config-02.xml");
+
+        // The mapped beans are added directly to the parent context, but the parent
+        // must see the same lifecycle events as in the non reuse mode...
+        assertFragmentEvents(events);
+        // The nested beans are cleared between fragments (i.e. not "orderItem-orderItem")...
+        assertEquals("orderItem", events.get(1).getBean());
+        assertEquals("orderItem", events.get(5).getBean());
+    }
+
+    private void assertFragmentEvents(List<BeanContextLifecycleEvent> events) {
+        assertEquals(8, events.size());
+        for(int i = 0; i < events.size(); i += 4) {
+            assertEquals(BeanLifecycle.START_FRAGMENT, events.get(i).getLifecycle());
+            assertEquals(BeanLifecycle.ADD, events.get(i + 1).getLifecycle());
+            assertEquals(BeanLifecycle.END_FRAGMENT, events.get(i + 2).getLifecycle());
+            assertEquals(BeanLifecycle.REMOVE, events.get(i + 3).getLifecycle());
+        }
+    }
+
+    private List<BeanContextLifecycleEvent> test(String config) throws IOException, SAXException {
+        Smooks smooks = new Smooks(getClass().getResourceAsStream(config));
         StringResult result = new StringResult();
         JavaResult beans = new JavaResult();
-        ExecutionContext executionContext = smooks.createExecutionContext();
+        final ExecutionContext executionContext = smooks.createExecutionContext();
         final List<String> orderItems = new ArrayList<String>();
+        final List<BeanContextLifecycleEvent> events = new ArrayList<BeanContextLifecycleEvent>();
 
         executionContext.getBeanContext().addObserver(new BeanContextLifecycleObserver() {
             public void onBeanLifecycleEvent(BeanContextLifecycleEvent event) {
-                if(event.getLifecycle() == BeanLifecycle.REMOVE && event.getBeanId().getName().equals("orderItem")) {
-                    orderItems.add((String) event.getBean());
+                if(event.getBeanId().getName().equals("orderItem")) {
+                    assertSame(executionContext, event.getExecutionContext());
+                    if(event.getLifecycle() == BeanLifecycle.REMOVE) {
+                        orderItems.add((String) event.getBean());
+                    }
+                    events.add(event);
                 }
             }
         });
@@ -46,6 +78,9 @@ public class NestedExecutionVisitorTest extends TestCase {
 
         assertEquals("header", beans.getBean("header"));
         assertEquals("trailer", beans.getBean("trailer"));
+        assertNull(beans.getBean("orderItem"));
         assertEquals(2, orderItems.size());
+
+        return events;
     }
 }
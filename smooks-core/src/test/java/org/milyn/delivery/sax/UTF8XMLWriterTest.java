@@ -0,0 +1,169 @@
+/*
+	Milyn - Copyright (C) 2006 - 2010
+
+	This library is free software; you can redistribute it and/or
+	modify it under the terms of the GNU Lesser General Public
+	License (version 2.1) as published by the Free Software
+	Foundation.
+
+	This library is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+	See the GNU Lesser General Public License for more details:
+	http://www.gnu.org/licenses/lgpl.txt
+*/
+package org.milyn.delivery.sax;
+
+import junit.framework.TestCase;
+import org.milyn.Smooks;
+import org.milyn.FilterSettings;
+import org.xml.sax.helpers.AttributesImpl;
+
+import javax.xml.namespace.QName;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.util.Random;
+
+/**
+ * Unit tests for {@link UTF8XMLWriter}.
+ */
+public class UTF8XMLWriterTest extends TestCase {
+
+    public void test_encoding() throws IOException {
+        Random random = new Random(7);
+        char[] alphabet = "aZ09<>&\"' \n\u00e9\u07ff\u0800\u20ac\uffff\ud834\udd1e\ud800\udc00".toCharArray();
+
+        for(int run = 0; run < 200; run++) {
+            ByteArrayOutputStream expected = new ByteArrayOutputStream();
+            ByteArrayOutputStream actual = new ByteArrayOutputStream();
+            Writer expectedWriter = new OutputStreamWriter(expected, "UTF-8");
+            UTF8XMLWriter actualWriter = new UTF8XMLWriter(actual);
+
+            for(int write = 0; write < 50; write++) {
+                char[] chars = new char[random.nextInt(2000)];
+                for(int i = 0; i < chars.length; i++) {
+                    chars[i] = alphabet[random.nextInt(alphabet.length)];
+                }
+                if(write % 2 == 0) {
+                    expectedWriter.write(chars);
+                    actualWriter.write(chars);
+                } else {
+                    expectedWriter.write(new String(chars));
+                    actualWriter.write(new String(chars));
+                }
+            }
+            expectedWriter.close();
+            actualWriter.close();
+
+            assertEquals(new String(expected.toByteArray(), "UTF-8"), new String(actual.toByteArray(), "UTF-8"));
+        }
+    }
+
+    public void test_split_surrogate_pair() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        UTF8XMLWriter writer = new UTF8XMLWriter(out);
+
+        writer.write('\ud834');
+        writer.write("\udd1e<");
+        writer.write('\ud834');
+        writer.writeText("<".toCharArray(), 0, 1, true);
+        writer.close();
+
+        assertEquals("\ud834\udd1e<?&lt;", new String(out.toByteArray(), "UTF-8"));
+    }
+
+    public void test_text() throws IOException {
+        StringWriter expected = new StringWriter();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        UTF8XMLWriter writer = new UTF8XMLWriter(out);
+        SAXText text = new SAXText("a<b>&c\"'\u20ac", TextType.TEXT);
+
+        text.toWriter(expected, true);
+        text.toWriter(writer, true);
+        text.toWriter(expected, false);
+        text.toWriter(writer, false);
+        writer.flush();
+
+        assertEquals(expected.toString(), new String(out.toByteArray(), "UTF-8"));
+        assertEquals("a&lt;b&gt;&amp;c\"'\u20aca<b>&c\"'\u20ac", expected.toString());
+    }
+
+    public void test_elements() throws IOException {
+        SAXElement element = new SAXElement("http://x", "b", "x:b", new AttributesImpl(), null);
+        AttributesImpl attributes = new AttributesImpl();
+
+        attributes.addAttribute("", "att1", "att1", "CDATA", "<\"&'\u00e9>");
+        attributes.addAttribute("", "att2", "", "CDATA", "say \"hi\"");
+        element.setAttributes(attributes);
+
+        for(int i = 0; i < 2; i++) {
+            boolean encode = (i == 0);
+            StringWriter expected = new StringWriter();
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            UTF8XMLWriter writer = new UTF8XMLWriter(out);
+
+            SAXElementWriterUtil.writeStartElement(element, expected, encode);
+            SAXElementWriterUtil.writeStartElement(element, writer, encode);
+            SAXElementWriterUtil.writeEndElement(element, expected);
+            SAXElementWriterUtil.writeEndElement(element, writer);
+            SAXElementWriterUtil.writeEmptyElement(element, expected, encode);
+            SAXElementWriterUtil.writeEmptyElement(element, writer, encode);
+            writer.flush();
+
+            assertEquals(expected.toString(), new String(out.toByteArray(), "UTF-8"));
+        }
+    }
+
+    public void test_element_name_prefix() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        UTF8XMLWriter writer = new UTF8XMLWriter(out);
+
+        // Same QName, different prefixes...
+        writer.writeStartElement(new QName("http://x", "a", "x"), null, true, true);
+        writer.writeStartElement(new QName("http://x", "a", "y"), null, true, true);
+        writer.writeEndElement(new QName("http://x", "a"));
+        writer.flush();
+
+        assertEquals("<x:a /><y:a /></a>", new String(out.toByteArray(), "UTF-8"));
+    }
+
+    public void test_channel() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        UTF8XMLWriter writer = new UTF8XMLWriter(Channels.newChannel(out));
+        StringBuilder expected = new StringBuilder();
+
+        for(int i = 0; i < 20000; i++) {
+            writer.write("<a>\u00e9" + i + "</a>");
+            expected.append("<a>\u00e9").append(i).append("</a>");
+        }
+        writer.close();
+
+        assertEquals(expected.toString(), new String(out.toByteArray(), "UTF-8"));
+    }
+
+    public void test_filter() throws IOException {
+        StringBuilder input = new StringBuilder("<x:a xmlns:x=\"http://x\" att=\"&lt;&quot;\">");
+        for(int i = 0; i < 5000; i++) {
+            input.append("<b c=\"").append(i).append("\">\u00e9\u20ac &amp; &lt;").append(i).append("<!-- c --><![CDATA[<d>]]></b><e/>");
+        }
+        input.append("</x:a>");
+
+        Smooks smooks = new Smooks();
+        smooks.setFilterSettings(FilterSettings.DEFAULT_SAX);
+
+        StringWriter expected = new StringWriter();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        smooks.filterSource(new StreamSource(new StringReader(input.toString())), new StreamResult(expected));
+        smooks.filterSource(new StreamSource(new StringReader(input.toString())), new StreamResult(out));
+
+        assertEquals(expected.toString(), new String(out.toByteArray(), "UTF-8"));
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Milyn - Copyright (C) 2006 - 2010
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License (version 2.1) as published
+ * by the Free Software Foundation.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE.
+ *
+ * See the GNU Lesser General Public License for more details:
+ * http://www.gnu.org/licenses/lgpl.txt
+ */
+
+package org.milyn.io;
+
+import junit.framework.TestCase;
+import org.milyn.container.MockExecutionContext;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+/**
+ * Unit tests for {@link FragmentBuffer}.
+ */
+public class FragmentBufferTest extends TestCase {
+
+    public void test_write() throws IOException {
+        FragmentBuffer buffer = new FragmentBuffer();
+        StringBuilder expected = new StringBuilder();
+
+        for(int i = 0; i < 1000; i++) {
+            buffer.write("<a>");
+            buffer.write(Integer.toString(i).toCharArray());
+            buffer.write('<');
+            buffer.write("x/a>", 1, 3);
+            expected.append("<a>").append(i).append("</a>");
+        }
+
+        assertEquals(expected.length(), buffer.length());
+        assertEquals(expected.toString(), buffer.toString());
+        assertEquals('a', buffer.charAt(1));
+        assertEquals("<a>0</a>", buffer.subSequence(0, 8));
+
+        StringWriter writer = new StringWriter();
+        buffer.writeTo(writer);
+        assertEquals(expected.toString(), writer.toString());
+    }
+
+    public void test_trim() throws IOException {
+        FragmentBuffer buffer = new FragmentBuffer();
+
+        buffer.write("\n  <a>x</a> \r\n");
+        assertSame(buffer, buffer.trim());
+        assertEquals("<a>x</a>", buffer.toString());
+        assertEquals('<', buffer.charAt(0));
+        assertEquals("a>", buffer.subSequence(1, 3));
+
+        // Writing after a trim appends to the trimmed content...
+        buffer.write("<b/>");
+        assertEquals("<a>x</a><b/>", buffer.toString());
+
+        buffer.reset();
+        buffer.write(" \t ");
+        assertEquals("", buffer.trim().toString());
+    }
+
+    public void test_bounds() {
+        FragmentBuffer buffer = new FragmentBuffer();
+
+        buffer.write('a');
+        try {
+            buffer.charAt(1);
+            fail("Expected IndexOutOfBoundsException");
+        } catch(IndexOutOfBoundsException e) {
+            // Expected
+        }
+        try {
+            buffer.subSequence(0, 2);
+            fail("Expected IndexOutOfBoundsException");
+        } catch(IndexOutOfBoundsException e) {
+            // Expected
+        }
+    }
+
+    public void test_pool() throws IOException {
+        MockExecutionContext executionContext = new MockExecutionContext();
+        FragmentBuffer buffer1 = FragmentBuffer.acquire(executionContext);
+        FragmentBuffer buffer2 = FragmentBuffer.acquire(executionContext);
+
+        assertNotSame(buffer1, buffer2);
+        buffer1.write("abc");
+        buffer1.release(executionContext);
+
+        FragmentBuffer buffer3 = FragmentBuffer.acquire(executionContext);
+        assertSame(buffer1, buffer3);
+        assertEquals(0, buffer3.length());
+        assertEquals("", buffer3.toString());
+
+        // Pools are per execution...
+        assertNotSame(buffer1, FragmentBuffer.acquire(new MockExecutionContext()));
+    }
+}
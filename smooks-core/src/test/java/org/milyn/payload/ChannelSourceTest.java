@@ -0,0 +1,162 @@
+/*
+	Milyn - Copyright (C) 2006 - 2010
+
+	This library is free software; you can redistribute it and/or
+	modify it under the terms of the GNU Lesser General Public
+	License (version 2.1) as published by the Free Software
+	Foundation.
+
+	This library is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+	See the GNU Lesser General Public License for more details:
+	http://www.gnu.org/licenses/lgpl.txt
+*/
+package org.milyn.payload;
+
+import junit.framework.TestCase;
+import org.milyn.FilterSettings;
+import org.milyn.Smooks;
+import org.milyn.StreamFilterType;
+import org.milyn.container.ExecutionContext;
+import org.milyn.io.FileUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+
+/**
+ * Unit tests for {@link ByteBufferSource}, {@link ChannelSource} and {@link ChannelResult}.
+ */
+public class ChannelSourceTest extends TestCase {
+
+    private static final String MESSAGE;
+
+    static {
+        StringBuilder message = new StringBuilder("<a>");
+        for(int i = 0; i < 500; i++) {
+            // Mix of 1, 2, 3 and 4 byte UTF-8 sequences, so as to split sequences across buffer boundaries...
+            message.append("<b id=\"").append(i).append("\">x\u00e9\u20ac\uD834\uDD1E</b>");
+        }
+        MESSAGE = message.append("</a>").toString();
+    }
+
+    public void test_ByteBufferSource_SAX() throws IOException {
+        test_ByteBufferSource(StreamFilterType.SAX, ByteBuffer.wrap(MESSAGE.getBytes("UTF-8")));
+    }
+
+    public void test_ByteBufferSource_DOM() throws IOException {
+        test_ByteBufferSource(StreamFilterType.DOM, ByteBuffer.wrap(MESSAGE.getBytes("UTF-8")));
+    }
+
+    public void test_ByteBufferSource_direct() throws IOException {
+        byte[] bytes = MESSAGE.getBytes("UTF-8");
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length + 10);
+
+        buffer.put(new byte[] {1, 2, 3, 4, 5});
+        buffer.put(bytes);
+        buffer.flip();
+        buffer.position(5);
+
+        test_ByteBufferSource(StreamFilterType.SAX, buffer);
+
+        // Buffer position is not modified...
+        assertEquals(5, buffer.position());
+    }
+
+    public void test_ChannelSource_SAX() throws IOException {
+        test_ChannelSource(StreamFilterType.SAX);
+    }
+
+    public void test_ChannelSource_DOM() throws IOException {
+        test_ChannelSource(StreamFilterType.DOM);
+    }
+
+    public void test_ChannelResult_gathering() throws IOException {
+        File file = File.createTempFile("ChannelSourceTest", ".xml");
+        Smooks smooks = new Smooks();
+
+        try {
+            smooks.setFilterSettings(new FilterSettings(StreamFilterType.SAX));
+
+            // FileChannel is a GatheringByteChannel...
+            FileOutputStream output = new FileOutputStream(file);
+            smooks.filterSource(new ByteBufferSource(ByteBuffer.wrap(MESSAGE.getBytes("UTF-8"))), new ChannelResult(output.getChannel(), 16, 5));
+
+            assertEquals(MESSAGE, new String(FileUtils.readFile(file), "UTF-8"));
+        } finally {
+            smooks.close();
+            file.delete();
+        }
+    }
+
+    public void test_createReader_single_chars() throws IOException {
+        Reader reader = new ChannelSource(Channels.newChannel(new ByteArrayInputStream(MESSAGE.getBytes("UTF-8"))), 16).createReader(Charset.forName("UTF-8"));
+        StringBuilder content = new StringBuilder();
+        char[] singleChar = new char[1];
+
+        // Surrogate pairs must be split across reads...
+        while(reader.read(singleChar, 0, 1) != -1) {
+            content.append(singleChar[0]);
+        }
+        assertEquals(MESSAGE, content.toString());
+    }
+
+    public void test_encoding() throws IOException {
+        Smooks smooks = new Smooks();
+
+        try {
+            smooks.setFilterSettings(new FilterSettings(StreamFilterType.SAX));
+
+            ExecutionContext execContext = smooks.createExecutionContext();
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            String message = "<a>\u00e9\u00e8</a>";
+
+            execContext.setContentEncoding("ISO-8859-1");
+            smooks.filterSource(execContext, new ChannelSource(Channels.newChannel(new ByteArrayInputStream(message.getBytes("ISO-8859-1")))), new ChannelResult(Channels.newChannel(output)));
+
+            assertEquals(message, new String(output.toByteArray(), "ISO-8859-1"));
+        } finally {
+            smooks.close();
+        }
+    }
+
+    private void test_ByteBufferSource(StreamFilterType filterType, ByteBuffer buffer) throws IOException {
+        Smooks smooks = new Smooks();
+
+        try {
+            smooks.setFilterSettings(new FilterSettings(filterType));
+
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            smooks.filterSource(new ByteBufferSource(buffer), new ChannelResult(Channels.newChannel(output), 16, 3));
+
+            assertEquals(MESSAGE, new String(output.toByteArray(), "UTF-8"));
+        } finally {
+            smooks.close();
+        }
+    }
+
+    private void test_ChannelSource(StreamFilterType filterType) throws IOException {
+        Smooks smooks = new Smooks();
+
+        try {
+            smooks.setFilterSettings(new FilterSettings(filterType));
+
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            ChannelSource source = new ChannelSource(Channels.newChannel(new ByteArrayInputStream(MESSAGE.getBytes("UTF-8"))), 17);
+            smooks.filterSource(source, new ChannelResult(Channels.newChannel(output)));
+
+            assertEquals(MESSAGE, new String(output.toByteArray(), "UTF-8"));
+            assertFalse(source.getSource().isOpen());
+        } finally {
+            smooks.close();
+        }
+    }
+}
@@ -17,6 +17,7 @@
 package org.milyn.device.ident;
 
 import org.milyn.useragent.UnknownUseragentException;
+import org.milyn.useragent.request.HttpRequest;
 import org.milyn.useragent.request.Request;
 
 import java.util.Vector;
@@ -27,6 +28,10 @@ import java.util.Vector;
  * This class is used by adding {@link IdentSet} instances, preparing it for
  * device matching through a call to {@link #prepare} and then using it through
  * calls to the {@link #matchDevice} method.
+ * <p/>
+ * Device matches for {@link HttpRequest HTTP requests} are cached (see {@link DeviceIdentCache}),
+ * keyed by the values of the request headers/parameters referenced by the {@link HttpIdentUnit}s.
+ * The cache size can be set through {@link #setCacheSize(int)}.
  * @author tfennelly
  */
 
@@ -50,19 +55,46 @@ public final class DeviceIdent {
      * DeviceIdent for the VM.
      */
     private static DeviceIdent deviceIdent = null;
+    /**
+     * Cached "no match" device name.
+     */
+    private static final String NO_MATCH = "";
+    /**
+     * Maximum number of cached device matches.
+     */
+    private int cacheSize = DeviceIdentCache.DEFAULT_MAX_SIZE;
+    /**
+     * Device match cache.  null if caching is disabled or not supported by the IdentSets.
+     */
+    private volatile DeviceIdentCache cache = null;
+    /**
+     * Types ({@link HttpIdentUnit#PARAM_UNIT}/{@link HttpIdentUnit#HEADER_UNIT}) of
+     * the request values on which matching is based.
+     */
+    private int[] keyTypes = null;
+    /**
+     * Names of the request values on which matching is based.
+     */
+    private String[] keyNames = null;
 
 	/**
 	 * Set the DeviceIdent instance for the VM.
 	 * <p/>
 	 * This method blocks all future calls to {@link #addIdentSet} or 
 	 * {@link #prepare} throwing an IllegalStateException.
+	 * <p/>
+	 * The device match cache of the previous VM instance (if any) is cleared.
 	 * @param deviceIdent The DeviceIdent instance for the VM.
 	 */
 	public static void setInstance(DeviceIdent deviceIdent) {
 		if(deviceIdent == null) {
 			throw new IllegalArgumentException("null 'deviceIdent' arg in method call.");
 		}
+		DeviceIdent previous = DeviceIdent.deviceIdent;
 		DeviceIdent.deviceIdent = deviceIdent;
+		if(previous != null && previous != deviceIdent && previous.cache != null) {
+			previous.cache.clear();
+		}
 	}
 	
 	/**
@@ -118,6 +150,35 @@ public final class DeviceIdent {
             devList[i].prepare();
 			deviceNames[i] = devList[i].getDeviceName(); 
         }
+        prepareCacheKeys();
+        cache = createCache();
+    }
+
+    /**
+     * Set the maximum number of device matches cached by this DeviceIdent object.
+     * <p/>
+     * Default is {@link DeviceIdentCache#DEFAULT_MAX_SIZE}.  A size of zero disables caching.
+     * Setting the cache size discards all cached device matches.
+     * @param cacheSize The maximum number of cached device matches.
+     */
+    public void setCacheSize(int cacheSize) {
+        if(cacheSize < 0) {
+            throw new IllegalArgumentException("Invalid 'cacheSize' arg in method call.  Must not be negative.");
+        }
+        this.cacheSize = cacheSize;
+        if(devList != null) {
+            cache = createCache();
+        }
+    }
+
+    /**
+     * Get the device match cache.
+     * <p/>
+     * Exposes the cache metrics (hit rate etc).
+     * @return The device match cache, or null if device matches are not cached.
+     */
+    public DeviceIdentCache getCache() {
+        return cache;
     }
 
     /**
@@ -131,6 +192,36 @@ public final class DeviceIdent {
             throw new IllegalStateException("Call to matchDevice before object has been prepared.");
         }
 
+        DeviceIdentCache cache = this.cache;
+        String deviceName;
+
+        if(cache != null && request instanceof HttpRequest) {
+            DeviceIdentCache.Key key = createCacheKey((HttpRequest) request);
+
+            deviceName = cache.get(key);
+            if(deviceName == null) {
+                deviceName = matchIdentSets(request);
+                cache.put(key, (deviceName != null ? deviceName : NO_MATCH));
+            } else if(deviceName == NO_MATCH) {
+                deviceName = null;
+            }
+        } else {
+            deviceName = matchIdentSets(request);
+        }
+
+        if(deviceName == null) {
+            throw new UnknownUseragentException();
+        }
+
+        return deviceName;
+    }
+
+    /**
+     * Match the device associated with the supplied request instance against the IdentSet list.
+     * @param request The device request to be used to identify the requesting device.
+     * @return The name of the requesting device, or null if the device cannot be matched.
+     */
+    private String matchIdentSets(Request request) {
         // Iterate through the IdentSet list checking for a match on each.
         for(int i = 0; i < devList.length; i++) {
             if(devList[i].isMatch(request)) {
@@ -138,7 +229,74 @@ public final class DeviceIdent {
             }
         }
 
-        throw new UnknownUseragentException();
+        return null;
+    }
+
+    /**
+     * Collect the (unique) request headers/parameters on which device matching is based.
+     * <p/>
+     * Device matches can only be cached if all matching is based on {@link HttpIdentUnit}s,
+     * since the match result then depends only on those request values.
+     */
+    private void prepareCacheKeys() {
+        Vector types = new Vector();
+        Vector names = new Vector();
+
+        for(int i = 0; i < devList.length; i++) {
+            IdentUnit[][] comboMatrix = devList[i].getComboIdentUnitMatrix();
+
+            for(int y = 0; y < comboMatrix.length; y++) {
+                for(int x = 0; x < comboMatrix[y].length; x++) {
+                    if(!(comboMatrix[y][x] instanceof HttpIdentUnit)) {
+                        // Can't cache...
+                        return;
+                    }
+
+                    HttpIdentUnit unit = (HttpIdentUnit) comboMatrix[y][x];
+                    Integer type = new Integer(unit.getType());
+                    boolean added = false;
+
+                    for(int k = 0; k < names.size(); k++) {
+                        if(types.elementAt(k).equals(type) && names.elementAt(k).equals(unit.getName())) {
+                            added = true;
+                            break;
+                        }
+                    }
+                    if(!added) {
+                        types.addElement(type);
+                        names.addElement(unit.getName());
+                    }
+                }
+            }
+        }
+
+        keyTypes = new int[types.size()];
+        for(int i = 0; i < keyTypes.length; i++) {
+            keyTypes[i] = ((Integer) types.elementAt(i)).intValue();
+        }
+        keyNames = new String[names.size()];
+        names.copyInto(keyNames);
+    }
+
+    private DeviceIdentCache createCache() {
+        if(keyNames == null || cacheSize == 0) {
+            return null;
+        }
+        return new DeviceIdentCache(cacheSize);
+    }
+
+    private DeviceIdentCache.Key createCacheKey(HttpRequest request) {
+        String[] values = new String[keyNames.length];
+
+        for(int i = 0; i < keyNames.length; i++) {
+            if(keyTypes[i] == HttpIdentUnit.PARAM_UNIT) {
+                values[i] = request.getParameter(keyNames[i]);
+            } else {
+                values[i] = request.getHeader(keyNames[i]);
+            }
+        }
+
+        return new DeviceIdentCache.Key(values);
     }
 
 	/**
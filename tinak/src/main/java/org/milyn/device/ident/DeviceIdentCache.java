@@ -0,0 +1,235 @@
+/*
+	Milyn - Copyright (C) 2006 - 2010
+
+	This library is free software; you can redistribute it and/or
+	modify it under the terms of the GNU Lesser General Public
+	License (version 2.1) as published by the Free Software
+	Foundation.
+
+	This library is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+	See the GNU Lesser General Public License for more details:
+	http://www.gnu.org/licenses/lgpl.txt
+*/
+
+package org.milyn.device.ident;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Device match cache.
+ * <p/>
+ * Bounded, least recently used, cache of device match results, keyed by the values of the
+ * identifying request headers/parameters (see {@link DeviceIdent#matchDevice(org.milyn.useragent.request.Request)}).
+ * Safe for concurrent use.  The cache is split into segments, each of which is locked
+ * independently, so concurrent lookups rarely contend.
+ * <p/>
+ * The cache lives as long as its {@link DeviceIdent} instance, so it is invalidated when the
+ * device ident configuration is reloaded (i.e. a new {@link DeviceIdent} instance is
+ * {@link DeviceIdent#setInstance(DeviceIdent) set}).
+ */
+public class DeviceIdentCache {
+
+    /**
+     * Default maximum number of cached entries.
+     */
+    public static final int DEFAULT_MAX_SIZE = 1000;
+    /**
+     * Number of independently locked cache segments.
+     */
+    private static final int SEGMENT_COUNT = 16;
+
+    private Segment[] segments;
+    private int maxSize;
+    private AtomicLong hitCount = new AtomicLong();
+    private AtomicLong missCount = new AtomicLong();
+
+    /**
+     * Public constructor.
+     * @param maxSize The maximum number of cached entries.
+     */
+    public DeviceIdentCache(int maxSize) {
+        if(maxSize < 1) {
+            throw new IllegalArgumentException("Invalid 'maxSize' arg in constructor call.  Must be greater than zero.");
+        }
+
+        int segmentCount = Math.min(SEGMENT_COUNT, maxSize);
+        int segmentSize = maxSize / segmentCount;
+
+        this.maxSize = maxSize;
+        segments = new Segment[segmentCount];
+        for(int i = 0; i < segmentCount; i++) {
+            // Spread the remainder over the first segments...
+            segments[i] = new Segment(segmentSize + (i < maxSize % segmentCount ? 1 : 0));
+        }
+    }
+
+    /**
+     * Get the cached device match for the supplied key.
+     * @param key The request key.
+     * @return The cached device match, or null if not cached.
+     */
+    public String get(Key key) {
+        Segment segment = getSegment(key);
+        String deviceName;
+
+        synchronized(segment) {
+            deviceName = segment.get(key);
+        }
+        if(deviceName != null) {
+            hitCount.incrementAndGet();
+        } else {
+            missCount.incrementAndGet();
+        }
+
+        return deviceName;
+    }
+
+    /**
+     * Cache a device match.
+     * @param key The request key.
+     * @param deviceName The matched device name.
+     */
+    public void put(Key key, String deviceName) {
+        Segment segment = getSegment(key);
+
+        synchronized(segment) {
+            segment.put(key, deviceName);
+        }
+    }
+
+    /**
+     * Clear the cache and reset the cache metrics.
+     */
+    public void clear() {
+        for(Segment segment : segments) {
+            synchronized(segment) {
+                segment.clear();
+            }
+        }
+        hitCount.set(0);
+        missCount.set(0);
+    }
+
+    /**
+     * Get the number of cached entries.
+     * @return The number of cached entries.
+     */
+    public int getSize() {
+        int size = 0;
+
+        for(Segment segment : segments) {
+            synchronized(segment) {
+                size += segment.size();
+            }
+        }
+
+        return size;
+    }
+
+    /**
+     * Get the maximum number of cached entries.
+     * @return The maximum number of cached entries.
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Get the number of cache lookups that found a cached entry.
+     * @return The cache hit count.
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * Get the number of cache lookups that did not find a cached entry.
+     * @return The cache miss count.
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Get the ratio of cache hits to cache lookups.
+     * @return The cache hit rate (0.0 to 1.0), or 0.0 if there have been no lookups.
+     */
+    public double getHitRate() {
+        long hits = hitCount.get();
+        long lookups = hits + missCount.get();
+
+        return (lookups == 0 ? 0.0 : (double) hits / lookups);
+    }
+
+    public String toString() {
+        return "DeviceIdentCache [size: " + getSize() + "/" + maxSize + ", hits: " + getHitCount() + ", misses: " + getMissCount() + "]";
+    }
+
+    private Segment getSegment(Key key) {
+        int hash = key.hashCode();
+
+        // Spread the hash bits before selecting the segment...
+        hash ^= (hash >>> 16);
+        return segments[(hash & 0x7fffffff) % segments.length];
+    }
+
+    /**
+     * Device match cache key.
+     * <p/>
+     * The values of the identifying request headers/parameters.
+     */
+    public static final class Key {
+
+        private String[] values;
+        private int hashCode;
+
+        /**
+         * Public constructor.
+         * @param values The identifying values.  Can contain nulls.  Must not be modified after construction.
+         */
+        public Key(String[] values) {
+            if(values == null) {
+                throw new IllegalArgumentException("null 'values' arg in constructor call.");
+            }
+            this.values = values;
+            this.hashCode = Arrays.hashCode(values);
+        }
+
+        public int hashCode() {
+            return hashCode;
+        }
+
+        public boolean equals(Object obj) {
+            if(this == obj) {
+                return true;
+            } else if(obj instanceof Key) {
+                Key other = (Key) obj;
+                return (hashCode == other.hashCode && Arrays.equals(values, other.values));
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Access ordered cache segment.
+     */
+    private static class Segment extends LinkedHashMap<Key, String> {
+
+        private int maxSize;
+
+        private Segment(int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        protected boolean removeEldestEntry(Map.Entry<Key, String> eldest) {
+            return size() > maxSize;
+        }
+    }
+}
@@ -84,6 +84,14 @@ public class HttpIdentUnit extends IdentUnit {
         }
     }
 
+    /**
+     * Get the HTTP ident unit type identifier.
+     * @return {@link HttpIdentUnit#PARAM_UNIT} or {@link HttpIdentUnit#HEADER_UNIT}.
+     */
+    int getType() {
+        return type;
+    }
+
     /**
      * Is this device identification unit a match for the device.
      * @param request The device request.
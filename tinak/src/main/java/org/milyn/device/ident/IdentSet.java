@@ -288,7 +288,7 @@ public class IdentSet {
      * This is a 2D arry of IdentUnits
      * @return The identification unit combination set matrix.
      */
-    private IdentUnit[][] getComboIdentUnitMatrix() {
+    IdentUnit[][] getComboIdentUnitMatrix() {
         return matchComboMatrix;
     }
 
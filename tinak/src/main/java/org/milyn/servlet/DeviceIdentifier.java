@@ -19,6 +19,7 @@ package org.milyn.servlet;
 import org.milyn.resource.ServletResourceLocator;
 import org.milyn.resource.URIResourceLocator;
 import org.milyn.device.ident.DeviceIdent;
+import org.milyn.device.ident.DeviceIdentCache;
 import org.milyn.device.ident.IdentConfigDigester;
 import org.milyn.useragent.UnknownUseragentException;
 import org.milyn.useragent.request.HttpRequest;
@@ -58,6 +59,10 @@ import java.util.Enumeration;
  * (e.g. a database) and, for example, use a JSP to provide the data in the required XML
  * format.
  * <p/>
+ * Device matches are cached (see {@link org.milyn.device.ident.DeviceIdentCache}).  The maximum
+ * number of cached device matches can be set through the "DeviceIdentCacheSize" parameter
+ * (servlet &lt;init-param&gt; or &lt;context-param&gt;).  A value of "0" disables the cache.
+ * <p/>
  * @author Tom Fennelly
  */
 
@@ -72,6 +77,10 @@ abstract class DeviceIdentifier {
      * Default device ident config file.
      */
     private static final String DEFAULT_CONFIG = "/device-ident.xml";
+    /**
+     * Device Ident cache size application property name.
+     */
+    private static final String DEVICE_IDENT_CACHE_SIZE_PARAM = "DeviceIdentCacheSize";
 
     /**
      * Match the requesting useragent/device from the ServletRequest.
@@ -112,8 +121,14 @@ abstract class DeviceIdentifier {
         ServletResourceLocator resLocator = new ServletResourceLocator(config, new URIResourceLocator()); 
 
         try {
+            DeviceIdent deviceIdent;
+            String cacheSize = ServletParamUtils.getParameterValue(DEVICE_IDENT_CACHE_SIZE_PARAM, config, Integer.toString(DeviceIdentCache.DEFAULT_MAX_SIZE));
+
 			configStream = resLocator.getResource(DEVICE_IDENT_CONFIG_PARAM, DEFAULT_CONFIG);
-            return (new IdentConfigDigester()).parse(configStream);
+            deviceIdent = (new IdentConfigDigester()).parse(configStream);
+            deviceIdent.setCacheSize(Integer.parseInt(cacheSize.trim()));
+
+            return deviceIdent;
         } catch(Exception excep) {
             IllegalStateException state = new IllegalStateException("Error loading device ident config.");
             state.initCause(excep);
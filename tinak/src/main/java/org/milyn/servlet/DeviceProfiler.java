@@ -128,6 +128,8 @@ public abstract class DeviceProfiler {
 
     public static void setProfileStore(ProfileStore profileStore, ServletContext servletContext) {
         servletContext.setAttribute(PROFILE_STORE_CTX_KEY, profileStore);
+        // Invalidate the device ProfileSets resolved from the previous ProfileStore...
+        ServletUAContext.clearContexts();
     }
 
     /**
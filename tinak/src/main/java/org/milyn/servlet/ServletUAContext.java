@@ -24,9 +24,10 @@ import org.milyn.useragent.UAContext;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpSession;
 import javax.servlet.ServletConfig;
-import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Servlet useragent context.
@@ -124,7 +125,7 @@ public final class ServletUAContext implements UAContext {
     /**
      * Table of preconstructed ServletUAContext instances keyed by their common name.
      */
-    private static Hashtable<String, UAContext> contexts = new Hashtable<String, UAContext>();
+    private static Map<String, UAContext> contexts = new ConcurrentHashMap<String, UAContext>();
 	/**
 	 * Profiles Servlet Context key.
 	 */
@@ -238,6 +239,16 @@ public final class ServletUAContext implements UAContext {
 		return profileSet;
 	}
 	
+	/**
+	 * Clear the table of preconstructed ServletUAContext instances.
+	 * <p/>
+	 * Called when the device profile configuration is reloaded, so that the device
+	 * {@link ProfileSet ProfileSets} are resolved from the new configuration.
+	 */
+	static void clearContexts() {
+		contexts.clear();
+	}
+
 	/**
 	 * Unit Test class. 
 	 */
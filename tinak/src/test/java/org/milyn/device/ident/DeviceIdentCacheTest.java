@@ -0,0 +1,113 @@
+/*
+	Milyn - Copyright (C) 2006 - 2010
+
+	This library is free software; you can redistribute it and/or
+	modify it under the terms of the GNU Lesser General Public
+	License (version 2.1) as published by the Free Software
+	Foundation.
+
+	This library is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+
+	See the GNU Lesser General Public License for more details:
+	http://www.gnu.org/licenses/lgpl.txt
+*/
+
+package org.milyn.device.ident;
+
+import junit.framework.TestCase;
+
+/**
+ * Unit tests for {@link DeviceIdentCache}.
+ */
+public class DeviceIdentCacheTest extends TestCase {
+
+    public void test_key() {
+        DeviceIdentCache.Key key1 = new DeviceIdentCache.Key(new String[] {"a", null});
+        DeviceIdentCache.Key key2 = new DeviceIdentCache.Key(new String[] {"a", null});
+        DeviceIdentCache.Key key3 = new DeviceIdentCache.Key(new String[] {null, "a"});
+
+        assertEquals(key1, key2);
+        assertEquals(key1.hashCode(), key2.hashCode());
+        assertFalse(key1.equals(key3));
+    }
+
+    public void test_get_put() {
+        DeviceIdentCache cache = new DeviceIdentCache(10);
+
+        assertNull(cache.get(key("ua-1")));
+        cache.put(key("ua-1"), "device1");
+        assertEquals("device1", cache.get(key("ua-1")));
+        assertEquals("device1", cache.get(key("ua-1")));
+        assertNull(cache.get(key("ua-2")));
+
+        assertEquals(1, cache.getSize());
+        assertEquals(2, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+        assertEquals(0.5, cache.getHitRate(), 0.0001);
+
+        cache.clear();
+        assertEquals(0, cache.getSize());
+        assertEquals(0, cache.getHitCount());
+        assertEquals(0.0, cache.getHitRate(), 0.0001);
+        assertNull(cache.get(key("ua-1")));
+    }
+
+    public void test_bounded() {
+        DeviceIdentCache cache = new DeviceIdentCache(100);
+
+        for(int i = 0; i < 1000; i++) {
+            cache.put(key("ua-" + i), "device" + i);
+            // Keep "ua-0" in use...
+            assertEquals("device0", cache.get(key("ua-0")));
+        }
+        assertTrue(cache.getSize() <= 100);
+        assertEquals("device999", cache.get(key("ua-999")));
+    }
+
+    public void test_single_entry() {
+        DeviceIdentCache cache = new DeviceIdentCache(1);
+
+        cache.put(key("ua-1"), "device1");
+        cache.put(key("ua-2"), "device2");
+        assertEquals(1, cache.getSize());
+        assertNull(cache.get(key("ua-1")));
+        assertEquals("device2", cache.get(key("ua-2")));
+    }
+
+    public void test_concurrent() throws InterruptedException {
+        final DeviceIdentCache cache = new DeviceIdentCache(50);
+        Thread[] threads = new Thread[8];
+        final boolean[] failed = new boolean[1];
+
+        for(int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                public void run() {
+                    for(int j = 0; j < 10000; j++) {
+                        String ua = "ua-" + (j % 80);
+                        String device = cache.get(key(ua));
+
+                        if(device == null) {
+                            cache.put(key(ua), "device-" + ua);
+                        } else if(!device.equals("device-" + ua)) {
+                            failed[0] = true;
+                        }
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for(Thread thread : threads) {
+            thread.join();
+        }
+
+        assertFalse(failed[0]);
+        assertTrue(cache.getSize() <= 50);
+        assertEquals(80000, cache.getHitCount() + cache.getMissCount());
+    }
+
+    private static DeviceIdentCache.Key key(String userAgent) {
+        return new DeviceIdentCache.Key(new String[] {userAgent});
+    }
+}
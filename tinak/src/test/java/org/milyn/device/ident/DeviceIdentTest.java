@@ -246,6 +246,62 @@ public class DeviceIdentTest extends TestCase {
         }
     }
 
+    /**
+     * Test method: String matchDevice(Request)
+     * Device match caching.
+     */
+    public void testMatchDevice_cache() throws UnknownUseragentException {
+        DeviceIdent deviceIdent = new DeviceIdent();
+        IdentSet identset;
+        MockHttpRequest request;
+
+        identset = new IdentSet();
+        identset.setDeviceName("device1");
+        identset.addIdentUnit(new HttpIdentUnit.UnitTest(HttpIdentUnit.HEADER_UNIT, null, "User-Agent", "ua-1.*").getTestTarget());
+        deviceIdent.addIdentSet(identset);
+        identset = new IdentSet();
+        identset.setDeviceName("device2");
+        identset.addIdentUnit(new HttpIdentUnit.UnitTest(HttpIdentUnit.PARAM_UNIT, null, "device", "d2").getTestTarget());
+        deviceIdent.addIdentSet(identset);
+        deviceIdent.prepare();
+
+        DeviceIdentCache cache = deviceIdent.getCache();
+        assertNotNull(cache);
+
+        for(int i = 0; i < 3; i++) {
+            request = new MockHttpRequest();
+            request.setHeader("User-Agent", "ua-1 x");
+            assertEquals("device1", deviceIdent.matchDevice(request));
+
+            request = new MockHttpRequest();
+            request.setHeader("User-Agent", "ua-2");
+            request.setParameter("device", "d2");
+            assertEquals("device2", deviceIdent.matchDevice(request));
+
+            // Failed matches are also cached...
+            request = new MockHttpRequest();
+            request.setHeader("User-Agent", "ua-3");
+            try {
+                deviceIdent.matchDevice(request);
+                fail("Failed to throw UnknownUseragentException for unknown device.");
+            } catch(UnknownUseragentException ude) {
+                //OK
+            }
+        }
+        assertEquals(3, cache.getSize());
+        assertEquals(6, cache.getHitCount());
+        assertEquals(3, cache.getMissCount());
+        assertEquals(6.0 / 9.0, cache.getHitRate(), 0.0001);
+
+        // Disable the cache...
+        deviceIdent.setCacheSize(0);
+        assertNull(deviceIdent.getCache());
+        request = new MockHttpRequest();
+        request.setHeader("User-Agent", "ua-1 x");
+        assertEquals("device1", deviceIdent.matchDevice(request));
+        assertEquals(6, cache.getHitCount());
+    }
+
     /**
      * Main method needed to make a self runnable class
      *